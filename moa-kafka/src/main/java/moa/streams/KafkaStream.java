@@ -20,7 +20,9 @@
 
 package moa.streams;
 
+import com.github.javacliparser.IntOption;
 import com.github.javacliparser.StringOption;
+import com.yahoo.labs.samoa.instances.DenseInstance;
 import com.yahoo.labs.samoa.instances.Instance;
 import com.yahoo.labs.samoa.instances.Instances;
 import com.yahoo.labs.samoa.instances.InstancesHeader;
@@ -32,25 +34,38 @@ import moa.core.InstanceExample;
 import moa.core.ObjectRepository;
 import moa.options.AbstractOptionHandler;
 import moa.tasks.TaskMonitor;
+import moa.util.CompactInstanceDeserializer;
+import moa.util.CompactInstanceFormat;
+import moa.util.CompactInstanceSerializer;
 import moa.util.KafkaUtils;
-import moa.util.ObjectDeserializer;
 import moa.util.ObjectSerializer;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.common.PartitionInfo;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
 import org.apache.kafka.common.serialization.LongDeserializer;
 
 import java.io.Closeable;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Instance stream which consumes instances from a Kafka topic.
@@ -61,9 +76,23 @@ import java.util.Queue;
  *     partition.
  *   - The stream is considered ended when a record with a null
  *     value is found.
- *   - The serialised form of the instances is using Java's own
+ *   - The serialised form of the instances is either the compact
+ *     format (i.e. {@link CompactInstanceSerializer}) or Java's own
  *     serialisation tools (i.e. {@link ObjectSerializer}).
  *
+ * By default a background thread polls Kafka and fetches instances ahead
+ * of the learner, up to the prefetch limit. When the limit is reached the
+ * partitions are paused until the learner catches up.
+ *
+ * The stream keeps track of the offset of the next instance to deliver from
+ * each partition (see {@link #getPosition()}). A learner checkpointed
+ * together with this position can be resumed exactly where it left off by
+ * passing the position to {@link #resumeFrom(Map)}. In the compact format,
+ * the headers of the instances delivered so far (see {@link #getSchemas()})
+ * have to be checkpointed as well, and passed to
+ * {@link #resumeFrom(Map, Collection)}, unless they can be found in the
+ * schema topic.
+ *
  * @author Corey Sterling (csterlin at waikato dot ac dot nz)
  */
 public class KafkaStream extends AbstractOptionHandler implements
@@ -86,13 +115,42 @@ public class KafkaStream extends AbstractOptionHandler implements
   public StringOption portOption = new StringOption("port", 'p',
     "The Kafka broker port", "9092");
 
+  // The maximum number of records returned by a single poll
+  public IntOption maxPollRecordsOption = new IntOption("maxPollRecords", 'm',
+    "Maximum number of records returned by a single poll", 500, 1, Integer.MAX_VALUE);
+
+  // The number of instances fetched ahead by the background poller
+  public IntOption prefetchOption = new IntOption("prefetch", 'b',
+    "Maximum number of instances fetched ahead by a background thread (0 polls on the calling thread)",
+    10000, 0, Integer.MAX_VALUE);
+
+  // -- CONSTANTS -- //
+
+  // How long the background poller waits for records in a single poll
+  protected static final Duration POLL_TIMEOUT = Duration.ofMillis(100);
+
+  // Marks the end of the stream in the prefetch queue
+  protected static final ConsumerRecord<Long, Instance> END_OF_STREAM =
+    new ConsumerRecord<>("", -1, -1L, null, new DenseInstance(0));
+
+  // -- STATE -- //
+
+  // The offsets to start consuming from, by partition (others start at the beginning)
+  protected Map<TopicPartition, Long> m_ResumeOffsets = new HashMap<>();
+
+  // The serialised headers of the compact records delivered or resumed from, by schema ID
+  protected LinkedHashMap<Long, byte[]> m_Schemas = new LinkedHashMap<>();
+
   // -- TRANSIENTS -- //
 
   // The consumer which will retrieve records from the Kafka stream
-  protected transient KafkaConsumer<Long, Instance> m_Consumer = null;
+  protected transient Consumer<Long, Instance> m_Consumer = null;
 
-  // A buffer of instances retrieved from the Kafka stream
-  protected transient Queue<Instance> m_InstanceBuffer = null;
+  // A buffer of records retrieved from the Kafka stream
+  protected transient Queue<ConsumerRecord<Long, Instance>> m_InstanceBuffer = null;
+
+  // The offset of the next instance to deliver, by partition
+  protected transient Map<TopicPartition, Long> m_Position = null;
 
   // Whether we have reached the end of the stream
   protected transient boolean m_EndOfStreamReached = false;
@@ -100,6 +158,9 @@ public class KafkaStream extends AbstractOptionHandler implements
   // The header for the instances
   protected transient InstancesHeader m_Header = null;
 
+  // The background poller, if prefetching
+  protected transient Poller m_Poller = null;
+
   @Override
   public String getPurposeString() {
     return "A stream consumed from a Kafka topic.";
@@ -146,8 +207,77 @@ public class KafkaStream extends AbstractOptionHandler implements
     if (bufferIsEmpty())
       return null;
 
-    // Return the next instance from the buffer
-    return new InstanceExample(m_InstanceBuffer.remove());
+    // Return the next instance from the buffer, moving past it
+    ConsumerRecord<Long, Instance> record = m_InstanceBuffer.remove();
+    getPositionMap().put(new TopicPartition(record.topic(), record.partition()), record.offset() + 1);
+
+    // Keep the header if the record introduces one
+    Header schema = record.headers().lastHeader(CompactInstanceFormat.SCHEMA_HEADER);
+    if (schema != null)
+      m_Schemas.putIfAbsent(CompactInstanceFormat.schemaID(schema.value()), schema.value());
+
+    return new InstanceExample(record.value());
+  }
+
+  /**
+   * Gets the offset of the next instance this stream will deliver from
+   * each partition it has delivered instances from (or was resumed in).
+   * Records fetched but not yet delivered are not included, so the
+   * position can be checkpointed together with a learner that has been
+   * trained on every instance delivered so far.
+   *
+   * @return a copy of the position
+   */
+  public Map<TopicPartition, Long> getPosition() {
+    return new HashMap<>(getPositionMap());
+  }
+
+  /**
+   * Restarts the stream at the given position (as returned by
+   * {@link #getPosition()}), rather than at the beginning of the topic.
+   * Partitions which aren't included are consumed from the beginning.
+   * The position is kept for any subsequent {@link #restart()}.
+   *
+   * @param offsets the offset of the first instance to consume, by partition
+   */
+  public void resumeFrom(Map<TopicPartition, Long> offsets) {
+    m_ResumeOffsets = new HashMap<>(offsets);
+
+    restart();
+  }
+
+  /**
+   * Restarts the stream at the given position, knowing the headers of the
+   * compact records in advance (as returned by {@link #getSchemas()}).
+   *
+   * @param offsets the offset of the first instance to consume, by partition
+   * @param schemas the serialised headers of the instances
+   */
+  public void resumeFrom(Map<TopicPartition, Long> offsets, Collection<byte[]> schemas) {
+    for (byte[] schema : schemas)
+      m_Schemas.putIfAbsent(CompactInstanceFormat.schemaID(schema), schema);
+
+    resumeFrom(offsets);
+  }
+
+  /**
+   * Gets the serialised headers of the compact records delivered so far,
+   * or known from {@link #resumeFrom(Map, Collection)}.
+   *
+   * @return a copy of the headers
+   */
+  public List<byte[]> getSchemas() {
+    return new ArrayList<>(m_Schemas.values());
+  }
+
+  /**
+   * Gets the position map, starting it at the resume offsets if needed.
+   */
+  protected Map<TopicPartition, Long> getPositionMap() {
+    if (m_Position == null)
+      m_Position = new HashMap<>(m_ResumeOffsets);
+
+    return m_Position;
   }
 
   @Override
@@ -157,11 +287,15 @@ public class KafkaStream extends AbstractOptionHandler implements
 
   @Override
   public void restart() {
+    // A new poller is started from the resume offsets when needed
+    stopPoller();
+
     // Get the consumer in a usable state and restart it
     restartConsumer();
 
     // Throw away any buffered instances
     m_InstanceBuffer = null;
+    m_Position = null;
 
     // Mark the stream as not complete
     m_EndOfStreamReached = false;
@@ -189,6 +323,8 @@ public class KafkaStream extends AbstractOptionHandler implements
 
   @Override
   public void close() {
+    stopPoller();
+
     if (m_Consumer != null) {
       m_Consumer.unsubscribe();
       m_Consumer.close();
@@ -207,15 +343,23 @@ public class KafkaStream extends AbstractOptionHandler implements
       return;
 
     // Create the consumer
-    m_Consumer = new KafkaConsumer<>(createConsumerConfiguration());
+    m_Consumer = createConsumer();
 
-    // Subscribe to the given topic
-    m_Consumer.subscribe(Collections.singletonList(topicOption.getValue()));
+    // Subscribe to the given topic, starting each partition at the resume offsets
+    m_Consumer.subscribe(Collections.singletonList(topicOption.getValue()),
+      new StartingPositionListener(m_Consumer));
 
     // Make sure the consumer starts from the beginning of the topic
     restartConsumer();
   }
 
+  /**
+   * Creates a Kafka consumer for the topic (not yet subscribed).
+   */
+  protected Consumer<Long, Instance> createConsumer() {
+    return new KafkaConsumer<>(createConsumerConfiguration());
+  }
+
   /**
    * Creates the configuration for the Kafka consumer.
    */
@@ -223,9 +367,12 @@ public class KafkaStream extends AbstractOptionHandler implements
     Map<String, Object> config = new HashMap<>();
 
     config.put("key.deserializer", LongDeserializer.class);
-    config.put("value.deserializer", ObjectDeserializer.class);
+    config.put("value.deserializer", CompactInstanceDeserializer.class);
+    config.put(CompactInstanceDeserializer.SCHEMA_TOPIC_CONFIG, CompactInstanceFormat.schemaTopic(topicOption.getValue()));
+    config.put(CompactInstanceDeserializer.SCHEMAS_CONFIG, getSchemas());
     config.put("bootstrap.servers", broker());
     config.put("fetch.min.bytes", 1);
+    config.put("max.poll.records", maxPollRecordsOption.getValue());
     config.put("group.id", KafkaUtils.uniqueGroupIDString(this));
     config.put("max.partition.fetch.bytes", 1 << 20); // 1MB
     config.put("allow.auto.create.topics", false);
@@ -246,15 +393,35 @@ public class KafkaStream extends AbstractOptionHandler implements
   }
 
   /**
-   * Directs the consumer to the beginning of the Kafka stream.
+   * Directs the consumer to the beginning of the Kafka stream, or to the
+   * resume offsets if there are any.
    */
   protected void restartConsumer() {
     // Can't restart a non-resident consumer
     if (m_Consumer == null)
       return;
 
-    // Seek all partitions back to the zero-record
-    m_Consumer.seekToBeginning(Collections.emptyList());
+    // Seek all assigned partitions back to where the stream starts
+    seekToStart(m_Consumer, m_Consumer.assignment());
+  }
+
+  /**
+   * Seeks each of the given partitions to its resume offset, or to the
+   * beginning if it has none.
+   */
+  protected void seekToStart(Consumer<Long, Instance> consumer, Collection<TopicPartition> partitions) {
+    List<TopicPartition> fromBeginning = new ArrayList<>();
+    for (TopicPartition partition : partitions) {
+      Long offset = m_ResumeOffsets.get(partition);
+      if (offset != null)
+        consumer.seek(partition, offset);
+      else
+        fromBeginning.add(partition);
+    }
+
+    // An empty list would mean all partitions
+    if (!fromBeginning.isEmpty())
+      consumer.seekToBeginning(fromBeginning);
   }
 
   /**
@@ -293,36 +460,78 @@ public class KafkaStream extends AbstractOptionHandler implements
     if (!bufferIsEmpty())
       return;
 
-    // Make sure we have a consumer instance to use
-    establishConsumer();
-
     // If the buffer isn't there, create it
     if (m_InstanceBuffer == null)
       m_InstanceBuffer = new LinkedList<>();
 
+    // Take the instances the background poller has fetched
+    if (prefetchOption.getValue() > 0) {
+      fillBufferFromPoller();
+      cacheHeaderIfNecessary();
+      return;
+    }
+
+    // Make sure we have a consumer instance to use
+    establishConsumer();
+
     // Get some records from Kafka
     ConsumerRecords<Long, Instance> records = m_Consumer.poll(KafkaUtils.WAIT_AS_LONG_AS_POSSIBLE);
 
-    // Add each instance to the buffer
+    // Add each record to the buffer
     for (ConsumerRecord<Long, Instance> record : records) {
-      // Extract the instance from the record
-      Instance instance = record.value();
-
-      // If it's null, this is the sentinel that the end of stream has been reached
-      if (instance == null) {
+      // If its instance is null, this is the sentinel that the end of stream has been reached
+      if (record.value() == null) {
         m_EndOfStreamReached = true;
         close();
         break;
       }
 
-      // Add the instance to the buffer
-      m_InstanceBuffer.add(record.value());
+      // Add the record to the buffer
+      m_InstanceBuffer.add(record);
     }
 
     // Save the header if we can and need to
     cacheHeaderIfNecessary();
   }
 
+  /**
+   * Moves all instances fetched by the background poller into the buffer,
+   * waiting for at least one.
+   */
+  protected void fillBufferFromPoller() {
+    // Start the poller if it isn't running
+    if (m_Poller == null) {
+      m_Poller = new Poller(prefetchOption.getValue(), maxPollRecordsOption.getValue());
+      m_Poller.start();
+    }
+
+    // Wait for the next record and take whatever else is ready
+    List<ConsumerRecord<Long, Instance>> batch = new ArrayList<>();
+    batch.add(m_Poller.take());
+    m_Poller.drainTo(batch);
+
+    for (ConsumerRecord<Long, Instance> record : batch) {
+      // The poller has found the end of the stream
+      if (record == END_OF_STREAM) {
+        m_EndOfStreamReached = true;
+        close();
+        break;
+      }
+
+      m_InstanceBuffer.add(record);
+    }
+  }
+
+  /**
+   * Stops the background poller, discarding the instances it has fetched.
+   */
+  protected void stopPoller() {
+    if (m_Poller != null)
+      m_Poller.stop();
+
+    m_Poller = null;
+  }
+
   /**
    * Caches the header for these instances if it hasn't already.
    */
@@ -331,15 +540,15 @@ public class KafkaStream extends AbstractOptionHandler implements
     if (m_Header != null)
       return;
 
-    // Get one of the instances
-    Instance instance = m_InstanceBuffer.peek();
+    // Get one of the records
+    ConsumerRecord<Long, Instance> record = m_InstanceBuffer.peek();
 
     // If there isn't one (should always be at this point), abort
-    if (instance == null)
+    if (record == null)
       return;
 
     // Get it's dataset
-    Instances dataset = instance.dataset();
+    Instances dataset = record.value().dataset();
 
     // Save it for future reference
     if (dataset instanceof InstancesHeader)
@@ -354,4 +563,153 @@ public class KafkaStream extends AbstractOptionHandler implements
   protected boolean bufferIsEmpty() {
     return m_InstanceBuffer == null || m_InstanceBuffer.peek() == null;
   }
+
+  /**
+   * Seeks partitions to where the stream starts when they are first
+   * assigned to a consumer. Partitions the consumer has had before keep
+   * their position, so a rebalance doesn't repeat instances.
+   */
+  protected class StartingPositionListener implements ConsumerRebalanceListener {
+
+    // The consumer being positioned
+    protected final Consumer<Long, Instance> m_Target;
+
+    // The partitions which have been assigned before
+    protected final Set<TopicPartition> m_Started = new HashSet<>();
+
+    public StartingPositionListener(Consumer<Long, Instance> consumer) {
+      m_Target = consumer;
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+    }
+
+    @Override
+    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+      List<TopicPartition> unstarted = new ArrayList<>();
+      for (TopicPartition partition : partitions) {
+        if (m_Started.add(partition))
+          unstarted.add(partition);
+      }
+
+      seekToStart(m_Target, unstarted);
+    }
+  }
+
+  /**
+   * Polls Kafka on a background thread with its own consumer and queues
+   * the instances for the learner. Once the queue can't take a full poll,
+   * the partitions are paused; polling continues so the consumer stays in
+   * its group.
+   */
+  protected class Poller implements Runnable {
+
+    // The records fetched so far, followed by END_OF_STREAM
+    protected final BlockingQueue<ConsumerRecord<Long, Instance>> m_Queue;
+
+    // The maximum number of records a single poll returns
+    protected final int m_MaxPollRecords;
+
+    // The thread running the poller
+    protected final Thread m_Thread;
+
+    // Whether the poller has been asked to stop
+    protected volatile boolean m_Stopped = false;
+
+    // The error which stopped the poller, if any
+    protected volatile RuntimeException m_Failure = null;
+
+    public Poller(int capacity, int maxPollRecords) {
+      m_MaxPollRecords = maxPollRecords;
+      m_Queue = new ArrayBlockingQueue<>(Math.max(capacity, maxPollRecords) + 1);
+      m_Thread = new Thread(this, "KafkaStream-" + topicOption.getValue());
+      m_Thread.setDaemon(true);
+    }
+
+    public void start() {
+      m_Thread.start();
+    }
+
+    @Override
+    public void run() {
+      Consumer<Long, Instance> consumer = null;
+      try {
+        consumer = createConsumer();
+        consumer.subscribe(Collections.singletonList(topicOption.getValue()),
+          new StartingPositionListener(consumer));
+
+        while (!m_Stopped) {
+          // Only fetch if the queue can take everything a poll may return
+          if (m_Queue.remainingCapacity() <= m_MaxPollRecords)
+            consumer.pause(consumer.assignment());
+          else if (!consumer.paused().isEmpty())
+            consumer.resume(consumer.paused());
+
+          ConsumerRecords<Long, Instance> records = consumer.poll(POLL_TIMEOUT);
+          for (ConsumerRecord<Long, Instance> record : records) {
+            // A null value is the sentinel that the end of stream has been reached
+            if (record.value() == null) {
+              m_Queue.put(END_OF_STREAM);
+              return;
+            }
+
+            m_Queue.put(record);
+          }
+        }
+      } catch (InterruptedException e) {
+        // Stopped while waiting
+      } catch (RuntimeException e) {
+        m_Failure = e;
+      } finally {
+        if (consumer != null)
+          consumer.close();
+      }
+    }
+
+    /**
+     * Waits for the next record. Returns END_OF_STREAM if the poller
+     * has stopped and there are no more records.
+     */
+    public ConsumerRecord<Long, Instance> take() {
+      try {
+        while (true) {
+          ConsumerRecord<Long, Instance> record = m_Queue.poll(POLL_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+          if (record != null)
+            return record;
+
+          if (!m_Thread.isAlive() && m_Queue.isEmpty()) {
+            if (m_Failure != null)
+              throw new RuntimeException("Failed to consume instances from Kafka", m_Failure);
+            return END_OF_STREAM;
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted while waiting for instances from Kafka", e);
+      }
+    }
+
+    /**
+     * Moves all queued records to the given list.
+     */
+    public void drainTo(List<ConsumerRecord<Long, Instance>> list) {
+      m_Queue.drainTo(list);
+    }
+
+    /**
+     * Stops the poller and waits for it to close its consumer. The poller
+     * notices within one poll timeout; the queue never blocks it, as the
+     * partitions are paused before it could fill up.
+     */
+    public void stop() {
+      m_Stopped = true;
+      try {
+        m_Thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      m_Queue.clear();
+    }
+  }
 }
@@ -0,0 +1,166 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * LearnModelFromTopic.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+
+package moa.tasks;
+
+import com.github.javacliparser.FileOption;
+import com.github.javacliparser.IntOption;
+import moa.capabilities.CapabilitiesHandler;
+import moa.capabilities.Capability;
+import moa.capabilities.ImmutableCapabilities;
+import moa.classifiers.Classifier;
+import moa.core.ObjectRepository;
+import moa.options.ClassOption;
+import moa.streams.KafkaStream;
+import moa.util.KafkaCheckpoint;
+import moa.util.KafkaCheckpointWriter;
+
+import java.io.File;
+
+/**
+ * Task to learn a model from a Kafka topic with checkpoints. Every few
+ * instances the model is checkpointed together with the offsets of the
+ * instances it has been trained on (see {@link KafkaCheckpoint}). The
+ * learner only pauses to snapshot the model; the checkpoint is written to
+ * disk in the background.
+ *
+ * If the checkpoint file exists when the task starts, the model is
+ * restored from it and the stream resumes at its offsets (knowing the
+ * headers of the instances from the checkpoint), so each instance is
+ * learned exactly once over all runs.
+ */
+public class LearnModelFromTopic extends AuxiliarMainTask implements CapabilitiesHandler {
+
+  // Serialisation UID#
+  private static final long serialVersionUID = 3208640583938101761L;
+
+  // The learner to train
+  public ClassOption learnerOption = new ClassOption(
+        "learner",
+        'l',
+        "Learner to train",
+        Classifier.class,
+        "moa.classifiers.bayes.NaiveBayes"
+  );
+
+  // The stream to learn from
+  public ClassOption streamOption = new ClassOption(
+        "stream",
+        's',
+        "Kafka stream to learn from",
+        KafkaStream.class,
+        "KafkaStream"
+  );
+
+  // The maximum number of instances to learn from
+  public IntOption maxInstancesOption = new IntOption(
+        "maxInstances",
+        'm',
+        "Maximum number of instances to train on, including those of the restored checkpoint",
+        100_000_000,
+        0,
+        Integer.MAX_VALUE
+  );
+
+  // The file to keep the checkpoint in
+  public FileOption checkpointFileOption = new FileOption(
+        "checkpointFile",
+        'c',
+        "File to write the checkpoints to and to resume from if it exists",
+        "checkpoint.moa",
+        "moa",
+        true
+  );
+
+  // How often to checkpoint
+  public IntOption checkpointIntervalOption = new IntOption(
+        "checkpointInterval",
+        'i',
+        "Number of instances between two checkpoints",
+        100_000,
+        1,
+        Integer.MAX_VALUE
+  );
+
+  @Override
+  public String getPurposeString() {
+    return "Learns a model from a Kafka topic, checkpointing it with the consumed offsets.";
+  }
+
+  @Override
+  public Class<?> getTaskResultType() {
+    return Classifier.class;
+  }
+
+  @Override
+  protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
+    Classifier learner = (Classifier) getPreparedClassOption(learnerOption);
+    KafkaStream stream = (KafkaStream) getPreparedClassOption(streamOption);
+    File checkpointFile = checkpointFileOption.getFile();
+    int maxInstances = maxInstancesOption.getValue();
+    int checkpointInterval = checkpointIntervalOption.getValue();
+
+    // Resume from the last checkpoint if there is one
+    long instancesProcessed = 0;
+    KafkaCheckpoint checkpoint = KafkaCheckpoint.load(checkpointFile);
+    if (checkpoint != null) {
+      monitor.setCurrentActivity("Restoring checkpoint...", -1.0);
+      learner = (Classifier) checkpoint.getModel();
+      instancesProcessed = checkpoint.getInstancesProcessed();
+      stream.resumeFrom(checkpoint.getOffsets(), checkpoint.getSchemas());
+    }
+
+    monitor.setCurrentActivity("Training learner...", -1.0);
+    KafkaCheckpointWriter writer = new KafkaCheckpointWriter(checkpointFile);
+    try {
+      if (learner.getModelContext() == null && stream.hasMoreInstances())
+        learner.setModelContext(stream.getHeader());
+
+      while (instancesProcessed < maxInstances && stream.hasMoreInstances()) {
+        learner.trainOnInstance(stream.nextInstance());
+        instancesProcessed++;
+
+        if (instancesProcessed % checkpointInterval == 0)
+          writer.write(new KafkaCheckpoint(learner, stream.getPosition(), instancesProcessed, stream.getSchemas()));
+
+        if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
+          if (monitor.taskShouldAbort())
+            return null;
+          monitor.setCurrentActivityFractionComplete((double) instancesProcessed / maxInstances);
+          if (monitor.resultPreviewRequested())
+            monitor.setLatestResultPreview(learner.copy());
+        }
+      }
+
+      // The final checkpoint contains everything learned
+      writer.write(new KafkaCheckpoint(learner, stream.getPosition(), instancesProcessed, stream.getSchemas()));
+    } finally {
+      writer.close();
+      stream.close();
+    }
+
+    return learner;
+  }
+
+  @Override
+  public ImmutableCapabilities defineImmutableCapabilities() {
+    return new ImmutableCapabilities(Capability.VIEW_STANDARD);
+  }
+}
@@ -0,0 +1,512 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * LearnModelFromTopicPartitions.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+
+package moa.tasks;
+
+import com.github.javacliparser.FileOption;
+import com.github.javacliparser.IntOption;
+import com.github.javacliparser.StringOption;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import moa.capabilities.CapabilitiesHandler;
+import moa.capabilities.Capability;
+import moa.capabilities.ImmutableCapabilities;
+import moa.classifiers.MergeableClassifier;
+import moa.core.ObjectRepository;
+import moa.options.ClassOption;
+import moa.util.CompactInstanceDeserializer;
+import moa.util.CompactInstanceFormat;
+import moa.util.KafkaCheckpoint;
+import moa.util.KafkaCheckpointWriter;
+import moa.util.KafkaUtils;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.LongDeserializer;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Task to learn a model from all partitions of a Kafka topic in parallel.
+ * Each partition is consumed by its own thread, which trains a replica of
+ * the learner. Every few instances the replicas meet at a checkpoint,
+ * where their models are merged into the global model (see
+ * {@link MergeableClassifier}) and each replica commits the offset up to
+ * which its partition is contained in that model.
+ *
+ * A partition is learned up to its end when the task starts, or up to a
+ * record with a null value.
+ *
+ * If a checkpoint file is given, the global model is written to it with
+ * the offsets of each checkpoint (see {@link KafkaCheckpoint}), and a run
+ * started with an existing checkpoint resumes from it. The checkpoint keeps
+ * the headers of compact records, as the records after its offsets don't
+ * carry them.
+ */
+public class LearnModelFromTopicPartitions extends AuxiliarMainTask implements CapabilitiesHandler {
+
+  // Serialisation UID#
+  private static final long serialVersionUID = -2904316226340315847L;
+
+  // How long a replica waits for records in a single poll
+  protected static final Duration POLL_TIMEOUT = Duration.ofMillis(100);
+
+  // The learner to train
+  public ClassOption learnerOption = new ClassOption(
+        "learner",
+        'l',
+        "Learner to train, one replica per partition",
+        MergeableClassifier.class,
+        "moa.classifiers.bayes.NaiveBayes"
+  );
+
+  // The topic to consume
+  public StringOption topicOption = new StringOption(
+        "topic",
+        't',
+        "Kafka topic to consume",
+        ""
+  );
+
+  // The broker host to connect to
+  public StringOption hostOption = new StringOption(
+        "host",
+        'h',
+        "The Kafka broker host",
+        "localhost"
+  );
+
+  // The broker port to connect to
+  public StringOption portOption = new StringOption(
+        "port",
+        'p',
+        "The Kafka broker port",
+        "9092"
+  );
+
+  // The maximum number of instances to learn from
+  public IntOption maxInstancesOption = new IntOption(
+        "maxInstances",
+        'm',
+        "Maximum number of instances to train on, over all partitions",
+        100_000_000,
+        0,
+        Integer.MAX_VALUE
+  );
+
+  // How often the replicas are merged
+  public IntOption mergeIntervalOption = new IntOption(
+        "mergeInterval",
+        'i',
+        "Number of instances each replica learns between two merges",
+        10_000,
+        1,
+        Integer.MAX_VALUE
+  );
+
+  // The seed of the replicas
+  public IntOption randomSeedOption = new IntOption(
+        "randomSeed",
+        'r',
+        "Random seed of the first replica, the replica of partition p uses seed + p",
+        1
+  );
+
+  // The file to keep the checkpoint in
+  public FileOption checkpointFileOption = new FileOption(
+        "checkpointFile",
+        'c',
+        "File to write the checkpoints to and to resume from if it exists (none if empty)",
+        "",
+        "moa",
+        true
+  );
+
+  // -- TRANSIENTS -- //
+
+  // The replicas, one per partition
+  protected transient List<Replica> m_Replicas = null;
+
+  // The consumer group the offsets are committed for
+  protected transient String m_GroupID = null;
+
+  // The number of instances learned over all replicas
+  protected transient AtomicLong m_InstancesProcessed = null;
+
+  // Whether the replicas should stop
+  protected transient volatile boolean m_Stopped = false;
+
+  // The first error of a replica
+  protected transient volatile RuntimeException m_Failure = null;
+
+  // The header of the instances, from the first instance seen
+  protected transient volatile InstancesHeader m_Header = null;
+
+  // The model of the latest checkpoint
+  protected transient volatile MergeableClassifier m_Model = null;
+
+  // The offsets of the restored checkpoint, by partition
+  protected transient Map<TopicPartition, Long> m_ResumeOffsets = null;
+
+  // The serialised headers of the compact records seen or restored, by schema ID
+  protected transient Map<Long, byte[]> m_Schemas = null;
+
+  // The writer of the checkpoints, if checkpointing
+  protected transient KafkaCheckpointWriter m_CheckpointWriter = null;
+
+  @Override
+  public String getPurposeString() {
+    return "Learns a model from the partitions of a Kafka topic in parallel, merging the replicas periodically.";
+  }
+
+  @Override
+  public Class<?> getTaskResultType() {
+    return MergeableClassifier.class;
+  }
+
+  /**
+   * Creates the configuration for the consumers of the partitions.
+   */
+  protected Map<String, Object> createConsumerConfiguration() {
+    Map<String, Object> config = new HashMap<>();
+
+    config.put("key.deserializer", LongDeserializer.class);
+    config.put("value.deserializer", CompactInstanceDeserializer.class);
+    config.put(CompactInstanceDeserializer.SCHEMA_TOPIC_CONFIG, CompactInstanceFormat.schemaTopic(topicOption.getValue()));
+    config.put(CompactInstanceDeserializer.SCHEMAS_CONFIG, new ArrayList<>(m_Schemas.values()));
+    config.put("bootstrap.servers", KafkaUtils.broker(hostOption.getValue(), portOption.getValue()));
+    config.put("fetch.min.bytes", 1);
+    config.put("group.id", m_GroupID);
+    config.put("max.partition.fetch.bytes", 1 << 20); // 1MB
+    config.put("allow.auto.create.topics", false);
+    config.put("auto.offset.reset", "earliest");
+    config.put("enable.auto.commit", false);
+    config.put("fetch.max.bytes", 1 << 24); // 16MB
+    config.put("isolation.level", "read_committed");
+    config.put("client.id", this.getClass().getName());
+
+    return config;
+  }
+
+  /**
+   * Creates a Kafka consumer (not yet assigned to a partition).
+   */
+  protected Consumer<Long, Instance> createConsumer() {
+    return new KafkaConsumer<>(createConsumerConfiguration());
+  }
+
+  /**
+   * Gets the offset a replica starts consuming its partition from: the
+   * offset of the restored checkpoint, or the beginning of the partition.
+   */
+  protected long startOffset(Consumer<Long, Instance> consumer, TopicPartition partition) {
+    Long resumeOffset = m_ResumeOffsets.get(partition);
+    if (resumeOffset != null) {
+      consumer.seek(partition, resumeOffset);
+      return resumeOffset;
+    }
+
+    consumer.seekToBeginning(Collections.singletonList(partition));
+    return consumer.position(partition);
+  }
+
+  @Override
+  protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
+    MergeableClassifier learner = (MergeableClassifier) getPreparedClassOption(learnerOption);
+    String topic = topicOption.getValue();
+
+    m_GroupID = KafkaUtils.uniqueGroupIDString(this);
+    m_InstancesProcessed = new AtomicLong();
+    m_Stopped = false;
+    m_Failure = null;
+    m_Header = null;
+    m_Model = null;
+    m_ResumeOffsets = new HashMap<>();
+    m_Schemas = new ConcurrentHashMap<>();
+
+    // Fail early for learners whose parts can't be merged
+    MergeableClassifier trial = (MergeableClassifier) learner.copy();
+    trial.resetLearning();
+    trial.merge(learner.copy());
+
+    // Resume from the last checkpoint if there is one
+    File checkpointFile = checkpointFileOption.getFile();
+    MergeableClassifier restored = null;
+    if (checkpointFile != null) {
+      KafkaCheckpoint checkpoint = KafkaCheckpoint.load(checkpointFile);
+      if (checkpoint != null) {
+        restored = (MergeableClassifier) checkpoint.getModel();
+        m_ResumeOffsets.putAll(checkpoint.getOffsets());
+        for (byte[] schema : checkpoint.getSchemas())
+          m_Schemas.put(CompactInstanceFormat.schemaID(schema), schema);
+        m_InstancesProcessed.set(checkpoint.getInstancesProcessed());
+        m_Model = restored;
+      }
+    }
+
+    // Find the partitions and how far to read them
+    List<TopicPartition> partitions = new ArrayList<>();
+    Map<TopicPartition, Long> endOffsets;
+    try (Consumer<Long, Instance> consumer = createConsumer()) {
+      for (PartitionInfo info : consumer.partitionsFor(topic))
+        partitions.add(new TopicPartition(topic, info.partition()));
+      endOffsets = consumer.endOffsets(partitions);
+    }
+    if (partitions.isEmpty())
+      throw new RuntimeException("Kafka topic '" + topic + "' has no partitions");
+
+    // Create a replica of the learner per partition
+    Phaser checkpoints = new Phaser(partitions.size()) {
+      @Override
+      protected boolean onAdvance(int phase, int registeredParties) {
+        // The last replica deregistering isn't a checkpoint
+        if (registeredParties > 0)
+          checkpoint();
+        return super.onAdvance(phase, registeredParties);
+      }
+    };
+    m_Replicas = new ArrayList<>();
+    for (TopicPartition partition : partitions) {
+      MergeableClassifier replica;
+      if (restored != null && m_Replicas.isEmpty()) {
+        // The first replica carries on with the restored model
+        replica = (MergeableClassifier) restored.copy();
+      } else {
+        replica = (MergeableClassifier) learner.copy();
+        if (replica.isRandomizable())
+          replica.setRandomSeed(randomSeedOption.getValue() + partition.partition());
+        replica.resetLearning();
+      }
+      m_Replicas.add(new Replica(partition, replica, endOffsets.get(partition), checkpoints));
+    }
+
+    // Learn until all replicas are done
+    monitor.setCurrentActivity("Training learner replicas...", -1.0);
+    if (checkpointFile != null)
+      m_CheckpointWriter = new KafkaCheckpointWriter(checkpointFile);
+    try {
+      for (Replica replica : m_Replicas)
+        replica.start();
+      for (Replica replica : m_Replicas) {
+        while (replica.isAlive()) {
+          try {
+            replica.join(1000);
+          } catch (InterruptedException e) {
+            m_Stopped = true;
+          }
+
+          if (monitor.taskShouldAbort())
+            m_Stopped = true;
+          long total = Math.min(maxInstancesOption.getValue(), totalOffsets(endOffsets));
+          if (total > 0)
+            monitor.setCurrentActivityFractionComplete((double) m_InstancesProcessed.get() / total);
+          if (monitor.resultPreviewRequested() && m_Model != null)
+            monitor.setLatestResultPreview(m_Model.copy());
+        }
+      }
+    } finally {
+      if (m_CheckpointWriter != null)
+        m_CheckpointWriter.close();
+      m_CheckpointWriter = null;
+    }
+
+    if (m_Failure != null)
+      throw new RuntimeException("Failed to learn from Kafka topic '" + topic + "'", m_Failure);
+    if (monitor.taskShouldAbort())
+      return null;
+
+    return m_Model;
+  }
+
+  /**
+   * Gets the total number of records of the given partitions.
+   */
+  protected long totalOffsets(Map<TopicPartition, Long> endOffsets) {
+    long total = 0;
+    for (Long offset : endOffsets.values())
+      total += offset;
+    return total;
+  }
+
+  /**
+   * Merges the replicas into the global model. Called while all running
+   * replicas wait at a checkpoint; finished replicas don't change anymore.
+   */
+  protected void checkpoint() {
+    try {
+      MergeableClassifier model = (MergeableClassifier) m_Replicas.get(0).m_Learner.copy();
+      Map<TopicPartition, Long> offsets = new HashMap<>();
+      for (Replica replica : m_Replicas) {
+        if (replica != m_Replicas.get(0))
+          model.merge(replica.m_Learner);
+        offsets.put(replica.m_Partition, replica.m_NextOffset);
+      }
+      if (m_Header != null)
+        model.setModelContext(m_Header);
+
+      m_Model = model;
+      if (m_CheckpointWriter != null)
+        m_CheckpointWriter.write(new KafkaCheckpoint(model, offsets, m_InstancesProcessed.get(), m_Schemas.values()));
+      onCheckpoint(model, offsets);
+    } catch (RuntimeException e) {
+      fail(e);
+    }
+  }
+
+  /**
+   * Called with the global model of each checkpoint and the offsets of the
+   * partitions it contains, before the replicas commit these offsets.
+   *
+   * @param model The merged model.
+   * @param offsets The offset of the next record of each partition.
+   */
+  protected void onCheckpoint(MergeableClassifier model, Map<TopicPartition, Long> offsets) {
+  }
+
+  /**
+   * Records the first failure and stops all replicas.
+   */
+  protected synchronized void fail(RuntimeException e) {
+    if (m_Failure == null)
+      m_Failure = e;
+    m_Stopped = true;
+  }
+
+  @Override
+  public ImmutableCapabilities defineImmutableCapabilities() {
+    return new ImmutableCapabilities(Capability.VIEW_STANDARD);
+  }
+
+  /**
+   * Consumes one partition and trains a replica of the learner on it.
+   */
+  protected class Replica extends Thread {
+
+    // The partition to consume
+    protected final TopicPartition m_Partition;
+
+    // The replica of the learner
+    protected final MergeableClassifier m_Learner;
+
+    // The offset at which the partition ends
+    protected final long m_EndOffset;
+
+    // The checkpoints shared by all replicas
+    protected final Phaser m_Checkpoints;
+
+    // The offset of the next record to learn from
+    protected volatile long m_NextOffset;
+
+    public Replica(TopicPartition partition, MergeableClassifier learner, long endOffset, Phaser checkpoints) {
+      super("LearnModelFromTopicPartitions-" + partition);
+      setDaemon(true);
+      m_Partition = partition;
+      m_Learner = learner;
+      m_EndOffset = endOffset;
+      m_Checkpoints = checkpoints;
+    }
+
+    @Override
+    public void run() {
+      try (Consumer<Long, Instance> consumer = createConsumer()) {
+        consumer.assign(Collections.singletonList(m_Partition));
+        m_NextOffset = startOffset(consumer, m_Partition);
+
+        int sinceCheckpoint = 0;
+        boolean done = m_NextOffset >= m_EndOffset;
+        while (!done && !m_Stopped) {
+          ConsumerRecords<Long, Instance> records = consumer.poll(POLL_TIMEOUT);
+          for (ConsumerRecord<Long, Instance> record : records) {
+            // A null value is the sentinel that the end of stream has been reached
+            Instance instance = record.value();
+            if (instance == null || m_InstancesProcessed.get() >= maxInstancesOption.getValue()) {
+              done = true;
+              break;
+            }
+
+            Header schema = record.headers().lastHeader(CompactInstanceFormat.SCHEMA_HEADER);
+            if (schema != null)
+              m_Schemas.putIfAbsent(CompactInstanceFormat.schemaID(schema.value()), schema.value());
+
+            learn(instance);
+            m_NextOffset = record.offset() + 1;
+            m_InstancesProcessed.incrementAndGet();
+
+            if (++sinceCheckpoint == mergeIntervalOption.getValue()) {
+              checkpoint(consumer);
+              sinceCheckpoint = 0;
+            }
+          }
+          done |= m_NextOffset >= m_EndOffset;
+        }
+
+        // The last checkpoint contains everything this replica has learned
+        checkpoint(consumer);
+      } catch (RuntimeException e) {
+        fail(e);
+      } finally {
+        m_Checkpoints.arriveAndDeregister();
+      }
+    }
+
+    /**
+     * Trains the replica on an instance.
+     */
+    protected void learn(Instance instance) {
+      if (m_Learner.getModelContext() == null) {
+        Instances dataset = instance.dataset();
+        InstancesHeader header = (dataset instanceof InstancesHeader)
+              ? (InstancesHeader) dataset
+              : new InstancesHeader(dataset);
+        m_Learner.setModelContext(header);
+        if (m_Header == null)
+          m_Header = header;
+      }
+
+      m_Learner.trainOnInstance(instance);
+    }
+
+    /**
+     * Waits until all replicas have arrived and the models are merged,
+     * then commits the offset contained in the merged model.
+     */
+    protected void checkpoint(Consumer<Long, Instance> consumer) {
+      long offset = m_NextOffset;
+      m_Checkpoints.arriveAndAwaitAdvance();
+      if (!m_Stopped)
+        consumer.commitSync(Collections.singletonMap(m_Partition, new OffsetAndMetadata(offset)));
+    }
+  }
+}
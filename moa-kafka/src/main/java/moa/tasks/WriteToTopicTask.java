@@ -20,9 +20,11 @@
 
 package moa.tasks;
 
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
 import com.github.javacliparser.StringOption;
 import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
 import moa.capabilities.CapabilitiesHandler;
 import moa.capabilities.Capability;
 import moa.capabilities.ImmutableCapabilities;
@@ -30,18 +32,31 @@ import moa.core.Example;
 import moa.core.ObjectRepository;
 import moa.options.ClassOption;
 import moa.streams.InstanceStream;
+import moa.util.CompactInstanceFormat;
+import moa.util.CompactInstanceSerializer;
 import moa.util.KafkaUtils;
 import moa.util.ObjectSerializer;
 import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.LongSerializer;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Task to write instances from a stream to a Kafka topic.
  *
+ * In the compact format, the headers of the instances are also written to
+ * the schema topic of the topic (see {@link CompactInstanceFormat#schemaTopic(String)}),
+ * before any instance using them, so consumers can start anywhere in the
+ * topic.
+ *
  * @author Corey Sterling (csterlin at waikato dot ac dot nz)
  */
 public class WriteToTopicTask extends AuxiliarMainTask implements CapabilitiesHandler {
@@ -89,6 +104,36 @@ public class WriteToTopicTask extends AuxiliarMainTask implements CapabilitiesHa
         ""
   );
 
+  // Whether to write the instances in the compact format
+  public FlagOption compactOption = new FlagOption(
+        "compact",
+        'c',
+        "Write instances in the compact binary format (header kept in the topic '<topic>.schemas') instead of Java serialisation"
+  );
+
+  // How long the producer waits to fill a batch
+  public IntOption lingerOption = new IntOption(
+        "linger",
+        'l',
+        "Time in milliseconds the producer waits for more records to batch together",
+        5,
+        0,
+        Integer.MAX_VALUE
+  );
+
+  // The size of the producer's batches
+  public IntOption batchSizeOption = new IntOption(
+        "batchSize",
+        'b',
+        "Maximum size in bytes of a batch of records sent to a partition",
+        1 << 16, // 64KB
+        0,
+        Integer.MAX_VALUE
+  );
+
+  // The first error reported for an asynchronous send
+  protected transient volatile Exception m_SendFailure = null;
+
   /**
    * Creates the configuration for the Kakfa producer.
    *
@@ -100,7 +145,7 @@ public class WriteToTopicTask extends AuxiliarMainTask implements CapabilitiesHa
     Map<String, Object> config = new HashMap<>();
 
     config.put("key.serializer", LongSerializer.class);
-    config.put("value.serializer", ObjectSerializer.class);
+    config.put("value.serializer", compactOption.isSet() ? CompactInstanceSerializer.class : ObjectSerializer.class);
     config.put("bootstrap.servers", KafkaUtils.broker(host, port));
     config.put("fetch.min.bytes", 1);
     config.put("group.id", KafkaUtils.uniqueGroupIDString(this));
@@ -111,10 +156,45 @@ public class WriteToTopicTask extends AuxiliarMainTask implements CapabilitiesHa
     config.put("fetch.max.bytes", 1 << 24); // 16MB
     config.put("isolation.level", "read_committed");
     config.put("client.id", this.getClass().getName());
+    config.put("linger.ms", lingerOption.getValue());
+    config.put("batch.size", batchSizeOption.getValue());
+
+    return config;
+  }
+
+  /**
+   * Creates the configuration for the producer of the schema topic.
+   *
+   * @param host The Kafka host to connect to.
+   * @param port The Kafka port to connect to.
+   * @return The producer's configuration.
+   */
+  protected Map<String, Object> getSchemaProducerConfig(String host, String port) {
+    Map<String, Object> config = new HashMap<>();
+
+    config.put("key.serializer", LongSerializer.class);
+    config.put("value.serializer", ByteArraySerializer.class);
+    config.put("bootstrap.servers", KafkaUtils.broker(host, port));
+    config.put("acks", "all");
+    config.put("client.id", this.getClass().getName());
 
     return config;
   }
 
+  /**
+   * Creates the producer of the instances.
+   */
+  protected Producer<Long, Instance> createProducer(Map<String, Object> config) {
+    return new KafkaProducer<>(config);
+  }
+
+  /**
+   * Creates the producer of the schema topic.
+   */
+  protected Producer<Long, byte[]> createSchemaProducer(Map<String, Object> config) {
+    return new KafkaProducer<>(config);
+  }
+
   @Override
   protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
     // Prepare all option values
@@ -124,10 +204,50 @@ public class WriteToTopicTask extends AuxiliarMainTask implements CapabilitiesHa
     String host = hostOption.getValue();
     String port = portOption.getValue();
 
-    // Create the Kakfa producer
-    KafkaProducer<Long, Instance> producer = new KafkaProducer<>(
-          getProducerConfig(host, port)
-    );
+    // Create the Kakfa producers
+    Producer<Long, Instance> producer = createProducer(getProducerConfig(host, port));
+    Producer<Long, byte[]> schemaProducer = compactOption.isSet()
+          ? createSchemaProducer(getSchemaProducerConfig(host, port))
+          : null;
+    m_SendFailure = null;
+
+    try {
+      writeInstances(monitor, producer, schemaProducer, stream, maxInstances, topic);
+    } finally {
+      // Sends are asynchronous, make sure everything is delivered
+      producer.close();
+      if (schemaProducer != null)
+        schemaProducer.close();
+    }
+
+    if (m_SendFailure != null)
+      throw new RuntimeException("Failed to write instances to Kafka", m_SendFailure);
+
+    return null;
+  }
+
+  /**
+   * Writes the instances of the stream to the topic, followed by the
+   * null-terminator. The producer batches the records in the background;
+   * the first error it reports stops the writing. In the compact format,
+   * each header is written to the schema topic by the schema producer
+   * before the first instance using it.
+   */
+  protected void writeInstances(TaskMonitor monitor,
+                                   Producer<Long, Instance> producer,
+                                   Producer<Long, byte[]> schemaProducer,
+                                   InstanceStream stream,
+                                   int maxInstances,
+                                   String topic) {
+    // In the compact format, the header has to precede the instances in
+    // every partition, so the instances are spread over the partitions
+    // explicitly and the first one of each partition carries the header
+    int numPartitions = compactOption.isSet() ? producer.partitionsFor(topic).size() : 0;
+
+    // The schema of the last dataset, and the schemas already published
+    Instances dataset = null;
+    byte[] schema = null;
+    Set<Long> published = new HashSet<>();
 
     int i = 0;
     while (i < maxInstances) {
@@ -138,15 +258,32 @@ public class WriteToTopicTask extends AuxiliarMainTask implements CapabilitiesHa
       Example<Instance> inst = stream.nextInstance();
 
       // Create a record of the instance for the topic
-      ProducerRecord<Long, Instance> record = new ProducerRecord<>(
-            topic, (long) i++, inst.getData()
-      );
+      ProducerRecord<Long, Instance> record;
+      if (numPartitions > 0) {
+        if (inst.getData().dataset() != dataset) {
+          dataset = inst.getData().dataset();
+          schema = CompactInstanceFormat.encodeSchema(dataset);
+          if (published.add(CompactInstanceFormat.schemaID(schema)))
+            publishSchema(schemaProducer, topic, schema);
+        }
+
+        record = new ProducerRecord<>(
+              topic, i % numPartitions, (long) i, inst.getData()
+        );
+        if (i < numPartitions)
+          record.headers().add(CompactInstanceFormat.SCHEMA_HEADER, schema);
+        i++;
+      } else {
+        record = new ProducerRecord<>(
+              topic, (long) i++, inst.getData()
+        );
+      }
 
       // Send the record to the Kafka instance
-      producer.send(record);
+      producer.send(record, this::onSendCompletion);
 
-      // Abort if the task is cancelled (leaves the topic unfinished)
-      if (monitor.isCancelled()) return null;
+      // Abort if the task is cancelled or a send failed (leaves the topic unfinished)
+      if (monitor.isCancelled() || m_SendFailure != null) return;
 
       // Estimate the number of instances left in the source stream
       long remainingInstances = stream.estimatedRemainingInstances();
@@ -164,10 +301,32 @@ public class WriteToTopicTask extends AuxiliarMainTask implements CapabilitiesHa
     producer.send(
           new ProducerRecord<>(
                 topic, (long) i, null
-          )
+          ),
+          this::onSendCompletion
     );
+  }
 
-    return null;
+  /**
+   * Writes a schema to the schema topic of the topic, keyed by its schema
+   * ID, and waits until it is stored.
+   */
+  protected void publishSchema(Producer<Long, byte[]> schemaProducer, String topic, byte[] schema) {
+    try {
+      schemaProducer.send(new ProducerRecord<>(
+            CompactInstanceFormat.schemaTopic(topic), CompactInstanceFormat.schemaID(schema), schema
+      )).get();
+    } catch (InterruptedException | ExecutionException e) {
+      throw new RuntimeException("Failed to write schema to Kafka topic '"
+            + CompactInstanceFormat.schemaTopic(topic) + "'", e);
+    }
+  }
+
+  /**
+   * Records the first error of the asynchronous sends.
+   */
+  protected void onSendCompletion(RecordMetadata metadata, Exception exception) {
+    if (exception != null && m_SendFailure == null)
+      m_SendFailure = exception;
   }
 
   @Override
@@ -0,0 +1,234 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * CompactInstanceDeserializer.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+
+package moa.util;
+
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import com.yahoo.labs.samoa.instances.SparseInstance;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.LongDeserializer;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Kafka deserialiser for instances written by
+ * {@link CompactInstanceSerializer}. The headers are cached by schema ID,
+ * so all instances of a schema share one header. Records written with
+ * Java's serialisation tools (i.e. {@link ObjectSerializer}) are read as
+ * well.
+ *
+ * A header is known once a record carries it, once it is given in the
+ * consumer configuration ({@link #SCHEMAS_CONFIG}, e.g. from a checkpoint)
+ * or once it is found in the schema topic ({@link #SCHEMA_TOPIC_CONFIG}),
+ * which is only read for schema IDs not known otherwise. The first record
+ * decoded with each header is given the header if it doesn't carry it, so
+ * the consumer can keep the headers of the records it has seen.
+ */
+public class CompactInstanceDeserializer
+  implements Deserializer<Instance> {
+
+  // Consumer configuration: a collection of serialised headers to know in advance
+  public static final String SCHEMAS_CONFIG = "moa.schemas";
+
+  // Consumer configuration: the topic to look up unknown schema IDs in
+  public static final String SCHEMA_TOPIC_CONFIG = "moa.schema.topic";
+
+  // The headers seen so far, by schema ID
+  protected Map<Long, InstancesHeader> m_Schemas = new HashMap<>();
+
+  // The headers seen so far as they were serialised, by schema ID
+  protected Map<Long, byte[]> m_EncodedSchemas = new HashMap<>();
+
+  // The schema IDs a record has carried the header of
+  protected Set<Long> m_Announced = new HashSet<>();
+
+  // The schema topic and the broker hosting it, if configured
+  protected String m_SchemaTopic = null;
+
+  protected Object m_SchemaTopicBroker = null;
+
+  // The reader of the schema topic, created when first needed
+  protected SchemaTopicReader m_SchemaTopicReader = null;
+
+  // Fallback for records in Java's serialisation format
+  protected ObjectDeserializer<Instance> m_ObjectDeserializer = new ObjectDeserializer<>();
+
+  @Override
+  public void configure(Map<String, ?> configs, boolean isKey) {
+    Object schemas = configs.get(SCHEMAS_CONFIG);
+    if (schemas instanceof Collection) {
+      for (Object schema : (Collection<?>) schemas)
+        registerSchema((byte[]) schema);
+    }
+
+    Object schemaTopic = configs.get(SCHEMA_TOPIC_CONFIG);
+    if (schemaTopic != null) {
+      m_SchemaTopic = schemaTopic.toString();
+      m_SchemaTopicBroker = configs.get("bootstrap.servers");
+    }
+  }
+
+  /**
+   * Makes a serialised header known, as if a record had carried it.
+   *
+   * @param schema The serialised header.
+   * @return The schema ID of the header.
+   */
+  public long registerSchema(byte[] schema) {
+    long schemaID = CompactInstanceFormat.schemaID(schema);
+    if (!m_Schemas.containsKey(schemaID)) {
+      m_Schemas.put(schemaID, CompactInstanceFormat.decodeSchema(schema));
+      m_EncodedSchemas.put(schemaID, schema);
+    }
+
+    return schemaID;
+  }
+
+  /**
+   * Sets the reader to look up unknown schema IDs with, instead of one
+   * created from the configuration.
+   *
+   * @param reader The reader of the schema topic.
+   */
+  public void setSchemaTopicReader(SchemaTopicReader reader) {
+    m_SchemaTopicReader = reader;
+  }
+
+  /**
+   * Gets the header with the given schema ID, looking it up in the schema
+   * topic if it isn't known yet.
+   *
+   * @return The header, or null if it can't be found.
+   */
+  protected InstancesHeader getSchema(long schemaID) {
+    InstancesHeader header = m_Schemas.get(schemaID);
+    if (header != null)
+      return header;
+
+    if (m_SchemaTopicReader == null && m_SchemaTopic != null)
+      m_SchemaTopicReader = createSchemaTopicReader();
+    if (m_SchemaTopicReader == null)
+      return null;
+
+    byte[] schema = m_SchemaTopicReader.fetch(schemaID);
+    if (schema == null)
+      return null;
+    registerSchema(schema);
+
+    return m_Schemas.get(schemaID);
+  }
+
+  /**
+   * Creates the reader for the configured schema topic.
+   */
+  protected SchemaTopicReader createSchemaTopicReader() {
+    Map<String, Object> config = new HashMap<>();
+
+    config.put("key.deserializer", LongDeserializer.class);
+    config.put("value.deserializer", ByteArrayDeserializer.class);
+    config.put("bootstrap.servers", m_SchemaTopicBroker);
+    config.put("allow.auto.create.topics", false);
+    config.put("enable.auto.commit", false);
+    config.put("isolation.level", "read_committed");
+    config.put("client.id", this.getClass().getName());
+
+    return new SchemaTopicReader(new KafkaConsumer<>(config), m_SchemaTopic);
+  }
+
+  @Override
+  public void close() {
+    if (m_SchemaTopicReader != null)
+      m_SchemaTopicReader.close();
+
+    m_SchemaTopicReader = null;
+  }
+
+  @Override
+  public Instance deserialize(String topic, byte[] bytes) {
+    return deserialize(topic, null, bytes);
+  }
+
+  @Override
+  public Instance deserialize(String topic, Headers headers, byte[] bytes) {
+    // Bytes can be null; deserialise to null
+    if (bytes == null)
+      return null;
+
+    // Not in the compact format, try Java's serialisation
+    if (bytes.length == 0 || bytes[0] != CompactInstanceFormat.MAGIC)
+      return m_ObjectDeserializer.deserialize(topic, bytes);
+
+    // Register the schema if the record introduces one
+    if (headers != null) {
+      Header schemaHeader = headers.lastHeader(CompactInstanceFormat.SCHEMA_HEADER);
+      if (schemaHeader != null)
+        m_Announced.add(registerSchema(schemaHeader.value()));
+    }
+
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    buffer.get(); // magic
+    byte encoding = buffer.get();
+    long schemaID = buffer.getLong();
+    double weight = buffer.getDouble();
+
+    InstancesHeader header = getSchema(schemaID);
+    if (header == null)
+      throw new RuntimeException("Failed to deserialise instance from Kafka: unknown schema "
+            + Long.toHexString(schemaID));
+
+    // Pass the header on with the first record of the schema
+    if (headers != null && m_Announced.add(schemaID))
+      headers.add(CompactInstanceFormat.SCHEMA_HEADER, m_EncodedSchemas.get(schemaID));
+
+    Instance instance;
+    int numAttributes = header.numAttributes();
+    if (encoding == CompactInstanceFormat.DENSE) {
+      double[] values = new double[numAttributes];
+      for (int i = 0; i < numAttributes; i++)
+        values[i] = buffer.getDouble();
+      instance = new DenseInstance(weight, values);
+    } else if (encoding == CompactInstanceFormat.SPARSE) {
+      int numValues = buffer.getInt();
+      int[] indices = new int[numValues];
+      double[] values = new double[numValues];
+      for (int i = 0; i < numValues; i++) {
+        indices[i] = buffer.getInt();
+        values[i] = buffer.getDouble();
+      }
+      instance = new SparseInstance(weight, values, indices, numAttributes);
+    } else {
+      throw new RuntimeException("Failed to deserialise instance from Kafka: unknown encoding " + encoding);
+    }
+
+    instance.setDataset(header);
+    return instance;
+  }
+}
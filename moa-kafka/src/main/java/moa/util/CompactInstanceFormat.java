@@ -0,0 +1,123 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * CompactInstanceFormat.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+
+package moa.util;
+
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * Wire format shared by {@link CompactInstanceSerializer} and
+ * {@link CompactInstanceDeserializer}.
+ *
+ * A record value holds a single instance:
+ *   - magic byte, encoding byte (dense or sparse),
+ *   - the schema ID of the instance's header (8 bytes),
+ *   - the weight,
+ *   - dense: one double per attribute of the header,
+ *     sparse: the number of values followed by index/value pairs.
+ *
+ * The header itself is Java-serialised and travels in the Kafka record
+ * header {@link #SCHEMA_HEADER}, only on the records which introduce it.
+ * The schema ID is a fingerprint of the serialised header.
+ *
+ * Records can outlive the ones introducing their header (retention,
+ * compaction) and consumers may start anywhere in a topic, so every header
+ * is also kept in the schema topic of the topic (see {@link #schemaTopic(String)}),
+ * keyed by its schema ID. The schema topic should be log-compacted rather
+ * than deleted by retention.
+ */
+public final class CompactInstanceFormat {
+
+  // The name of the Kafka record header carrying the serialised schema
+  public static final String SCHEMA_HEADER = "moa.schema";
+
+  // The suffix appended to a topic's name to get the name of its schema topic
+  public static final String SCHEMA_TOPIC_SUFFIX = ".schemas";
+
+  // First byte of every compact record (Java serialisation starts with 0xAC)
+  public static final byte MAGIC = 'M';
+
+  // Encoding of the attribute values
+  public static final byte DENSE = 1;
+  public static final byte SPARSE = 2;
+
+  // Size of magic, encoding, schema ID and weight
+  public static final int PREFIX_SIZE = 1 + 1 + Long.BYTES + Double.BYTES;
+
+  private CompactInstanceFormat() {
+  }
+
+  /**
+   * Serialises the header of the given dataset (without any instances).
+   */
+  public static byte[] encodeSchema(Instances dataset) {
+    InstancesHeader header = (dataset instanceof InstancesHeader)
+          ? (InstancesHeader) dataset
+          : new InstancesHeader(dataset);
+
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream objectStream = new ObjectOutputStream(bytes);
+      objectStream.writeObject(header);
+      objectStream.flush();
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to serialise instance header for Kafka", e);
+    }
+  }
+
+  /**
+   * Deserialises a header written by {@link #encodeSchema(Instances)}.
+   */
+  public static InstancesHeader decodeSchema(byte[] schema) {
+    try {
+      ObjectInputStream objectStream = new ObjectInputStream(new ByteArrayInputStream(schema));
+      return (InstancesHeader) objectStream.readObject();
+    } catch (IOException | ClassNotFoundException | ClassCastException e) {
+      throw new RuntimeException("Failed to deserialise instance header from Kafka", e);
+    }
+  }
+
+  /**
+   * Gets the name of the topic holding the schemas of the given topic.
+   */
+  public static String schemaTopic(String topic) {
+    return topic + SCHEMA_TOPIC_SUFFIX;
+  }
+
+  /**
+   * Gets the schema ID of a serialised header (64-bit FNV-1a hash).
+   */
+  public static long schemaID(byte[] schema) {
+    long hash = 0xcbf29ce484222325L;
+    for (byte b : schema) {
+      hash ^= (b & 0xff);
+      hash *= 0x100000001b3L;
+    }
+    return hash;
+  }
+}
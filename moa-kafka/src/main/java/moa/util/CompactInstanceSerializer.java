@@ -0,0 +1,130 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * CompactInstanceSerializer.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+
+package moa.util;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.SparseInstance;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Kafka serialiser for instances in {@link CompactInstanceFormat}. Only the
+ * attribute values and the weight are written per record. The header is
+ * attached as a record header to the first record of each dataset; a
+ * producer writing to several partitions should attach it to the first
+ * record of every partition as well, and keep it in the schema topic for
+ * consumers which don't start at these records (see
+ * {@link moa.tasks.WriteToTopicTask}).
+ *
+ * Instances other than {@link SparseInstance} are written densely.
+ */
+public class CompactInstanceSerializer
+  implements Serializer<Instance> {
+
+  // The dataset of the previous instance and its schema
+  protected Instances m_LastDataset = null;
+
+  protected byte[] m_LastSchema = null;
+
+  protected long m_LastSchemaID;
+
+  // Whether the schema of the last dataset has been attached to a record yet
+  protected boolean m_SchemaSent = false;
+
+  @Override
+  public byte[] serialize(String topic, Instance data) {
+    return serialize(topic, null, data);
+  }
+
+  @Override
+  public byte[] serialize(String topic, Headers headers, Instance data) {
+    // Null serialises to null
+    if (data == null)
+      return null;
+
+    // Look up the schema of the instance, the dataset rarely changes
+    Instances dataset = data.dataset();
+    if (dataset == null)
+      throw new RuntimeException("Failed to serialise instance for Kafka: instance has no header");
+    if (dataset != m_LastDataset) {
+      byte[] schema = CompactInstanceFormat.encodeSchema(dataset);
+      long schemaID = CompactInstanceFormat.schemaID(schema);
+      if (m_LastSchema == null || schemaID != m_LastSchemaID)
+        m_SchemaSent = false;
+      m_LastDataset = dataset;
+      m_LastSchema = schema;
+      m_LastSchemaID = schemaID;
+    }
+
+    // Attach the schema if it hasn't been sent yet
+    if (headers != null) {
+      if (headers.lastHeader(CompactInstanceFormat.SCHEMA_HEADER) != null) {
+        m_SchemaSent = true;
+      } else if (!m_SchemaSent) {
+        headers.add(CompactInstanceFormat.SCHEMA_HEADER, m_LastSchema);
+        m_SchemaSent = true;
+      }
+    }
+
+    return (data instanceof SparseInstance)
+          ? encodeSparse(data, m_LastSchemaID)
+          : encodeDense(data, m_LastSchemaID);
+  }
+
+  /**
+   * Writes all attribute values of the instance.
+   */
+  protected byte[] encodeDense(Instance data, long schemaID) {
+    int numAttributes = data.numAttributes();
+    ByteBuffer buffer = ByteBuffer.allocate(CompactInstanceFormat.PREFIX_SIZE + numAttributes * Double.BYTES);
+    buffer.put(CompactInstanceFormat.MAGIC);
+    buffer.put(CompactInstanceFormat.DENSE);
+    buffer.putLong(schemaID);
+    buffer.putDouble(data.weight());
+    for (int i = 0; i < numAttributes; i++)
+      buffer.putDouble(data.value(i));
+
+    return buffer.array();
+  }
+
+  /**
+   * Writes only the stored values of the instance with their indices.
+   */
+  protected byte[] encodeSparse(Instance data, long schemaID) {
+    int numValues = data.numValues();
+    ByteBuffer buffer = ByteBuffer.allocate(CompactInstanceFormat.PREFIX_SIZE + Integer.BYTES
+          + numValues * (Integer.BYTES + Double.BYTES));
+    buffer.put(CompactInstanceFormat.MAGIC);
+    buffer.put(CompactInstanceFormat.SPARSE);
+    buffer.putLong(schemaID);
+    buffer.putDouble(data.weight());
+    buffer.putInt(numValues);
+    for (int i = 0; i < numValues; i++) {
+      buffer.putInt(data.index(i));
+      buffer.putDouble(data.valueSparse(i));
+    }
+
+    return buffer.array();
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * KafkaCheckpoint.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+
+package moa.util;
+
+import moa.core.SerializeUtils;
+import org.apache.kafka.common.TopicPartition;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A model together with the Kafka offsets up to which it has been trained.
+ * Restoring the model and consuming from the offsets (see
+ * {@link moa.streams.KafkaStream#resumeFrom(Map)}) continues training as if
+ * it had never stopped: every instance is learned exactly once.
+ *
+ * The model is serialised when the checkpoint is created, so the learner
+ * can go on training while the checkpoint is written (see
+ * {@link KafkaCheckpointWriter}).
+ *
+ * For topics in the compact format, the checkpoint also keeps the
+ * serialised headers of the instances, as the records after the offsets
+ * don't carry them (see {@link CompactInstanceDeserializer#SCHEMAS_CONFIG}).
+ */
+public class KafkaCheckpoint implements Serializable {
+
+  // Serialisation UID#
+  private static final long serialVersionUID = -4675082302573925719L;
+
+  // The serialised model
+  protected final byte[] m_Model;
+
+  // The offset of the next record to learn from, by partition
+  protected final HashMap<TopicPartition, Long> m_Offsets;
+
+  // The number of instances the model has been trained on
+  protected final long m_InstancesProcessed;
+
+  // The serialised headers of the instances (null in checkpoints of older versions)
+  protected final ArrayList<byte[]> m_Schemas;
+
+  /**
+   * Snapshots the model at the given offsets.
+   *
+   * @param model The model to snapshot.
+   * @param offsets The offset of the next record of each partition.
+   * @param instancesProcessed The number of instances the model was trained on.
+   */
+  public KafkaCheckpoint(Serializable model, Map<TopicPartition, Long> offsets, long instancesProcessed) {
+    this(model, offsets, instancesProcessed, Collections.<byte[]>emptyList());
+  }
+
+  /**
+   * Snapshots the model at the given offsets, with the headers of the
+   * instances.
+   *
+   * @param model The model to snapshot.
+   * @param offsets The offset of the next record of each partition.
+   * @param instancesProcessed The number of instances the model was trained on.
+   * @param schemas The serialised headers of the instances.
+   */
+  public KafkaCheckpoint(Serializable model, Map<TopicPartition, Long> offsets, long instancesProcessed,
+                         Collection<byte[]> schemas) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(model);
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to snapshot model for checkpoint", e);
+    }
+
+    m_Model = bytes.toByteArray();
+    m_Offsets = new HashMap<>(offsets);
+    m_InstancesProcessed = instancesProcessed;
+    m_Schemas = new ArrayList<>(schemas);
+  }
+
+  /**
+   * Restores a new copy of the model.
+   */
+  public Object getModel() {
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(m_Model))) {
+      return in.readObject();
+    } catch (IOException | ClassNotFoundException e) {
+      throw new RuntimeException("Failed to restore model from checkpoint", e);
+    }
+  }
+
+  /**
+   * Gets the offset of the next record to learn from, by partition.
+   */
+  public Map<TopicPartition, Long> getOffsets() {
+    return Collections.unmodifiableMap(m_Offsets);
+  }
+
+  /**
+   * Gets the number of instances the model has been trained on.
+   */
+  public long getInstancesProcessed() {
+    return m_InstancesProcessed;
+  }
+
+  /**
+   * Gets the serialised headers of the instances.
+   */
+  public List<byte[]> getSchemas() {
+    if (m_Schemas == null)
+      return Collections.emptyList();
+
+    return Collections.unmodifiableList(m_Schemas);
+  }
+
+  /**
+   * Writes the checkpoint to the given file. The checkpoint is written to a
+   * temporary file first and then moved over the file, so a crash leaves
+   * either the old or the new checkpoint.
+   *
+   * @param file The file to write to.
+   */
+  public void save(File file) {
+    File tmp = new File(file.getPath() + ".tmp");
+    try {
+      SerializeUtils.writeToFile(tmp, this);
+      Files.move(tmp.toPath(), file.toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to write checkpoint to " + file, e);
+    }
+  }
+
+  /**
+   * Reads a checkpoint written by {@link #save(File)}.
+   *
+   * @param file The file to read.
+   * @return The checkpoint, or null if the file doesn't exist.
+   */
+  public static KafkaCheckpoint load(File file) {
+    if (!file.exists())
+      return null;
+
+    try {
+      return (KafkaCheckpoint) SerializeUtils.readFromFile(file);
+    } catch (IOException | ClassNotFoundException e) {
+      throw new RuntimeException("Failed to read checkpoint from " + file, e);
+    }
+  }
+}
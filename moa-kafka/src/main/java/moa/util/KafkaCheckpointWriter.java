@@ -0,0 +1,116 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * KafkaCheckpointWriter.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+
+package moa.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Writes {@link KafkaCheckpoint}s to a file on a background thread, so the
+ * learner only pauses for the snapshot of its model. If checkpoints arrive
+ * faster than they can be written, only the latest waiting one is written.
+ */
+public class KafkaCheckpointWriter implements Closeable {
+
+  // The file the checkpoints are written to
+  protected final File m_File;
+
+  // The checkpoint waiting to be written, if any
+  protected final AtomicReference<KafkaCheckpoint> m_Pending = new AtomicReference<>();
+
+  // The thread writing the checkpoints
+  protected final Thread m_Thread;
+
+  // Whether the writer has been closed
+  protected volatile boolean m_Closed = false;
+
+  // The error which stopped the writer, if any
+  protected volatile RuntimeException m_Failure = null;
+
+  public KafkaCheckpointWriter(File file) {
+    m_File = file;
+    m_Thread = new Thread(this::run, "KafkaCheckpointWriter-" + file.getName());
+    m_Thread.setDaemon(true);
+    m_Thread.start();
+  }
+
+  /**
+   * Queues a checkpoint for writing, replacing any checkpoint which is
+   * still waiting.
+   *
+   * @param checkpoint The checkpoint to write.
+   */
+  public void write(KafkaCheckpoint checkpoint) {
+    if (m_Failure != null)
+      throw new RuntimeException("Failed to write checkpoint", m_Failure);
+    if (m_Closed)
+      throw new IllegalStateException("Checkpoint writer is closed");
+
+    m_Pending.set(checkpoint);
+    synchronized (m_Pending) {
+      m_Pending.notify();
+    }
+  }
+
+  /**
+   * Writes the waiting checkpoints until closed.
+   */
+  protected void run() {
+    try {
+      while (true) {
+        KafkaCheckpoint checkpoint;
+        synchronized (m_Pending) {
+          while ((checkpoint = m_Pending.getAndSet(null)) == null && !m_Closed)
+            m_Pending.wait();
+        }
+        if (checkpoint == null)
+          return;
+
+        checkpoint.save(m_File);
+      }
+    } catch (InterruptedException e) {
+      // Abandoned
+    } catch (RuntimeException e) {
+      m_Failure = e;
+    }
+  }
+
+  /**
+   * Writes the waiting checkpoint, if any, and stops the writer.
+   */
+  @Override
+  public void close() {
+    m_Closed = true;
+    synchronized (m_Pending) {
+      m_Pending.notify();
+    }
+
+    try {
+      m_Thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    if (m_Failure != null)
+      throw new RuntimeException("Failed to write checkpoint", m_Failure);
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SchemaTopicReader.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+
+package moa.util;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Looks up serialised headers by schema ID in a schema topic (see
+ * {@link CompactInstanceFormat#schemaTopic(String)}). The topic is only
+ * read when a schema is asked for which hasn't been seen yet, and then
+ * up to its current end.
+ */
+public class SchemaTopicReader implements Closeable {
+
+  // How long to wait for records in a single poll
+  protected static final Duration POLL_TIMEOUT = Duration.ofMillis(100);
+
+  // The consumer reading the schema topic (assigned manually)
+  protected final Consumer<Long, byte[]> m_Consumer;
+
+  // The schema topic
+  protected final String m_Topic;
+
+  // The schemas read so far, by schema ID
+  protected final Map<Long, byte[]> m_Schemas = new HashMap<>();
+
+  // The partitions of the schema topic, once assigned
+  protected List<TopicPartition> m_Partitions = null;
+
+  /**
+   * @param consumer A consumer for the schema topic, not subscribed or assigned.
+   * @param topic The schema topic.
+   */
+  public SchemaTopicReader(Consumer<Long, byte[]> consumer, String topic) {
+    m_Consumer = consumer;
+    m_Topic = topic;
+  }
+
+  /**
+   * Gets the serialised header with the given schema ID.
+   *
+   * @param schemaID The schema ID.
+   * @return The serialised header, or null if the schema topic doesn't have it.
+   */
+  public synchronized byte[] fetch(long schemaID) {
+    if (!m_Schemas.containsKey(schemaID))
+      readToEnd();
+
+    return m_Schemas.get(schemaID);
+  }
+
+  /**
+   * Reads the schema topic from where the last read stopped up to its
+   * current end.
+   */
+  protected void readToEnd() {
+    // Start at the beginning of each partition the first time
+    if (m_Partitions == null) {
+      List<PartitionInfo> infos = m_Consumer.partitionsFor(m_Topic);
+      if (infos == null || infos.isEmpty())
+        return;
+
+      m_Partitions = new ArrayList<>();
+      for (PartitionInfo info : infos)
+        m_Partitions.add(new TopicPartition(m_Topic, info.partition()));
+      m_Consumer.assign(m_Partitions);
+      m_Consumer.seekToBeginning(m_Partitions);
+    }
+
+    Map<TopicPartition, Long> endOffsets = m_Consumer.endOffsets(m_Partitions);
+    while (!reached(endOffsets)) {
+      for (ConsumerRecord<Long, byte[]> record : m_Consumer.poll(POLL_TIMEOUT)) {
+        // The ID is recomputed rather than taken from the key, so a corrupt record can't shadow a schema
+        byte[] schema = record.value();
+        if (schema != null)
+          m_Schemas.put(CompactInstanceFormat.schemaID(schema), schema);
+      }
+    }
+  }
+
+  /**
+   * Whether the consumer has read all partitions up to the given offsets.
+   */
+  protected boolean reached(Map<TopicPartition, Long> endOffsets) {
+    for (TopicPartition partition : m_Partitions) {
+      Long end = endOffsets.get(partition);
+      if (end != null && m_Consumer.position(partition) < end)
+        return false;
+    }
+
+    return true;
+  }
+
+  @Override
+  public synchronized void close() {
+    m_Consumer.close();
+  }
+}
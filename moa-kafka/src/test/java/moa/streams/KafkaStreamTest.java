@@ -0,0 +1,127 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * KafkaStreamTest.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+
+package moa.streams;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.streams.generators.RandomTreeGenerator;
+import moa.util.CompactInstanceSerializer;
+import moa.util.MockTopic;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Consumes and resumes a compact topic with {@link KafkaStream}.
+ */
+public class KafkaStreamTest {
+
+  private static final String TOPIC = "instances";
+
+  private static final int NUM_INSTANCES = 50;
+
+  protected MockTopic m_Topic;
+
+  protected Instance[] m_Instances;
+
+  @Before
+  public void setUp() {
+    RandomTreeGenerator generator = new RandomTreeGenerator();
+    generator.prepareForUse();
+    CompactInstanceSerializer serializer = new CompactInstanceSerializer();
+
+    // only the first record carries the header
+    m_Topic = new MockTopic(TOPIC, 1);
+    m_Instances = new Instance[NUM_INSTANCES];
+    for (int i = 0; i < NUM_INSTANCES; i++) {
+      m_Instances[i] = generator.nextInstance().getData();
+      m_Topic.write(new ProducerRecord<>(TOPIC, 0, (long) i, m_Instances[i]), serializer);
+    }
+    m_Topic.write(new ProducerRecord<>(TOPIC, 0, (long) NUM_INSTANCES, (Instance) null), serializer);
+  }
+
+  protected MockKafkaStream newStream(int prefetch) {
+    MockKafkaStream stream = new MockKafkaStream(m_Topic);
+    stream.prefetchOption.setValue(prefetch);
+    stream.prepareForUse();
+    return stream;
+  }
+
+  protected void assertInstances(KafkaStream stream, int from) {
+    for (int i = from; i < NUM_INSTANCES; i++) {
+      assertTrue(stream.hasMoreInstances());
+      assertArrayEquals(m_Instances[i].toDoubleArray(), stream.nextInstance().getData().toDoubleArray(), 0.0);
+    }
+    assertFalse(stream.hasMoreInstances());
+  }
+
+  protected void testResumeMidPartition(int prefetch) {
+    MockKafkaStream first = newStream(prefetch);
+    for (int i = 0; i < 20; i++)
+      first.nextInstance();
+    Map<TopicPartition, Long> position = first.getPosition();
+    List<byte[]> schemas = first.getSchemas();
+    first.close();
+    assertEquals(Collections.singletonMap(new TopicPartition(TOPIC, 0), 20L), position);
+    assertEquals(1, schemas.size());
+
+    MockKafkaStream resumed = newStream(prefetch);
+    resumed.resumeFrom(position, schemas);
+    assertEquals(m_Instances[0].numAttributes(), resumed.getHeader().numAttributes());
+    assertInstances(resumed, 20);
+
+    // restarting goes back to the resume position
+    resumed.restart();
+    assertInstances(resumed, 20);
+    assertEquals(1, resumed.getSchemas().size());
+    resumed.close();
+  }
+
+  @Test
+  public void testResumeMidPartition() {
+    testResumeMidPartition(0);
+  }
+
+  @Test
+  public void testResumeMidPartitionPrefetching() {
+    testResumeMidPartition(100);
+  }
+
+  @Test
+  public void testResumeWithoutSchemas() {
+    MockKafkaStream resumed = newStream(0);
+    resumed.resumeFrom(Collections.singletonMap(new TopicPartition(TOPIC, 0), 20L));
+    try {
+      resumed.hasMoreInstances();
+      fail("Resumed without knowing the header");
+    } catch (RuntimeException e) {
+      assertTrue(e.getMessage().contains("unknown schema"));
+    } finally {
+      resumed.close();
+    }
+  }
+}
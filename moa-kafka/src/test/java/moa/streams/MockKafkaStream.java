@@ -0,0 +1,55 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * MockKafkaStream.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+
+package moa.streams;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.util.CompactInstanceDeserializer;
+import moa.util.MockTopic;
+import org.apache.kafka.clients.consumer.Consumer;
+
+import java.util.Map;
+
+/**
+ * A {@link KafkaStream} consuming a {@link MockTopic}. The deserialisers
+ * are configured with the stream's consumer configuration, as the Kafka
+ * consumer does, but without a schema topic.
+ */
+public class MockKafkaStream extends KafkaStream {
+
+  private static final long serialVersionUID = 1L;
+
+  protected transient MockTopic m_Source;
+
+  public MockKafkaStream(MockTopic source) {
+    m_Source = source;
+    topicOption.setValue(source.name());
+  }
+
+  @Override
+  protected Consumer<Long, Instance> createConsumer() {
+    Map<String, Object> config = createConsumerConfiguration();
+    config.remove(CompactInstanceDeserializer.SCHEMA_TOPIC_CONFIG);
+
+    CompactInstanceDeserializer deserializer = new CompactInstanceDeserializer();
+    deserializer.configure(config, false);
+    return m_Source.consumer(deserializer);
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * LearnModelFromTopicPartitionsTest.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+
+package moa.tasks;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.Classifier;
+import moa.classifiers.MergeableClassifier;
+import moa.classifiers.bayes.NaiveBayes;
+import moa.core.InstanceExample;
+import moa.streams.generators.RandomTreeGenerator;
+import moa.util.CompactInstanceDeserializer;
+import moa.util.CompactInstanceSerializer;
+import moa.util.MockTopic;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Learns a compact topic of several partitions with
+ * {@link LearnModelFromTopicPartitions}, checking the merged model and the
+ * committed offsets of every checkpoint.
+ */
+public class LearnModelFromTopicPartitionsTest {
+
+  private static final String TOPIC = "instances";
+
+  private static final int[] PARTITION_SIZES = {37, 52, 15};
+
+  private static final int MERGE_INTERVAL = 10;
+
+  @Rule
+  public TemporaryFolder m_Folder = new TemporaryFolder();
+
+  protected MockTopic m_Topic;
+
+  protected RandomTreeGenerator m_Generator;
+
+  protected NaiveBayes m_Reference;
+
+  /**
+   * A checkpoint seen by the task, with the number of commits before it.
+   */
+  protected static class Checkpoint {
+
+    public final double m_TrainingWeight;
+
+    public final Map<TopicPartition, Long> m_Offsets;
+
+    public final int m_CommitsBefore;
+
+    public Checkpoint(double trainingWeight, Map<TopicPartition, Long> offsets, int commitsBefore) {
+      m_TrainingWeight = trainingWeight;
+      m_Offsets = new HashMap<>(offsets);
+      m_CommitsBefore = commitsBefore;
+    }
+  }
+
+  /**
+   * The task reading the mock topic, recording its checkpoints.
+   */
+  protected class MockTask extends LearnModelFromTopicPartitions {
+
+    private static final long serialVersionUID = 1L;
+
+    public final List<Checkpoint> m_Checkpoints = new ArrayList<>();
+
+    @Override
+    protected Consumer<Long, Instance> createConsumer() {
+      Map<String, Object> config = createConsumerConfiguration();
+      config.remove(CompactInstanceDeserializer.SCHEMA_TOPIC_CONFIG);
+
+      CompactInstanceDeserializer deserializer = new CompactInstanceDeserializer();
+      deserializer.configure(config, false);
+      return m_Topic.consumer(deserializer);
+    }
+
+    @Override
+    protected void onCheckpoint(MergeableClassifier model, Map<TopicPartition, Long> offsets) {
+      m_Checkpoints.add(new Checkpoint(model.trainingWeightSeenByModel(), offsets, m_Topic.commits().size()));
+    }
+  }
+
+  @Before
+  public void setUp() {
+    m_Generator = new RandomTreeGenerator();
+    m_Generator.prepareForUse();
+    m_Reference = new NaiveBayes();
+    m_Reference.setModelContext(m_Generator.getHeader());
+    m_Reference.prepareForUse();
+
+    // the first record of each partition carries the header
+    m_Topic = new MockTopic(TOPIC, PARTITION_SIZES.length);
+    for (int p = 0; p < PARTITION_SIZES.length; p++) {
+      CompactInstanceSerializer serializer = new CompactInstanceSerializer();
+      for (int i = 0; i < PARTITION_SIZES[p]; i++) {
+        Instance instance = m_Generator.nextInstance().getData();
+        m_Reference.trainOnInstance(instance);
+        m_Topic.write(new ProducerRecord<>(TOPIC, p, (long) i, instance), serializer);
+      }
+    }
+  }
+
+  protected MockTask newTask(int maxInstances, File checkpointFile) {
+    MockTask task = new MockTask();
+    task.topicOption.setValue(TOPIC);
+    task.mergeIntervalOption.setValue(MERGE_INTERVAL);
+    task.maxInstancesOption.setValue(maxInstances);
+    if (checkpointFile != null)
+      task.checkpointFileOption.setValue(checkpointFile.getPath());
+    task.prepareForUse();
+    return task;
+  }
+
+  protected void assertLikeReference(Classifier model) {
+    for (int i = 0; i < 50; i++) {
+      InstanceExample example = m_Generator.nextInstance();
+      assertArrayEquals(m_Reference.getVotesForInstance(example), model.getVotesForInstance(example), 1e-9);
+    }
+  }
+
+  @Test
+  public void testCheckpointsAndCommits() {
+    MockTask task = newTask(Integer.MAX_VALUE, null);
+    Classifier model = (Classifier) task.doTask(new NullMonitor(), null);
+
+    List<Map.Entry<TopicPartition, Long>> commits = m_Topic.commits();
+    assertTrue(task.m_Checkpoints.size() >= 52 / MERGE_INTERVAL);
+    for (int k = 0; k < task.m_Checkpoints.size(); k++) {
+      Checkpoint checkpoint = task.m_Checkpoints.get(k);
+
+      // the merged model contains exactly the records before the offsets
+      long total = 0;
+      for (long offset : checkpoint.m_Offsets.values())
+        total += offset;
+      assertEquals(total, checkpoint.m_TrainingWeight, 0.0);
+
+      // the replicas commit the offsets of the checkpoint, once it is merged
+      int end = (k + 1 < task.m_Checkpoints.size()) ? task.m_Checkpoints.get(k + 1).m_CommitsBefore : commits.size();
+      for (Map.Entry<TopicPartition, Long> commit : commits.subList(checkpoint.m_CommitsBefore, end))
+        assertEquals(checkpoint.m_Offsets.get(commit.getKey()), commit.getValue());
+    }
+
+    // each partition ends committed at its end
+    Map<TopicPartition, Long> lastCommits = new HashMap<>();
+    for (Map.Entry<TopicPartition, Long> commit : commits)
+      lastCommits.put(commit.getKey(), commit.getValue());
+    for (int p = 0; p < PARTITION_SIZES.length; p++)
+      assertEquals(PARTITION_SIZES[p], (long) lastCommits.get(new TopicPartition(TOPIC, p)));
+
+    assertEquals(m_Reference.trainingWeightSeenByModel(), model.trainingWeightSeenByModel(), 0.0);
+    assertLikeReference(model);
+  }
+
+  @Test
+  public void testResumeFromCheckpoint() {
+    File checkpointFile = new File(m_Folder.getRoot(), "checkpoint.moa");
+    newTask(40, checkpointFile).doTask(new NullMonitor(), null);
+
+    // the records after the checkpoint don't carry the header
+    Classifier model = (Classifier) newTask(Integer.MAX_VALUE, checkpointFile).doTask(new NullMonitor(), null);
+    assertEquals(m_Reference.trainingWeightSeenByModel(), model.trainingWeightSeenByModel(), 0.0);
+    assertLikeReference(model);
+  }
+}
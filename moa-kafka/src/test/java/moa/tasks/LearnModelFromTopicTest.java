@@ -0,0 +1,111 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * LearnModelFromTopicTest.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+
+package moa.tasks;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.Classifier;
+import moa.classifiers.bayes.NaiveBayes;
+import moa.core.InstanceExample;
+import moa.streams.MockKafkaStream;
+import moa.streams.generators.RandomTreeGenerator;
+import moa.util.CompactInstanceSerializer;
+import moa.util.KafkaCheckpoint;
+import moa.util.MockTopic;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Learns a compact topic with {@link LearnModelFromTopic} in two runs, the
+ * second resuming from the checkpoint of the first.
+ */
+public class LearnModelFromTopicTest {
+
+  private static final String TOPIC = "instances";
+
+  private static final int NUM_INSTANCES = 200;
+
+  @Rule
+  public TemporaryFolder m_Folder = new TemporaryFolder();
+
+  protected MockTopic m_Topic;
+
+  protected RandomTreeGenerator m_Generator;
+
+  protected NaiveBayes m_Reference;
+
+  @Before
+  public void setUp() {
+    m_Generator = new RandomTreeGenerator();
+    m_Generator.prepareForUse();
+    CompactInstanceSerializer serializer = new CompactInstanceSerializer();
+    m_Reference = new NaiveBayes();
+    m_Reference.setModelContext(m_Generator.getHeader());
+    m_Reference.prepareForUse();
+
+    // only the first record carries the header
+    m_Topic = new MockTopic(TOPIC, 1);
+    for (int i = 0; i < NUM_INSTANCES; i++) {
+      Instance instance = m_Generator.nextInstance().getData();
+      m_Reference.trainOnInstance(instance);
+      m_Topic.write(new ProducerRecord<>(TOPIC, 0, (long) i, instance), serializer);
+    }
+    m_Topic.write(new ProducerRecord<>(TOPIC, 0, (long) NUM_INSTANCES, (Instance) null), serializer);
+  }
+
+  protected Classifier run(File checkpointFile, int maxInstances) {
+    LearnModelFromTopic task = new LearnModelFromTopic();
+    task.streamOption.setCurrentObject(new MockKafkaStream(m_Topic));
+    task.checkpointFileOption.setValue(checkpointFile.getPath());
+    task.checkpointIntervalOption.setValue(7);
+    task.maxInstancesOption.setValue(maxInstances);
+    task.prepareForUse();
+    return (Classifier) task.doTask(new NullMonitor(), null);
+  }
+
+  @Test
+  public void testResumeFromCheckpoint() {
+    File checkpointFile = new File(m_Folder.getRoot(), "checkpoint.moa");
+
+    run(checkpointFile, 30);
+    KafkaCheckpoint checkpoint = KafkaCheckpoint.load(checkpointFile);
+    assertEquals(30, checkpoint.getInstancesProcessed());
+    assertEquals(Collections.singletonMap(new TopicPartition(TOPIC, 0), 30L), checkpoint.getOffsets());
+    assertEquals(1, checkpoint.getSchemas().size());
+
+    // the records after the checkpoint don't carry the header
+    Classifier resumed = run(checkpointFile, NUM_INSTANCES);
+    assertEquals(NUM_INSTANCES, KafkaCheckpoint.load(checkpointFile).getInstancesProcessed());
+
+    for (int i = 0; i < 20; i++) {
+      InstanceExample example = m_Generator.nextInstance();
+      assertArrayEquals(m_Reference.getVotesForInstance(example), resumed.getVotesForInstance(example), 0.0);
+    }
+  }
+}
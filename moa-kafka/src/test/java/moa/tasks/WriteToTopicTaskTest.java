@@ -0,0 +1,205 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * WriteToTopicTaskTest.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+
+package moa.tasks;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.streams.generators.RandomTreeGenerator;
+import moa.util.CompactInstanceDeserializer;
+import moa.util.CompactInstanceFormat;
+import moa.util.CompactInstanceSerializer;
+import moa.util.MockTopic;
+import moa.util.SchemaTopicReader;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Writes a compact topic with {@link WriteToTopicTask} into mock topics and
+ * consumes it from different starting points.
+ */
+public class WriteToTopicTaskTest {
+
+  private static final String TOPIC = "instances";
+
+  private static final int NUM_PARTITIONS = 3;
+
+  private static final int NUM_INSTANCES = 30;
+
+  protected MockTopic m_Topic;
+
+  protected MockTopic m_SchemaTopic;
+
+  @Before
+  public void setUp() {
+    m_Topic = new MockTopic(TOPIC, NUM_PARTITIONS);
+    m_SchemaTopic = new MockTopic(CompactInstanceFormat.schemaTopic(TOPIC), 1);
+    MockProducer<Long, Instance> producer = m_Topic.producer(new CompactInstanceSerializer());
+    MockProducer<Long, byte[]> schemaProducer = m_SchemaTopic.producer(new ByteArraySerializer());
+
+    WriteToTopicTask task = new WriteToTopicTask() {
+      @Override
+      protected Producer<Long, Instance> createProducer(Map<String, Object> config) {
+        return producer;
+      }
+
+      @Override
+      protected Producer<Long, byte[]> createSchemaProducer(Map<String, Object> config) {
+        return schemaProducer;
+      }
+    };
+    task.topicOption.setValue(TOPIC);
+    task.compactOption.setValue(true);
+    task.maxInstancesOption.setValue(NUM_INSTANCES);
+    task.prepareForUse();
+    task.doTask(new NullMonitor(), null);
+
+    m_SchemaTopic.writeAll(schemaProducer, new ByteArraySerializer());
+    m_Topic.writeAll(producer, new CompactInstanceSerializer());
+  }
+
+  protected Instance[] expectedInstances() {
+    RandomTreeGenerator generator = new RandomTreeGenerator();
+    generator.prepareForUse();
+    Instance[] result = new Instance[NUM_INSTANCES];
+    for (int i = 0; i < NUM_INSTANCES; i++)
+      result[i] = generator.nextInstance().getData();
+    return result;
+  }
+
+  protected CompactInstanceDeserializer deserializerWithSchemaTopic() {
+    CompactInstanceDeserializer deserializer = new CompactInstanceDeserializer();
+    deserializer.setSchemaTopicReader(new SchemaTopicReader(
+          m_SchemaTopic.consumer(new ByteArrayDeserializer()), m_SchemaTopic.name()));
+    return deserializer;
+  }
+
+  /**
+   * Reads all partitions to their end, starting each at the given offset
+   * (or at its beginning if negative), and returns the instances by key.
+   */
+  protected Map<Long, Instance> read(CompactInstanceDeserializer deserializer, long startOffset) {
+    Map<Long, Instance> result = new TreeMap<>();
+    try (MockConsumer<Long, Instance> consumer = m_Topic.consumer(deserializer)) {
+      List<TopicPartition> partitions = m_Topic.partitions();
+      consumer.assign(partitions);
+      if (startOffset < 0) {
+        consumer.seekToBeginning(partitions);
+      } else {
+        for (TopicPartition partition : partitions)
+          consumer.seek(partition, startOffset);
+      }
+
+      Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+      boolean done = false;
+      while (!done) {
+        for (ConsumerRecord<Long, Instance> record : consumer.poll(Duration.ZERO)) {
+          if (record.value() != null)
+            result.put(record.key(), record.value());
+        }
+
+        done = true;
+        for (TopicPartition partition : partitions)
+          done &= consumer.position(partition) >= endOffsets.get(partition);
+      }
+    }
+    return result;
+  }
+
+  protected void assertInstances(Map<Long, Instance> actual, long firstKey) {
+    Instance[] expected = expectedInstances();
+    for (Map.Entry<Long, Instance> entry : actual.entrySet()) {
+      Instance instance = expected[entry.getKey().intValue()];
+      assertArrayEquals(instance.toDoubleArray(), entry.getValue().toDoubleArray(), 0.0);
+      assertEquals(instance.numAttributes(), entry.getValue().dataset().numAttributes());
+    }
+    assertEquals(NUM_INSTANCES - firstKey, actual.size());
+    if (!actual.isEmpty())
+      assertEquals(firstKey, (long) ((TreeMap<Long, Instance>) actual).firstKey());
+  }
+
+  @Test
+  public void testSchemaTopic() {
+    List<ConsumerRecord<Long, byte[]>> schemas = m_SchemaTopic.records(0);
+    assertEquals(1, schemas.size());
+    assertEquals(CompactInstanceFormat.schemaID(schemas.get(0).value()), (long) schemas.get(0).key());
+
+    // the instances of the first header are the only ones carrying it
+    for (int p = 0; p < NUM_PARTITIONS; p++) {
+      List<ConsumerRecord<Long, byte[]>> records = m_Topic.records(p);
+      for (int i = 0; i < records.size(); i++) {
+        boolean hasHeader = records.get(i).headers().lastHeader(CompactInstanceFormat.SCHEMA_HEADER) != null;
+        assertEquals(i == 0, hasHeader);
+      }
+    }
+  }
+
+  @Test
+  public void testFromBeginning() {
+    assertInstances(read(new CompactInstanceDeserializer(), -1), 0);
+  }
+
+  @Test
+  public void testAfterOffsetZero() {
+    // Without the schema topic, the header is never seen
+    try {
+      read(new CompactInstanceDeserializer(), 4);
+      fail("Read instances of an unknown schema");
+    } catch (RuntimeException e) {
+      assertTrue(e.getMessage().contains("unknown schema"));
+    }
+
+    assertInstances(read(deserializerWithSchemaTopic(), 4), 4 * NUM_PARTITIONS);
+  }
+
+  @Test
+  public void testAfterRetention() {
+    for (int p = 0; p < NUM_PARTITIONS; p++)
+      m_Topic.deleteBefore(p, 2);
+
+    assertInstances(read(deserializerWithSchemaTopic(), -1), 2 * NUM_PARTITIONS);
+  }
+
+  @Test
+  public void testSchemasFromConfiguration() {
+    Map<String, Object> config = new HashMap<>();
+    config.put(CompactInstanceDeserializer.SCHEMAS_CONFIG,
+          Collections.singletonList(m_SchemaTopic.records(0).get(0).value()));
+    CompactInstanceDeserializer deserializer = new CompactInstanceDeserializer();
+    deserializer.configure(config, false);
+
+    assertInstances(read(deserializer, 4), 4 * NUM_PARTITIONS);
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * CompactInstanceSerdeTest.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+
+package moa.util;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.SparseInstance;
+import moa.streams.generators.RandomTreeGenerator;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round-trips instances through {@link CompactInstanceSerializer} and
+ * {@link CompactInstanceDeserializer}, the way a producer and a consumer
+ * see the records of a topic.
+ */
+public class CompactInstanceSerdeTest {
+
+  private static final String TOPIC = "test";
+
+  protected RandomTreeGenerator newGenerator() {
+    RandomTreeGenerator generator = new RandomTreeGenerator();
+    generator.prepareForUse();
+    return generator;
+  }
+
+  protected void assertSameInstance(Instance expected, Instance actual) {
+    assertEquals(expected.numAttributes(), actual.numAttributes());
+    assertEquals(expected.weight(), actual.weight(), 0.0);
+    assertEquals(expected.classIndex(), actual.classIndex());
+    for (int i = 0; i < expected.numAttributes(); i++)
+      assertEquals(expected.value(i), actual.value(i), 0.0);
+  }
+
+  @Test
+  public void testDenseRoundTrip() {
+    RandomTreeGenerator generator = newGenerator();
+    CompactInstanceSerializer serializer = new CompactInstanceSerializer();
+    CompactInstanceDeserializer deserializer = new CompactInstanceDeserializer();
+
+    Instance previous = null;
+    for (int i = 0; i < 100; i++) {
+      Instance instance = generator.nextInstance().getData();
+      RecordHeaders headers = new RecordHeaders();
+      byte[] bytes = serializer.serialize(TOPIC, headers, instance);
+
+      // only the first record carries the header
+      assertEquals(i == 0, headers.lastHeader(CompactInstanceFormat.SCHEMA_HEADER) != null);
+
+      Instance result = deserializer.deserialize(TOPIC, headers, bytes);
+      assertSameInstance(instance, result);
+      if (previous != null)
+        assertSame(previous.dataset(), result.dataset());
+      previous = result;
+    }
+  }
+
+  @Test
+  public void testSparseRoundTrip() {
+    Instance dense = newGenerator().nextInstance().getData();
+    int numAttributes = dense.numAttributes();
+    Instance sparse = new SparseInstance(2.0, new double[]{1.5, 1.0},
+          new int[]{1, numAttributes - 1}, numAttributes);
+    sparse.setDataset(dense.dataset());
+
+    RecordHeaders headers = new RecordHeaders();
+    byte[] bytes = new CompactInstanceSerializer().serialize(TOPIC, headers, sparse);
+    Instance result = new CompactInstanceDeserializer().deserialize(TOPIC, headers, bytes);
+
+    assertTrue(result instanceof SparseInstance);
+    assertEquals(2, result.numValues());
+    assertSameInstance(sparse, result);
+  }
+
+  @Test
+  public void testSmallerThanObjectSerialization() {
+    Instance instance = newGenerator().nextInstance().getData();
+    CompactInstanceSerializer serializer = new CompactInstanceSerializer();
+    serializer.serialize(TOPIC, new RecordHeaders(), instance);
+
+    byte[] compact = serializer.serialize(TOPIC, new RecordHeaders(), instance);
+    byte[] object = new ObjectSerializer<Instance>().serialize(TOPIC, instance);
+    assertTrue(compact.length * 10 < object.length);
+  }
+
+  @Test
+  public void testReadsObjectSerialization() {
+    Instance instance = newGenerator().nextInstance().getData();
+    byte[] bytes = new ObjectSerializer<Instance>().serialize(TOPIC, instance);
+
+    Instance result = new CompactInstanceDeserializer().deserialize(TOPIC, new RecordHeaders(), bytes);
+    assertSameInstance(instance, result);
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testUnknownSchema() {
+    Instance instance = newGenerator().nextInstance().getData();
+    byte[] bytes = new CompactInstanceSerializer().serialize(TOPIC, instance);
+
+    new CompactInstanceDeserializer().deserialize(TOPIC, new RecordHeaders(), bytes);
+  }
+
+  @Test
+  public void testPassesRegisteredSchemaOn() {
+    RandomTreeGenerator generator = newGenerator();
+    Instance first = generator.nextInstance().getData();
+    CompactInstanceSerializer serializer = new CompactInstanceSerializer();
+    RecordHeaders firstHeaders = new RecordHeaders();
+    serializer.serialize(TOPIC, firstHeaders, first);
+    byte[] schema = firstHeaders.lastHeader(CompactInstanceFormat.SCHEMA_HEADER).value();
+
+    // a consumer which never sees the first record, but knows the schema
+    CompactInstanceDeserializer deserializer = new CompactInstanceDeserializer();
+    assertEquals(CompactInstanceFormat.schemaID(schema), deserializer.registerSchema(schema));
+    for (int i = 0; i < 3; i++) {
+      Instance instance = generator.nextInstance().getData();
+      RecordHeaders headers = new RecordHeaders();
+      byte[] bytes = serializer.serialize(TOPIC, headers, instance);
+      assertNull(headers.lastHeader(CompactInstanceFormat.SCHEMA_HEADER));
+
+      assertSameInstance(instance, deserializer.deserialize(TOPIC, headers, bytes));
+      if (i == 0)
+        assertArrayEquals(schema, headers.lastHeader(CompactInstanceFormat.SCHEMA_HEADER).value());
+      else
+        assertNull(headers.lastHeader(CompactInstanceFormat.SCHEMA_HEADER));
+    }
+  }
+
+  @Test
+  public void testNull() {
+    assertNull(new CompactInstanceSerializer().serialize(TOPIC, new RecordHeaders(), null));
+    assertNull(new CompactInstanceDeserializer().deserialize(TOPIC, new RecordHeaders(), null));
+  }
+}
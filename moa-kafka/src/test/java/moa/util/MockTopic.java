@@ -0,0 +1,244 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * MockTopic.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+
+package moa.util;
+
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.internals.DefaultPartitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An in-memory Kafka topic standing in for the broker in tests. The records
+ * sent with a {@link MockProducer} are serialised in the order they were
+ * sent, as the real producer does, and the consumers of the topic only
+ * deserialise the records they fetch, from their position onwards. Records
+ * can be deleted from the beginning of a partition, as retention does. The
+ * offsets committed by all consumers are kept in the order they arrive.
+ */
+public class MockTopic {
+
+  protected static final Node NODE = new Node(0, "localhost", 9092);
+
+  // The name of the topic
+  protected final String m_Name;
+
+  // The serialised records, by partition
+  protected final List<List<ConsumerRecord<Long, byte[]>>> m_Partitions = new ArrayList<>();
+
+  // The offset of the first record which hasn't been deleted, by partition
+  protected final long[] m_BeginningOffsets;
+
+  // The offsets committed so far, in order
+  protected final List<Map.Entry<TopicPartition, Long>> m_Commits = new ArrayList<>();
+
+  public MockTopic(String name, int numPartitions) {
+    m_Name = name;
+    for (int i = 0; i < numPartitions; i++)
+      m_Partitions.add(new ArrayList<>());
+    m_BeginningOffsets = new long[numPartitions];
+  }
+
+  public String name() {
+    return m_Name;
+  }
+
+  public List<TopicPartition> partitions() {
+    List<TopicPartition> result = new ArrayList<>();
+    for (int i = 0; i < m_Partitions.size(); i++)
+      result.add(new TopicPartition(m_Name, i));
+    return result;
+  }
+
+  public List<PartitionInfo> partitionInfos() {
+    List<PartitionInfo> result = new ArrayList<>();
+    for (int i = 0; i < m_Partitions.size(); i++)
+      result.add(new PartitionInfo(m_Name, i, NODE, new Node[]{NODE}, new Node[]{NODE}));
+    return result;
+  }
+
+  /**
+   * Creates a producer for the topic, whose sends can be stored with
+   * {@link #writeAll(MockProducer, Serializer)}.
+   */
+  public <V> MockProducer<Long, V> producer(Serializer<V> serializer) {
+    Cluster cluster = new Cluster("mock", Collections.singletonList(NODE), partitionInfos(),
+          Collections.emptySet(), Collections.emptySet());
+    return new MockProducer<>(cluster, true, new DefaultPartitioner(), new LongSerializer(), serializer);
+  }
+
+  /**
+   * Gets the records of a partition which haven't been deleted.
+   */
+  public List<ConsumerRecord<Long, byte[]>> records(int partition) {
+    List<ConsumerRecord<Long, byte[]>> log = m_Partitions.get(partition);
+    return Collections.unmodifiableList(log.subList((int) m_BeginningOffsets[partition], log.size()));
+  }
+
+  /**
+   * Serialises a record and appends it to its partition.
+   */
+  public <V> void write(ProducerRecord<Long, V> record, Serializer<V> serializer) {
+    int partition = (record.partition() != null)
+          ? record.partition()
+          : Math.floorMod(Objects.hashCode(record.key()), m_Partitions.size());
+    List<ConsumerRecord<Long, byte[]>> log = m_Partitions.get(partition);
+    byte[] value = serializer.serialize(m_Name, record.headers(), record.value());
+    log.add(new ConsumerRecord<>(m_Name, partition, log.size(), ConsumerRecord.NO_TIMESTAMP,
+          TimestampType.NO_TIMESTAMP_TYPE, (long) ConsumerRecord.NULL_CHECKSUM,
+          ConsumerRecord.NULL_SIZE, ConsumerRecord.NULL_SIZE,
+          record.key(), value, new RecordHeaders(record.headers().toArray())));
+  }
+
+  /**
+   * Serialises and appends all records the producer has sent to the topic.
+   */
+  public <V> void writeAll(MockProducer<Long, V> producer, Serializer<V> serializer) {
+    for (ProducerRecord<Long, V> record : producer.history()) {
+      if (record.topic().equals(m_Name))
+        write(record, serializer);
+    }
+  }
+
+  /**
+   * Deletes the records of a partition before the given offset.
+   */
+  public void deleteBefore(int partition, long offset) {
+    m_BeginningOffsets[partition] = Math.max(m_BeginningOffsets[partition], offset);
+  }
+
+  /**
+   * Gets the offsets committed so far, in the order they were committed.
+   */
+  public synchronized List<Map.Entry<TopicPartition, Long>> commits() {
+    return new ArrayList<>(m_Commits);
+  }
+
+  /**
+   * Creates a consumer of the topic. Subscribing assigns it all partitions
+   * and calls the rebalance listener.
+   */
+  public <V> MockConsumer<Long, V> consumer(Deserializer<V> deserializer) {
+    return new TopicConsumer<>(deserializer);
+  }
+
+  /**
+   * A consumer fetching from the topic.
+   */
+  protected class TopicConsumer<V> extends MockConsumer<Long, V> {
+
+    protected final Deserializer<V> m_Deserializer;
+
+    public TopicConsumer(Deserializer<V> deserializer) {
+      super(OffsetResetStrategy.EARLIEST);
+      m_Deserializer = deserializer;
+      updatePartitions(m_Name, partitionInfos());
+      refreshOffsets();
+    }
+
+    protected void refreshOffsets() {
+      Map<TopicPartition, Long> beginningOffsets = new HashMap<>();
+      Map<TopicPartition, Long> endOffsets = new HashMap<>();
+      for (int i = 0; i < m_Partitions.size(); i++) {
+        beginningOffsets.put(new TopicPartition(m_Name, i), m_BeginningOffsets[i]);
+        endOffsets.put(new TopicPartition(m_Name, i), (long) m_Partitions.get(i).size());
+      }
+      updateBeginningOffsets(beginningOffsets);
+      updateEndOffsets(endOffsets);
+    }
+
+    @Override
+    public synchronized void subscribe(Collection<String> topics, ConsumerRebalanceListener listener) {
+      super.subscribe(topics, listener);
+      rebalance(partitions());
+      listener.onPartitionsAssigned(partitions());
+    }
+
+    @Override
+    public synchronized Map<TopicPartition, Long> endOffsets(Collection<TopicPartition> partitions) {
+      refreshOffsets();
+      return super.endOffsets(partitions);
+    }
+
+    @Override
+    public synchronized ConsumerRecords<Long, V> poll(Duration timeout) {
+      refreshOffsets();
+
+      // Fetch what follows the position of each partition
+      for (TopicPartition partition : assignment()) {
+        if (paused().contains(partition))
+          continue;
+
+        List<ConsumerRecord<Long, byte[]>> log = m_Partitions.get(partition.partition());
+        for (long offset = position(partition); offset < log.size(); offset++) {
+          ConsumerRecord<Long, byte[]> stored = log.get((int) offset);
+          Headers headers = new RecordHeaders(stored.headers().toArray());
+          V value = m_Deserializer.deserialize(m_Name, headers, stored.value());
+          addRecord(new ConsumerRecord<>(m_Name, stored.partition(), stored.offset(), ConsumerRecord.NO_TIMESTAMP,
+                TimestampType.NO_TIMESTAMP_TYPE, (long) ConsumerRecord.NULL_CHECKSUM,
+                ConsumerRecord.NULL_SIZE, ConsumerRecord.NULL_SIZE,
+                stored.key(), value, headers));
+        }
+      }
+
+      return super.poll(timeout);
+    }
+
+    @Override
+    public synchronized void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets) {
+      super.commitSync(offsets);
+      synchronized (MockTopic.this) {
+        for (Map.Entry<TopicPartition, OffsetAndMetadata> entry : offsets.entrySet())
+          m_Commits.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().offset()));
+      }
+    }
+
+    @Override
+    public synchronized void close() {
+      super.close();
+      m_Deserializer.close();
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 	        http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.  
+ */
+package com.yahoo.labs.samoa.instances;
+
+/**
+ * An instance that shares the attribute values of another instance, and has
+ * a weight of its own. It replaces copies that only exist to change the
+ * weight, as when training several learners on the same instance. The values
+ * are copied the first time they are changed, so changes never reach the
+ * other instance.
+ */
+public class SharedInstance extends InstanceImpl {
+
+    /** Whether the values have been copied from the shared instance. */
+    protected boolean ownsData;
+
+    /**
+     * Instantiates a new shared instance.
+     *
+     * @param inst the instance to share the values of
+     * @param weight the weight
+     */
+    public SharedInstance(InstanceImpl inst, double weight) {
+        super(weight, inst.instanceData);
+        this.instanceHeader = inst.instanceHeader;
+    }
+
+    /**
+     * Gets an instance with the values of the given one and the given weight,
+     * sharing the values when possible.
+     *
+     * @param inst the instance
+     * @param weight the weight
+     * @return the instance with the weight
+     */
+    public static Instance withWeight(Instance inst, double weight) {
+        if (inst instanceof InstanceImpl) {
+            return new SharedInstance((InstanceImpl) inst, weight);
+        }
+        Instance copy = inst.copy();
+        copy.setWeight(weight);
+        return copy;
+    }
+
+    /**
+     * Copies the shared values before they are changed.
+     */
+    protected void ownData() {
+        if (!this.ownsData) {
+            this.instanceData = this.instanceData.copy();
+            this.ownsData = true;
+        }
+    }
+
+    @Override
+    public void deleteAttributeAt(int i) {
+        ownData();
+        super.deleteAttributeAt(i);
+    }
+
+    @Override
+    public void insertAttributeAt(int i) {
+        ownData();
+        super.insertAttributeAt(i);
+    }
+
+    @Override
+    public void setValue(int numAttribute, double d) {
+        ownData();
+        super.setValue(numAttribute, d);
+    }
+
+    @Override
+    public void setClassValue(int indexClass, double valueAttribute) {
+        ownData();
+        super.setClassValue(indexClass, valueAttribute);
+    }
+
+    @Override
+    public void addSparseValues(int[] indexValues, double[] attributeValues, int numberAttributes) {
+        super.addSparseValues(indexValues, attributeValues, numberAttributes);
+        this.ownsData = true;
+    }
+}
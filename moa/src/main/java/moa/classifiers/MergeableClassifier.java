@@ -0,0 +1,40 @@
+/*
+ *    MergeableClassifier.java
+ *    Copyright (C) 2024 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *    
+ */
+package moa.classifiers;
+
+/**
+ * Classifier whose model can absorb the model of a copy of itself that was
+ * trained on other instances, e.g. on another partition of a stream. Models
+ * built from sufficient statistics (counts, Gaussian estimators) merge
+ * exactly, i.e. as if one model had seen all instances; weight-based models
+ * average their weights by the training weight each model has seen.
+ */
+public interface MergeableClassifier extends Classifier {
+
+    /**
+     * Merges the model of the given classifier into this one. The other
+     * classifier must be of the same class with the same options and is
+     * not modified.
+     *
+     * @param other the classifier to merge
+     * @throws UnsupportedOperationException if a part of the model cannot
+     * be merged
+     */
+    public void merge(Classifier other);
+}
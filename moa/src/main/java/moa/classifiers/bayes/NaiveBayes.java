@@ -23,6 +23,8 @@ import moa.capabilities.CapabilitiesHandler;
 import moa.capabilities.Capability;
 import moa.capabilities.ImmutableCapabilities;
 import moa.classifiers.AbstractClassifier;
+import moa.classifiers.Classifier;
+import moa.classifiers.MergeableClassifier;
 import moa.classifiers.MultiClassClassifier;
 import moa.classifiers.core.attributeclassobservers.AttributeClassObserver;
 import moa.classifiers.core.attributeclassobservers.GaussianNumericAttributeClassObserver;
@@ -49,7 +51,7 @@ import com.yahoo.labs.samoa.instances.Instance;
  * @version $Revision: 7 $
  */
 public class NaiveBayes extends AbstractClassifier  implements MultiClassClassifier,
-                                                               CapabilitiesHandler {
+                                                               MergeableClassifier, CapabilitiesHandler {
 
     private static final long serialVersionUID = 1L;
 
@@ -82,6 +84,32 @@ public class NaiveBayes extends AbstractClassifier  implements MultiClassClassif
         }
     }
 
+    @Override
+    public void merge(Classifier other) {
+        NaiveBayes nb = (NaiveBayes) other;
+        this.trainingWeightSeenByModel += nb.trainingWeightSeenByModel();
+        this.observedClassDistribution.addValues(nb.observedClassDistribution);
+        for (int i = 0; i < nb.attributeObservers.size(); i++) {
+            AttributeClassObserver otherObs = nb.attributeObservers.get(i);
+            if (otherObs == null) {
+                continue;
+            }
+            AttributeClassObserver obs = this.attributeObservers.get(i);
+            if (obs == null) {
+                this.attributeObservers.set(i, (AttributeClassObserver) otherObs.copy());
+            } else if (obs instanceof NominalAttributeClassObserver
+                    && otherObs instanceof NominalAttributeClassObserver) {
+                ((NominalAttributeClassObserver) obs).merge((NominalAttributeClassObserver) otherObs);
+            } else if (obs instanceof GaussianNumericAttributeClassObserver
+                    && otherObs instanceof GaussianNumericAttributeClassObserver) {
+                ((GaussianNumericAttributeClassObserver) obs).merge((GaussianNumericAttributeClassObserver) otherObs);
+            } else {
+                throw new UnsupportedOperationException("Cannot merge attribute observer "
+                        + obs.getClass().getName());
+            }
+        }
+    }
+
     @Override
     public double[] getVotesForInstance(Instance inst) {
         return doNaiveBayesPrediction(inst, this.observedClassDistribution,
@@ -79,6 +79,35 @@ public class GaussianNumericAttributeClassObserver extends AbstractOptionHandler
         }
     }
 
+    /**
+     * Adds the observations of another observer, as if this observer had
+     * seen them as well.
+     *
+     * @param other the observer to merge
+     */
+    public void merge(GaussianNumericAttributeClassObserver other) {
+        for (int classVal = 0; classVal < other.attValDistPerClass.size(); classVal++) {
+            GaussianEstimator otherDist = other.attValDistPerClass.get(classVal);
+            if (otherDist == null) {
+                continue;
+            }
+            GaussianEstimator valDist = this.attValDistPerClass.get(classVal);
+            if (valDist == null) {
+                this.attValDistPerClass.set(classVal, (GaussianEstimator) otherDist.copy());
+                this.minValueObservedPerClass.setValue(classVal, other.minValueObservedPerClass.getValue(classVal));
+                this.maxValueObservedPerClass.setValue(classVal, other.maxValueObservedPerClass.getValue(classVal));
+            } else {
+                valDist.addObservations(otherDist);
+                if (other.minValueObservedPerClass.getValue(classVal) < this.minValueObservedPerClass.getValue(classVal)) {
+                    this.minValueObservedPerClass.setValue(classVal, other.minValueObservedPerClass.getValue(classVal));
+                }
+                if (other.maxValueObservedPerClass.getValue(classVal) > this.maxValueObservedPerClass.getValue(classVal)) {
+                    this.maxValueObservedPerClass.setValue(classVal, other.maxValueObservedPerClass.getValue(classVal));
+                }
+            }
+        }
+    }
+
     @Override
     public double probabilityOfAttributeValueGivenClass(double attVal,
             int classVal) {
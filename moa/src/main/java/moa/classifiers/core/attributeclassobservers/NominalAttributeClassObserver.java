@@ -66,6 +66,29 @@ public class NominalAttributeClassObserver extends AbstractOptionHandler impleme
         this.totalWeightObserved += weight;
     }
 
+    /**
+     * Adds the observations of another observer, as if this observer had
+     * seen them as well.
+     *
+     * @param other the observer to merge
+     */
+    public void merge(NominalAttributeClassObserver other) {
+        for (int classVal = 0; classVal < other.attValDistPerClass.size(); classVal++) {
+            DoubleVector otherDist = other.attValDistPerClass.get(classVal);
+            if (otherDist == null) {
+                continue;
+            }
+            DoubleVector valDist = this.attValDistPerClass.get(classVal);
+            if (valDist == null) {
+                this.attValDistPerClass.set(classVal, new DoubleVector(otherDist));
+            } else {
+                valDist.addValues(otherDist);
+            }
+        }
+        this.totalWeightObserved += other.totalWeightObserved;
+        this.missingWeightObserved += other.missingWeightObserved;
+    }
+
     @Override
     public double probabilityOfAttributeValueGivenClass(double attVal,
             int classVal) {
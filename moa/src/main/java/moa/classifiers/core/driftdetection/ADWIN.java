@@ -20,6 +20,7 @@
 package moa.classifiers.core.driftdetection;
 
 import moa.AbstractMOAObject;
+import moa.core.MetricsRegistry;
 
 /**
  * ADaptive sliding WINdow method. This method is a change detector and estimator.
@@ -320,6 +321,21 @@ public class ADWIN extends AbstractMOAObject {
 
     private List listRowBuckets;
 
+    protected static final MetricsRegistry.Counter DETECTIONS_COUNTER = MetricsRegistry.getDefault().counter(
+            "moa_adwin_detections_total", "Changes detected by ADWIN.");
+
+    /** Gauge of this detector, registered again by copies of it. */
+    protected transient MetricsRegistry.Gauge widthGauge;
+
+    protected MetricsRegistry.Gauge getWidthGauge() {
+        if (widthGauge == null) {
+            MetricsRegistry registry = MetricsRegistry.getDefault();
+            widthGauge = registry.gauge("moa_adwin_width", "Window width of an ADWIN detector.", this,
+                    "detector", String.valueOf(registry.nextInstanceId()));
+        }
+        return widthGauge;
+    }
+
     public boolean getChange() {
         return blnBucketDeleted;
     }
@@ -552,8 +568,12 @@ public class ADWIN extends AbstractMOAObject {
         }//End if
 
         mdblWidth += getWidth();
+        if (mintTime % mintClock == 0) {
+            getWidthGauge().set(getWidth());
+        }
         if (blnChange) {
             numberDetections++;
+            DETECTIONS_COUNTER.increment();
         }
         return blnChange;
     }
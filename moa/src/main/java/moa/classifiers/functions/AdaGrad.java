@@ -19,6 +19,7 @@
  */
 package moa.classifiers.functions;
 
+import moa.classifiers.Classifier;
 import moa.core.DoubleVector;
 import com.github.javacliparser.FloatOption;
 import com.yahoo.labs.samoa.instances.Instance;
@@ -108,6 +109,29 @@ public class AdaGrad extends SGD{
         setLossFunction(this.lossFunctionOption.getChosenIndex());
     }
 
+    /**
+     * Merges as {@link SGD#merge(Classifier)} does and adds up the
+     * accumulated squared gradients.
+     *
+     * @param other	the model to merge
+     */
+    @Override
+    public void merge(Classifier other) {
+        AdaGrad adaGrad = (AdaGrad) other;
+        if (adaGrad.m_weights == null) {
+            return;
+        }
+        boolean empty = (m_weights == null);
+        super.merge(other);
+        if (empty) {
+            m_velocity = new DoubleVector(adaGrad.m_velocity);
+            m_biasVelocity = adaGrad.m_biasVelocity;
+        } else {
+            m_velocity.addValues(adaGrad.m_velocity);
+            m_biasVelocity += adaGrad.m_biasVelocity;
+        }
+    }
+
     /**
      * Trains the classifier with the given instance.
      *
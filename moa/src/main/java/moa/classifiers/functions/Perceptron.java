@@ -20,6 +20,8 @@
 package moa.classifiers.functions;
 
 import moa.classifiers.AbstractClassifier;
+import moa.classifiers.Classifier;
+import moa.classifiers.MergeableClassifier;
 import moa.classifiers.MultiClassClassifier;
 import moa.core.Measurement;
 import moa.core.Utils;
@@ -36,7 +38,7 @@ import com.yahoo.labs.samoa.instances.Instance;
  * @author Albert Bifet (abifet at cs dot waikato dot ac dot nz)
  * @version $Revision: 7 $
  */
-public class Perceptron extends AbstractClassifier  implements MultiClassClassifier {
+public class Perceptron extends AbstractClassifier  implements MultiClassClassifier, MergeableClassifier {
 
     private static final long serialVersionUID = 221L;
 
@@ -95,6 +97,37 @@ public class Perceptron extends AbstractClassifier  implements MultiClassClassif
         }
     }
 
+    /**
+     * Averages the weights of both perceptrons, weighted by the training
+     * weight each has seen.
+     */
+    @Override
+    public void merge(Classifier other) {
+        Perceptron perceptron = (Perceptron) other;
+        if (perceptron.reset) {
+            return;
+        }
+        double weight = this.trainingWeightSeenByModel;
+        double otherWeight = perceptron.trainingWeightSeenByModel();
+        this.trainingWeightSeenByModel += otherWeight;
+        if (this.reset) {
+            this.reset = false;
+            this.numberAttributes = perceptron.numberAttributes;
+            this.numberClasses = perceptron.numberClasses;
+            this.weightAttribute = new double[perceptron.weightAttribute.length][];
+            for (int i = 0; i < this.weightAttribute.length; i++) {
+                this.weightAttribute[i] = perceptron.weightAttribute[i].clone();
+            }
+            return;
+        }
+        double share = (weight + otherWeight > 0.0) ? otherWeight / (weight + otherWeight) : 0.5;
+        for (int i = 0; i < this.weightAttribute.length; i++) {
+            for (int j = 0; j < this.weightAttribute[i].length; j++) {
+                this.weightAttribute[i][j] += share * (perceptron.weightAttribute[i][j] - this.weightAttribute[i][j]);
+            }
+        }
+    }
+
     public void setWeights(double[][] w) {
         //Perceptron Hoeffding Tree
         this.weightAttribute = w;
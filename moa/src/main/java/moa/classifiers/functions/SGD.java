@@ -28,6 +28,8 @@
 package moa.classifiers.functions;
 
 import moa.classifiers.AbstractClassifier;
+import moa.classifiers.Classifier;
+import moa.classifiers.MergeableClassifier;
 import moa.classifiers.MultiClassClassifier;
 import moa.core.DoubleVector;
 import moa.core.Measurement;
@@ -45,7 +47,7 @@ import moa.core.Utils;
 <!-- globalinfo-end -->
  *
  */
-public class SGD extends AbstractClassifier implements MultiClassClassifier, Regressor{
+public class SGD extends AbstractClassifier implements MultiClassClassifier, Regressor, MergeableClassifier {
 
     /** For serialization */
     private static final long serialVersionUID = -3732968666673530290L;
@@ -271,6 +273,37 @@ public class SGD extends AbstractClassifier implements MultiClassClassifier, Reg
         }
     }
 
+    /**
+     * Averages the weights and bias of both models, weighted by the
+     * training weight each has seen. The update counts are added up, so the
+     * weight decay continues as if one model had seen all instances.
+     *
+     * @param other	the model to merge
+     */
+    @Override
+    public void merge(Classifier other) {
+        SGD sgd = (SGD) other;
+        if (sgd.m_weights == null) {
+            return;
+        }
+        double weight = this.trainingWeightSeenByModel;
+        double otherWeight = sgd.trainingWeightSeenByModel();
+        this.trainingWeightSeenByModel += otherWeight;
+        if (m_weights == null) {
+            m_weights = new DoubleVector(sgd.m_weights);
+            m_bias = sgd.m_bias;
+            m_t = sgd.m_t;
+            return;
+        }
+        double share = (weight + otherWeight > 0.0) ? otherWeight / (weight + otherWeight) : 0.5;
+        int numValues = Math.max(m_weights.numValues(), sgd.m_weights.numValues());
+        for (int i = 0; i < numValues; i++) {
+            m_weights.setValue(i, m_weights.getValue(i) + share * (sgd.m_weights.getValue(i) - m_weights.getValue(i)));
+        }
+        m_bias += share * (sgd.m_bias - m_bias);
+        m_t += sgd.m_t - 1;
+    }
+
     /**
      * Calculates the class membership probabilities for the given test
      * instance.
@@ -29,6 +29,7 @@ import moa.classifiers.MultiClassClassifier;
 import moa.core.DoubleVector;
 import moa.core.InstanceExample;
 import moa.core.Measurement;
+import moa.core.MetricsRegistry;
 import moa.core.MiscUtils;
 import moa.options.ClassOption;
 
@@ -137,6 +138,12 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
     protected static final int FEATURES_PERCENT = 3;
     
     protected static final int SINGLE_THREAD = 0;
+
+    protected static final MetricsRegistry.Counter WARNINGS_COUNTER = MetricsRegistry.getDefault().counter(
+            "moa_arf_warnings_total", "Warnings detected by the trees of adaptive random forests.");
+
+    protected static final MetricsRegistry.Counter DRIFTS_COUNTER = MetricsRegistry.getDefault().counter(
+            "moa_arf_drifts_total", "Drifts detected by the trees of adaptive random forests, each resetting a tree.");
 	
     protected ARFBaseLearner[] ensemble;
     protected long instancesSeen;
@@ -144,7 +151,20 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
     protected BasicClassificationPerformanceEvaluator evaluator;
 
     private ExecutorService executor;
+
+    /** Gauge of this forest, registered again by copies of it. */
+    protected transient MetricsRegistry.Gauge backgroundTreesGauge;
     
+    protected MetricsRegistry.Gauge getBackgroundTreesGauge() {
+        if (this.backgroundTreesGauge == null) {
+            MetricsRegistry registry = MetricsRegistry.getDefault();
+            this.backgroundTreesGauge = registry.gauge("moa_arf_background_trees",
+                    "Background trees being trained by an adaptive random forest.", this,
+                    "forest", String.valueOf(registry.nextInstanceId()));
+        }
+        return this.backgroundTreesGauge;
+    }
+
     @Override
     public void resetLearningImpl() {
         // Reset attributes
@@ -152,6 +172,7 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
         this.subspaceSize = 0;
         this.instancesSeen = 0;
         this.evaluator = new BasicClassificationPerformanceEvaluator();
+        getBackgroundTreesGauge().set(0);
         
         // Multi-threading
         int numberOfJobs;
@@ -195,6 +216,13 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
                 throw new RuntimeException("Could not call invokeAll() on training threads.");
             }
         }
+        // counted again rather than tracked, so copies and resets can't skew it
+        int backgroundTrees = 0;
+        for (ARFBaseLearner learner : this.ensemble) {
+            if (learner.bkgLearner != null)
+                backgroundTrees++;
+        }
+        getBackgroundTreesGauge().set(backgroundTrees);
     }
 
     @Override
@@ -417,6 +445,7 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
                     if(this.warningDetectionMethod.getChange()) {
                         this.lastWarningOn = instancesSeen;
                         this.numberOfWarningsDetected++;
+                        WARNINGS_COUNTER.increment();
                         // Create a new bkgTree classifier
                         ARFHoeffdingTree bkgClassifier = (ARFHoeffdingTree) this.classifier.copy();
                         bkgClassifier.resetLearning();
@@ -442,6 +471,7 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
                 if(this.driftDetectionMethod.getChange()) {
                     this.lastDriftOn = instancesSeen;
                     this.numberOfDriftsDetected++;
+                    DRIFTS_COUNTER.increment();
                     this.reset();
                 }
             }
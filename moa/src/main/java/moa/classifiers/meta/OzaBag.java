@@ -26,6 +26,7 @@ import moa.classifiers.AbstractClassifier;
 import moa.classifiers.Classifier;
 import com.yahoo.labs.samoa.instances.Instance;
 
+import moa.classifiers.MergeableClassifier;
 import moa.classifiers.MultiClassClassifier;
 import moa.classifiers.Regressor;
 import moa.core.DoubleVector;
@@ -55,7 +56,7 @@ import com.github.javacliparser.IntOption;
  * @version $Revision: 7 $
  */
 public class OzaBag extends AbstractClassifier implements MultiClassClassifier,
-                                                          CapabilitiesHandler, Regressor {
+                                                          MergeableClassifier, CapabilitiesHandler, Regressor {
 
     @Override
     public String getPurposeString() {
@@ -94,6 +95,22 @@ public class OzaBag extends AbstractClassifier implements MultiClassClassifier,
         }
     }
 
+    /**
+     * Merges the corresponding members of both ensembles.
+     */
+    @Override
+    public void merge(Classifier other) {
+        OzaBag bag = (OzaBag) other;
+        this.trainingWeightSeenByModel += bag.trainingWeightSeenByModel();
+        for (int i = 0; i < this.ensemble.length; i++) {
+            if (!(this.ensemble[i] instanceof MergeableClassifier)) {
+                throw new UnsupportedOperationException("Cannot merge base learner "
+                        + this.ensemble[i].getClass().getName());
+            }
+            ((MergeableClassifier) this.ensemble[i]).merge(bag.ensemble[i]);
+        }
+    }
+
     @Override
     public double[] getVotesForInstance(Instance inst) {
         DoubleVector combinedVote = new DoubleVector();
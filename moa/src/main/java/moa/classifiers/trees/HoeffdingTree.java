@@ -46,6 +46,7 @@ import moa.classifiers.core.splitcriteria.SplitCriterion;
 import moa.core.AutoExpandVector;
 import moa.core.DoubleVector;
 import moa.core.Measurement;
+import moa.core.MetricsRegistry;
 import moa.core.SizeOf;
 import moa.core.StringUtils;
 import moa.core.Utils;
@@ -101,6 +102,12 @@ public class HoeffdingTree extends AbstractClassifier implements MultiClassClass
 
     private static final long serialVersionUID = 1L;
 
+    protected static final MetricsRegistry.Timer SPLIT_ATTEMPTS_TIMER = MetricsRegistry.getDefault().timer(
+            "moa_hoeffding_tree_split_attempts_seconds", "Split attempts of Hoeffding trees and the time spent evaluating them.");
+
+    protected static final MetricsRegistry.Counter SPLITS_COUNTER = MetricsRegistry.getDefault().counter(
+            "moa_hoeffding_tree_splits_total", "Leaves split by Hoeffding trees.");
+
     @Override
     public String getPurposeString() {
         return "Hoeffding Tree or VFDT.";
@@ -569,8 +576,10 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
                 double weightSeen = activeLearningNode.getWeightSeen();
                 if (weightSeen
                         - activeLearningNode.getWeightSeenAtLastSplitEvaluation() >= this.gracePeriodOption.getValue()) {
+                    long splitStartTime = SPLIT_ATTEMPTS_TIMER.start();
                     attemptToSplit(activeLearningNode, foundNode.parent,
                             foundNode.parentBranch);
+                    SPLIT_ATTEMPTS_TIMER.stop(splitStartTime);
                     activeLearningNode.setWeightSeenAtLastSplitEvaluation(weightSeen);
                 }
             }
@@ -726,6 +735,7 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
                     this.activeLeafNodeCount--;
                     this.decisionNodeCount++;
                     this.activeLeafNodeCount += splitDecision.numSplits();
+                    SPLITS_COUNTER.increment();
                     if (parent == null) {
                         this.treeRoot = newSplit;
                     } else {
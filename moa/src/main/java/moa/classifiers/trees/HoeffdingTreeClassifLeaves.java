@@ -175,6 +175,7 @@ public class HoeffdingTreeClassifLeaves extends HoeffdingTree {
                     this.activeLeafNodeCount--;
                     this.decisionNodeCount++;
                     this.activeLeafNodeCount += splitDecision.numSplits();
+                    SPLITS_COUNTER.increment();
                     if (parent == null) {
                         this.treeRoot = newSplit;
                     } else {
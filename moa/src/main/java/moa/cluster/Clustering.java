@@ -32,6 +32,7 @@ import moa.core.AutoExpandVector;
 import moa.gui.visualization.DataPoint;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 
@@ -45,9 +46,8 @@ public class Clustering extends AbstractMOAObject{
 
     public Clustering( Cluster[] clusters ) {
         this.clusters = new AutoExpandVector<Cluster>();
-        for (int i = 0; i < clusters.length; i++) {
-            this.clusters.add(clusters[i]);
-        }
+        // a single addAll, add() trims the vector after every element
+        this.clusters.addAll(Arrays.asList(clusters));
     }
 
     public Clustering(List<? extends Instance> points){
@@ -20,10 +20,11 @@
 
 package moa.clusterers.clustream;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
+import java.util.stream.IntStream;
 import moa.cluster.Cluster;
 import moa.cluster.Clustering;
 import moa.cluster.SphereCluster;
@@ -40,6 +41,12 @@ public class Clustream extends AbstractClusterer{
 
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Minimum number of points for which the k-means assignment step runs in
+	 * parallel.
+	 */
+	public static final int PARALLEL_MIN_POINTS = 1024;
+
 	public IntOption timeWindowOption = new IntOption("horizon",
 			'h', "Rang of the window.", 1000);
 
@@ -242,75 +249,128 @@ public class Clustream extends AbstractClusterer{
 		assert (centers.length == k);
 		assert (k > 0);
 
-		int dimensions = centers[0].getCenter().length;
-
-		ArrayList<ArrayList<Cluster>> clustering = new ArrayList<ArrayList<Cluster>>();
+		double[][] initialCenters = new double[k][];
 		for ( int i = 0; i < k; i++ ) {
-			clustering.add( new ArrayList<Cluster>() );
+			initialCenters[i] = centers[i].getCenter();
 		}
+		double[][] points = getCenters( data );
+		int[] assignment = new int[points.length];
+		double[][] result = kMeans( initialCenters, points, null, 101, true, assignment );
+		return toSphereClustering( result, points, assignment );
+	}
 
-		int repetitions = 100;
-		while ( repetitions-- >= 0 ) {
+	/**
+	 * Returns the centers of the given clusters, computed once per cluster.
+	 */
+	public static double[][] getCenters( List<? extends Cluster> data ) {
+		double[][] points = new double[data.size()][];
+		int i = 0;
+		for ( Cluster point : data ) {
+			points[i++] = point.getCenter();
+		}
+		return points;
+	}
+
+	/**
+	 * k-means (Lloyd's algorithm) over points given as arrays. Stops when the
+	 * centers do not change anymore or after the maximum number of iterations.
+	 * Empty clusters get the origin as center.
+	 *
+	 * @param centers initial centers, not modified
+	 * @param points the points to cluster
+	 * @param weights weight of every point, or null for unit weights
+	 * @param maxIterations maximum number of assignment steps
+	 * @param parallel whether to run the assignment step in parallel for
+	 *        large inputs
+	 * @param assignment if not null, receives the index of the center every
+	 *        point was assigned to in the last iteration
+	 * @return the final centers
+	 */
+	public static double[][] kMeans( double[][] centers, double[][] points, double[] weights,
+			int maxIterations, boolean parallel, int[] assignment ) {
+		final int k = centers.length;
+		final int dimensions = centers[0].length;
+		final int n = points.length;
+		final int[] closest = ( assignment != null ) ? assignment : new int[n];
+		final boolean runParallel = parallel && n >= PARALLEL_MIN_POINTS;
+
+		double[][] current = centers;
+		for ( int iteration = 0; iteration < maxIterations; iteration++ ) {
 			// Assign points to clusters
-			for ( Cluster point : data ) {
-				double minDistance = distance( point.getCenter(), centers[0].getCenter() );
-				int closestCluster = 0;
-				for ( int i = 1; i < k; i++ ) {
-					double distance = distance( point.getCenter(), centers[i].getCenter() );
-					if ( distance < minDistance ) {
-						closestCluster = i;
-						minDistance = distance;
-					}
+			final double[][] c = current;
+			IntStream indices = IntStream.range( 0, n );
+			if ( runParallel ) {
+				indices = indices.parallel();
+			}
+			indices.forEach( p -> closest[p] = closestCenter( points[p], c ) );
+
+			// Calculate new centers, summing up in the order of the points
+			double[][] next = new double[k][dimensions];
+			double[] totalWeight = new double[k];
+			for ( int p = 0; p < n; p++ ) {
+				double w = ( weights != null ) ? weights[p] : 1.0;
+				double[] sum = next[closest[p]];
+				double[] point = points[p];
+				for ( int d = 0; d < dimensions; d++ ) {
+					sum[d] += ( weights != null ) ? w * point[d] : point[d];
 				}
-
-				clustering.get( closestCluster ).add( point );
+				totalWeight[closest[p]] += w;
 			}
-
-			// Calculate new centers and clear clustering lists
-			SphereCluster[] newCenters = new SphereCluster[centers.length];
+			boolean converged = true;
 			for ( int i = 0; i < k; i++ ) {
-				newCenters[i] = calculateCenter( clustering.get( i ), dimensions );
-				clustering.get( i ).clear();
+				if ( totalWeight[i] > 0 ) {
+					for ( int d = 0; d < dimensions; d++ ) {
+						next[i][d] /= totalWeight[i];
+					}
+				}
+				if ( converged && !Arrays.equals( next[i], current[i] ) ) {
+					converged = false;
+				}
+			}
+			current = next;
+			if ( converged ) {
+				break;
 			}
-			centers = newCenters;
 		}
-
-		return new Clustering( centers );
+		return current;
 	}
 
-	private static SphereCluster calculateCenter( ArrayList<Cluster> cluster, int dimensions ) {
-		double[] res = new double[dimensions];
-		for ( int i = 0; i < res.length; i++ ) {
-			res[i] = 0.0;
-		}
-
-		if ( cluster.size() == 0 ) {
-			return new SphereCluster( res, 0.0 );
-		}
-
-		for ( Cluster point : cluster ) {
-			double [] center = point.getCenter();
-			for (int i = 0; i < res.length; i++) {
-				res[i] += center[i];
+	private static int closestCenter( double[] point, double[][] centers ) {
+		double minDistance = distance( point, centers[0] );
+		int closestCluster = 0;
+		for ( int i = 1; i < centers.length; i++ ) {
+			double distance = distance( point, centers[i] );
+			if ( distance < minDistance ) {
+				closestCluster = i;
+				minDistance = distance;
 			}
 		}
+		return closestCluster;
+	}
 
-		// Normalize
-		for ( int i = 0; i < res.length; i++ ) {
-			res[i] /= cluster.size();
+	/**
+	 * Wraps k-means centers into sphere clusters, with the number of assigned
+	 * points as weight and the largest distance to them as radius.
+	 */
+	static Clustering toSphereClustering( double[][] centers, double[][] points, int[] assignment ) {
+		double[] radius = new double[centers.length];
+		int[] count = new int[centers.length];
+		for ( int p = 0; p < points.length; p++ ) {
+			int c = assignment[p];
+			double dist = distance( centers[c], points[p] );
+			if ( dist > radius[c] ) {
+				radius[c] = dist;
+			}
+			count[c]++;
 		}
-
-		// Calculate radius
-		double radius = 0.0;
-		for ( Cluster point : cluster ) {
-			double dist = distance( res, point.getCenter() );
-			if ( dist > radius ) {
-				radius = dist;
+		SphereCluster[] result = new SphereCluster[centers.length];
+		for ( int i = 0; i < centers.length; i++ ) {
+			result[i] = new SphereCluster( centers[i], radius[i] );
+			if ( count[i] > 0 ) {
+				result[i].setWeight( count[i] );
 			}
 		}
-		SphereCluster sc = new SphereCluster( res, radius );
-		sc.setWeight(cluster.size());
-		return sc;
+		return new Clustering( result );
 	}
 
 	@Override
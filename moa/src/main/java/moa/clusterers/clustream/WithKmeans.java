@@ -27,7 +27,6 @@
 package moa.clusterers.clustream;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
@@ -305,53 +304,17 @@ public class WithKmeans extends AbstractClusterer {
 		assert (centers.length == k);
 		assert (k > 0);
 
-		int dimensions = centers[0].getCenter().length;
-
-		ArrayList<ArrayList<Cluster>> clustering = new ArrayList<ArrayList<Cluster>>();
+		double[][] initialCenters = new double[k][];
 		for (int i = 0; i < k; i++) {
-			clustering.add(new ArrayList<Cluster>());
-		}
-
-		while (true) {
-			// Assign points to clusters
-			for (Cluster point : data) {
-				double minDistance = distance(point.getCenter(), centers[0].getCenter());
-				int closestCluster = 0;
-				for (int i = 1; i < k; i++) {
-					double distance = distance(point.getCenter(), centers[i].getCenter());
-					if (distance < minDistance) {
-						closestCluster = i;
-						minDistance = distance;
-					}
-				}
-
-				clustering.get(closestCluster).add(point);
-			}
-
-			// Calculate new centers and clear clustering lists
-			SphereCluster[] newCenters = new SphereCluster[centers.length];
-			for (int i = 0; i < k; i++) {
-				newCenters[i] = calculateCenter(clustering.get(i), dimensions);
-				clustering.get(i).clear();
-			}
-			
-			// Convergence check
-			boolean converged = true;
-			for (int i = 0; i < k; i++) {
-				if (!Arrays.equals(centers[i].getCenter(), newCenters[i].getCenter())) {
-					converged = false;
-					break;
-				}
-			}
-			
-			if (converged) {
-				break;
-			} else {
-				centers = newCenters;
-			}
+			initialCenters[i] = centers[i].getCenter();
 		}
+		double[][] points = Clustream.getCenters(data);
+		int[] assignment = new int[points.length];
+		double[][] result = Clustream.kMeans(initialCenters, points, null,
+				Integer.MAX_VALUE, true, assignment);
 
-		return new Clustering(centers);
+		// radius and weight of the points assigned to each center
+		return Clustream.toSphereClustering(result, points, assignment);
 	}
 	
 	/**
@@ -366,12 +329,18 @@ public class WithKmeans extends AbstractClusterer {
 		int k = kMeansResult.size();
 		CFCluster[] converted = new CFCluster[k];
 
+		double[][] centers = new double[k][];
+		for (int i = 0; i < k; i++) {
+			centers[i] = kMeansResult.get(i).getCenter();
+		}
+
 		for (CFCluster mc : microclusters) {
 		    // Find closest kMeans cluster
+		    double[] mcCenter = mc.getCenter();
 		    double minDistance = Double.MAX_VALUE;
 		    int closestCluster = 0;
 		    for (int i = 0; i < k; i++) {
-		    	double distance = distance(kMeansResult.get(i).getCenter(), mc.getCenter());
+		    	double distance = distance(centers[i], mcCenter);
 				if (distance < minDistance) {
 				    closestCluster = i;
 				    minDistance = distance;
@@ -405,49 +374,6 @@ public class WithKmeans extends AbstractClusterer {
 
 	
 
-	/**
-	 * k-means helper: Calculate a wrapping cluster of assigned points[microclusters].
-	 * 
-	 * @param assigned
-	 * @param dimensions
-	 * @return SphereCluster (with center and radius)
-	 */
-	private static SphereCluster calculateCenter(ArrayList<Cluster> assigned, int dimensions) {
-		double[] result = new double[dimensions];
-		for (int i = 0; i < result.length; i++) {
-			result[i] = 0.0;
-		}
-
-		if (assigned.size() == 0) {
-			return new SphereCluster(result, 0.0);
-		}
-
-		for (Cluster point : assigned) {
-			double[] center = point.getCenter();
-			for (int i = 0; i < result.length; i++) {
-				result[i] += center[i];
-			}
-		}
-
-		// Normalize
-		for (int i = 0; i < result.length; i++) {
-			result[i] /= assigned.size();
-		}
-
-		// Calculate radius: biggest wrapping distance from center
-		double radius = 0.0;
-		for (Cluster point : assigned) {
-			double dist = distance(result, point.getCenter());
-			if (dist > radius) {
-				radius = dist;
-			}
-		}
-		SphereCluster sc = new SphereCluster(result, radius);
-		sc.setWeight(assigned.size());
-		return sc;
-	}
-
-	
 	/** Miscellaneous **/
 	
 	@Override
@@ -138,6 +138,18 @@ public class MicroCluster extends CFCluster {
         return copy;
     }
 
+    /**
+     * Returns a copy that is evaluated at the given timestamp instead of the
+     * clusterer's current time, so it does not change while the clusterer
+     * keeps learning.
+     */
+    public MicroCluster copy(Timestamp timestamp) {
+        MicroCluster copy = copy();
+        copy.currentTimestamp = timestamp;
+        copy.setId(this.getId());
+        return copy;
+    }
+
     @Override
     public double getInclusionProbability(Instance instance) {
         if (getCenterDistance(instance) <= getRadius()) {
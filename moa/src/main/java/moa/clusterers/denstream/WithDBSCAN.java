@@ -25,12 +25,17 @@
 package moa.clusterers.denstream;
 
 import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import moa.cluster.Cluster;
 import moa.cluster.Clustering;
 import moa.clusterers.AbstractClusterer;
 import moa.clusterers.macro.dbscan.DBScan;
 import moa.core.Measurement;
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
 import com.yahoo.labs.samoa.instances.DenseInstance;
@@ -64,6 +69,10 @@ public class WithDBSCAN extends AbstractClusterer {
 	 public IntOption speedOption = new IntOption("processingSpeed", 's',
 				"Number of incoming points per time unit.", 100, 1, 1000);
 
+	 public FlagOption asyncMacroClusteringOption = new FlagOption(
+			 "asyncMacroClustering", 'a',
+			 "Compute the macro clustering on a snapshot of the micro clusters in the background and return the last finished one.");
+
 	private double weightThreshold = 0.01;
 	double lambda;
 	double epsilon;
@@ -86,6 +95,13 @@ public class WithDBSCAN extends AbstractClusterer {
 	protected int processingSpeed;
 	// TODO Some variables to prevent duplicated processes
 
+	/* asynchronous macro clustering */
+	private transient ExecutorService macroClusteringExecutor;
+	private transient Future<Clustering> pendingMacroClustering;
+	private transient MicroCluster[] pendingSources;
+	private transient MicroCluster[] pendingSnapshot;
+	private transient Clustering lastMacroClustering;
+
 	private class DenPoint extends DenseInstance {
 		
 		private static final long serialVersionUID = 1L;
@@ -120,6 +136,13 @@ public class WithDBSCAN extends AbstractClusterer {
 		
 		numProcessedPerUnit = 0;
 		processingSpeed = speedOption.getValue();
+
+		if (macroClusteringExecutor != null) {
+			macroClusteringExecutor.shutdownNow();
+			macroClusteringExecutor = null;
+		}
+		pendingMacroClustering = null;
+		lastMacroClustering = null;
 	}
 
 	public void initialDBScan() {
@@ -290,10 +313,72 @@ public class WithDBSCAN extends AbstractClusterer {
 	}
 
 	public Clustering getClusteringResult() {
+		if (asyncMacroClusteringOption.isSet()) {
+			return getAsyncClusteringResult();
+		}
 		DBScan dbscan = new DBScan(p_micro_cluster,offlineOption.getValue() * epsilon, minPoints);
 		return dbscan.getClustering(p_micro_cluster);
 	}
 
+	/**
+	 * Returns the last finished macro clustering and starts computing a new
+	 * one on a snapshot of the current micro clusters, unless one is still
+	 * running. Only the first call waits for its result.
+	 */
+	private Clustering getAsyncClusteringResult() {
+		if (pendingMacroClustering != null && pendingMacroClustering.isDone()) {
+			collectMacroClustering();
+		}
+		if (pendingMacroClustering == null) {
+			submitMacroClustering();
+		}
+		if (lastMacroClustering == null) {
+			collectMacroClustering();
+		}
+		return lastMacroClustering;
+	}
+
+	private void submitMacroClustering() {
+		if (macroClusteringExecutor == null) {
+			macroClusteringExecutor = Executors.newSingleThreadExecutor(r -> {
+				Thread t = new Thread(r, "DenStream-DBSCAN");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		Timestamp now = new Timestamp(currentTimestamp.getTimestamp());
+		pendingSources = new MicroCluster[p_micro_cluster.size()];
+		pendingSnapshot = new MicroCluster[pendingSources.length];
+		final Clustering snapshot = new Clustering();
+		for (int i = 0; i < pendingSources.length; i++) {
+			pendingSources[i] = (MicroCluster) p_micro_cluster.get(i);
+			pendingSnapshot[i] = pendingSources[i].copy(now);
+			snapshot.add(pendingSnapshot[i]);
+		}
+		final double eps = offlineOption.getValue() * epsilon;
+		final int minPts = minPoints;
+		pendingMacroClustering = macroClusteringExecutor.submit(
+				() -> new DBScan(snapshot, eps, minPts).getClustering(snapshot));
+	}
+
+	private void collectMacroClustering() {
+		try {
+			lastMacroClustering = pendingMacroClustering.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		// hand the cluster ids assigned by DBSCAN back to the micro clusters
+		for (int i = 0; i < pendingSources.length; i++) {
+			pendingSources[i].setId(pendingSnapshot[i].getId());
+		}
+		pendingMacroClustering = null;
+		pendingSources = null;
+		pendingSnapshot = null;
+	}
+
 	@Override
 	public boolean implementsMicroClusterer() {
 		return true;
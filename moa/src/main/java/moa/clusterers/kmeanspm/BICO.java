@@ -26,6 +26,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
 import com.yahoo.labs.samoa.instances.Instance;
 
@@ -65,6 +66,9 @@ public class BICO extends AbstractClusterer {
 			"Number of random projections used for the nearest neighbour search.",
 			10, 1, Integer.MAX_VALUE);
 
+	public FlagOption parallelKMeansOption = new FlagOption("ParallelKMeans",
+			'l', "Computes the distances of the k-means++ seeding and the k-means steps on the coreset in parallel.");
+
 	protected int numClusters;
 	protected int numDimensions;
 	protected int maxNumClusterFeatures;
@@ -75,6 +79,8 @@ public class BICO extends AbstractClusterer {
 	private double minDistance;
 	private int pairwiseDifferent;
 
+	private double[] pointBuffer;
+
 	private ClusteringTreeNode root;
 	private int rootCount;
 	private double T;
@@ -191,9 +197,11 @@ public class BICO extends AbstractClusterer {
 			// Creates the starting centroids
 			List<double[]> newResult = CoresetKMeans
 					.generatekMeansPlusPlusCentroids(this.numClusters,
-							microClustering, this.clustererRandom);
+							microClustering, this.clustererRandom,
+							this.parallelKMeansOption.isSet());
 			// Runs the k-means algorithm with changing the starting centroids
-			double newValue = CoresetKMeans.kMeans(newResult, microClustering);
+			double newValue = CoresetKMeans.kMeans(newResult, microClustering,
+					this.parallelKMeansOption.isSet());
 			// Selects the result with minimum costs
 			if (newValue < minValue) {
 				result = newResult;
@@ -227,6 +235,7 @@ public class BICO extends AbstractClusterer {
 				this.maxNumClusterFeaturesOption.getValue() + 1);
 		this.minDistance = Double.POSITIVE_INFINITY;
 		this.pairwiseDifferent = 0;
+		this.pointBuffer = new double[this.numDimensions];
 
 		int hashSize = (int) Math.ceil(Math.log(
 				5 * this.maxNumClusterFeaturesOption.getValue()) / Math.log(2));
@@ -245,12 +254,18 @@ public class BICO extends AbstractClusterer {
 	 */
 	@Override
 	public void trainOnInstanceImpl(Instance inst) {
-		double[] x = inst.toDoubleArray();
-		if (this.numDimensions != x.length) {
+		if (this.numDimensions != inst.numAttributes()) {
 			System.out.println("Line skipped because line dimension is "
-					+ x.length + " instead of " + this.numDimensions);
+					+ inst.numAttributes() + " instead of " + this.numDimensions);
 			return;
 		}
+		// Points in the buffer are kept, afterwards the values are only copied
+		// if a new node is created
+		double[] x = this.bufferPhase ? new double[this.numDimensions]
+				: this.pointBuffer;
+		for (int i = 0; i < x.length; i++) {
+			x[i] = inst.value(i);
+		}
 		// Starts with the buffer phase to calculate the starting threshold
 		if (this.bufferPhase) {
 			// Calculates the pairwise distance to all unequal point in the
@@ -286,7 +301,9 @@ public class BICO extends AbstractClusterer {
 	}
 
 	/**
-	 * Inserts a new point into the ClusteringFeature tree.
+	 * Inserts a new point into the ClusteringFeature tree. The point is copied
+	 * if it becomes the center of a new node, so the array may be reused by the
+	 * caller.
 	 *
 	 * @param x
 	 *            the point
@@ -304,7 +321,9 @@ public class BICO extends AbstractClusterer {
 					|| Metric.distanceSquared(x, y.getCenter()) > calcRSquared(i)) {
 				// Creates a new node for the point and adds it to the current
 				// root node
-				r.addChild(new ClusteringTreeNode(x, new ClusteringFeature(x, calcR(i))));
+				double[] center = x.clone();
+				r.addChild(new ClusteringTreeNode(center, new ClusteringFeature(
+						center, calcR(i))));
 				this.rootCount++;
 				break;
 			} else {
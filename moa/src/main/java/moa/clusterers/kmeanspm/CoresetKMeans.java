@@ -23,6 +23,8 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
  * Provides methods to execute the k-means and k-means++ algorithm with a
@@ -35,6 +37,35 @@ import java.util.Random;
  */
 public class CoresetKMeans {
 
+	/**
+	 * Minimum number of points for which the distance computations are
+	 * executed in parallel.
+	 */
+	public static final int PARALLEL_MIN_POINTS = 1024;
+
+	/**
+	 * Executes the body for all point indices, in parallel if requested and
+	 * the number of points is large enough. The body must only write to the
+	 * entries belonging to its index, so the results do not depend on the
+	 * execution order.
+	 *
+	 * @param n
+	 *            number of points
+	 * @param parallel
+	 *            whether to use the common fork/join pool
+	 * @param body
+	 *            the computation for one point index
+	 */
+	private static void forEachPoint(int n, boolean parallel, IntConsumer body) {
+		if (parallel && n >= PARALLEL_MIN_POINTS) {
+			IntStream.range(0, n).parallel().forEach(body);
+		} else {
+			for (int j = 0; j < n; j++) {
+				body.accept(j);
+			}
+		}
+	}
+
 	/**
 	 * Generates the initial centroids like the k-means++ algorithm.
 	 *
@@ -48,6 +79,27 @@ public class CoresetKMeans {
 	 */
 	public static List<double[]> generatekMeansPlusPlusCentroids(int k,
 			List<double[]> input, Random random) {
+		return generatekMeansPlusPlusCentroids(k, input, random, false);
+	}
+
+	/**
+	 * Generates the initial centroids like the k-means++ algorithm. The
+	 * distance updates after each selected centroid can be computed in
+	 * parallel, the random choices stay sequential so the result is the same
+	 * as for the sequential version.
+	 *
+	 * @param k
+	 *            number of centroids
+	 * @param input
+	 *            input clustering
+	 * @param random
+	 *            instance to generate a stream of pseudorandom numbers
+	 * @param parallel
+	 *            whether to compute the distances in parallel
+	 * @return the generated centroids
+	 */
+	public static List<double[]> generatekMeansPlusPlusCentroids(int k,
+			List<double[]> input, Random random, boolean parallel) {
 		int n = input.size();
 		assert (n > 0);
 		int d = input.get(0).length - 1;
@@ -59,23 +111,20 @@ public class CoresetKMeans {
 		System.arraycopy(input.get(random.nextInt(n)), 1, lastCenter, 0, d);
 		centerValue.add(lastCenter);
 
-		double[] distance = new double[n];
+		final double[][] points = input.toArray(new double[n][]);
+		final double[] distance = new double[n];
 		for (int j = 0; j < n; j++) {
 			distance[j] = Double.POSITIVE_INFINITY;
 		}
 		for (int i = 1; i < k; i++) {
+			// Updates the distances to the last selected centroid
+			final double[] center = lastCenter;
+			forEachPoint(n, parallel, j -> distance[j] = Math.min(distance[j],
+					points[j][0] * Metric.distanceSquared(center, points[j], 1)));
 			// Selects the next centroid
 			double sum = 0.0;
-			Iterator<double[]> jIter = input.iterator();
 			for (int j = 0; j < n; j++) {
-				double[] point = jIter.next();
-				distance[j] = Math
-						.min(distance[j],
-								point[0]
-										* Metric.distanceSquared(lastCenter,
-												point, 1));
 				sum += distance[j];
-
 			}
 			int candidate = 0;
 			if (sum > 0) {
@@ -87,7 +136,7 @@ public class CoresetKMeans {
 			}
 			// Copies the selected centroid
 			lastCenter = new double[d];
-			System.arraycopy(input.get(candidate), 1, lastCenter, 0, d);
+			System.arraycopy(points[candidate], 1, lastCenter, 0, d);
 			centerValue.add(lastCenter);
 		}
 
@@ -105,12 +154,32 @@ public class CoresetKMeans {
 	 * @return the k-means costs
 	 */
 	public static double kMeans(List<double[]> centroids, List<double[]> input) {
-		int k = centroids.size();
+		return kMeans(centroids, input, false);
+	}
+
+	/**
+	 * Executes the k-means algorithm with the given initial centroids until the
+	 * costs converges. The assignment of the points to their nearest centroid
+	 * can be computed in parallel, the centroids are summed up sequentially so
+	 * the result is the same as for the sequential version.
+	 *
+	 * @param centroids
+	 *            initial centroids
+	 * @param input
+	 *            input clustering
+	 * @param parallel
+	 *            whether to assign the points in parallel
+	 * @return the k-means costs
+	 */
+	public static double kMeans(List<double[]> centroids, List<double[]> input,
+			boolean parallel) {
+		final int k = centroids.size();
 		assert (k > 0);
 		int d = centroids.get(0).length;
 		int size = input.size();
 
-		double[][] center = new double[k][];
+		final double[][] points = input.toArray(new double[size][]);
+		final double[][] center = new double[k][];
 		Iterator<double[]> iIter = centroids.iterator();
 		for (int i = 0; i < k; i++) {
 			center[i] = iIter.next();
@@ -118,7 +187,7 @@ public class CoresetKMeans {
 
 		double[][] newCenter = new double[k][d];
 		double[] newCenterWeight = new double[k];
-		int[] nearestCluster = new int[size];
+		final int[] nearestCluster = new int[size];
 		boolean converged;
 		do {
 			for (int i = 0; i < k; i++) {
@@ -127,10 +196,9 @@ public class CoresetKMeans {
 				}
 				newCenterWeight[i] = 0.0;
 			}
-			Iterator<double[]> lIter = input.iterator();
-			for (int l = 0; l < size; l++) {
-				// Calculates the distance from all points to all centroids
-				double[] point = lIter.next();
+			// Calculates the distance from all points to all centroids
+			forEachPoint(size, parallel, l -> {
+				double[] point = points[l];
 				assert (d == point.length - 1);
 				double minDistance = Double.POSITIVE_INFINITY;
 				int closestCluster = -1;
@@ -141,14 +209,18 @@ public class CoresetKMeans {
 						minDistance = distance;
 					}
 				}
-
-				// Sums up all points for the new centroids
 				assert (closestCluster >= 0 && closestCluster < k);
+				nearestCluster[l] = closestCluster;
+			});
+
+			// Sums up all points for the new centroids
+			for (int l = 0; l < size; l++) {
+				double[] point = points[l];
+				int closestCluster = nearestCluster[l];
 				for (int j = 0; j < d; j++) {
 					newCenter[closestCluster][j] += point[0] * point[j + 1];
 				}
 				newCenterWeight[closestCluster] += point[0];
-				nearestCluster[l] = closestCluster;
 			}
 
 			// Calculates the new centroids
@@ -172,9 +244,8 @@ public class CoresetKMeans {
 
 		// Calculates the costs of the solution
 		double costs = 0.0;
-		Iterator<double[]> lIter = input.iterator();
 		for (int l = 0; l < size; l++) {
-			double[] point = lIter.next();
+			double[] point = points[l];
 			costs += point[0]
 					* Metric.distanceSquared(center[nearestCluster[l]], point,
 							1);
@@ -24,8 +24,11 @@
 package moa.clusterers.macro.dbscan;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Vector;
+import java.util.stream.IntStream;
 
 import moa.cluster.CFCluster;
 import moa.cluster.Cluster;
@@ -35,6 +38,12 @@ import moa.clusterers.macro.NonConvexCluster;
 
 public class DBScan extends AbstractMacroClusterer {
 
+	/**
+	 * Minimum number of micro clusters for which the neighbourhoods are
+	 * computed in parallel.
+	 */
+	public static final int PARALLEL_MIN_CLUSTERS = 512;
+
 	Clustering datasource;
 	private double mEps;
 	private int mMinPts;
@@ -45,30 +54,36 @@ public class DBScan extends AbstractMacroClusterer {
 		mMinPts = MinPts;
 	}
 
-	private ArrayList<DenseMicroCluster> expandCluster(DenseMicroCluster dmc,
-			List<DenseMicroCluster> neighbours,
+	private ArrayList<DenseMicroCluster> expandCluster(int start,
+			int[][] neighbourhoods,
 			ArrayList<DenseMicroCluster> arrayList,
-			Vector<DenseMicroCluster> dbmc) {
+			List<DenseMicroCluster> dbmc) {
 
+		DenseMicroCluster dmc = dbmc.get(start);
 		if (!dmc.isClustered()) {
 			dmc.setClustered();
 			arrayList.add(dmc);
 		}
-		while (!neighbours.isEmpty()) {
-			DenseMicroCluster mc = neighbours.get(0);
-			neighbours.remove(0);
+		// FIFO queue of micro cluster indices, may contain duplicates
+		int[] queue = Arrays.copyOf(neighbourhoods[start],
+				Math.max(16, 2 * neighbourhoods[start].length));
+		int head = 0;
+		int tail = neighbourhoods[start].length;
+		while (head < tail) {
+			int m = queue[head++];
+			DenseMicroCluster mc = dbmc.get(m);
 			if (!mc.isVisited()) {
 				mc.setVisited();
-				List<DenseMicroCluster> neighbours2 = getNeighbourhood(mc, dbmc);
-				if (neighbours2.size() >= mMinPts) {
-					while (!neighbours2.isEmpty()) {
-						DenseMicroCluster temp = neighbours2.get(0);
-						neighbours2.remove(0);
-						if (!temp.isVisited()) {
-							neighbours.add(temp);
+				int[] neighbours2 = neighbourhoods[m];
+				if (neighbours2.length >= mMinPts) {
+					for (int t : neighbours2) {
+						if (!dbmc.get(t).isVisited()) {
+							if (tail == queue.length) {
+								queue = Arrays.copyOf(queue, 2 * queue.length);
+							}
+							queue[tail++] = t;
 						}
 					}
-					neighbours.addAll(neighbours2);
 					if (!mc.isClustered()) {
 						mc.setClustered();
 						arrayList.add(mc);
@@ -79,15 +94,58 @@ public class DBScan extends AbstractMacroClusterer {
 		return arrayList;
 	}
 
-	private List<DenseMicroCluster> getNeighbourhood(DenseMicroCluster mc,
-			Vector<DenseMicroCluster> dbmc) {
-		List<DenseMicroCluster> res = new Vector<DenseMicroCluster>();
-		for (DenseMicroCluster dmc : dbmc) {
-			if (distance(dmc.getCFCluster().getCenter(), mc.getCFCluster().getCenter()) < mEps) {
-				res.add(dmc);
-			}
+	/**
+	 * Computes the eps-neighbourhood of every center, as indices in ascending
+	 * order. The centers are sorted along the first dimension, so only centers
+	 * closer than eps in that dimension are compared.
+	 *
+	 * @param centers
+	 *            the micro cluster centers
+	 * @return the neighbourhood indices per center (including the center)
+	 */
+	private int[][] getNeighbourhoods(final double[][] centers) {
+		final int n = centers.length;
+		Integer[] sorted = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			sorted[i] = i;
+		}
+		Arrays.sort(sorted, Comparator.comparingDouble(i -> centers[i][0]));
+		final int[] order = new int[n];
+		final int[] position = new int[n];
+		for (int p = 0; p < n; p++) {
+			order[p] = sorted[p];
+			position[sorted[p]] = p;
 		}
-		return res;
+
+		final int[][] neighbourhoods = new int[n][];
+		IntStream indices = IntStream.range(0, n);
+		if (n >= PARALLEL_MIN_CLUSTERS) {
+			indices = indices.parallel();
+		}
+		indices.forEach(i -> {
+			double[] center = centers[i];
+			int[] res = new int[8];
+			int size = 0;
+			for (int dir = -1; dir <= 1; dir += 2) {
+				for (int p = (dir < 0) ? position[i] : position[i] + 1;
+						p >= 0 && p < n; p += dir) {
+					double[] other = centers[order[p]];
+					if (Math.abs(other[0] - center[0]) > mEps) {
+						break;
+					}
+					if (distance(other, center) < mEps) {
+						if (size == res.length) {
+							res = Arrays.copyOf(res, 2 * size);
+						}
+						res[size++] = order[p];
+					}
+				}
+			}
+			res = Arrays.copyOf(res, size);
+			Arrays.sort(res);
+			neighbourhoods[i] = res;
+		});
+		return neighbourhoods;
 	}
 
 	/**
@@ -108,26 +166,30 @@ public class DBScan extends AbstractMacroClusterer {
 	@Override
 	public Clustering getClustering(Clustering microClusters) {
 		if (microClusters != null && microClusters.size() != 0) {
-			Vector<DenseMicroCluster> dbmc = new Vector<DenseMicroCluster>();
+			ArrayList<DenseMicroCluster> dbmc = new ArrayList<DenseMicroCluster>(
+					microClusters.size());
+			double[][] centers = new double[microClusters.size()][];
 			for (Cluster c : microClusters.getClustering()) {
 				CFCluster cf = null;
 				if (c instanceof CFCluster) {
 					cf = (CFCluster) c;
+					// getCenter() may compute a new array on every call
+					centers[dbmc.size()] = cf.getCenter();
 					dbmc.add(new DenseMicroCluster(cf));
 				} else
 					throw new RuntimeException();
 			}
+			int[][] neighbourhoods = getNeighbourhoods(centers);
 
 			ArrayList<ArrayList<DenseMicroCluster>> clusters = new ArrayList<ArrayList<DenseMicroCluster>>();
 
-			for (DenseMicroCluster dmc : dbmc) {
+			for (int i = 0; i < dbmc.size(); i++) {
+				DenseMicroCluster dmc = dbmc.get(i);
 				if (!dmc.isVisited()) {
 					dmc.setVisited();
-					List<DenseMicroCluster> neighbours = getNeighbourhood(dmc,
-							dbmc);
-					if (neighbours.size() >= mMinPts) {
+					if (neighbourhoods[i].length >= mMinPts) {
 						ArrayList<DenseMicroCluster> cluster = expandCluster(
-								dmc, neighbours,
+								i, neighbourhoods,
 								new ArrayList<DenseMicroCluster>(), dbmc);
 						clusters.add(cluster);
 					}
@@ -5,9 +5,12 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.github.javacliparser.FileOption;
 import com.google.gson.Gson;
@@ -22,6 +25,8 @@ import moa.clusterers.Clusterer;
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
 import moa.evaluation.MeasureCollection;
+import moa.evaluation.PointDistanceCache;
+import moa.evaluation.SilhouetteCoefficient;
 import moa.gui.visualization.DataPoint;
 import moa.options.ClassOption;
 import moa.streams.clustering.RandomRBFGeneratorEvents;
@@ -69,6 +74,7 @@ class GeneralConfiguration {
 	public boolean useTestEnsemble = true;
 	public double resetProbability = 0.01;
 	public int numberOfCores = 1;
+	public boolean shareDistanceCache = true;
 	public String performanceMeasure = "SilhouetteCoefficient";
 	public boolean performanceMeasureMaximisation = true;
 }
@@ -90,6 +96,8 @@ public abstract class EnsembleClustererAbstract extends AbstractClusterer {
 	int verbose = 0;
 	protected ExecutorService executor;
 	int numberOfCores;
+	// pairwise distances of the current window, shared by all members during evaluation
+	protected transient PointDistanceCache distanceCache;
 
 	// the file option dialogue in the UI
 	public FileOption fileOption = new FileOption("ConfigurationFile", 'f', "Configuration file in json format.",
@@ -202,11 +210,15 @@ public abstract class EnsembleClustererAbstract extends AbstractClusterer {
 			System.out.println(" ");
 			System.out.println("---- Evaluate performance of current ensemble:");
 		}
+		if (this.settings.shareDistanceCache) {
+			this.distanceCache = new PointDistanceCache(this.windowPoints);
+		}
 		evaluatePerformance();
 
 		if (this.settings.useTestEnsemble) {
 			promoteCandidatesIntoEnsemble();
 		}
+		this.distanceCache = null;
 
 		if (this.verbose >= 1) {
 			System.out.println("Clusterer " + this.bestModel + " ("
@@ -227,13 +239,14 @@ public abstract class EnsembleClustererAbstract extends AbstractClusterer {
 		HashMap<String, Integer> algorithmCount = new HashMap<String, Integer>();
 
 		this.performanceMeasures = new ArrayList<Double>(this.ensemble.size());
+		double[] performances = computePerformanceMeasures(this.ensemble);
 		double bestPerformance = Double.NEGATIVE_INFINITY;
 		for (int i = 0; i < this.ensemble.size(); i++) {
 
 			// predict performance just for evaluation
 			predictPerformance(this.ensemble.get(i));
 
-			double performance = computePerformanceMeasure(this.ensemble.get(i));
+			double performance = performances[i];
 			this.performanceMeasures.add(performance);
 			if (performance > bestPerformance) {
 				this.bestModel = i;
@@ -259,10 +272,37 @@ public abstract class EnsembleClustererAbstract extends AbstractClusterer {
 		updateRemovalFlags(bestPerformanceValMap, bestPerformanceIdxMap, algorithmCount);
 	}
 
+	// evaluate all algorithms on the current window, in parallel if multiple cores are used
+	protected double[] computePerformanceMeasures(List<Algorithm> algorithms) {
+		double[] performances = new double[algorithms.size()];
+		if (this.numberOfCores == 1 || algorithms.size() <= 1) {
+			for (int i = 0; i < algorithms.size(); i++) {
+				performances[i] = computePerformanceMeasure(algorithms.get(i));
+			}
+		} else {
+			ArrayList<EnsembleEvaluator> evaluators = new ArrayList<EnsembleEvaluator>(algorithms.size());
+			for (Algorithm algorithm : algorithms) {
+				evaluators.add(new EnsembleEvaluator(algorithm));
+			}
+			try {
+				List<Future<Double>> results = this.executor.invokeAll(evaluators);
+				for (int i = 0; i < results.size(); i++) {
+					performances[i] = results.get(i).get();
+				}
+			} catch (InterruptedException | ExecutionException ex) {
+				throw new RuntimeException("Could not evaluate the ensemble in parallel.", ex);
+			}
+		}
+		return performances;
+	}
+
 	protected double computePerformanceMeasure(Algorithm algorithm) {
 
 		ClassOption opt = new ClassOption("", ' ', "", MeasureCollection.class, this.settings.performanceMeasure);
 		MeasureCollection performanceMeasure = (MeasureCollection) opt.materializeObject(null, null);
+		if (this.distanceCache != null && performanceMeasure instanceof SilhouetteCoefficient) {
+			((SilhouetteCoefficient) performanceMeasure).setDistanceCache(this.distanceCache);
+		}
 
 		// compare micro-clusters
 		Clustering result = null;
@@ -306,6 +346,9 @@ public abstract class EnsembleClustererAbstract extends AbstractClusterer {
 
 	protected void promoteCandidatesIntoEnsemble() {
 
+		// evaluate
+		double[] performances = computePerformanceMeasures(this.candidateEnsemble);
+
 		for (int i = 0; i < this.candidateEnsemble.size(); i++) {
 
 			Algorithm newAlgorithm = this.candidateEnsemble.get(i);
@@ -313,8 +356,7 @@ public abstract class EnsembleClustererAbstract extends AbstractClusterer {
 			// predict performance just for evaluation
 			predictPerformance(newAlgorithm);
 
-			// evaluate
-			double performance = computePerformanceMeasure(newAlgorithm);
+			double performance = performances[i];
 
 			if (this.verbose >= 1) {
 				System.out.println("Test " + i + ") " + newAlgorithm.clusterer.getCLICreationString(Clusterer.class)
@@ -690,6 +732,20 @@ public abstract class EnsembleClustererAbstract extends AbstractClusterer {
 		}
 	}
 
+	// Helper class for evaluating the ensemble members in parallel
+	protected class EnsembleEvaluator implements Callable<Double> {
+		final private Algorithm algorithm;
+
+		public EnsembleEvaluator(Algorithm algorithm) {
+			this.algorithm = algorithm;
+		}
+
+		@Override
+		public Double call() throws Exception {
+			return computePerformanceMeasure(this.algorithm);
+		}
+	}
+
 	public static void main(String[] args) throws Exception {
 
 		// create a stream
@@ -21,6 +21,7 @@
 package moa.clusterers.outliers.MCOD;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.TreeSet;
 import java.util.Vector;
 import moa.clusterers.outliers.MCOD.ISBIndex.ISBNode;
@@ -403,4 +404,45 @@ public class MCOD extends MCODBase {
             PrintPD();
         }
     }
+    
+    @Override
+    protected void ProcessNewSlide(List<Instance> insts)
+    {
+        if (insts.size() == 1) {
+            ProcessNewStreamObj(insts.get(0));
+            return;
+        }
+        
+        if (bShowProgress) ShowProgress("Processed " + (objId-1) + " stream objects.");
+        if (bTrace) Println("\n- - - - - - - - - - - -\nNew slide of " + insts.size() + " objects");
+        
+        // create the nodes of the slide and advance the window by the whole slide
+        ArrayList<ISBNode> nodesNew = new ArrayList<ISBNode>(insts.size());
+        for (Instance inst : insts) {
+            StreamObj obj = new StreamObj(getInstanceValues(inst));
+            nodesNew.add(new ISBNode(inst, obj, objId));
+            objId++;
+        }
+        
+        // process all departures of the slide first, so that expired nodes 
+        // are neither found by nor counted for the arrivals
+        ISBNode nodeExpired = GetExpiredNode();
+        while (nodeExpired != null) {
+            ProcessExpiredNode(nodeExpired);
+            nodeExpired = GetExpiredNode();
+        }
+        
+        // then the arrivals, in stream order
+        for (ISBNode nodeNew : nodesNew) {
+            if (bTrace) { Print("New node: "); PrintNode(nodeNew); }
+            AddNode(nodeNew);
+            ProcessNewNode(nodeNew, true);
+        }
+        
+        if (bTrace) {
+            Print("Micro-clusters: "); PrintMCSet(setMC);
+            PrintOutliers();
+            PrintPD();
+        }
+    }
 }
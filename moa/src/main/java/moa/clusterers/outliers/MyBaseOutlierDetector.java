@@ -23,15 +23,21 @@ package moa.clusterers.outliers;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import moa.cluster.Cluster;
 import moa.cluster.Clustering;
 import moa.cluster.SphereCluster;
 import moa.clusterers.AbstractClusterer;
 import moa.core.Measurement;
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
 import com.yahoo.labs.samoa.instances.Instance;
 
@@ -75,6 +81,13 @@ public abstract class MyBaseOutlierDetector extends AbstractClusterer {
     
     public IntOption windowSizeOption = new IntOption("windowSize", 'w', "Size of the window.", 1000);
     
+    public IntOption slideSizeOption = new IntOption("slideSize", 'l', 
+            "Number of objects the window advances per slide (arrivals and expirations are processed as a batch).", 
+            1, 1, Integer.MAX_VALUE);
+    
+    public FlagOption asyncNotifierOption = new FlagOption("asyncNotifier", 'n', 
+            "Deliver outlier notifications from a background thread, one batch per slide.");
+    
     public OutlierNotifier outlierNotifier = null;   
     
     protected Random random;
@@ -87,8 +100,32 @@ public abstract class MyBaseOutlierDetector extends AbstractClusterer {
     private TreeSet<Outlier> outliersFound;
     private Long m_timePreObjSum;
     private int nProcessed;
+    private int m_timePreObjCount;
     private static final int m_timePreObjInterval = 100;
     
+    // objects of the current slide not yet processed
+    private ArrayList<Instance> slideBuffer;
+    // per-slide latency statistics (ns)
+    private long nSlidesProcessed;
+    private long nsLastSlide;
+    private long nsSumSlides;
+    private long nsMaxSlide;
+    
+    // notifications raised during the current slide (async mode only)
+    private ArrayList<NotifierEvent> pendingEvents;
+    private transient ExecutorService notifierExecutor;
+    private final AtomicInteger nQueuedEvents = new AtomicInteger();
+    
+    private static class NotifierEvent {
+        final Outlier outlier;
+        final boolean bOutlier;
+        
+        NotifierEvent(Outlier outlier, boolean bOutlier) {
+            this.outlier = outlier;
+            this.bOutlier = bOutlier;
+        }
+    }
+    
     protected void UpdateMaxMemUsage() {
         int x = GetMemoryUsage();
         if (iMaxMemUsage < x) iMaxMemUsage = x;
@@ -134,9 +171,23 @@ public abstract class MyBaseOutlierDetector extends AbstractClusterer {
         outliersFound = new TreeSet<Outlier>();
         
         m_timePreObjSum = 0L;
+        m_timePreObjCount = 0;
         nProcessed = 0;
         nTimePerObj = 0L;
         
+        slideBuffer = new ArrayList<Instance>(slideSizeOption.getValue());
+        nSlidesProcessed = 0;
+        nsLastSlide = 0;
+        nsSumSlides = 0;
+        nsMaxSlide = 0;
+        
+        pendingEvents = new ArrayList<NotifierEvent>();
+        if (notifierExecutor != null) {
+            // let already queued notifications be delivered
+            notifierExecutor.shutdown();
+            notifierExecutor = null;
+        }
+        
         StdPrintMsg printer = new StdPrintMsg();
         printer.RedirectToDisplay();
         
@@ -152,22 +203,52 @@ public abstract class MyBaseOutlierDetector extends AbstractClusterer {
     }
     
     public void processNewInstanceImpl(Instance inst) {        
+        slideBuffer.add(inst);
+        if (slideBuffer.size() >= slideSizeOption.getValue()) {
+            ProcessSlideBuffer();
+        }
+    }
+    
+    /**
+     * Processes the objects of an incomplete slide, e.g. at the end of the stream.
+     * Nothing else does, so the slide boundaries depend only on the stream.
+     */
+    public void flushSlide() {
+        if (slideBuffer.size() > 0) {
+            ProcessSlideBuffer();
+        }
+    }
+    
+    private void ProcessSlideBuffer() {
         Long nsNow = System.nanoTime(); 
+        int nObjs = slideBuffer.size();
         
-        ProcessNewStreamObj(inst);
+        ProcessNewSlide(slideBuffer);
+        slideBuffer.clear();
         
         UpdateMaxMemUsage();
-        nTotalRunTime += (System.nanoTime() - nsNow) / (1024 * 1024);
+        long nsSlide = System.nanoTime() - nsNow;
+        nTotalRunTime += nsSlide / (1024 * 1024);
+        
+        // update slide latency
+        nSlidesProcessed++;
+        nsLastSlide = nsSlide;
+        nsSumSlides += nsSlide;
+        if (nsMaxSlide < nsSlide) nsMaxSlide = nsSlide;
         
         // update process time per object   
-        nProcessed++;
-        m_timePreObjSum += System.nanoTime() - nsNow;
-        if (nProcessed % m_timePreObjInterval == 0) {           
-            nTimePerObj = ((double) m_timePreObjSum) / ((double) m_timePreObjInterval);
+        nProcessed += nObjs;
+        m_timePreObjCount += nObjs;
+        m_timePreObjSum += nsSlide;
+        if (m_timePreObjCount >= m_timePreObjInterval) {           
+            nTimePerObj = ((double) m_timePreObjSum) / ((double) m_timePreObjCount);
             if (bShowProgress) ShowTimePerObj();
             // init
             m_timePreObjSum = 0L;
+            m_timePreObjCount = 0;
         }
+        
+        DispatchPendingEvents();
     }
     
     private void ShowTimePerObj() {
@@ -179,6 +260,47 @@ public abstract class MyBaseOutlierDetector extends AbstractClusterer {
         throw new UnsupportedOperationException("Not yet implemented");
     }
     
+    /**
+     * Processes the arrivals of one slide. Detectors that can handle the 
+     * expirations and arrivals of a slide as a batch override this method, 
+     * the default processes the objects one at a time.
+     * 
+     * @param insts the objects arriving in the slide, oldest first
+     */
+    protected void ProcessNewSlide(List<Instance> insts) {
+        for (Instance inst : insts) {
+            ProcessNewStreamObj(inst);
+        }
+    }
+    
+    /**
+     * Returns the number of objects of the incomplete slide, which aren't
+     * processed yet.
+     */
+    public int getBufferedObjects() {
+        return slideBuffer.size();
+    }
+    
+    public long getSlidesProcessed() {
+        return nSlidesProcessed;
+    }
+    
+    public double getLastSlideLatency() {
+        return nsLastSlide / (1000.0 * 1000.0);
+    }
+    
+    public double getMeanSlideLatency() {
+        return (nSlidesProcessed > 0) ? (nsSumSlides / (double) nSlidesProcessed) / (1000.0 * 1000.0) : 0.0;
+    }
+    
+    public double getMaxSlideLatency() {
+        return nsMaxSlide / (1000.0 * 1000.0);
+    }
+    
+    public int getQueuedNotifications() {
+        return nQueuedEvents.get();
+    }
+    
     public void PrintOutliers() {        
         Print("Outliers: ");        
         for (Outlier o : outliersFound) {
@@ -224,7 +346,7 @@ public abstract class MyBaseOutlierDetector extends AbstractClusterer {
     protected void AddOutlier(Outlier newOutlier) {
         boolean bNewAdd = outliersFound.add(newOutlier);
         if ((outlierNotifier != null) && bNewAdd) {
-            outlierNotifier.OnOutlier(newOutlier);
+            Notify(newOutlier, true);
         }
     }
     
@@ -236,10 +358,46 @@ public abstract class MyBaseOutlierDetector extends AbstractClusterer {
     protected boolean RemoveOutlier(Outlier outlier) {
         boolean bFound = outliersFound.remove(outlier);
         if ((outlierNotifier != null) && bFound) {
-            outlierNotifier.OnInlier(outlier);
+            Notify(outlier, false);
         }
         return bFound;
     }            
+    
+    private void Notify(Outlier outlier, boolean bOutlier) {
+        if (asyncNotifierOption.isSet()) {
+            pendingEvents.add(new NotifierEvent(outlier, bOutlier));
+        } else if (bOutlier) {
+            outlierNotifier.OnOutlier(outlier);
+        } else {
+            outlierNotifier.OnInlier(outlier);
+        }
+    }
+    
+    private void DispatchPendingEvents() {
+        if (pendingEvents.isEmpty()) 
+            return;
+        
+        final ArrayList<NotifierEvent> events = pendingEvents;
+        final OutlierNotifier notifier = outlierNotifier;
+        pendingEvents = new ArrayList<NotifierEvent>();
+        if (notifierExecutor == null) {
+            notifierExecutor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "OutlierNotifier");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        nQueuedEvents.addAndGet(events.size());
+        notifierExecutor.submit(() -> {
+            for (NotifierEvent e : events) {
+                if (e.bOutlier)
+                    notifier.OnOutlier(e.outlier);
+                else
+                    notifier.OnInlier(e.outlier);
+                nQueuedEvents.decrementAndGet();
+            }
+        });
+    }
 
     @Override
     public boolean implementsMicroClusterer() {
@@ -253,7 +411,14 @@ public abstract class MyBaseOutlierDetector extends AbstractClusterer {
     
     @Override
     protected Measurement[] getModelMeasurementsImpl() {
-        throw new UnsupportedOperationException("Not supported yet.");
+        return new Measurement[] {
+            new Measurement("slides processed", getSlidesProcessed()),
+            new Measurement("buffered objects", getBufferedObjects()),
+            new Measurement("last slide latency (ms)", getLastSlideLatency()),
+            new Measurement("mean slide latency (ms)", getMeanSlideLatency()),
+            new Measurement("max slide latency (ms)", getMaxSlideLatency()),
+            new Measurement("queued notifications", getQueuedNotifications())
+        };
     }
 
     @Override
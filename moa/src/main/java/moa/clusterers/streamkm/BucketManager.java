@@ -61,6 +61,8 @@ public class BucketManager  {
 
 	/**
 	inserts a single point into the bucketmanager
+
+	the points of all buckets are allocated once and overwritten in place, so p may be reused by the caller
 	**/
 	void insertPoint(Point p){
 		
@@ -77,7 +79,7 @@ public class BucketManager  {
 				//copy the bucket	
 				int i;
 				for(i=0; i<this.maxBucketsize; i++){
-					this.buckets[nextbucket].points[i] = this.buckets[curbucket].points[i].clone();
+					this.buckets[nextbucket].points[i].copyFrom(this.buckets[curbucket].points[i]);
 					//copyPointWithoutInit: we should not copy coordinates? 
 				}
 				//bucket is now full
@@ -90,7 +92,7 @@ public class BucketManager  {
 				//copy bucket to spillover and continue
 				int i;
 				for(i=0;i<this.maxBucketsize;i++){
-					this.buckets[nextbucket].spillover[i] = this.buckets[curbucket].points[i].clone();
+					this.buckets[nextbucket].spillover[i].copyFrom(this.buckets[curbucket].points[i]);
 					//copyPointWithoutInit: we should not copy coordinates? 
 				}
 				this.buckets[0].cursize=0;
@@ -129,7 +131,7 @@ public class BucketManager  {
 			}
 		}
 		//insert point into the first bucket
-		this.buckets[0].points[cursize] = p.clone();
+		this.buckets[0].points[cursize].copyFrom(p);
 		//copyPointWithoutInit: we should not copy coordinates? 
 		this.buckets[0].cursize++;
 	}
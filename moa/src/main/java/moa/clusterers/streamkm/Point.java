@@ -43,10 +43,21 @@ public class Point {
 	}
 	
 	public Point(Instance inst, int id){
+		this.dimension = inst.numAttributes();
+		this.coordinates = new double[this.dimension];
+		setFromInstance(inst, id);
+	}
+
+	/**
+	Overwrites this point with the values of inst, reusing the coordinate array where possible
+	**/
+	public void setFromInstance(Instance inst, int id){
 		this.weight = inst.weight();
 		this.squareSum = 0.0;
 		this.dimension = inst.numAttributes();
-		this.coordinates = new double[this.dimension];
+		if(this.coordinates.length != this.dimension){
+			this.coordinates = new double[this.dimension];
+		}
 		this.id = id;
 		this.cl = 0;// NOT USED (int) inst.classValue();
 		this.curCost = 0;
@@ -57,6 +68,23 @@ public class Point {
 			this.squareSum += nextNumber*nextNumber;
 		}
 	}
+
+	/**
+	Copies all fields of p into this point without allocating a new point
+	**/
+	public void copyFrom(Point p){
+		this.weight = p.weight;
+		this.squareSum = p.squareSum;
+		this.dimension = p.dimension;
+		if(this.coordinates.length != p.coordinates.length){
+			this.coordinates = new double[p.coordinates.length];
+		}
+		System.arraycopy(p.coordinates, 0, this.coordinates, 0, p.coordinates.length);
+		this.id = p.id;
+		this.cl = p.cl;
+		this.curCost = p.curCost;
+		this.centreIndex = p.centreIndex;
+	}
 		
 	public Point clone(){
 		Point res = new Point(this.dimension);
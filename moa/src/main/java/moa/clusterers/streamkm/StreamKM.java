@@ -49,6 +49,9 @@ public class StreamKM extends AbstractClusterer {
 
 	protected BucketManager manager;
 
+	// reused for every instance, the bucket manager copies its values
+	protected Point insertionPoint;
+
 	protected boolean initialized = false;	
 
 	private final static double THRESHOLD = 1.000;
@@ -71,10 +74,12 @@ public class StreamKM extends AbstractClusterer {
 		if (this.initialized == false) {
 			this.dimension =  inst.numAttributes();
 			manager = new BucketManager(this.length, this.dimension, this.coresetsize, this.clustererRandom);
+			this.insertionPoint = new Point(this.dimension);
 			this.initialized = true;
 		}
 
-		manager.insertPoint(new Point(inst, this.numberInstances));     
+		this.insertionPoint.setFromInstance(inst, this.numberInstances);
+		manager.insertPoint(this.insertionPoint);
 
 		this.numberInstances++;
 		if (this.numberInstances % lengthOption.getValue() == 0) {
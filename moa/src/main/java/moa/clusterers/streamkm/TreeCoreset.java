@@ -540,11 +540,11 @@ public class TreeCoreset {
 		//copy the choosen point
 		if(j < n_1){
 			//copyPointWithoutInit(&setA[j],&centres[choosenPoints]);
-			centres[choosenPoints] = setA[j].clone();
+			centres[choosenPoints].copyFrom(setA[j]);
 		} else {
 			j = j - n_1;
 			//copyPointWithoutInit(&setB[j],&centres[choosenPoints]);
-			centres[choosenPoints] = setB[j].clone();
+			centres[choosenPoints].copyFrom(setB[j]);
 		}
 		treeNode root = new treeNode(setA,setB,n_1,n_2, centres[choosenPoints],choosenPoints); //??
 		choosenPoints = 1;
@@ -556,11 +556,11 @@ public class TreeCoreset {
 				Point centre = chooseCentre(leaf, clustererRandom);
 				split(leaf,centre,choosenPoints);
 				//copyPointWithoutInit(centre,&centres[choosenPoints]);
-				centres[choosenPoints] = centre;
+				centres[choosenPoints].copyFrom(centre);
 			} else {
 				//create a dummy point
 				//copyPointWithoutInit(root.centre,&centres[choosenPoints]);
-				centres[choosenPoints] = root.centre;
+				centres[choosenPoints].copyFrom(root.centre);
 				int l;
 				for(l=0;l<root.centre.dimension;l++){
 					centres[choosenPoints].coordinates[l] = -1 * 1000000;
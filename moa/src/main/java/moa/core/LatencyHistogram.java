@@ -0,0 +1,144 @@
+/*
+ *    LatencyHistogram.java
+ *    Copyright (C) 2024 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *    
+ */
+package moa.core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Histogram of non-negative latencies with a bounded relative error, in the
+ * style of HdrHistogram. Values below 64 are counted exactly, larger values
+ * fall into one of 32 linear sub-buckets of their power of two, so every
+ * value is reported within about 3% of its true value. Recording is a few
+ * shifts and an array increment, cheap enough to do per instance.
+ *
+ * @version $Revision: 1 $
+ */
+public class LatencyHistogram implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected static final int SUB_BUCKET_BITS = 5;
+
+    protected static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    protected static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    protected long[] counts = new long[NUM_BUCKETS];
+
+    protected long totalCount;
+
+    protected double totalSum;
+
+    protected long minValue = Long.MAX_VALUE;
+
+    protected long maxValue;
+
+    protected static int bucketIndex(long value) {
+        if (value < 2 * SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int mantissa = (int) (value >>> shift);
+        return (shift + 1) * SUB_BUCKET_COUNT + (mantissa - SUB_BUCKET_COUNT);
+    }
+
+    /**
+     * Returns the largest value that falls into the given bucket.
+     */
+    protected static long bucketHighestValue(int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long mantissa = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        this.counts[bucketIndex(value)]++;
+        this.totalCount++;
+        this.totalSum += value;
+        if (value < this.minValue) {
+            this.minValue = value;
+        }
+        if (value > this.maxValue) {
+            this.maxValue = value;
+        }
+    }
+
+    public long getCount() {
+        return this.totalCount;
+    }
+
+    public double getMean() {
+        return this.totalCount > 0 ? this.totalSum / this.totalCount : 0.0;
+    }
+
+    public long getMin() {
+        return this.totalCount > 0 ? this.minValue : 0;
+    }
+
+    public long getMax() {
+        return this.maxValue;
+    }
+
+    /**
+     * Returns the value below which the given percentage (0-100) of the
+     * recorded values fall, rounded up to the end of its bucket.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (this.totalCount == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * this.totalCount);
+        if (rank < 1) {
+            rank = 1;
+        }
+        long seen = 0;
+        for (int i = 0; i < this.counts.length; i++) {
+            seen += this.counts[i];
+            if (seen >= rank) {
+                return Math.min(bucketHighestValue(i), this.maxValue);
+            }
+        }
+        return this.maxValue;
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < this.counts.length; i++) {
+            this.counts[i] += other.counts[i];
+        }
+        this.totalCount += other.totalCount;
+        this.totalSum += other.totalSum;
+        this.minValue = Math.min(this.minValue, other.minValue);
+        this.maxValue = Math.max(this.maxValue, other.maxValue);
+    }
+
+    public void reset() {
+        Arrays.fill(this.counts, 0);
+        this.totalCount = 0;
+        this.totalSum = 0.0;
+        this.minValue = Long.MAX_VALUE;
+        this.maxValue = 0;
+    }
+}
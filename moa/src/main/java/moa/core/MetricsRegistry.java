@@ -0,0 +1,386 @@
+/*
+ *    MetricsRegistry.java
+ *    Copyright (C) 2024 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *    
+ */
+package moa.core;
+
+import java.io.PrintWriter;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of counters, gauges and timers that learners publish their
+ * internal statistics into while they train. The metrics are safe to
+ * update from training threads and to read from any other thread, so a
+ * monitoring thread can poll them (see {@link PrometheusExporter}) without
+ * the learner building measurements.
+ *
+ * Learners usually keep their metrics in static fields of the default
+ * registry, so all instances of a learner add up into the same metrics.
+ * Counters and timers add up meaningfully that way. The state of a single
+ * instance, such as a window width, goes into a gauge of its own instead,
+ * told apart from the gauges of the other instances by Prometheus labels
+ * (e.g. moa_adwin_width{detector="7"}). Such a gauge is owned by the
+ * instance, and is removed from the registry once the instance is garbage
+ * collected.
+ *
+ * @version $Revision: 1 $
+ */
+public class MetricsRegistry {
+
+    protected static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    /** Metrics by name, then by labels. */
+    protected Map<String, Map<String, Metric>> metrics = new ConcurrentSkipListMap<String, Map<String, Metric>>();
+
+    protected ReferenceQueue<Object> collectedOwners = new ReferenceQueue<Object>();
+
+    protected AtomicLong lastInstanceId = new AtomicLong();
+
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Base class of the metrics, which have a name in Prometheus style (e.g.
+     * moa_hoeffding_tree_split_attempts_total), a description and labels.
+     */
+    public static abstract class Metric {
+
+        protected final String name;
+
+        protected final String help;
+
+        /** Labels in Prometheus format, e.g. {forest="3"}, or empty. */
+        protected final String labels;
+
+        protected OwnerReference owner;
+
+        protected Metric(String name, String help, String... labels) {
+            this.name = name;
+            this.help = help;
+            this.labels = formatLabels(labels);
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public String getHelp() {
+            return this.help;
+        }
+
+        public String getLabels() {
+            return this.labels;
+        }
+
+        /**
+         * Returns the Prometheus type of the metric.
+         */
+        public abstract String getType();
+
+        /**
+         * Writes the samples of the metric in Prometheus text format.
+         */
+        public abstract void writeSamples(PrintWriter out);
+    }
+
+    /**
+     * Monotonic count of events, cheap to increment from many threads.
+     */
+    public static class Counter extends Metric {
+
+        protected final LongAdder count = new LongAdder();
+
+        public Counter(String name, String help, String... labels) {
+            super(name, help, labels);
+        }
+
+        public void increment() {
+            this.count.increment();
+        }
+
+        public void add(long amount) {
+            this.count.add(amount);
+        }
+
+        public long getCount() {
+            return this.count.sum();
+        }
+
+        @Override
+        public String getType() {
+            return "counter";
+        }
+
+        @Override
+        public void writeSamples(PrintWriter out) {
+            out.println(this.name + this.labels + " " + getCount());
+        }
+    }
+
+    /**
+     * Value that can go up and down. When several learners set the same
+     * gauge, it holds the value that was set last, so a learner publishing
+     * its own state uses a gauge with labels of its own (see
+     * {@link MetricsRegistry#gauge(String, String, Object, String...)}).
+     */
+    public static class Gauge extends Metric {
+
+        protected final AtomicLong valueBits = new AtomicLong(Double.doubleToRawLongBits(0.0));
+
+        public Gauge(String name, String help, String... labels) {
+            super(name, help, labels);
+        }
+
+        public void set(double value) {
+            this.valueBits.set(Double.doubleToRawLongBits(value));
+        }
+
+        public void add(double amount) {
+            long bits;
+            do {
+                bits = this.valueBits.get();
+            } while (!this.valueBits.compareAndSet(bits,
+                    Double.doubleToRawLongBits(Double.longBitsToDouble(bits) + amount)));
+        }
+
+        public double getValue() {
+            return Double.longBitsToDouble(this.valueBits.get());
+        }
+
+        @Override
+        public String getType() {
+            return "gauge";
+        }
+
+        @Override
+        public void writeSamples(PrintWriter out) {
+            out.println(this.name + this.labels + " " + getValue());
+        }
+    }
+
+    /**
+     * Number and total duration of timed operations, exported as a
+     * Prometheus summary in seconds.
+     */
+    public static class Timer extends Metric {
+
+        protected final LongAdder count = new LongAdder();
+
+        protected final LongAdder totalNanos = new LongAdder();
+
+        public Timer(String name, String help, String... labels) {
+            super(name, help, labels);
+        }
+
+        /**
+         * Returns the start time to pass to {@link #stop(long)}.
+         */
+        public long start() {
+            return System.nanoTime();
+        }
+
+        public void stop(long startTime) {
+            record(System.nanoTime() - startTime);
+        }
+
+        public void record(long nanos) {
+            this.count.increment();
+            this.totalNanos.add(nanos);
+        }
+
+        public long getCount() {
+            return this.count.sum();
+        }
+
+        public double getTotalSeconds() {
+            return TimingUtils.nanoTimeToSeconds(this.totalNanos.sum());
+        }
+
+        @Override
+        public String getType() {
+            return "summary";
+        }
+
+        @Override
+        public void writeSamples(PrintWriter out) {
+            out.println(this.name + "_count" + this.labels + " " + getCount());
+            out.println(this.name + "_sum" + this.labels + " " + getTotalSeconds());
+        }
+    }
+
+    /**
+     * Weak reference to the owner of a metric, which removes the metric from
+     * the registry once the owner is collected.
+     */
+    protected static class OwnerReference extends WeakReference<Object> {
+
+        protected final Metric metric;
+
+        public OwnerReference(Object owner, Metric metric, ReferenceQueue<Object> queue) {
+            super(owner, queue);
+            this.metric = metric;
+        }
+    }
+
+    /**
+     * Formats label names and values, given in pairs, as Prometheus labels.
+     */
+    protected static String formatLabels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be given as name and value pairs");
+        }
+        if (labels.length == 0) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(labels[i]).append("=\"");
+            String value = labels[i + 1];
+            for (int j = 0; j < value.length(); j++) {
+                char c = value.charAt(j);
+                if (c == '\\' || c == '"') {
+                    sb.append('\\').append(c);
+                } else if (c == '\n') {
+                    sb.append("\\n");
+                } else {
+                    sb.append(c);
+                }
+            }
+            sb.append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    /**
+     * Returns a new id, to tell apart the metrics of instances of a learner
+     * in their labels.
+     */
+    public long nextInstanceId() {
+        return this.lastInstanceId.incrementAndGet();
+    }
+
+    public Counter counter(String name, String help) {
+        return register(new Counter(name, help), Counter.class);
+    }
+
+    public Gauge gauge(String name, String help) {
+        return register(new Gauge(name, help), Gauge.class);
+    }
+
+    /**
+     * Registers a gauge with labels which is removed from the registry once
+     * its owner is garbage collected. The owner usually keeps the gauge in a
+     * transient field, so that copies of it register gauges of their own.
+     */
+    public Gauge gauge(String name, String help, Object owner, String... labels) {
+        Gauge gauge = register(new Gauge(name, help, labels), Gauge.class);
+        gauge.owner = new OwnerReference(owner, gauge, this.collectedOwners);
+        return gauge;
+    }
+
+    public Timer timer(String name, String help) {
+        return register(new Timer(name, help), Timer.class);
+    }
+
+    /**
+     * Registers the metric, or returns the one already registered under its
+     * name and labels. All metrics of a name must be of the same type.
+     */
+    protected <T extends Metric> T register(T metric, Class<T> type) {
+        removeCollected();
+        Map<String, Metric> series = this.metrics.get(metric.getName());
+        if (series == null) {
+            Map<String, Metric> newSeries = new ConcurrentSkipListMap<String, Metric>();
+            newSeries.put(metric.getLabels(), metric);
+            series = this.metrics.putIfAbsent(metric.getName(), newSeries);
+            if (series == null) {
+                return metric;
+            }
+        }
+        Iterator<Metric> others = series.values().iterator();
+        if (others.hasNext()) {
+            Metric other = others.next();
+            if (!type.isInstance(other)) {
+                throw new IllegalArgumentException("Metric " + metric.getName()
+                        + " is already registered as a " + other.getType());
+            }
+        }
+        Metric existing = series.putIfAbsent(metric.getLabels(), metric);
+        return existing == null ? metric : type.cast(existing);
+    }
+
+    /**
+     * Removes the metrics whose owners were garbage collected.
+     */
+    protected void removeCollected() {
+        Reference<? extends Object> reference;
+        while ((reference = this.collectedOwners.poll()) != null) {
+            Metric metric = ((OwnerReference) reference).metric;
+            Map<String, Metric> series = this.metrics.get(metric.getName());
+            if (series != null) {
+                series.remove(metric.getLabels(), metric);
+            }
+        }
+    }
+
+    public Metric getMetric(String name, String... labels) {
+        Map<String, Metric> series = this.metrics.get(name);
+        return series == null ? null : series.get(formatLabels(labels));
+    }
+
+    public List<Metric> getMetrics() {
+        removeCollected();
+        List<Metric> metrics = new ArrayList<Metric>();
+        for (Map<String, Metric> series : this.metrics.values()) {
+            metrics.addAll(series.values());
+        }
+        return Collections.unmodifiableList(metrics);
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text exposition format.
+     */
+    public void writePrometheus(PrintWriter out) {
+        removeCollected();
+        for (Map<String, Metric> series : this.metrics.values()) {
+            boolean first = true;
+            for (Metric metric : series.values()) {
+                if (first) {
+                    out.println("# HELP " + metric.getName() + " " + metric.getHelp());
+                    out.println("# TYPE " + metric.getName() + " " + metric.getType());
+                    first = false;
+                }
+                metric.writeSamples(out);
+            }
+        }
+        out.flush();
+    }
+}
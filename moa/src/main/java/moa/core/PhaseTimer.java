@@ -0,0 +1,186 @@
+/*
+ *    PhaseTimer.java
+ *    Copyright (C) 2024 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *    
+ */
+package moa.core;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Wall-clock timer for the phases of an evaluation loop. Each call to
+ * {@link #lap(int)} records the time since the previous lap (or
+ * {@link #start()}) into the histogram of the given phase, so a loop
+ * calls start() and then lap() after each phase. A disabled timer does not
+ * read the clock, so the loop pays only for the calls.
+ *
+ * @version $Revision: 1 $
+ */
+public class PhaseTimer implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+
+    protected boolean enabled;
+
+    protected String[] phaseNames;
+
+    protected LatencyHistogram[] histograms;
+
+    protected long startTime;
+
+    protected long lapStartTime;
+
+    protected boolean metricsHeaderWritten;
+
+    public PhaseTimer(boolean enabled, String... phaseNames) {
+        this.enabled = enabled;
+        this.startTime = System.nanoTime();
+        this.phaseNames = phaseNames.clone();
+        this.histograms = new LatencyHistogram[phaseNames.length];
+        for (int i = 0; i < this.histograms.length; i++) {
+            this.histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public void start() {
+        if (this.enabled) {
+            this.lapStartTime = System.nanoTime();
+        }
+    }
+
+    public void lap(int phase) {
+        if (this.enabled) {
+            long now = System.nanoTime();
+            this.histograms[phase].record(now - this.lapStartTime);
+            this.lapStartTime = now;
+        }
+    }
+
+    public LatencyHistogram getHistogram(int phase) {
+        return this.histograms[phase];
+    }
+
+    /**
+     * Returns the wall-clock seconds since the timer was created.
+     */
+    public double getWallTimeSeconds() {
+        return TimingUtils.nanoTimeToSeconds(System.nanoTime() - this.startTime);
+    }
+
+    /**
+     * Appends the wall-clock time and the phase measurements to the given
+     * measurements if the timer is enabled, otherwise returns them as they
+     * are.
+     */
+    public Measurement[] addMeasurements(Measurement[] measurements) {
+        if (!this.enabled) {
+            return measurements;
+        }
+        List<Measurement> result = new ArrayList<Measurement>(Arrays.asList(measurements));
+        result.add(new Measurement("evaluation time (wall seconds)", getWallTimeSeconds()));
+        result.addAll(Arrays.asList(getMeasurements()));
+        return result.toArray(new Measurement[result.size()]);
+    }
+
+    /**
+     * Returns the mean and 99th percentile of every phase in microseconds,
+     * or no measurements if the timer is disabled.
+     */
+    public Measurement[] getMeasurements() {
+        if (!this.enabled) {
+            return new Measurement[0];
+        }
+        List<Measurement> measurements = new ArrayList<Measurement>();
+        for (int i = 0; i < this.phaseNames.length; i++) {
+            measurements.add(new Measurement(this.phaseNames[i]
+                    + " time mean (microseconds)",
+                    nanosToMicros(this.histograms[i].getMean())));
+            measurements.add(new Measurement(this.phaseNames[i]
+                    + " time p99 (microseconds)",
+                    nanosToMicros(this.histograms[i].getValueAtPercentile(99.0))));
+        }
+        return measurements.toArray(new Measurement[measurements.size()]);
+    }
+
+    /**
+     * Opens the file to append the metrics of the timer to, creating it if
+     * it doesn't exist.
+     *
+     * @return the stream, or null if the timer is disabled or there is no file
+     */
+    public PrintStream openMetricsFile(File file) {
+        if (!this.enabled || file == null) {
+            return null;
+        }
+        try {
+            return new PrintStream(new FileOutputStream(file, file.exists()), true);
+        } catch (FileNotFoundException ex) {
+            throw new RuntimeException(
+                    "Unable to open phase metrics file: " + file, ex);
+        }
+    }
+
+    /**
+     * Writes one csv line per phase with the distribution of its latencies
+     * in microseconds, preceded by a header the first time.
+     */
+    public void writeMetrics(PrintStream out, long instances) {
+        if (!this.metricsHeaderWritten) {
+            out.println("instances,phase,count,mean,p50,p90,p99,p99.9,max");
+            this.metricsHeaderWritten = true;
+        }
+        for (int i = 0; i < this.phaseNames.length; i++) {
+            LatencyHistogram histogram = this.histograms[i];
+            StringBuilder line = new StringBuilder();
+            line.append(instances).append(',').append(this.phaseNames[i]);
+            line.append(',').append(histogram.getCount());
+            line.append(',').append(nanosToMicros(histogram.getMean()));
+            for (double percentile : PERCENTILES) {
+                line.append(',').append(nanosToMicros(histogram.getValueAtPercentile(percentile)));
+            }
+            line.append(',').append(nanosToMicros(histogram.getMax()));
+            out.println(line);
+        }
+        out.flush();
+    }
+
+    /**
+     * Clears the histograms, so the next measurements cover only the
+     * following interval.
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : this.histograms) {
+            histogram.reset();
+        }
+    }
+
+    protected static double nanosToMicros(double nanos) {
+        return nanos / 1000.0;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ *    PoissonSampler.java
+ *    Copyright (C) 2024 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *    
+ */
+package moa.core;
+
+import java.io.Serializable;
+import java.util.Random;
+
+/**
+ * Draws from a Poisson distribution with a fixed mean, as used for online
+ * bagging and bootstrapping. The cumulative sums that
+ * {@link MiscUtils#poisson(double, Random)} computes for every draw are
+ * computed once, so a draw takes one random number and a few comparisons,
+ * and gives the same values as MiscUtils.poisson for the same random
+ * generator.
+ *
+ * @version $Revision: 1 $
+ */
+public class PoissonSampler implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected double lambda;
+
+    protected double expLambda;
+
+    /** The unnormalised cumulative probabilities of 0, 1, 2, ... */
+    protected double[] cumulativeSums;
+
+    public PoissonSampler(double lambda) {
+        this.lambda = lambda;
+        this.expLambda = Math.exp(lambda);
+        if (lambda < 100.0) {
+            int max = Math.max(100, 10 * (int) Math.ceil(lambda));
+            this.cumulativeSums = new double[max];
+            double product = 1.0;
+            double sum = 1.0;
+            this.cumulativeSums[0] = sum;
+            for (int i = 1; i < max; i++) {
+                product *= (lambda / i);
+                sum += product;
+                this.cumulativeSums[i] = sum;
+            }
+        }
+    }
+
+    public double getLambda() {
+        return this.lambda;
+    }
+
+    /**
+     * Draws the next value.
+     *
+     * @param r the random generator
+     * @return the value drawn
+     */
+    public int nextInt(Random r) {
+        if (this.cumulativeSums == null) {
+            return MiscUtils.poisson(this.lambda, r);
+        }
+        double threshold = r.nextDouble() * this.expLambda;
+        int last = this.cumulativeSums.length - 1;
+        int k = 0;
+        while ((k < last) && (this.cumulativeSums[k] <= threshold)) {
+            k++;
+        }
+        return k;
+    }
+
+    /**
+     * Draws a block of values, one after the other.
+     *
+     * @param r the random generator
+     * @param values the array to fill
+     */
+    public void nextInts(Random r, int[] values) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = nextInt(r);
+        }
+    }
+}
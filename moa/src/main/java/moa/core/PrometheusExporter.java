@@ -0,0 +1,173 @@
+/*
+ *    PrometheusExporter.java
+ *    Copyright (C) 2024 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *    
+ */
+package moa.core;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exports a {@link MetricsRegistry} in the Prometheus text format, either
+ * by rewriting a file periodically (e.g. for the node exporter's textfile
+ * collector) or by serving it over HTTP at /metrics. The exports run on
+ * their own daemon threads, the training thread never waits for them.
+ *
+ * @version $Revision: 1 $
+ */
+public class PrometheusExporter implements Closeable {
+
+    protected MetricsRegistry registry;
+
+    protected ScheduledExecutorService fileExportService;
+
+    protected File fileExportFile;
+
+    protected HttpServer httpServer;
+
+    protected ExecutorService httpExecutor;
+
+    public PrometheusExporter(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    public byte[] scrape() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8));
+        this.registry.writePrometheus(out);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes the metrics to the file, replacing it atomically so readers
+     * never see a partial file.
+     */
+    public void writeToFile(File file) throws IOException {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        Files.write(tmpFile.toPath(), scrape());
+        Files.move(tmpFile.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Rewrites the file every given number of milliseconds, and once more
+     * when the exporter is closed.
+     */
+    public synchronized void exportToFile(final File file, long periodMillis) {
+        if (this.fileExportService != null) {
+            throw new IllegalStateException("Already exporting metrics to a file");
+        }
+        this.fileExportService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "moa-metrics-file-export");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        Runnable export = new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    writeToFile(file);
+                } catch (IOException ex) {
+                    System.err.println("Failed to write metrics to " + file + ": " + ex);
+                }
+            }
+        };
+        this.fileExportService.scheduleAtFixedRate(export, 0, periodMillis, TimeUnit.MILLISECONDS);
+        this.fileExportFile = file;
+    }
+
+    /**
+     * Serves the metrics at http://host:port/metrics.
+     */
+    public synchronized void serve(int port) throws IOException {
+        if (this.httpServer != null) {
+            throw new IllegalStateException("Already serving metrics");
+        }
+        this.httpServer = HttpServer.create(new InetSocketAddress(port), 0);
+        this.httpServer.createContext("/metrics", new HttpHandler() {
+
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = scrape();
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        this.httpExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "moa-metrics-http");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.httpServer.setExecutor(this.httpExecutor);
+        this.httpServer.start();
+    }
+
+    public int getPort() {
+        return this.httpServer == null ? -1 : this.httpServer.getAddress().getPort();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.httpServer != null) {
+            this.httpServer.stop(0);
+            this.httpServer = null;
+            this.httpExecutor.shutdown();
+            this.httpExecutor = null;
+        }
+        if (this.fileExportService != null) {
+            this.fileExportService.shutdown();
+            try {
+                this.fileExportService.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            this.fileExportService = null;
+            writeToFile(this.fileExportFile);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ *    SplitRandom.java
+ *    Copyright (C) 2024 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *    
+ */
+package moa.core;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * A java.util.Random drawing from a SplittableRandom, so that generators
+ * written against Random can use independent random streams that are cheap
+ * to derive from a seed and an index. Unlike Random it is not thread safe.
+ *
+ * @version $Revision: 1 $
+ */
+public class SplitRandom extends Random {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    protected SplittableRandom random;
+
+    public SplitRandom(long seed) {
+        super(seed);
+    }
+
+    /**
+     * Creates the random generator of one block of a sharded stream. The
+     * generators of different blocks are independent, and each only depends
+     * on the seed and the block index, so blocks can be generated in any
+     * order.
+     *
+     * @param seed the seed of the whole stream
+     * @param block the index of the block
+     */
+    public static SplitRandom forBlock(long seed, long block) {
+        return new SplitRandom(new SplittableRandom(seed + block * GOLDEN_GAMMA).nextLong());
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        // called by the Random constructor too, to clear the cached gaussian
+        super.setSeed(seed);
+        this.random = new SplittableRandom(seed);
+    }
+
+    @Override
+    protected int next(int bits) {
+        return (int) (this.random.nextLong() >>> (64 - bits));
+    }
+
+    @Override
+    public int nextInt() {
+        return this.random.nextInt();
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        return this.random.nextInt(bound);
+    }
+
+    @Override
+    public long nextLong() {
+        return this.random.nextLong();
+    }
+
+    @Override
+    public double nextDouble() {
+        return this.random.nextDouble();
+    }
+
+    @Override
+    public boolean nextBoolean() {
+        return this.random.nextBoolean();
+    }
+}
@@ -38,6 +38,11 @@ public class AdwinClassificationPerformanceEvaluator extends BasicClassification
         return new AdwinEstimator();
     }
 
+    @Override
+    protected Counts newCounts(int numClasses) {
+        return new EstimatorCounts(numClasses);
+    }
+
     public class AdwinEstimator implements Estimator {
 
         protected ADWIN adwin;
@@ -53,15 +53,7 @@ public class BasicClassificationPerformanceEvaluator extends AbstractOptionHandl
 
     private static final long serialVersionUID = 1L;
 
-    protected Estimator weightCorrect;
-
-    protected Estimator[] columnKappa;
-
-    protected Estimator[] rowKappa;
-
-    protected Estimator[] precision;
-
-    protected Estimator[] recall;
+    protected Counts counts;
 
     protected int numClasses;
 
@@ -95,17 +87,7 @@ public class BasicClassificationPerformanceEvaluator extends AbstractOptionHandl
 
     public void reset(int numClasses) {
         this.numClasses = numClasses;
-        this.rowKappa = new Estimator[numClasses];
-        this.columnKappa = new Estimator[numClasses];
-        this.precision = new Estimator[numClasses];
-        this.recall = new Estimator[numClasses];
-        for (int i = 0; i < this.numClasses; i++) {
-            this.rowKappa[i] = newEstimator();
-            this.columnKappa[i] = newEstimator();
-            this.precision[i] = newEstimator();
-            this.recall[i] = newEstimator();
-        }
-        this.weightCorrect = newEstimator();
+        this.counts = newCounts(numClasses);
         this.weightCorrectNoChangeClassifier = newEstimator();
         this.weightMajorityClassifier = newEstimator();
         this.lastSeenClass = 0;
@@ -124,19 +106,7 @@ public class BasicClassificationPerformanceEvaluator extends AbstractOptionHandl
                     reset(inst.dataset().numClasses());
                 }
                 this.totalWeightObserved += weight;
-                this.weightCorrect.add(predictedClass == trueClass ? weight : 0);
-                for (int i = 0; i < this.numClasses; i++) {
-                    this.rowKappa[i].add(predictedClass == i ? weight : 0);
-                    this.columnKappa[i].add(trueClass == i ? weight : 0);
-                    // for both precision and recall, NaN values are used to 'balance' the number
-                    // of instances seen across classes
-                    if (predictedClass == i) {
-                        precision[i].add(predictedClass == trueClass ? weight : 0.0);
-                    } else precision[i].add(Double.NaN);
-                    if (trueClass == i) {
-                        recall[i].add(predictedClass == trueClass ? weight : 0.0);
-                    } else recall[i].add(Double.NaN);
-                }
+                this.counts.add(trueClass, predictedClass, weight);
             }
             this.weightCorrectNoChangeClassifier.add(this.lastSeenClass == trueClass ? weight : 0);
             this.weightMajorityClassifier.add(getMajorityClass() == trueClass ? weight : 0);
@@ -148,9 +118,9 @@ public class BasicClassificationPerformanceEvaluator extends AbstractOptionHandl
         int majorityClass = 0;
         double maxProbClass = 0.0;
         for (int i = 0; i < this.numClasses; i++) {
-            if (this.columnKappa[i].estimation() > maxProbClass) {
+            if (this.counts.actual(i) > maxProbClass) {
                 majorityClass = i;
-                maxProbClass = this.columnKappa[i].estimation();
+                maxProbClass = this.counts.actual(i);
             }
         }
         return majorityClass;
@@ -203,7 +173,7 @@ public class BasicClassificationPerformanceEvaluator extends AbstractOptionHandl
     }
 
     public double getFractionCorrectlyClassified() {
-        return this.weightCorrect.estimation();
+        return this.counts.accuracy();
     }
 
     public double getFractionIncorrectlyClassified() {
@@ -215,8 +185,8 @@ public class BasicClassificationPerformanceEvaluator extends AbstractOptionHandl
             double p0 = getFractionCorrectlyClassified();
             double pc = 0.0;
             for (int i = 0; i < this.numClasses; i++) {
-                pc += this.rowKappa[i].estimation()
-                        * this.columnKappa[i].estimation();
+                pc += this.counts.predicted(i)
+                        * this.counts.actual(i);
             }
             return (p0 - pc) / (1.0 - pc);
         } else {
@@ -248,26 +218,26 @@ public class BasicClassificationPerformanceEvaluator extends AbstractOptionHandl
 
     public double getPrecisionStatistic() {
         double total = 0;
-        for (Estimator ck : this.precision) {
-            total += ck.estimation();
+        for (int i = 0; i < this.numClasses; i++) {
+            total += this.counts.precision(i);
         }
-        return total / this.precision.length;
+        return total / this.numClasses;
     }
 
     public double getPrecisionStatistic(int numClass) {
-        return this.precision[numClass].estimation();
+        return this.counts.precision(numClass);
     }
 
     public double getRecallStatistic() {
         double total = 0;
-        for (Estimator ck : this.recall) {
-            total += ck.estimation();
+        for (int i = 0; i < this.numClasses; i++) {
+            total += this.counts.recall(i);
         }
-        return total / this.recall.length;
+        return total / this.numClasses;
     }
 
     public double getRecallStatistic(int numClass) {
-        return this.recall[numClass].estimation();
+        return this.counts.recall(numClass);
     }
 
     public double getF1Statistic() {
@@ -329,6 +299,179 @@ public class BasicClassificationPerformanceEvaluator extends AbstractOptionHandl
         return new BasicEstimator();
     }
 
+    /**
+     * The per-class statistics of the predictions: the fractions of
+     * instances predicted as and belonging to each class, and the
+     * accuracy, precision and recall. All are updated in one call per
+     * instance.
+     */
+    public interface Counts extends Serializable {
+
+        void add(int trueClass, int predictedClass, double weight);
+
+        double accuracy();
+
+        /** Weight predicted as the class per instance (row of the kappa matrix). */
+        double predicted(int classIndex);
+
+        /** Weight of the class per instance (column of the kappa matrix). */
+        double actual(int classIndex);
+
+        double precision(int classIndex);
+
+        double recall(int classIndex);
+    }
+
+    /**
+     * Counts over all instances, kept in plain arrays.
+     */
+    public class BasicCounts implements Counts {
+
+        protected double len;
+
+        protected double weightCorrect;
+
+        protected double[] weightPredicted;
+
+        protected double[] weightActual;
+
+        protected double[] weightCorrectByClass;
+
+        protected double[] numPredicted;
+
+        protected double[] numActual;
+
+        public BasicCounts(int numClasses) {
+            this.weightPredicted = new double[numClasses];
+            this.weightActual = new double[numClasses];
+            this.weightCorrectByClass = new double[numClasses];
+            this.numPredicted = new double[numClasses];
+            this.numActual = new double[numClasses];
+        }
+
+        @Override
+        public void add(int trueClass, int predictedClass, double weight) {
+            len++;
+            if (predictedClass == trueClass) {
+                weightCorrect += weight;
+                weightCorrectByClass[trueClass] += weight;
+            }
+            if (predictedClass < numPredicted.length) {
+                weightPredicted[predictedClass] += weight;
+                numPredicted[predictedClass]++;
+            }
+            weightActual[trueClass] += weight;
+            numActual[trueClass]++;
+        }
+
+        @Override
+        public double accuracy() {
+            return weightCorrect / len;
+        }
+
+        @Override
+        public double predicted(int classIndex) {
+            return weightPredicted[classIndex] / len;
+        }
+
+        @Override
+        public double actual(int classIndex) {
+            return weightActual[classIndex] / len;
+        }
+
+        @Override
+        public double precision(int classIndex) {
+            return weightCorrectByClass[classIndex] / numPredicted[classIndex];
+        }
+
+        @Override
+        public double recall(int classIndex) {
+            return weightCorrectByClass[classIndex] / numActual[classIndex];
+        }
+    }
+
+    /**
+     * Counts kept by one {@link Estimator} per statistic and class, for
+     * evaluators which only provide their own estimator.
+     */
+    public class EstimatorCounts implements Counts {
+
+        protected Estimator weightCorrect;
+
+        protected Estimator[] columnKappa;
+
+        protected Estimator[] rowKappa;
+
+        protected Estimator[] precision;
+
+        protected Estimator[] recall;
+
+        public EstimatorCounts(int numClasses) {
+            this.rowKappa = new Estimator[numClasses];
+            this.columnKappa = new Estimator[numClasses];
+            this.precision = new Estimator[numClasses];
+            this.recall = new Estimator[numClasses];
+            for (int i = 0; i < numClasses; i++) {
+                this.rowKappa[i] = newEstimator();
+                this.columnKappa[i] = newEstimator();
+                this.precision[i] = newEstimator();
+                this.recall[i] = newEstimator();
+            }
+            this.weightCorrect = newEstimator();
+        }
+
+        @Override
+        public void add(int trueClass, int predictedClass, double weight) {
+            this.weightCorrect.add(predictedClass == trueClass ? weight : 0);
+            for (int i = 0; i < this.rowKappa.length; i++) {
+                this.rowKappa[i].add(predictedClass == i ? weight : 0);
+                this.columnKappa[i].add(trueClass == i ? weight : 0);
+                // for both precision and recall, NaN values are used to 'balance' the number
+                // of instances seen across classes
+                if (predictedClass == i) {
+                    precision[i].add(predictedClass == trueClass ? weight : 0.0);
+                } else precision[i].add(Double.NaN);
+                if (trueClass == i) {
+                    recall[i].add(predictedClass == trueClass ? weight : 0.0);
+                } else recall[i].add(Double.NaN);
+            }
+        }
+
+        @Override
+        public double accuracy() {
+            return this.weightCorrect.estimation();
+        }
+
+        @Override
+        public double predicted(int classIndex) {
+            return this.rowKappa[classIndex].estimation();
+        }
+
+        @Override
+        public double actual(int classIndex) {
+            return this.columnKappa[classIndex].estimation();
+        }
+
+        @Override
+        public double precision(int classIndex) {
+            return this.precision[classIndex].estimation();
+        }
+
+        @Override
+        public double recall(int classIndex) {
+            return this.recall[classIndex].estimation();
+        }
+    }
+
+    /**
+     * Creates the counts for the given number of classes. Evaluators which
+     * only override {@link #newEstimator()} should return
+     * {@link EstimatorCounts} here.
+     */
+    protected Counts newCounts(int numClasses) {
+        return new BasicCounts(numClasses);
+    }
+
 
     @Override
     public ImmutableCapabilities defineImmutableCapabilities() {
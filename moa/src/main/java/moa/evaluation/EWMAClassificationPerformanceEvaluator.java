@@ -52,6 +52,11 @@ public class EWMAClassificationPerformanceEvaluator extends BasicClassificationP
         return new EWMAEstimator(this.alphaOption.getValue());
     }
 
+    @Override
+    protected Counts newCounts(int numClasses) {
+        return new EstimatorCounts(numClasses);
+    }
+
     protected Estimator weightCorrect;
 
     public class EWMAEstimator implements Estimator {
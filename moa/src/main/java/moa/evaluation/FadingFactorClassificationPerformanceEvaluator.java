@@ -42,6 +42,11 @@ public class FadingFactorClassificationPerformanceEvaluator extends BasicClassif
         return new FadingFactorEstimator(this.alphaOption.getValue());
     }
 
+    @Override
+    protected Counts newCounts(int numClasses) {
+        return new FadingFactorCounts(numClasses, this.alphaOption.getValue());
+    }
+
     @Override
     public ImmutableCapabilities defineImmutableCapabilities() {
         if (this.getClass() == FadingFactorClassificationPerformanceEvaluator.class)
@@ -79,4 +84,82 @@ public class FadingFactorClassificationPerformanceEvaluator extends BasicClassif
 
     }
 
+    /**
+     * Faded counts kept in plain arrays. The statistics over all instances
+     * share one normaliser; precision and recall of a class only fade with
+     * the instances predicted as or belonging to the class.
+     */
+    public class FadingFactorCounts implements Counts {
+
+        protected double alpha;
+
+        protected double b;
+
+        protected double weightCorrect;
+
+        protected double[] weightPredicted;
+
+        protected double[] weightActual;
+
+        protected double[] precision;
+
+        protected double[] bPrecision;
+
+        protected double[] recall;
+
+        protected double[] bRecall;
+
+        public FadingFactorCounts(int numClasses, double a) {
+            alpha = a;
+            weightPredicted = new double[numClasses];
+            weightActual = new double[numClasses];
+            precision = new double[numClasses];
+            bPrecision = new double[numClasses];
+            recall = new double[numClasses];
+            bRecall = new double[numClasses];
+        }
+
+        @Override
+        public void add(int trueClass, int predictedClass, double weight) {
+            double correct = predictedClass == trueClass ? weight : 0;
+            weightCorrect = alpha * weightCorrect + correct;
+            b = alpha * b + 1.0;
+            for (int i = 0; i < weightPredicted.length; i++) {
+                weightPredicted[i] = alpha * weightPredicted[i] + (predictedClass == i ? weight : 0);
+                weightActual[i] = alpha * weightActual[i] + (trueClass == i ? weight : 0);
+            }
+            if (predictedClass < precision.length) {
+                precision[predictedClass] = alpha * precision[predictedClass] + correct;
+                bPrecision[predictedClass] = alpha * bPrecision[predictedClass] + 1.0;
+            }
+            recall[trueClass] = alpha * recall[trueClass] + correct;
+            bRecall[trueClass] = alpha * bRecall[trueClass] + 1.0;
+        }
+
+        @Override
+        public double accuracy() {
+            return b > 0.0 ? weightCorrect / b : 0;
+        }
+
+        @Override
+        public double predicted(int classIndex) {
+            return b > 0.0 ? weightPredicted[classIndex] / b : 0;
+        }
+
+        @Override
+        public double actual(int classIndex) {
+            return b > 0.0 ? weightActual[classIndex] / b : 0;
+        }
+
+        @Override
+        public double precision(int classIndex) {
+            return bPrecision[classIndex] > 0.0 ? precision[classIndex] / bPrecision[classIndex] : 0;
+        }
+
+        @Override
+        public double recall(int classIndex) {
+            return bRecall[classIndex] > 0.0 ? recall[classIndex] / bRecall[classIndex] : 0;
+        }
+    }
+
 }
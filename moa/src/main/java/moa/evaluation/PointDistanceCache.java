@@ -0,0 +1,105 @@
+/*
+ *    PointDistanceCache.java
+ *    Copyright (C) 2024 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.evaluation;
+
+import java.util.List;
+
+import moa.gui.visualization.DataPoint;
+
+/**
+ * Euclidean distances between all pairs of points of a window, computed once
+ * on first use. Measures that evaluate several clusterings over the same
+ * window, e.g. the silhouette coefficient of every member of a clustering
+ * ensemble, can share one cache instead of recomputing the distances for
+ * each clustering. The cache can be used from several threads.
+ */
+public class PointDistanceCache {
+
+    /** Largest window for which the distances are stored (about 64MB). */
+    public static final int MAX_POINTS = 4096;
+
+    private final List<DataPoint> points;
+
+    private final int numPoints;
+
+    private volatile double[] distances;
+
+    public PointDistanceCache(List<DataPoint> points) {
+        this.points = points;
+        this.numPoints = points.size();
+    }
+
+    /**
+     * Returns whether the cache holds the distances of the given points, i.e.
+     * it was created for the same, unchanged list and the list is not too
+     * large to be cached.
+     */
+    public boolean covers(List<DataPoint> points) {
+        return this.points == points && points.size() == this.numPoints
+                && this.numPoints <= MAX_POINTS;
+    }
+
+    /**
+     * Returns the distance between the points with indices i and j.
+     */
+    public double distance(int i, int j) {
+        if (i == j) {
+            return 0.0;
+        }
+        double[] d = this.distances;
+        if (d == null) {
+            d = compute();
+        }
+        return (i < j) ? d[index(i, j)] : d[index(j, i)];
+    }
+
+    private int index(int i, int j) {
+        // row i of the strict upper triangle starts after
+        // (n-1) + (n-2) + ... + (n-i) entries
+        return i * (2 * this.numPoints - i - 1) / 2 + (j - i - 1);
+    }
+
+    private synchronized double[] compute() {
+        if (this.distances == null) {
+            double[] d = new double[this.numPoints * (this.numPoints - 1) / 2];
+            int k = 0;
+            for (int i = 0; i < this.numPoints; i++) {
+                DataPoint point = this.points.get(i);
+                for (int j = i + 1; j < this.numPoints; j++) {
+                    d[k++] = distance(point, this.points.get(j));
+                }
+            }
+            this.distances = d;
+        }
+        return this.distances;
+    }
+
+    /**
+     * Euclidean distance over all attributes, as used by the cluster measures.
+     */
+    public static double distance(DataPoint inst1, DataPoint inst2) {
+        double distance = 0.0;
+        int numDims = inst1.numAttributes();
+        for (int i = 0; i < numDims; i++) {
+            double d = inst1.value(i) - inst2.value(i);
+            distance += d * d;
+        }
+        return Math.sqrt(distance);
+    }
+}
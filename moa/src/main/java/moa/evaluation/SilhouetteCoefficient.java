@@ -21,6 +21,7 @@
 package moa.evaluation; 
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import moa.cluster.Cluster;
 import moa.cluster.Clustering;
@@ -28,6 +29,7 @@ import moa.gui.visualization.DataPoint;
 
 public class SilhouetteCoefficient extends MeasureCollection{
     private double pointInclusionProbThreshold = 0.8;
+    private PointDistanceCache distanceCache = null;
 
     public SilhouetteCoefficient() {
         super();
@@ -45,16 +47,33 @@ public class SilhouetteCoefficient extends MeasureCollection{
         return names;
     }
 
+    /**
+     * Sets precomputed pairwise distances, used whenever the evaluated points
+     * are the ones the cache was created for.
+     */
+    public void setDistanceCache(PointDistanceCache distanceCache) {
+        this.distanceCache = distanceCache;
+    }
+
     public void evaluateClustering(Clustering clustering, Clustering trueClustering, ArrayList<DataPoint> points) {
         int numFCluster = clustering.size();
+        PointDistanceCache cache = (distanceCache != null && distanceCache.covers(points)) ? distanceCache : null;
 
         double [][] pointInclusionProbFC = new double[points.size()][numFCluster];
+        // clusters each point belongs to, in ascending order
+        int [][] pointMemberships = new int[points.size()][];
+        int [] memberships = new int[numFCluster];
         for (int p = 0; p < points.size(); p++) {
             DataPoint point = points.get(p);
+            int numMemberships = 0;
             for (int fc = 0; fc < numFCluster; fc++) {
                 Cluster cl = clustering.get(fc);
                 pointInclusionProbFC[p][fc] = cl.getInclusionProbability(point);
+                if(pointInclusionProbFC[p][fc] > pointInclusionProbThreshold){
+                    memberships[numMemberships++] = fc;
+                }
             }
+            pointMemberships[p] = Arrays.copyOf(memberships, numMemberships);
         }
 
         double silhCoeff = 0.0;
@@ -79,9 +98,10 @@ public class SilhouetteCoefficient extends MeasureCollection{
                         // Removed second part of if-condition: && point1.classValue() != -1 
                         // Accessing the classValue will go outOfBounds when no class label exists
                         // What is the purpose of this check anyway? Class label is not used for Silhouette calculation
-                        for (int fc = 0; fc < numFCluster; fc++) {
-                            if(pointInclusionProbFC[p1][fc] > pointInclusionProbThreshold){
-                                double distance = distance(point, point1);
+                        int[] clustersP1 = pointMemberships[p1];
+                        if(clustersP1.length > 0){
+                            double distance = (cache != null) ? cache.distance(p, p1) : distance(point, point1);
+                            for (int fc : clustersP1) {
                                 distanceByClusters[fc]+=distance;
                                 countsByClusters[fc]++;
                             }
@@ -130,12 +150,6 @@ public class SilhouetteCoefficient extends MeasureCollection{
     }
 
     private double distance(DataPoint inst1, DataPoint inst2){
-        double distance = 0.0;
-        int numDims = inst1.numAttributes();
-        for (int i = 0; i < numDims; i++) {
-            double d = inst1.value(i) - inst2.value(i);
-            distance += d * d;
-        }
-        return Math.sqrt(distance);
+        return PointDistanceCache.distance(inst1, inst2);
     }
 }
@@ -18,7 +18,8 @@
  */
 package moa.evaluation;
 
-import java.util.TreeSet;
+import java.io.Serializable;
+import java.util.Arrays;
 
 import moa.core.Example;
 import moa.core.Measurement;
@@ -74,78 +75,292 @@ public class WindowAUCImbalancedPerformanceEvaluator extends
         }
     }
 	
-	public class Estimator {
+	/**
+	 * Counts and sums the scores of the negative (0) and positive (1)
+	 * examples in a treap keyed by score, so the examples ranked above or
+	 * tied with a score are found in O(log n) time. Examples with equal
+	 * scores share a node. Nodes are kept in primitive arrays and reused
+	 * after removal.
+	 */
+	protected static class ScoreTree implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Index of the empty tree, its counts and sums are always zero
+		 */
+		protected static final int NIL = 0;
+
+		protected double[] key;
+
+		protected int[] priority;
+
+		protected int[] left;
+
+		protected int[] right;
+
+		/**
+		 * Examples of each class at a node, indexed by node * 2 + class
+		 */
+		protected int[] nodeCount;
+
+		/**
+		 * Examples of each class in a subtree, indexed by node * 2 + class
+		 */
+		protected int[] subtreeCount;
+
+		/**
+		 * Sum of the scores of each class in a subtree, indexed by node * 2 + class
+		 */
+		protected double[] subtreeSum;
+
+		protected int root = NIL;
+
+		/**
+		 * Number of node slots in use, including NIL
+		 */
+		protected int used = 1;
+
+		/**
+		 * First node in the list of removed nodes
+		 */
+		protected int free = NIL;
+
+		protected int seed = 0x2545F491;
+
+		/**
+		 * Results of the last call to locate(), by class
+		 */
+		protected int[] countAbove = new int[2];
+
+		protected int[] countEqual = new int[2];
+
+		protected double[] sumAbove = new double[2];
+
+		public ScoreTree(int capacity) {
+			capacity = Math.max(capacity, 1) + 1;
+			this.key = new double[capacity];
+			this.priority = new int[capacity];
+			this.left = new int[capacity];
+			this.right = new int[capacity];
+			this.nodeCount = new int[2 * capacity];
+			this.subtreeCount = new int[2 * capacity];
+			this.subtreeSum = new double[2 * capacity];
+			this.priority[NIL] = Integer.MIN_VALUE;
+		}
+
+		public void add(double score, int cls) {
+			this.root = insert(this.root, score, cls);
+		}
+
+		public void remove(double score, int cls) {
+			this.root = remove(this.root, score, cls);
+		}
 
-		public class Score implements Comparable<Score> {
-			/**
-			 * Predicted score of the example
-			 */
-			protected double value;
-
-			/**
-			 * Age of example - position in the window where the example was
-			 * added
-			 */
-			protected int posWindow;
-
-			/**
-			 * True if example's true label is positive
-			 */
-			protected boolean isPositive;
-
-			/**
-			 * Constructor.
-			 * 
-			 * @param value
-			 *            score value
-			 * @param position
-			 *            score position in window (defines its age)
-			 * @param isPositive
-			 *            true if the example's true label is positive
-			 */
-			public Score(double value, int position, boolean isPositive) {
-				this.value = value;
-				this.posWindow = position;
-				this.isPositive = isPositive;
+		/**
+		 * Number of examples of the class in the tree.
+		 */
+		public int count(int cls) {
+			return this.subtreeCount[2 * this.root + cls];
+		}
+
+		/**
+		 * Sum of the scores of the examples of the class in the tree.
+		 */
+		public double sum(int cls) {
+			return this.subtreeSum[2 * this.root + cls];
+		}
+
+		/**
+		 * Counts the examples scored above and equal to the given score.
+		 * The results are left in countAbove, sumAbove and countEqual.
+		 */
+		public void locate(double score) {
+			for (int c = 0; c < 2; c++) {
+				this.countAbove[c] = 0;
+				this.countEqual[c] = 0;
+				this.sumAbove[c] = 0;
 			}
 
-			/**
-			 * Sort descending based on score value.
-			 */
-			@Override
-			public int compareTo(Score o) {
-				if (o.value < this.value) {
-					return -1;
-				} else if (o.value > this.value){
-					return 1;
+			int n = this.root;
+			while (n != NIL) {
+				if (score < this.key[n]) {
+					// the node and its right subtree are above
+					int r = this.right[n];
+					for (int c = 0; c < 2; c++) {
+						this.countAbove[c] += this.nodeCount[2 * n + c] + this.subtreeCount[2 * r + c];
+						this.sumAbove[c] += this.nodeCount[2 * n + c] * this.key[n] + this.subtreeSum[2 * r + c];
+					}
+					n = this.left[n];
+				} else if (score > this.key[n]) {
+					n = this.right[n];
 				} else {
-					if (!o.isPositive && this.isPositive) {
-						return -1;
-					} else if (o.isPositive && !this.isPositive){
-						return 1;
-					} else {
-						if (o.posWindow > this.posWindow) {
-							return -1;
-						} else if (o.posWindow < this.posWindow){
-							return 1;
-						} else {
-							return 0;
-						}
+					int r = this.right[n];
+					for (int c = 0; c < 2; c++) {
+						this.countAbove[c] += this.subtreeCount[2 * r + c];
+						this.sumAbove[c] += this.subtreeSum[2 * r + c];
+						this.countEqual[c] = this.nodeCount[2 * n + c];
 					}
+					break;
 				}
 			}
-			
-			@Override
-			public boolean equals(Object o) {
-				return (o instanceof Score) && ((Score)o).posWindow == this.posWindow;
+		}
+
+		protected int insert(int n, double score, int cls) {
+			if (n == NIL) {
+				n = allocate(score);
+				this.nodeCount[2 * n + cls] = 1;
+				update(n);
+				return n;
+			}
+
+			// the arrays may grow while inserting, so the child is stored afterwards
+			if (score < this.key[n]) {
+				int child = insert(this.left[n], score, cls);
+				this.left[n] = child;
+				if (this.priority[child] > this.priority[n]) {
+					return rotateRight(n);
+				}
+			} else if (score > this.key[n]) {
+				int child = insert(this.right[n], score, cls);
+				this.right[n] = child;
+				if (this.priority[child] > this.priority[n]) {
+					return rotateLeft(n);
+				}
+			} else {
+				this.nodeCount[2 * n + cls]++;
 			}
+
+			update(n);
+			return n;
 		}
 
-		protected TreeSet<Score> sortedScores;
-		
-		protected TreeSet<Score> holdoutSortedScores;
+		protected int remove(int n, double score, int cls) {
+			if (n == NIL) {
+				throw new IllegalStateException("Score " + score + " is not in the tree");
+			}
 
-		protected Score[] window;
+			if (score < this.key[n]) {
+				this.left[n] = remove(this.left[n], score, cls);
+			} else if (score > this.key[n]) {
+				this.right[n] = remove(this.right[n], score, cls);
+			} else {
+				this.nodeCount[2 * n + cls]--;
+				if (this.nodeCount[2 * n] + this.nodeCount[2 * n + 1] == 0) {
+					return delete(n);
+				}
+			}
+
+			update(n);
+			return n;
+		}
+
+		/**
+		 * Rotates an empty node down to a leaf and unlinks it.
+		 */
+		protected int delete(int n) {
+			int l = this.left[n];
+			int r = this.right[n];
+			if (l == NIL || r == NIL) {
+				release(n);
+				return l == NIL ? r : l;
+			}
+
+			int top;
+			if (this.priority[l] > this.priority[r]) {
+				top = rotateRight(n);
+				this.right[top] = delete(n);
+			} else {
+				top = rotateLeft(n);
+				this.left[top] = delete(n);
+			}
+			update(top);
+			return top;
+		}
+
+		protected int rotateRight(int n) {
+			int l = this.left[n];
+			this.left[n] = this.right[l];
+			this.right[l] = n;
+			update(n);
+			update(l);
+			return l;
+		}
+
+		protected int rotateLeft(int n) {
+			int r = this.right[n];
+			this.right[n] = this.left[r];
+			this.left[r] = n;
+			update(n);
+			update(r);
+			return r;
+		}
+
+		protected void update(int n) {
+			int l = this.left[n];
+			int r = this.right[n];
+			for (int c = 0; c < 2; c++) {
+				this.subtreeCount[2 * n + c] = this.nodeCount[2 * n + c]
+						+ this.subtreeCount[2 * l + c] + this.subtreeCount[2 * r + c];
+				this.subtreeSum[2 * n + c] = this.nodeCount[2 * n + c] * this.key[n]
+						+ this.subtreeSum[2 * l + c] + this.subtreeSum[2 * r + c];
+			}
+		}
+
+		protected int allocate(double score) {
+			int n;
+			if (this.free != NIL) {
+				n = this.free;
+				this.free = this.right[n];
+			} else {
+				if (this.used == this.key.length) {
+					grow();
+				}
+				n = this.used++;
+			}
+
+			// xorshift priorities keep the treap balanced in expectation
+			this.seed ^= this.seed << 13;
+			this.seed ^= this.seed >>> 17;
+			this.seed ^= this.seed << 5;
+
+			this.key[n] = score;
+			this.priority[n] = this.seed;
+			this.left[n] = NIL;
+			this.right[n] = NIL;
+			return n;
+		}
+
+		protected void release(int n) {
+			this.right[n] = this.free;
+			this.free = n;
+		}
+
+		protected void grow() {
+			int capacity = 2 * this.key.length;
+			this.key = Arrays.copyOf(this.key, capacity);
+			this.priority = Arrays.copyOf(this.priority, capacity);
+			this.left = Arrays.copyOf(this.left, capacity);
+			this.right = Arrays.copyOf(this.right, capacity);
+			this.nodeCount = Arrays.copyOf(this.nodeCount, 2 * capacity);
+			this.subtreeCount = Arrays.copyOf(this.subtreeCount, 2 * capacity);
+			this.subtreeSum = Arrays.copyOf(this.subtreeSum, 2 * capacity);
+		}
+	}
+
+	/**
+	 * Tracks the measures over the window. The AUC and scored AUC are kept
+	 * as running sums over all (positive, negative) pairs in the window,
+	 * which are updated in O(log n) time per added and removed example
+	 * using a {@link ScoreTree}.
+	 */
+	public class Estimator {
+
+		protected ScoreTree scoreTree;
+
+		protected double[] windowScores;
+
+		protected boolean[] windowPositives;
 		
 		protected double[] predictions;
 
@@ -156,10 +371,32 @@ public class WindowAUCImbalancedPerformanceEvaluator extends
 		protected double numPos;
 
 		protected double numNeg;
+
+		/**
+		 * Sum over pairs of 1 if the positive is ranked above the negative
+		 * and 0.5 if they are tied
+		 */
+		protected double rankedPairs;
+
+		/**
+		 * Sum over pairs of the positive's score if it is ranked above the
+		 * negative and half of it if they are tied
+		 */
+		protected double scoredPositivePairs;
+
+		/**
+		 * Sum over pairs of the negative's score if it is ranked above the
+		 * positive
+		 */
+		protected double scoredNegativePairs;
 		
 		protected double holdoutNumPos;
 
 		protected double holdoutNumNeg;
+
+		protected double holdoutAUC;
+
+		protected boolean holdoutIsEmpty;
 		
 		protected double correctPredictions;
 		
@@ -170,10 +407,10 @@ public class WindowAUCImbalancedPerformanceEvaluator extends
 	    protected double[] rowKappa;
 
 		public Estimator(int sizeWindow) {
-			this.sortedScores = new TreeSet<Score>();
-			this.holdoutSortedScores = new TreeSet<Score>();
+			this.scoreTree = new ScoreTree(sizeWindow > 0 ? sizeWindow : 1024);
 			this.size = sizeWindow;
-			this.window = new Score[sizeWindow];
+			this.windowScores = new double[sizeWindow];
+			this.windowPositives = new boolean[sizeWindow];
 			this.predictions = new double[sizeWindow];
 			
 	        this.rowKappa = new double[numClasses];
@@ -188,19 +425,20 @@ public class WindowAUCImbalancedPerformanceEvaluator extends
 			this.numNeg = 0;
 			this.holdoutNumPos = 0;
 			this.holdoutNumNeg = 0;
+			this.holdoutAUC = 0;
+			this.holdoutIsEmpty = true;
 			this.correctPredictions = 0;
 			this.correctPositivePredictions = 0;
 		}
 
 		public void add(double score, boolean isPositive, boolean correctPrediction) {
+			// // negative zero ranks with zero
+			score += 0.0;
+
             // // periodically update holdout evaluation
 			if (size > 0 && posWindow % this.size == 0) {
-				this.holdoutSortedScores = new TreeSet<Score>();
-				
-				for (Score s : this.sortedScores) {
-					this.holdoutSortedScores.add(s);
-				}
-				
+				this.holdoutIsEmpty = this.numPos + this.numNeg == 0;
+				this.holdoutAUC = getAUC();
 				this.holdoutNumPos = this.numPos;
 				this.holdoutNumNeg = this.numNeg;
 			}
@@ -208,26 +446,29 @@ public class WindowAUCImbalancedPerformanceEvaluator extends
 			// // if the window is used and it's full			
 			if (size > 0 && posWindow >= this.size) {
 				// // remove the oldest example
-				sortedScores.remove(window[posWindow % size]);
-				correctPredictions -= predictions[posWindow % size];
-				correctPositivePredictions -= window[posWindow % size].isPositive ? predictions[posWindow % size] : 0;
+				int oldest = posWindow % size;
+				boolean oldestIsPositive = windowPositives[oldest];
+				scoreTree.remove(windowScores[oldest], oldestIsPositive ? 1 : 0);
+				updatePairs(windowScores[oldest], oldestIsPositive, -1);
+				correctPredictions -= predictions[oldest];
+				correctPositivePredictions -= oldestIsPositive ? predictions[oldest] : 0;
 				
-				if (window[posWindow % size].isPositive) {
+				if (oldestIsPositive) {
 					numPos--;
 				} else {
 					numNeg--;
 				}
 				
-				int oldestExampleTrueClass = window[posWindow % size].isPositive ? 1 : 0;
-	            int oldestExamplePredictedClass = predictions[posWindow % size] == 1.0 ? oldestExampleTrueClass : Math.abs(oldestExampleTrueClass - 1);  
+				int oldestExampleTrueClass = oldestIsPositive ? 1 : 0;
+	            int oldestExamplePredictedClass = predictions[oldest] == 1.0 ? oldestExampleTrueClass : Math.abs(oldestExampleTrueClass - 1);  
 	            
 				this.rowKappa[oldestExamplePredictedClass] -= 1;
 	            this.columnKappa[oldestExampleTrueClass] -= 1;
 			}
 			
 			// // add new example
-			Score newScore = new Score(score, posWindow, isPositive);
-			sortedScores.add(newScore);
+			updatePairs(score, isPositive, 1);
+			scoreTree.add(score, isPositive ? 1 : 0);
 			correctPredictions += correctPrediction ? 1 : 0;
 			correctPositivePredictions += correctPrediction && isPositive ? 1 : 0;
 			
@@ -236,136 +477,64 @@ public class WindowAUCImbalancedPerformanceEvaluator extends
             this.rowKappa[predictedClass] += 1;
             this.columnKappa[trueClass] += 1;
 			
-			if (newScore.isPositive) {
+			if (isPositive) {
 				numPos++;
 			} else {
 				numNeg++;
 			}
 
 			if (size > 0) {
-				window[posWindow % size] = newScore;
+				windowScores[posWindow % size] = score;
+				windowPositives[posWindow % size] = isPositive;
 				predictions[posWindow % size] = correctPrediction ? 1 : 0;
 			}
 			
-			//// posWindow needs to be always incremented to differentiate between examples in the red-black tree
 			posWindow++;
 		}
 
+		/**
+		 * Adds (sign 1) or subtracts (sign -1) the pairs an example forms
+		 * with the examples of the other class in the tree.
+		 */
+		protected void updatePairs(double score, boolean isPositive, int sign) {
+			scoreTree.locate(score);
+			if (isPositive) {
+				double below = scoreTree.count(0) - scoreTree.countAbove[0] - scoreTree.countEqual[0];
+				double pairs = below + scoreTree.countEqual[0] / 2.0;
+				rankedPairs += sign * pairs;
+				scoredPositivePairs += sign * score * pairs;
+				scoredNegativePairs += sign * scoreTree.sumAbove[0];
+			} else {
+				double below = scoreTree.count(1) - scoreTree.countAbove[1] - scoreTree.countEqual[1];
+				rankedPairs += sign * (scoreTree.countAbove[1] + scoreTree.countEqual[1] / 2.0);
+				scoredPositivePairs += sign * (scoreTree.sumAbove[1] + score * scoreTree.countEqual[1] / 2.0);
+				scoredNegativePairs += sign * score * below;
+			}
+		}
+
 		public double getAUC() {
-			double AUC = 0;
-			double c = 0;
-			double prevc = 0;
-			double lastPosScore = Double.MAX_VALUE;
-					
 			if (numPos == 0 || numNeg == 0) {
 				return 1;
 			}
 			
-			for (Score s : sortedScores){
-				if(s.isPositive) {			
-					if (s.value != lastPosScore) {
-						prevc = c;
-						lastPosScore = s.value;
-					}
-					
-					c += 1;
-				} else {
-					if (s.value == lastPosScore) {
-						// tie
-						AUC += ((double)(c + prevc))/2.0;
-					} else {
-						AUC += c;
-					}
-				}
-			}
-			
-			return AUC / (numPos * numNeg);
+			return rankedPairs / (numPos * numNeg);
 		}
 		
 		public double getHoldoutAUC() {
-			double AUC = 0;
-			double c = 0;
-			double prevc = 0;
-			double lastPosScore = Double.MAX_VALUE;
-
-			if (holdoutSortedScores.isEmpty()) {
+			if (holdoutIsEmpty) {
 				return 0;
 			}
 			
-			if (holdoutNumPos == 0 || holdoutNumNeg == 0) {
-				return 1;
-			}
-
-			for (Score s : holdoutSortedScores){
-				if(s.isPositive) {
-					if (s.value != lastPosScore) {
-						prevc = c;
-						lastPosScore = s.value;
-					}
-					
-					c += 1;
-				} else {
-					if (s.value == lastPosScore) {
-						// tie
-						AUC += ((double)(c + prevc))/2.0;
-					} else {
-						AUC += c;
-					}
-				}
-			}
-			
-			return AUC / (holdoutNumPos * holdoutNumNeg);
+			return holdoutAUC;
 		}
 
 		public double getScoredAUC() {
-			double AOC = 0;
-			double AUC = 0;
-			double r = 0;
-			double prevr = 0;
-			double c = 0;
-			double prevc = 0;
-			double R_plus, R_minus;
-			double lastPosScore = Double.MAX_VALUE;
-			double lastNegScore = Double.MAX_VALUE;
-			
 			if (numPos == 0 || numNeg == 0) {
 				return 1;
 			}
 			
-			for (Score s : sortedScores){
-				if(s.isPositive) {
-					if (s.value != lastPosScore) {
-						prevc = c;
-						lastPosScore = s.value;
-					}
-					
-					c += s.value;
-					
-					if (s.value == lastNegScore) {
-						// tie
-						AOC += ((double)(r + prevr))/2.0;
-					} else {
-						AOC += r;
-					}
-				} else {
-					if (s.value != lastNegScore) {
-						prevr = r;
-						lastNegScore = s.value;
-					}
-					
-					r += s.value;
-					
-					if (s.value == lastPosScore) {
-						// tie
-						AUC += ((double)(c + prevc))/2.0;
-					} else {
-						AUC += c;
-					}
-				}
-			}
-			
-			R_minus = (numPos*r - AOC)/(numPos * numNeg);
-			R_plus = (AUC)/(numPos * numNeg);		
+			double R_minus = (numPos * scoreTree.sum(0) - scoredNegativePairs) / (numPos * numNeg);
+			double R_plus = scoredPositivePairs / (numPos * numNeg);
 			return R_plus - R_minus;
 		}
 		
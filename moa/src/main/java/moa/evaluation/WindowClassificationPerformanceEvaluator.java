@@ -46,6 +46,11 @@ public class WindowClassificationPerformanceEvaluator extends BasicClassificatio
         return new WindowEstimator(this.widthOption.getValue());
     }
 
+    @Override
+    protected Counts newCounts(int numClasses) {
+        return new WindowCounts(numClasses, this.widthOption.getValue());
+    }
+
     @Override
     public ImmutableCapabilities defineImmutableCapabilities() {
         if (this.getClass() == WindowClassificationPerformanceEvaluator.class)
@@ -99,4 +104,56 @@ public class WindowClassificationPerformanceEvaluator extends BasicClassificatio
 
     }
 
+    /**
+     * Counts over the last instances, kept in a ring buffer of the true and
+     * predicted classes and weights of the instances in the window.
+     */
+    public class WindowCounts extends BasicCounts {
+
+        protected int[] trueClasses;
+
+        protected int[] predictedClasses;
+
+        protected double[] weights;
+
+        protected int posWindow;
+
+        public WindowCounts(int numClasses, int sizeWindow) {
+            super(numClasses);
+            this.trueClasses = new int[sizeWindow];
+            this.predictedClasses = new int[sizeWindow];
+            this.weights = new double[sizeWindow];
+        }
+
+        @Override
+        public void add(int trueClass, int predictedClass, double weight) {
+            // forget the oldest instance once the window is full
+            if (len == weights.length) {
+                int oldTrueClass = trueClasses[posWindow];
+                int oldPredictedClass = predictedClasses[posWindow];
+                double oldWeight = weights[posWindow];
+                len--;
+                if (oldPredictedClass == oldTrueClass) {
+                    weightCorrect -= oldWeight;
+                    weightCorrectByClass[oldTrueClass] -= oldWeight;
+                }
+                if (oldPredictedClass < numPredicted.length) {
+                    weightPredicted[oldPredictedClass] -= oldWeight;
+                    numPredicted[oldPredictedClass]--;
+                }
+                weightActual[oldTrueClass] -= oldWeight;
+                numActual[oldTrueClass]--;
+            }
+
+            super.add(trueClass, predictedClass, weight);
+            trueClasses[posWindow] = trueClass;
+            predictedClasses[posWindow] = predictedClass;
+            weights[posWindow] = weight;
+            posWindow++;
+            if (posWindow == weights.length) {
+                posWindow = 0;
+            }
+        }
+    }
+
 }
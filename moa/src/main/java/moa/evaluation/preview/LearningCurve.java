@@ -19,10 +19,16 @@
  */
 package moa.evaluation.preview;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 
-import moa.core.DoubleVector;
+import moa.MOAObject;
 import moa.core.Measurement;
 import moa.core.StringUtils;
 import moa.evaluation.LearningEvaluation;
@@ -30,6 +36,16 @@ import moa.evaluation.LearningEvaluation;
 /**
  * Class that stores and keeps the history of evaluation measurements.
  *
+ * The values are stored by column in chunks of a fixed number of entries.
+ * Copies (e.g. the previews of a running task) share the chunks with the
+ * curve, and whichever changes a shared chunk first copies it, so a copy
+ * costs time in the number of chunks rather than entries. The columns of a
+ * chunk grow as entries are added, so short curves take no more memory than
+ * their values.
+ *
+ * All chunks are kept in memory: the curve isn't spilled to disk, and
+ * dumping it writes one entry at a time from memory.
+ *
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 7 $
  */
@@ -37,12 +53,146 @@ public class LearningCurve extends Preview {
 
     private static final long serialVersionUID = 1L;
 
+    /** The number of entries per chunk is 2^CHUNK_BITS. */
+    protected static final int CHUNK_BITS = 10;
+
+    protected static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    /** The number of entries a chunk has room for at first. */
+    protected static final int INITIAL_CHUNK_CAPACITY = 8;
+
     protected List<String> measurementNames = new ArrayList<String>();
 
-    protected List<double[]> measurementValues = new ArrayList<double[]>();
+    protected List<Chunk> chunks = new ArrayList<Chunk>();
+
+    /** The chunks which aren't shared with a copy of this curve. */
+    protected BitSet ownedChunks = new BitSet();
+
+    protected int numEntries;
+
+    /** The largest ordering value of all entries. */
+    protected double maxOrderingValue = Double.NEGATIVE_INFINITY;
 
     Class<?> taskClass = null;
-    
+
+    /**
+     * The values of a block of consecutive entries, stored by measurement.
+     * Each entry has the values of the measurements up to its width. The
+     * arrays double in length as rows are written, up to CHUNK_SIZE, and
+     * only the rows up to the size are serialized.
+     */
+    protected static class Chunk implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        protected double[][] columns = new double[0][];
+
+        protected int[] widths = new int[0];
+
+        protected int size;
+
+        /**
+         * Makes room for the rows before the given one.
+         */
+        protected void ensureCapacity(int numRows) {
+            int capacity = this.widths.length;
+            if (numRows <= capacity) {
+                return;
+            }
+            int newCapacity = Math.max(INITIAL_CHUNK_CAPACITY, capacity);
+            while (newCapacity < numRows) {
+                newCapacity *= 2;
+            }
+            newCapacity = Math.min(newCapacity, CHUNK_SIZE);
+            this.widths = Arrays.copyOf(this.widths, newCapacity);
+            for (int i = 0; i < this.columns.length; i++) {
+                if (this.columns[i] != null) {
+                    this.columns[i] = Arrays.copyOf(this.columns[i], newCapacity);
+                }
+            }
+        }
+
+        public double get(int row, int measurementIndex) {
+            if (measurementIndex >= this.widths[row]) {
+                throw new ArrayIndexOutOfBoundsException(measurementIndex);
+            }
+            return this.columns[measurementIndex][row];
+        }
+
+        /**
+         * Stores the values of an entry, replacing any there were.
+         */
+        public void setRow(int row, double[] values, int width) {
+            ensureCapacity(row + 1);
+            if (width > this.columns.length) {
+                double[][] columns = new double[width][];
+                System.arraycopy(this.columns, 0, columns, 0, this.columns.length);
+                this.columns = columns;
+            }
+            for (int i = 0; i < width; i++) {
+                if (this.columns[i] == null) {
+                    this.columns[i] = new double[this.widths.length];
+                }
+                this.columns[i][row] = values[i];
+            }
+            this.widths[row] = width;
+        }
+
+        public double[] getRow(int row) {
+            double[] values = new double[this.widths[row]];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = this.columns[i][row];
+            }
+            return values;
+        }
+
+        public Chunk copy() {
+            Chunk copy = new Chunk();
+            copy.columns = new double[this.columns.length][];
+            for (int i = 0; i < this.columns.length; i++) {
+                if (this.columns[i] != null) {
+                    copy.columns[i] = this.columns[i].clone();
+                }
+            }
+            copy.widths = this.widths.clone();
+            copy.size = this.size;
+            return copy;
+        }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            out.writeInt(this.size);
+            out.writeInt(this.columns.length);
+            for (int row = 0; row < this.size; row++) {
+                out.writeInt(this.widths[row]);
+            }
+            for (double[] column : this.columns) {
+                out.writeBoolean(column != null);
+                if (column != null) {
+                    for (int row = 0; row < this.size; row++) {
+                        out.writeDouble(column[row]);
+                    }
+                }
+            }
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException {
+            this.size = in.readInt();
+            this.columns = new double[in.readInt()][];
+            this.widths = new int[this.size];
+            for (int row = 0; row < this.size; row++) {
+                this.widths[row] = in.readInt();
+            }
+            for (int i = 0; i < this.columns.length; i++) {
+                if (in.readBoolean()) {
+                    this.columns[i] = new double[this.size];
+                    for (int row = 0; row < this.size; row++) {
+                        this.columns[i][row] = in.readDouble();
+                    }
+                }
+            }
+        }
+    }
+
     public LearningCurve(String orderingMeasurementName) {
         this.measurementNames.add(orderingMeasurementName);
     }
@@ -61,10 +211,15 @@ public class LearningCurve extends Preview {
     		List<double[]> measurementValues) 
     {
     	this.measurementNames.clear();
-    	this.measurementValues.clear();
+    	this.chunks.clear();
+    	this.ownedChunks.clear();
+    	this.numEntries = 0;
+    	this.maxOrderingValue = Double.NEGATIVE_INFINITY;
     	
     	this.measurementNames.addAll(measurementNames);
-    	this.measurementValues.addAll(measurementValues);
+    	for (double[] values : measurementValues) {
+    	    appendEntry(values, values.length);
+    	}
     }
 
     public void insertEntry(LearningEvaluation learningEvaluation) {
@@ -74,22 +229,116 @@ public class LearningCurve extends Preview {
         if (orderMeasurement == null) {
             throw new IllegalArgumentException();
         }
-        DoubleVector entryVals = new DoubleVector();
+        double[] entryVals = new double[this.measurementNames.size() + measurements.length];
+        int width = 0;
         for (Measurement measurement : measurements) {
-            entryVals.setValue(addMeasurementName(measurement.getName()),
-                    measurement.getValue());
+            int index = addMeasurementName(measurement.getName());
+            entryVals[index] = measurement.getValue();
+            width = Math.max(width, index + 1);
         }
         double orderVal = orderMeasurement.getValue();
+
+        // entries normally arrive in order, and go after all others
+        if (orderVal > this.maxOrderingValue) {
+            appendEntry(entryVals, width);
+            return;
+        }
+
         int index = 0;
-        while ((index < this.measurementValues.size())
-                && (orderVal > this.measurementValues.get(index)[0])) {
+        while ((index < this.numEntries)
+                && (orderVal > getMeasurement(index, 0))) {
             index++;
         }
-        this.measurementValues.add(index, entryVals.getArrayRef());
+        insertEntry(index, entryVals, width);
+    }
+
+    /**
+     * Adds an entry after all others.
+     */
+    protected void appendEntry(double[] values, int width) {
+        int row = this.numEntries & (CHUNK_SIZE - 1);
+        if (row == 0) {
+            this.ownedChunks.set(this.chunks.size());
+            this.chunks.add(new Chunk());
+        }
+        Chunk chunk = writableChunk(this.chunks.size() - 1);
+        chunk.setRow(row, values, width);
+        chunk.size++;
+        this.numEntries++;
+        updateMaxOrderingValue(values, width);
+    }
+
+    protected void updateMaxOrderingValue(double[] values, int width) {
+        if (width > 0 && !(values[0] <= this.maxOrderingValue)) {
+            // entries can't be appended without a search after an unordered one
+            this.maxOrderingValue = Double.isNaN(values[0]) ? Double.POSITIVE_INFINITY : values[0];
+        }
+    }
+
+    /**
+     * Inserts an entry before the given one, moving the later entries back.
+     */
+    protected void insertEntry(int entryIndex, double[] values, int width) {
+        if (this.numEntries == 0) {
+            appendEntry(values, width);
+            return;
+        }
+
+        // move the last entry into a new slot, then shift the rest by one
+        appendEntry(getEntryValues(this.numEntries - 1),
+                getEntryMeasurementCount(this.numEntries - 1));
+        for (int i = this.numEntries - 2; i > entryIndex; i--) {
+            setEntryValues(i, getEntryValues(i - 1), getEntryMeasurementCount(i - 1));
+        }
+        setEntryValues(entryIndex, values, width);
+        updateMaxOrderingValue(values, width);
+    }
+
+    protected double[] getEntryValues(int entryIndex) {
+        return chunkOf(entryIndex).getRow(entryIndex & (CHUNK_SIZE - 1));
+    }
+
+    /**
+     * Gets the chunk holding an entry.
+     */
+    protected Chunk chunkOf(int entryIndex) {
+        if (entryIndex < 0 || entryIndex >= this.numEntries) {
+            throw new IndexOutOfBoundsException("Entry " + entryIndex + " of " + this.numEntries);
+        }
+        return this.chunks.get(entryIndex >> CHUNK_BITS);
+    }
+
+    protected void setEntryValues(int entryIndex, double[] values, int width) {
+        writableChunk(entryIndex >> CHUNK_BITS).setRow(entryIndex & (CHUNK_SIZE - 1), values, width);
+    }
+
+    /**
+     * Gets a chunk to change, copying it first if it is shared.
+     */
+    protected Chunk writableChunk(int chunkIndex) {
+        if (!this.ownedChunks.get(chunkIndex)) {
+            this.chunks.set(chunkIndex, this.chunks.get(chunkIndex).copy());
+            this.ownedChunks.set(chunkIndex);
+        }
+        return this.chunks.get(chunkIndex);
+    }
+
+    /**
+     * Copies the curve, sharing the chunks with the copy.
+     */
+    @Override
+    public MOAObject copy() {
+        LearningCurve copy = new LearningCurve(getOrderingMeasurementName(), this.taskClass);
+        copy.measurementNames = new ArrayList<String>(this.measurementNames);
+        copy.chunks = new ArrayList<Chunk>(this.chunks);
+        copy.numEntries = this.numEntries;
+        copy.maxOrderingValue = this.maxOrderingValue;
+        this.ownedChunks.clear();
+        return copy;
     }
 
     public int numEntries() {
-        return this.measurementValues.size();
+        return this.numEntries;
     }
 
     protected int addMeasurementName(String name) {
@@ -117,15 +366,18 @@ public class LearningCurve extends Preview {
 
     public String entryToString(int entryIndex) {
         StringBuilder sb = new StringBuilder();
-        double[] vals = this.measurementValues.get(entryIndex);
+        Chunk chunk = chunkOf(entryIndex);
+        int row = entryIndex & (CHUNK_SIZE - 1);
+        int width = chunk.widths[row];
         for (int i = 0; i < this.measurementNames.size(); i++) {
             if (i > 0) {
                 sb.append(',');
             }
-            if ((i >= vals.length) || Double.isNaN(vals[i])) {
+            double value = i < width ? chunk.columns[i][row] : Double.NaN;
+            if (Double.isNaN(value)) {
                 sb.append('?');
             } else {
-                sb.append(Double.toString(vals[i]));
+                sb.append(Double.toString(value));
             }
         }
         return sb.toString();
@@ -140,7 +392,7 @@ public class LearningCurve extends Preview {
     }
 
     public double getMeasurement(int entryIndex, int measurementIndex) {
-        return this.measurementValues.get(entryIndex)[measurementIndex];
+        return chunkOf(entryIndex).get(entryIndex & (CHUNK_SIZE - 1), measurementIndex);
     }
 
     public String getMeasurementName(int measurementIndex) {
@@ -152,7 +404,7 @@ public class LearningCurve extends Preview {
     }
 
     public int getEntryMeasurementCount(int entryIdx) {
-        return this.measurementValues.get(entryIdx).length;
+        return chunkOf(entryIdx).widths[entryIdx & (CHUNK_SIZE - 1)];
     }
 
 	@Override
@@ -370,6 +370,10 @@ public class RunOutlierVisualizer implements Runnable, ActionListener, ClusterEv
                 m_visualPanel.toggleVisualizer(true);
             }
         } else {
+            // process the objects of the last, incomplete slide
+            m_outlier[ALGORITHM_1].flushSlide();
+            if (bUseAlgorithm2)
+                m_outlier[ALGORITHM_2].flushSlide();
             System.out.println("DONE");
             pause();
             return;
@@ -1,11 +1,14 @@
 package moa.options;
 
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.HashMap;
 import com.github.javacliparser.JavaCLIParser;
 import com.github.javacliparser.Option;
 import moa.core.ObjectRepository;
 import moa.tasks.NullMonitor;
+import moa.tasks.Task;
 import moa.tasks.TaskMonitor;
 
 /*
@@ -131,6 +134,8 @@ public class OptionsHandler extends JavaCLIParser {
      */
     public void prepareClassOptions(TaskMonitor monitor,
             ObjectRepository repository) {
+        // nothing else uses the objects prepared the last time
+        closePreparedObjects(null);
         this.classOptionNamesToPreparedObjects = null;
         Option[] optionArray = getOptions().getOptionArray();
         for (Option option : optionArray) {
@@ -161,6 +166,34 @@ public class OptionsHandler extends JavaCLIParser {
         }
     }
 
+    /**
+     * Closes the prepared objects of the class options that hold resources,
+     * such as streams cached on disk by other tasks or read ahead on threads
+     * of their own, as nothing but the object of these options uses them.
+     * Objects of the repository are left open, as they are shared.
+     *
+     * @param keep an object not to close, such as the result of a task
+     */
+    public void closePreparedObjects(Object keep) {
+        if (this.classOptionNamesToPreparedObjects == null) {
+            return;
+        }
+        for (Option option : getOptions().getOptionArray()) {
+            if ((option instanceof ClassOption)
+                    && !(((ClassOption) option).getPreMaterializedObject() instanceof String)) {
+                Object prepared = this.classOptionNamesToPreparedObjects.get(option.getName());
+                if ((prepared instanceof Closeable) && (prepared != keep)) {
+                    try {
+                        ((Closeable) prepared).close();
+                    } catch (IOException ex) {
+                        throw new RuntimeException("Failed closing option "
+                                + option.getName(), ex);
+                    }
+                }
+            }
+        }
+    }
+
     /**
      *  Gets a prepared option of this class.
      *
@@ -0,0 +1,92 @@
+/*
+ *    BatchInstanceStream.java
+ *    Copyright (C) 2024 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *    
+ */
+package moa.streams;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Interface of instance streams, mainly synthetic generators, that can write
+ * instances straight into primitive buffers. Filling an {@link InstanceBatch}
+ * gives the same instances as calling nextInstance() the same number of times,
+ * without building an instance for each.
+ *
+ * All randomness of an instance is drawn from the random generator passed to
+ * {@link #generateValues}, so instances can also be generated from random
+ * generators other than the one of the stream, e.g. one per shard when
+ * generating in parallel.
+ *
+ * @version $Revision: 1 $
+ */
+public interface BatchInstanceStream extends InstanceStream {
+
+    /**
+     * Gets the random generator that nextInstance() draws from.
+     */
+    public Random getInstanceRandom();
+
+    /**
+     * Generates the next instance and writes its values, class value
+     * included, to values[offset] .. values[offset + numAttributes - 1].
+     * Instances have weight one.
+     *
+     * @param random the random generator to draw from
+     * @param values the buffer to write to
+     * @param offset the index of the first attribute value in the buffer
+     */
+    public void generateValues(Random random, double[] values, int offset);
+
+    /**
+     * Gets whether each instance only depends on the random generator it is
+     * generated from. Streams whose instances also depend on the ones before
+     * them, e.g. through drift or class balancing, return false, and can only
+     * be generated in order.
+     */
+    default boolean hasIndependentInstances() {
+        return false;
+    }
+
+    /**
+     * Fills the batch with the next instances of the stream.
+     *
+     * @param batch the batch to fill to its capacity
+     * @return the number of instances written
+     */
+    default int fill(InstanceBatch batch) {
+        Random random = getInstanceRandom();
+        double[] values = batch.getValues();
+        int numAttributes = batch.numAttributes();
+        int n = batch.capacity();
+        for (int i = 0; i < n; i++) {
+            generateValues(random, values, i * numAttributes);
+        }
+        Arrays.fill(batch.getWeights(), 0, n, 1.0);
+        batch.setSize(n);
+        return n;
+    }
+
+    /**
+     * Generates the next n instances into a new batch.
+     */
+    default InstanceBatch nextInstances(int n) {
+        InstanceBatch batch = new InstanceBatch(getHeader(), n);
+        fill(batch);
+        return batch;
+    }
+}
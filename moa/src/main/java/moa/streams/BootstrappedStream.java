@@ -24,8 +24,8 @@ import java.util.Random;
 
 import moa.core.Example;
 import moa.core.InstanceExample;
-import moa.core.MiscUtils;
 import moa.core.ObjectRepository;
+import moa.core.PoissonSampler;
 import moa.options.AbstractOptionHandler;
 import moa.options.ClassOption;
 import moa.tasks.TaskMonitor;
@@ -33,6 +33,7 @@ import moa.tasks.TaskMonitor;
 import com.github.javacliparser.IntOption;
 import com.yahoo.labs.samoa.instances.Instance;
 import com.yahoo.labs.samoa.instances.InstancesHeader;
+import com.yahoo.labs.samoa.instances.SharedInstance;
 
 /**
  * Bootstrapped Stream
@@ -57,6 +58,7 @@ public class BootstrappedStream extends AbstractOptionHandler implements
     protected int waitingToSend;
     protected Example<Instance> queuedInstance;
     protected Random randomGenerator;
+    protected PoissonSampler poisson = new PoissonSampler(1.0);
     
 	public BootstrappedStream() {
 		randomGenerator=new Random();
@@ -95,12 +97,13 @@ public class BootstrappedStream extends AbstractOptionHandler implements
 		if(waitingToSend==0){
 			do {
 				queuedInstance=originalStream.nextInstance();
-				waitingToSend= MiscUtils.poisson(1.0, this.randomGenerator);;
+				waitingToSend= this.poisson.nextInt(this.randomGenerator);
 			} while (waitingToSend==0);
 			
 		}
-		Example<Instance> instance=new InstanceExample(queuedInstance.getData().copy());
-		instance.setWeight(queuedInstance.weight());
+		// the repeats share the values of the queued instance
+		Example<Instance> instance=new InstanceExample(
+				SharedInstance.withWeight(queuedInstance.getData(), queuedInstance.weight()));
 		waitingToSend--;
 		return instance;
 	}
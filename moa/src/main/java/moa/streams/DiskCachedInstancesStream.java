@@ -0,0 +1,358 @@
+/*
+ *    DiskCachedInstancesStream.java
+ *    Copyright (C) 2024 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *    
+ */
+package moa.streams;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+import moa.core.InstanceExample;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstanceImpl;
+import com.yahoo.labs.samoa.instances.Instances;
+
+/**
+ * Stream of instances that are cached on disk instead of in memory, for
+ * caches much larger than the heap. It is built with a {@link Writer}, which
+ * the task <code>CacheShuffledStream</code> uses when given a cache
+ * directory.
+ *
+ * The instances are stored as fixed-size records of little-endian doubles
+ * (the weight, then all attribute values) in append-only segment files, and
+ * replayed through memory-mapped windows of the segments. Sparse instances
+ * are stored densely.
+ *
+ * The writer shuffles the instances externally: every instance is appended
+ * to a bucket file picked at random, and each bucket is then shuffled on its
+ * own into a segment, holding only the permutation of the bucket in memory.
+ * With a single bucket the order is the same as the one of
+ * {@link Instances#randomize(Random)} with the same random generator.
+ *
+ * The files of the cache are deleted when the stream is closed, which tasks
+ * do with the streams that other tasks made for them once they are done (see
+ * {@link moa.options.OptionsHandler#closePreparedObjects(Object)}), and otherwise
+ * when the JVM exits.
+ *
+ * @version $Revision: 1 $
+ */
+public class DiskCachedInstancesStream extends CachedInstancesStream implements Closeable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The largest part of a file mapped at once. */
+    protected static final int MAX_WINDOW_BYTES = 1 << 30;
+
+    protected File[] segments;
+
+    protected long[] segmentSizes;
+
+    protected long numInstances;
+
+    protected int recordSize;
+
+    protected long streamPosition;
+
+    protected transient ByteBuffer window;
+
+    protected DiskCachedInstancesStream(Instances header, File[] segments, long[] segmentSizes) {
+        super(new Instances(header, 0));
+        this.segments = segments;
+        this.segmentSizes = segmentSizes;
+        for (long size : segmentSizes) {
+            this.numInstances += size;
+        }
+        this.recordSize = recordSize(header);
+    }
+
+    /**
+     * Gets the number of instances in the cache.
+     *
+     * @return the number of instances
+     */
+    public long numInstances() {
+        return this.numInstances;
+    }
+
+    @Override
+    public long estimatedRemainingInstances() {
+        return this.numInstances - this.streamPosition;
+    }
+
+    @Override
+    public boolean hasMoreInstances() {
+        return this.streamPosition < this.numInstances;
+    }
+
+    @Override
+    public InstanceExample nextInstance() {
+        if ((this.window == null) || !this.window.hasRemaining()) {
+            mapWindow();
+        }
+        double weight = this.window.getDouble();
+        double[] values = new double[this.toStream.numAttributes()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = this.window.getDouble();
+        }
+        this.streamPosition++;
+        Instance inst = new InstanceImpl(weight, values);
+        inst.setDataset(this.toStream);
+        return new InstanceExample(inst);
+    }
+
+    @Override
+    public void restart() {
+        this.streamPosition = 0;
+        this.window = null;
+    }
+
+    /**
+     * Deletes the files of the cache. The stream cannot be read any more.
+     */
+    @Override
+    public void close() {
+        this.window = null;
+        if (this.segments != null) {
+            for (File segment : this.segments) {
+                segment.delete();
+            }
+            this.segments = null;
+        }
+    }
+
+    /**
+     * Maps the window of the segment that holds the next instance.
+     */
+    protected void mapWindow() {
+        if (this.segments == null) {
+            throw new IllegalStateException("The cache on disk has been closed");
+        }
+        long position = this.streamPosition;
+        int segment = 0;
+        while (position >= this.segmentSizes[segment]) {
+            position -= this.segmentSizes[segment];
+            segment++;
+        }
+        long length = Math.min(this.segmentSizes[segment] - position,
+                recordsPerWindow(this.recordSize));
+        this.window = map(this.segments[segment], position * this.recordSize,
+                length * this.recordSize);
+    }
+
+    protected static int recordSize(Instances header) {
+        return (header.numAttributes() + 1) * Double.BYTES;
+    }
+
+    protected static int recordsPerWindow(int recordSize) {
+        return Math.max(1, MAX_WINDOW_BYTES / recordSize);
+    }
+
+    protected static ByteBuffer map(File file, long offset, long length) {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            return in.getChannel().map(FileChannel.MapMode.READ_ONLY, offset, length)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed reading cached instances from " + file, ex);
+        }
+    }
+
+    /**
+     * Appends instances to the buckets of a disk cache and shuffles them into
+     * a {@link DiskCachedInstancesStream}.
+     */
+    public static class Writer {
+
+        protected Instances header;
+
+        protected File directory;
+
+        protected Random random;
+
+        protected int recordSize;
+
+        protected File[] buckets;
+
+        protected OutputStream[] bucketOutputs;
+
+        protected int[] bucketSizes;
+
+        protected ByteBuffer record;
+
+        protected long numInstances;
+
+        /**
+         * Creates a writer for the cache.
+         *
+         * @param header the header of the instances
+         * @param directory the directory to store the cache in
+         * @param numBuckets the number of buckets to spread the instances over,
+         * each of which has to fit in memory as a permutation of its instances
+         * @param random the random generator to shuffle the instances with
+         */
+        public Writer(Instances header, File directory, int numBuckets, Random random) {
+            this.header = header;
+            this.directory = directory;
+            this.random = random;
+            this.recordSize = recordSize(header);
+            this.record = ByteBuffer.allocate(this.recordSize).order(ByteOrder.LITTLE_ENDIAN);
+            this.buckets = new File[numBuckets];
+            this.bucketOutputs = new OutputStream[numBuckets];
+            this.bucketSizes = new int[numBuckets];
+            try {
+                directory.mkdirs();
+                for (int i = 0; i < numBuckets; i++) {
+                    this.buckets[i] = createFile("bucket");
+                    this.bucketOutputs[i] = new BufferedOutputStream(
+                            new FileOutputStream(this.buckets[i]), 1 << 16);
+                }
+            } catch (IOException ex) {
+                discard();
+                throw new RuntimeException("Failed creating cache in " + directory, ex);
+            }
+        }
+
+        public long numInstances() {
+            return this.numInstances;
+        }
+
+        /**
+         * Appends an instance to a bucket picked at random.
+         *
+         * @param inst the instance to append
+         */
+        public void add(Instance inst) {
+            int bucket = (this.buckets.length == 1) ? 0 : this.random.nextInt(this.buckets.length);
+            if (this.bucketSizes[bucket] == Integer.MAX_VALUE) {
+                throw new RuntimeException("Too many instances in one bucket of the cache");
+            }
+            this.record.clear();
+            this.record.putDouble(inst.weight());
+            int numAttributes = this.header.numAttributes();
+            for (int i = 0; i < numAttributes; i++) {
+                this.record.putDouble(inst.value(i));
+            }
+            try {
+                this.bucketOutputs[bucket].write(this.record.array());
+            } catch (IOException ex) {
+                throw new RuntimeException("Failed writing cache to " + this.buckets[bucket], ex);
+            }
+            this.bucketSizes[bucket]++;
+            this.numInstances++;
+        }
+
+        /**
+         * Shuffles each bucket into a segment of the stream. The buckets are
+         * deleted afterwards, and the writer cannot be used any more.
+         *
+         * @return the stream of the shuffled instances
+         */
+        public DiskCachedInstancesStream shuffle() {
+            File[] segments = new File[this.buckets.length];
+            long[] segmentSizes = new long[this.buckets.length];
+            try {
+                closeBuckets();
+                for (int i = 0; i < this.buckets.length; i++) {
+                    segments[i] = createFile("segment");
+                    segmentSizes[i] = this.bucketSizes[i];
+                    shuffleBucket(this.buckets[i], this.bucketSizes[i], segments[i]);
+                    this.buckets[i].delete();
+                }
+            } catch (IOException ex) {
+                for (File segment : segments) {
+                    if (segment != null) {
+                        segment.delete();
+                    }
+                }
+                throw new RuntimeException("Failed shuffling cache in " + this.directory, ex);
+            } finally {
+                discard();
+            }
+            return new DiskCachedInstancesStream(this.header, segments, segmentSizes);
+        }
+
+        /**
+         * Deletes the buckets written so far.
+         */
+        public void discard() {
+            try {
+                closeBuckets();
+            } catch (IOException ex) {
+                // deleted below
+            }
+            for (File bucket : this.buckets) {
+                if (bucket != null) {
+                    bucket.delete();
+                }
+            }
+        }
+
+        protected void shuffleBucket(File bucket, int size, File segment) throws IOException {
+            int[] permutation = new int[size];
+            for (int i = 0; i < size; i++) {
+                permutation[i] = i;
+            }
+            for (int j = size - 1; j > 0; j--) {
+                int k = this.random.nextInt(j + 1);
+                int swap = permutation[j];
+                permutation[j] = permutation[k];
+                permutation[k] = swap;
+            }
+
+            int perWindow = recordsPerWindow(this.recordSize);
+            ByteBuffer[] windows = new ByteBuffer[(int) ((size + (long) perWindow - 1) / perWindow)];
+            for (int w = 0; w < windows.length; w++) {
+                long start = (long) w * perWindow;
+                windows[w] = map(bucket, start * this.recordSize,
+                        Math.min(perWindow, size - start) * this.recordSize);
+            }
+            byte[] bytes = new byte[this.recordSize];
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(segment), 1 << 16)) {
+                for (int index : permutation) {
+                    ByteBuffer window = windows[index / perWindow];
+                    window.position((index % perWindow) * this.recordSize);
+                    window.get(bytes);
+                    out.write(bytes);
+                }
+            }
+        }
+
+        protected void closeBuckets() throws IOException {
+            for (int i = 0; i < this.bucketOutputs.length; i++) {
+                if (this.bucketOutputs[i] != null) {
+                    OutputStream out = this.bucketOutputs[i];
+                    this.bucketOutputs[i] = null;
+                    out.close();
+                }
+            }
+        }
+
+        protected File createFile(String prefix) throws IOException {
+            File file = File.createTempFile("moa-cache-" + prefix, ".bin", this.directory);
+            file.deleteOnExit();
+            return file;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ *    DriftScheduleStream.java
+ *    Copyright (C) 2024 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *    
+ */
+package moa.streams;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import moa.core.Example;
+import moa.core.ObjectRepository;
+import moa.options.AbstractOptionHandler;
+import moa.options.ClassOption;
+import moa.options.OptionHandler;
+import moa.tasks.TaskMonitor;
+import com.github.javacliparser.IntOption;
+import com.github.javacliparser.ListOption;
+import com.github.javacliparser.Option;
+import com.github.javacliparser.StringOption;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+
+/**
+ * Stream that drifts through a sequence of concepts, as a flat alternative to
+ * nesting ConceptDriftStream.
+ *<br/><br/>
+ * Example:
+ *<br/><br/>
+ * <code>DriftScheduleStream -s generators.SEAGenerator -f 1,generators.SEAGenerator -f 2,generators.SEAGenerator -f 3<br/>
+ *    -p 25000;50000 -w 1000</code>
+ *<br/><br/>
+ * The drift from concept k to concept k+1 follows the same sigmoid as in
+ * ConceptDriftStream, centred at the k-th position with the k-th width. All
+ * positions count the instances of this stream, so they correspond to the
+ * positions of a nested ConceptDriftStream added up: a nested stream counts
+ * only the instances it is asked for, so its position is relative to the
+ * drift around it.
+ *<br/><br/>
+ * The schedule is split into stable segments, where one concept is certain
+ * and instances are routed without drawing a random number, and drift
+ * segments, where only the sigmoids of the drifts in progress are computed.
+ *
+ * @version $Revision: 1 $
+ */
+public class DriftScheduleStream extends AbstractOptionHandler implements
+        InstanceStream {
+
+    @Override
+    public String getPurposeString() {
+        return "Drifts through a sequence of concepts following a schedule of drift positions and widths.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public ListOption streamsOption = new ListOption("streams", 's',
+            "Concepts to drift through, in order.", new ClassOption("stream", ' ',
+            "Concept.", ExampleStream.class, "generators.RandomTreeGenerator"),
+            new Option[0], ',');
+
+    public StringOption positionsOption = new StringOption("positions", 'p',
+            "Central position of each concept drift, in increasing order and separated by semicolons.",
+            "");
+
+    public StringOption widthsOption = new StringOption("widths", 'w',
+            "Width of each concept drift, at least 1, separated by semicolons, or a single width for all drifts.",
+            "1000");
+
+    public IntOption randomSeedOption = new IntOption("randomSeed", 'r',
+            "Seed for random noise.", 1);
+
+    // Half the length of a drift segment in widths, beyond which the sigmoid
+    // of the drift is closer to 0 or 1 than a random double can resolve
+    protected static final double SEGMENT_HALF_WIDTHS = 10.0;
+
+    protected ExampleStream[] streams;
+
+    protected double[] positions;
+
+    protected double[] widths;
+
+    // Boundaries of the segments of the schedule: segment i covers the
+    // instances from segmentStarts[i] up to segmentStarts[i + 1] - 1. In a
+    // stable segment firstDrift == lastDrift and the concept is certain
+    protected List<Long> segmentStarts;
+
+    protected List<int[]> segmentDrifts;
+
+    protected int segment;
+
+    protected long segmentEnd;
+
+    protected int firstDrift;
+
+    protected int lastDrift;
+
+    protected long numberInstanceStream;
+
+    protected Random random;
+
+    @Override
+    public void prepareForUseImpl(TaskMonitor monitor,
+            ObjectRepository repository) {
+        Option[] streamOptions = this.streamsOption.getList();
+        if (streamOptions.length == 0) {
+            throw new IllegalArgumentException("No concepts to drift through.");
+        }
+        this.streams = new ExampleStream[streamOptions.length];
+        for (int i = 0; i < this.streams.length; i++) {
+            monitor.setCurrentActivity("Materializing concept " + (i + 1)
+                    + "...", -1.0);
+            this.streams[i] = (ExampleStream) ((ClassOption) streamOptions[i]).materializeObject(monitor, repository);
+            if (monitor.taskShouldAbort()) {
+                return;
+            }
+            if (this.streams[i] instanceof OptionHandler) {
+                ((OptionHandler) this.streams[i]).prepareForUse(monitor, repository);
+                if (monitor.taskShouldAbort()) {
+                    return;
+                }
+            }
+        }
+        this.positions = parseList(this.positionsOption.getValue(), this.streams.length - 1);
+        this.widths = parseList(this.widthsOption.getValue(), this.streams.length - 1);
+        for (int k = 1; k < this.positions.length; k++) {
+            if (this.positions[k] < this.positions[k - 1]) {
+                throw new IllegalArgumentException("Drift positions must be in increasing order.");
+            }
+        }
+        for (double width : this.widths) {
+            // a negative width would turn the sigmoid round, drifting back
+            if (!(width >= 1.0)) {
+                throw new IllegalArgumentException("Drift widths must be at least 1, but got: "
+                        + this.widthsOption.getValue());
+            }
+        }
+        buildSchedule();
+        restart();
+    }
+
+    /**
+     * Parses a list of numbers separated by semicolons, where a single number
+     * stands for all of them.
+     */
+    protected static double[] parseList(String text, int length) {
+        String[] parts = text.trim().isEmpty() ? new String[0] : text.trim().split(";");
+        double[] values = new double[length];
+        if (parts.length == 1) {
+            Arrays.fill(values, Double.parseDouble(parts[0].trim()));
+        } else if (parts.length == length) {
+            for (int i = 0; i < length; i++) {
+                values[i] = Double.parseDouble(parts[i].trim());
+            }
+        } else {
+            throw new IllegalArgumentException("Expected " + length
+                    + " values, one for each drift between the concepts, but got: " + text);
+        }
+        return values;
+    }
+
+    /**
+     * Splits the schedule into stable segments and segments where one or more
+     * drifts are in progress.
+     */
+    protected void buildSchedule() {
+        int numDrifts = this.positions.length;
+        long[] starts = new long[numDrifts];
+        long[] ends = new long[numDrifts];
+        for (int k = 0; k < numDrifts; k++) {
+            double halfLength = SEGMENT_HALF_WIDTHS * this.widths[k];
+            starts[k] = (long) Math.floor(this.positions[k] - halfLength);
+            ends[k] = (long) Math.ceil(this.positions[k] + halfLength) + 1;
+        }
+        this.segmentStarts = new ArrayList<Long>();
+        this.segmentDrifts = new ArrayList<int[]>();
+        long time = Long.MIN_VALUE;
+        int done = 0;
+        while (done < numDrifts) {
+            // Drifts in progress from time onwards, and when that changes
+            int last = done;
+            long next = Long.MAX_VALUE;
+            for (int k = done; k < numDrifts; k++) {
+                if (starts[k] > time) {
+                    next = Math.min(next, starts[k]);
+                    break;
+                }
+                last = k + 1;
+                if (ends[k] > time) {
+                    next = Math.min(next, ends[k]);
+                }
+            }
+            this.segmentStarts.add(time);
+            this.segmentDrifts.add(new int[]{done, last});
+            time = next;
+            while (done < numDrifts && ends[done] <= time) {
+                done++;
+            }
+        }
+        this.segmentStarts.add(time);
+        this.segmentDrifts.add(new int[]{numDrifts, numDrifts});
+    }
+
+    protected void enterSegment(int segment) {
+        this.segment = segment;
+        this.segmentEnd = segment + 1 < this.segmentStarts.size()
+                ? this.segmentStarts.get(segment + 1) : Long.MAX_VALUE;
+        int[] drifts = this.segmentDrifts.get(segment);
+        this.firstDrift = drifts[0];
+        this.lastDrift = drifts[1];
+    }
+
+    @Override
+    public long estimatedRemainingInstances() {
+        long remaining = 0;
+        for (ExampleStream stream : this.streams) {
+            remaining += stream.estimatedRemainingInstances();
+        }
+        return remaining;
+    }
+
+    @Override
+    public InstancesHeader getHeader() {
+        return this.streams[0].getHeader();
+    }
+
+    @Override
+    public boolean hasMoreInstances() {
+        for (ExampleStream stream : this.streams) {
+            if (stream.hasMoreInstances()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isRestartable() {
+        for (ExampleStream stream : this.streams) {
+            if (!stream.isRestartable()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Example nextInstance() {
+        numberInstanceStream++;
+        while (numberInstanceStream >= this.segmentEnd) {
+            enterSegment(this.segment + 1);
+        }
+        int concept = this.firstDrift;
+        // Past each drift in progress with the probability of its sigmoid
+        while (concept < this.lastDrift) {
+            double x = -4.0 * (numberInstanceStream - this.positions[concept]) / this.widths[concept];
+            double probabilityDrift = 1.0 / (1.0 + Math.exp(x));
+            if (this.random.nextDouble() > probabilityDrift) {
+                break;
+            }
+            concept++;
+        }
+        return this.streams[concept].nextInstance();
+    }
+
+    /**
+     * Gets the probability of each concept at the given instance.
+     */
+    public double[] getConceptProbabilities(long instance) {
+        double[] probabilities = new double[this.streams.length];
+        double reach = 1.0;
+        for (int k = 0; k < this.positions.length; k++) {
+            double x = -4.0 * (instance - this.positions[k]) / this.widths[k];
+            double probabilityDrift = 1.0 / (1.0 + Math.exp(x));
+            probabilities[k] = reach * (1.0 - probabilityDrift);
+            reach *= probabilityDrift;
+        }
+        probabilities[this.positions.length] = reach;
+        return probabilities;
+    }
+
+    @Override
+    public void restart() {
+        for (ExampleStream stream : this.streams) {
+            stream.restart();
+        }
+        this.numberInstanceStream = 0;
+        this.random = new Random(this.randomSeedOption.getValue());
+        enterSegment(0);
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ *    EventTimeMergeStream.java
+ *    Copyright (C) 2024 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *    
+ */
+package moa.streams;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Map;
+
+import moa.core.Example;
+import moa.core.InstanceExample;
+import moa.core.ObjectRepository;
+import moa.options.AbstractOptionHandler;
+import moa.options.ClassOption;
+import moa.tasks.TaskMonitor;
+import com.github.javacliparser.IntOption;
+import com.github.javacliparser.ListOption;
+import com.github.javacliparser.Option;
+import com.github.javacliparser.StringOption;
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstanceImpl;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+
+/**
+ * Stream that merges several streams, such as feeds read from files, in the
+ * order of the time stored in an attribute of their instances. The instances
+ * of each stream are expected in time order already.
+ *<br/><br/>
+ * Each stream is read on a thread of its own by a {@link PrefetchingStream},
+ * so the streams are parsed in parallel, and closing the merged stream stops
+ * these threads. The merge itself runs on the reading thread, over a heap of
+ * the next instance of each stream. Instances with the same time are returned
+ * in the order of the streams, and instances with a missing time as soon as
+ * they are read.
+ *<br/><br/>
+ * The header of the merged stream is the one of the first stream. The
+ * attributes of the other streams are matched to it by name once, with
+ * nominal values matched by label. Attributes or values that the first
+ * stream does not have become missing values.
+ *
+ * @version $Revision: 1 $
+ */
+public class EventTimeMergeStream extends AbstractOptionHandler implements
+        InstanceStream, Closeable {
+
+    @Override
+    public String getPurposeString() {
+        return "Merges several streams in the order of the time of their instances.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public ListOption streamsOption = new ListOption("streams", 's',
+            "Streams to merge.", new ClassOption("stream", ' ',
+            "Stream.", ExampleStream.class, "ArffFileStream"),
+            new Option[0], ',');
+
+    public StringOption timeAttributeOption = new StringOption("timeAttribute", 't',
+            "Name of the attribute holding the time of the instances.", "timestamp");
+
+    public IntOption batchSizeOption = new IntOption("batchSize", 'b',
+            "Number of instances handed over at a time by the thread reading a stream.",
+            256, 1, Integer.MAX_VALUE);
+
+    public IntOption numBatchesOption = new IntOption("numBatches", 'n',
+            "Maximum number of batches read ahead of each stream.", 16, 1, Integer.MAX_VALUE);
+
+    protected PrefetchingStream[] streams;
+
+    protected InstancesHeader header;
+
+    protected int timeIndex;
+
+    // Index in each stream of the attributes of the header, or null when the
+    // stream has the attributes of the header
+    protected int[][] attributeMaps;
+
+    // Index in the header of the nominal values of each stream, or null when
+    // they are the same as in the header
+    protected int[][][] valueMaps;
+
+    // The next instance of each stream and its time
+    protected InstanceExample[] heads;
+
+    protected double[] headTimes;
+
+    // Heap of the streams that have instances left, ordered by their heads
+    protected int[] heap;
+
+    protected int heapSize;
+
+    @Override
+    public void prepareForUseImpl(TaskMonitor monitor,
+            ObjectRepository repository) {
+        Option[] streamOptions = this.streamsOption.getList();
+        if (streamOptions.length == 0) {
+            throw new IllegalArgumentException("No streams to merge.");
+        }
+        close();
+        this.streams = new PrefetchingStream[streamOptions.length];
+        for (int i = 0; i < this.streams.length; i++) {
+            monitor.setCurrentActivity("Preparing stream " + (i + 1)
+                    + "...", -1.0);
+            this.streams[i] = new PrefetchingStream();
+            this.streams[i].streamOption.setValueViaCLIString(
+                    ((ClassOption) streamOptions[i]).getValueAsCLIString());
+            this.streams[i].batchSizeOption.setValue(this.batchSizeOption.getValue());
+            this.streams[i].numBatchesOption.setValue(this.numBatchesOption.getValue());
+            this.streams[i].prepareForUse(monitor, repository);
+            if (monitor.taskShouldAbort()) {
+                return;
+            }
+        }
+        this.header = this.streams[0].getHeader();
+        this.timeIndex = indexOfAttribute(this.header, this.timeAttributeOption.getValue());
+        if (this.timeIndex < 0) {
+            throw new IllegalArgumentException("Stream 1 has no attribute "
+                    + this.timeAttributeOption.getValue() + ".");
+        }
+        this.attributeMaps = new int[this.streams.length][];
+        this.valueMaps = new int[this.streams.length][][];
+        for (int i = 1; i < this.streams.length; i++) {
+            alignHeader(i, this.streams[i].getHeader());
+        }
+        this.heads = new InstanceExample[this.streams.length];
+        this.headTimes = new double[this.streams.length];
+        this.heap = new int[this.streams.length];
+        readHeads();
+    }
+
+    /**
+     * Matches the attributes of a stream to the ones of the header.
+     */
+    protected void alignHeader(int stream, InstancesHeader streamHeader) {
+        Map<String, Integer> indices = new HashMap<String, Integer>();
+        for (int j = 0; j < streamHeader.numAttributes(); j++) {
+            indices.put(streamHeader.attribute(j).name(), j);
+        }
+        boolean same = (streamHeader.numAttributes() == this.header.numAttributes())
+                && (streamHeader.classIndex() == this.header.classIndex());
+        int[] attributeMap = new int[this.header.numAttributes()];
+        int[][] valueMap = null;
+        for (int j = 0; j < attributeMap.length; j++) {
+            Attribute attribute = this.header.attribute(j);
+            Integer index = indices.get(attribute.name());
+            attributeMap[j] = (index == null) ? -1 : index;
+            same &= (attributeMap[j] == j);
+            if (index == null) {
+                continue;
+            }
+            Attribute streamAttribute = streamHeader.attribute(index);
+            if (streamAttribute.isNominal() != attribute.isNominal()) {
+                throw new IllegalArgumentException("Attribute " + attribute.name()
+                        + " of stream " + (stream + 1) + " does not have the type of the one of stream 1.");
+            }
+            if (attribute.isNominal()
+                    && !streamAttribute.getAttributeValues().equals(attribute.getAttributeValues())) {
+                if (valueMap == null) {
+                    valueMap = new int[attributeMap.length][];
+                }
+                valueMap[j] = new int[streamAttribute.numValues()];
+                for (int v = 0; v < valueMap[j].length; v++) {
+                    // indexOfValue() would add the labels that are missing
+                    valueMap[j][v] = attribute.getAttributeValues().indexOf(streamAttribute.value(v));
+                }
+                same = false;
+            }
+        }
+        if (attributeMap[this.timeIndex] < 0) {
+            throw new IllegalArgumentException("Stream " + (stream + 1) + " has no attribute "
+                    + this.timeAttributeOption.getValue() + ".");
+        }
+        this.attributeMaps[stream] = same ? null : attributeMap;
+        this.valueMaps[stream] = valueMap;
+    }
+
+    protected static int indexOfAttribute(InstancesHeader header, String name) {
+        for (int j = 0; j < header.numAttributes(); j++) {
+            if (header.attribute(j).name().equals(name)) {
+                return j;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Converts an instance of a stream to the attributes of the header.
+     */
+    protected InstanceExample align(int stream, Example example) {
+        int[] attributeMap = this.attributeMaps[stream];
+        if ((attributeMap == null) && (example instanceof InstanceExample)) {
+            return (InstanceExample) example;
+        }
+        Instance inst = (Instance) example.getData();
+        if (attributeMap == null) {
+            return new InstanceExample(inst);
+        }
+        int[][] valueMap = this.valueMaps[stream];
+        double[] values = new double[attributeMap.length];
+        for (int j = 0; j < values.length; j++) {
+            double value = (attributeMap[j] < 0) ? Double.NaN : inst.value(attributeMap[j]);
+            if ((valueMap != null) && (valueMap[j] != null) && !Double.isNaN(value)) {
+                int index = valueMap[j][(int) value];
+                value = (index < 0) ? Double.NaN : index;
+            }
+            values[j] = value;
+        }
+        Instance aligned = new InstanceImpl(inst.weight(), values);
+        aligned.setDataset(this.header);
+        return new InstanceExample(aligned);
+    }
+
+    /**
+     * Reads the next instance of a stream into its head.
+     *
+     * @return whether the stream had an instance left
+     */
+    protected boolean readHead(int stream) {
+        if (!this.streams[stream].hasMoreInstances()) {
+            this.heads[stream] = null;
+            return false;
+        }
+        this.heads[stream] = align(stream, this.streams[stream].nextInstance());
+        double time = this.heads[stream].getData().value(this.timeIndex);
+        this.headTimes[stream] = Double.isNaN(time) ? Double.NEGATIVE_INFINITY : time;
+        return true;
+    }
+
+    protected void readHeads() {
+        this.heapSize = 0;
+        for (int i = 0; i < this.streams.length; i++) {
+            if (readHead(i)) {
+                this.heap[this.heapSize++] = i;
+            }
+        }
+        for (int k = this.heapSize / 2 - 1; k >= 0; k--) {
+            siftDown(k);
+        }
+    }
+
+    protected boolean before(int stream, int other) {
+        return (this.headTimes[stream] < this.headTimes[other])
+                || ((this.headTimes[stream] == this.headTimes[other]) && (stream < other));
+    }
+
+    protected void siftDown(int k) {
+        int stream = this.heap[k];
+        while (2 * k + 1 < this.heapSize) {
+            int child = 2 * k + 1;
+            if ((child + 1 < this.heapSize) && before(this.heap[child + 1], this.heap[child])) {
+                child++;
+            }
+            if (!before(this.heap[child], stream)) {
+                break;
+            }
+            this.heap[k] = this.heap[child];
+            k = child;
+        }
+        this.heap[k] = stream;
+    }
+
+    @Override
+    public InstancesHeader getHeader() {
+        return this.header;
+    }
+
+    @Override
+    public long estimatedRemainingInstances() {
+        long remaining = this.heapSize;
+        for (PrefetchingStream stream : this.streams) {
+            long streamRemaining = stream.estimatedRemainingInstances();
+            if (streamRemaining < 0) {
+                return -1;
+            }
+            remaining += streamRemaining;
+        }
+        return remaining;
+    }
+
+    @Override
+    public boolean hasMoreInstances() {
+        return this.heapSize > 0;
+    }
+
+    @Override
+    public InstanceExample nextInstance() {
+        int stream = this.heap[0];
+        InstanceExample next = this.heads[stream];
+        if (!readHead(stream)) {
+            this.heap[0] = this.heap[--this.heapSize];
+        }
+        if (this.heapSize > 0) {
+            siftDown(0);
+        }
+        return next;
+    }
+
+    @Override
+    public boolean isRestartable() {
+        for (PrefetchingStream stream : this.streams) {
+            if (!stream.isRestartable()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void restart() {
+        for (PrefetchingStream stream : this.streams) {
+            stream.restart();
+        }
+        readHeads();
+    }
+
+    /**
+     * Stops the threads reading the streams.
+     */
+    @Override
+    public void close() {
+        if (this.streams != null) {
+            for (PrefetchingStream stream : this.streams) {
+                if (stream != null) {
+                    stream.close();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+    }
+}
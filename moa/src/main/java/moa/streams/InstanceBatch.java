@@ -0,0 +1,127 @@
+/*
+ *    InstanceBatch.java
+ *    Copyright (C) 2024 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *    
+ */
+package moa.streams;
+
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A batch of dense instances stored in primitive buffers. The values of all
+ * attributes, class value included, are stored row by row in one array, so
+ * that a batch can be filled and read again without allocating an instance
+ * per row.
+ *
+ * @see BatchInstanceStream
+ * @version $Revision: 1 $
+ */
+public class InstanceBatch implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected InstancesHeader header;
+
+    protected int numAttributes;
+
+    protected double[] values;
+
+    protected double[] weights;
+
+    protected int size;
+
+    public InstanceBatch(InstancesHeader header, int capacity) {
+        this.header = header;
+        this.numAttributes = header.numAttributes();
+        this.values = new double[capacity * this.numAttributes];
+        this.weights = new double[capacity];
+    }
+
+    public InstancesHeader getHeader() {
+        return this.header;
+    }
+
+    public int numAttributes() {
+        return this.numAttributes;
+    }
+
+    public int capacity() {
+        return this.weights.length;
+    }
+
+    /**
+     * Gets the number of rows filled.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    public void setSize(int size) {
+        if (size < 0 || size > capacity()) {
+            throw new IllegalArgumentException("Batch size " + size
+                    + " out of range 0.." + capacity());
+        }
+        this.size = size;
+    }
+
+    public void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * Gets the values of all rows, where the value of attribute j of row i
+     * is at index i * numAttributes() + j.
+     */
+    public double[] getValues() {
+        return this.values;
+    }
+
+    public double[] getWeights() {
+        return this.weights;
+    }
+
+    public int offset(int row) {
+        return row * this.numAttributes;
+    }
+
+    public double value(int row, int attIndex) {
+        return this.values[row * this.numAttributes + attIndex];
+    }
+
+    public double classValue(int row) {
+        return value(row, this.header.classIndex());
+    }
+
+    public double weight(int row) {
+        return this.weights[row];
+    }
+
+    /**
+     * Copies a row into a new instance with the header of the batch.
+     */
+    public Instance instance(int row) {
+        int offset = offset(row);
+        Instance inst = new DenseInstance(this.weights[row],
+                Arrays.copyOfRange(this.values, offset, offset + this.numAttributes));
+        inst.setDataset(this.header);
+        return inst;
+    }
+}
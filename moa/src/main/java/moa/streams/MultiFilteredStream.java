@@ -28,6 +28,8 @@ import moa.options.ClassOption;
 import com.github.javacliparser.ListOption;
 import com.github.javacliparser.Option;
 import moa.options.OptionHandler;
+import moa.streams.filters.FusedStreamFilter;
+import moa.streams.filters.FusibleStreamFilter;
 import moa.streams.filters.StreamFilter;
 import moa.tasks.TaskMonitor;
 import com.yahoo.labs.samoa.instances.Instance;
@@ -81,9 +83,29 @@ public class MultiFilteredStream extends AbstractOptionHandler implements
             }
         }
         ExampleStream chain = (ExampleStream) getPreparedClassOption(this.streamOption);
-        for (int i = 0; i < filters.length; i++) {
-            filters[i].setInputStream(chain);
-            chain = filters[i];
+        int i = 0;
+        while (i < filters.length) {
+            // Runs of fusible filters are chained as usual and then read
+            // through a single fused transform
+            int end = i;
+            while (end < filters.length && filters[end] instanceof FusibleStreamFilter) {
+                end++;
+            }
+            if (end - i > 1) {
+                ExampleStream fusedInput = chain;
+                FusibleStreamFilter[] fused = new FusibleStreamFilter[end - i];
+                for (int j = i; j < end; j++) {
+                    filters[j].setInputStream(chain);
+                    chain = filters[j];
+                    fused[j - i] = (FusibleStreamFilter) filters[j];
+                }
+                chain = new FusedStreamFilter(fusedInput, fused);
+                i = end;
+            } else {
+                filters[i].setInputStream(chain);
+                chain = filters[i];
+                i++;
+            }
         }
         this.filterChain = chain;
     }
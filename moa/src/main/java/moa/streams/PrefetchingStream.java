@@ -0,0 +1,277 @@
+/*
+ *    PrefetchingStream.java
+ *    Copyright (C) 2024 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *    
+ */
+package moa.streams;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import moa.core.Example;
+import moa.core.ObjectRepository;
+import moa.options.AbstractOptionHandler;
+import moa.options.ClassOption;
+import moa.tasks.TaskMonitor;
+import com.github.javacliparser.IntOption;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+
+/**
+ * Stream that reads another stream ahead on a thread of its own, so that
+ * reading, parsing or generating instances overlaps with learning from them.
+ *<br/><br/>
+ * The producer thread reads the wrapped stream in batches of instances and
+ * hands each full batch over through a bounded queue, so the threads only
+ * synchronise once per batch. The producer waits while the queue is full.
+ * Apart from getHeader(), the wrapped stream is only used by the producer
+ * thread, which is stopped before the stream is restarted. The producer also
+ * publishes the estimate of the instances remaining in the wrapped stream once
+ * per batch, so the reader doesn't call into the stream for it.
+ *<br/><br/>
+ * A reader that stops before the end of the stream closes it, to stop the
+ * producer and let go of the batches read ahead; tasks do so with the streams
+ * of their options once they are done. A closed stream starts a new producer
+ * when it is read again, without the batches dropped, so it should be
+ * restarted first.
+ *
+ * @version $Revision: 1 $
+ */
+public class PrefetchingStream extends AbstractOptionHandler implements
+        ExampleStream, Closeable {
+
+    @Override
+    public String getPurposeString() {
+        return "Reads a stream ahead on a separate thread.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public ClassOption streamOption = new ClassOption("stream", 's',
+            "Stream to read ahead.", ExampleStream.class,
+            "generators.RandomTreeGenerator");
+
+    public IntOption batchSizeOption = new IntOption("batchSize", 'b',
+            "Number of instances handed over at a time.", 256, 1, Integer.MAX_VALUE);
+
+    public IntOption numBatchesOption = new IntOption("numBatches", 'n',
+            "Maximum number of batches read ahead.", 16, 1, Integer.MAX_VALUE);
+
+    // Handed over after the last batch of the stream
+    protected static final Example[] END_OF_STREAM = new Example[0];
+
+    protected ExampleStream stream;
+
+    protected transient BlockingQueue<Example[]> queue;
+
+    protected transient Producer producer;
+
+    protected transient Example[] batch;
+
+    protected transient int batchIndex;
+
+    /**
+     * Reads the stream into batches until it ends or is stopped.
+     */
+    protected class Producer extends Thread {
+
+        protected volatile boolean stopped = false;
+
+        protected volatile Throwable failure;
+
+        // Instances remaining in the stream after the batches read so far
+        protected volatile long remaining;
+
+        public Producer() {
+            super("PrefetchingStream producer");
+            setDaemon(true);
+            this.remaining = stream.estimatedRemainingInstances();
+        }
+
+        @Override
+        public void run() {
+            int batchSize = batchSizeOption.getValue();
+            try {
+                while (!this.stopped) {
+                    Example[] next = new Example[batchSize];
+                    int size = 0;
+                    while (size < batchSize && stream.hasMoreInstances()) {
+                        next[size++] = stream.nextInstance();
+                    }
+                    if (size > 0) {
+                        if (size < batchSize) {
+                            Example[] last = new Example[size];
+                            System.arraycopy(next, 0, last, 0, size);
+                            next = last;
+                        }
+                        queue.put(next);
+                    }
+                    // after the put, so a batch waiting for room still counts
+                    this.remaining = stream.estimatedRemainingInstances();
+                    if (size < batchSize) {
+                        queue.put(END_OF_STREAM);
+                        return;
+                    }
+                }
+            } catch (InterruptedException ex) {
+                // stopped
+            } catch (Throwable ex) {
+                this.failure = ex;
+                try {
+                    queue.put(END_OF_STREAM);
+                } catch (InterruptedException e) {
+                    // stopped
+                }
+            }
+        }
+
+        public void shutdown() {
+            this.stopped = true;
+            interrupt();
+            try {
+                join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void prepareForUseImpl(TaskMonitor monitor,
+            ObjectRepository repository) {
+        this.stream = (ExampleStream) getPreparedClassOption(this.streamOption);
+        stopProducer();
+    }
+
+    protected void startProducer() {
+        this.queue = new ArrayBlockingQueue<Example[]>(this.numBatchesOption.getValue());
+        this.batch = null;
+        this.batchIndex = 0;
+        this.producer = new Producer();
+        this.producer.start();
+    }
+
+    protected void stopProducer() {
+        if (this.producer != null) {
+            this.producer.shutdown();
+            this.producer = null;
+        }
+        this.queue = null;
+        this.batch = null;
+    }
+
+    /**
+     * Makes sure there is a batch with instances left to read, unless the
+     * stream has ended.
+     */
+    protected void nextBatch() {
+        if (this.producer == null) {
+            startProducer();
+        }
+        while (this.batch == null || (this.batchIndex >= this.batch.length && this.batch != END_OF_STREAM)) {
+            try {
+                this.batch = this.queue.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for instances", ex);
+            }
+            this.batchIndex = 0;
+            if (this.batch == END_OF_STREAM) {
+                // put back for later calls
+                this.queue.offer(END_OF_STREAM);
+            }
+        }
+        // a stream that failed doesn't look ended to later calls
+        if (this.batch == END_OF_STREAM && this.producer.failure != null) {
+            throw new RuntimeException("Failed reading stream ahead", this.producer.failure);
+        }
+    }
+
+    @Override
+    public InstancesHeader getHeader() {
+        return this.stream.getHeader();
+    }
+
+    @Override
+    public long estimatedRemainingInstances() {
+        long remaining = this.producer == null ? this.stream.estimatedRemainingInstances()
+                : this.producer.remaining;
+        return remaining < 0 ? remaining : remaining + getNumBufferedInstances();
+    }
+
+    @Override
+    public boolean hasMoreInstances() {
+        nextBatch();
+        return this.batch != END_OF_STREAM;
+    }
+
+    @Override
+    public Example nextInstance() {
+        nextBatch();
+        if (this.batch == END_OF_STREAM) {
+            return null;
+        }
+        return this.batch[this.batchIndex++];
+    }
+
+    /**
+     * Gets the number of instances read ahead and not yet returned.
+     */
+    public int getNumBufferedInstances() {
+        if (this.queue == null) {
+            return 0;
+        }
+        int buffered = this.batch == null ? 0 : this.batch.length - this.batchIndex;
+        for (Example[] next : this.queue) {
+            buffered += next.length;
+        }
+        return buffered;
+    }
+
+    /**
+     * Gets the fraction of the queue taken up by batches read ahead. Close to
+     * one, the stream is faster than its reader; close to zero, the reader
+     * waits for the stream.
+     */
+    public double getBufferOccupancy() {
+        return this.queue == null ? 0.0
+                : (double) this.queue.size() / this.numBatchesOption.getValue();
+    }
+
+    @Override
+    public boolean isRestartable() {
+        return this.stream.isRestartable();
+    }
+
+    @Override
+    public void restart() {
+        stopProducer();
+        this.stream.restart();
+    }
+
+    /**
+     * Stops the producer thread and drops the instances read ahead.
+     */
+    @Override
+    public void close() {
+        stopProducer();
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        sb.append("buffered instances: ").append(getNumBufferedInstances());
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ *    TextFileStream.java
+ *    Copyright (C) 2024 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *    
+ */
+package moa.streams;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.javacliparser.FileOption;
+import com.github.javacliparser.FlagOption;
+import com.github.javacliparser.IntOption;
+import com.github.javacliparser.StringOption;
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import com.yahoo.labs.samoa.instances.SparseInstance;
+import moa.core.InputStreamProgressMonitor;
+import moa.core.InstanceExample;
+import moa.core.ObjectRepository;
+import moa.options.AbstractOptionHandler;
+import moa.tasks.TaskMonitor;
+
+/**
+ * Stream of sparse word count instances read from a text file, one document
+ * per line. Each line starts with the class label of the document, followed
+ * by whitespace and the text.
+ *
+ * The text is split into tokens of letters and digits. By default the tokens
+ * are hashed into a fixed number of attributes, without creating strings.
+ * With a vocabulary size, each token gets an attribute of its own until the
+ * vocabulary is full; the attribute of the least recently seen token is then
+ * given to the new token. The tokens of the current document are never given
+ * away, so the counts of two tokens don't add up in one attribute: when a
+ * document has more distinct tokens than the vocabulary size, the tokens
+ * after the vocabulary is full of its own are left out.
+ *
+ * @version $Revision: 1 $
+ */
+public class TextFileStream extends AbstractOptionHandler implements InstanceStream {
+
+    @Override
+    public String getPurposeString() {
+        return "A stream of word counts read from a text file, one labelled document per line.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public FileOption textFileOption = new FileOption("textFile", 'f',
+            "Text file to load, one document per line starting with its class label.",
+            null, "txt", false);
+
+    public StringOption classLabelsOption = new StringOption("classLabels", 'c',
+            "Class labels of the documents, separated by commas.", "class1,class2");
+
+    public IntOption numAttributesOption = new IntOption("numAttributes", 'a',
+            "Number of attributes to hash the tokens into.", 1 << 16, 1, Integer.MAX_VALUE);
+
+    public IntOption vocabularySizeOption = new IntOption("vocabularySize", 'v',
+            "Number of tokens to give an attribute of their own instead of hashing, 0 to hash. The distinct tokens of a document beyond this number are left out.",
+            0, 0, Integer.MAX_VALUE);
+
+    public FlagOption binaryOption = new FlagOption("binary", 'b',
+            "Use the presence of tokens instead of their counts.");
+
+    public FlagOption keepCaseOption = new FlagOption("keepCase", 'k',
+            "Do not lowercase the tokens.");
+
+    protected InstancesHeader streamHeader;
+
+    protected Map<String, Integer> classIndices;
+
+    protected BufferedReader fileReader;
+
+    protected InputStreamProgressMonitor fileProgressMonitor;
+
+    protected String nextLine;
+
+    protected int numInstancesRead;
+
+    protected int numTokenAttributes;
+
+    // Tokens with an attribute of their own, least recently seen first
+    protected LinkedHashMap<String, Integer> vocabulary;
+
+    protected String[] vocabularyWords;
+
+    protected StringBuilder token = new StringBuilder();
+
+    // Token counts of the current document, and the attributes counted
+    protected double[] counts;
+
+    protected int[] countedAttributes = new int[256];
+
+    protected int numCounted;
+
+    @Override
+    protected void prepareForUseImpl(TaskMonitor monitor, ObjectRepository repository) {
+        this.numTokenAttributes = this.vocabularySizeOption.getValue() > 0
+                ? this.vocabularySizeOption.getValue() : this.numAttributesOption.getValue();
+        generateHeader();
+        restart();
+    }
+
+    protected void generateHeader() {
+        List<String> classLabels = new ArrayList<String>();
+        this.classIndices = new HashMap<String, Integer>();
+        for (String label : this.classLabelsOption.getValue().split(",")) {
+            this.classIndices.put(label.trim(), classLabels.size());
+            classLabels.add(label.trim());
+        }
+        List<Attribute> attributes = new ArrayList<Attribute>();
+        for (int i = 0; i < this.numTokenAttributes; i++) {
+            attributes.add(new Attribute("token" + (i + 1)));
+        }
+        attributes.add(new Attribute("class", classLabels));
+        this.streamHeader = new InstancesHeader(new Instances(
+                getCLICreationString(InstanceStream.class), attributes, 0));
+        this.streamHeader.setClassIndex(this.streamHeader.numAttributes() - 1);
+    }
+
+    @Override
+    public InstancesHeader getHeader() {
+        return this.streamHeader;
+    }
+
+    @Override
+    public long estimatedRemainingInstances() {
+        double progressFraction = this.fileProgressMonitor.getProgressFraction();
+        if ((progressFraction > 0.0) && (this.numInstancesRead > 0)) {
+            return (long) ((this.numInstancesRead / progressFraction) - this.numInstancesRead);
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean hasMoreInstances() {
+        return this.nextLine != null;
+    }
+
+    @Override
+    public InstanceExample nextInstance() {
+        String line = this.nextLine;
+
+        // The class label is the first token of the line
+        int start = 0;
+        while (Character.isWhitespace(line.charAt(start))) {
+            start++;
+        }
+        int end = start;
+        while ((end < line.length()) && !Character.isWhitespace(line.charAt(end))) {
+            end++;
+        }
+        String label = line.substring(start, end);
+        Integer classValue = this.classIndices.get(label);
+        if (classValue == null) {
+            throw new RuntimeException("Unknown class label '" + label + "' in line "
+                    + this.numInstancesRead + " of " + this.textFileOption.getFile());
+        }
+
+        countTokens(line, end);
+
+        // Sparse instances need their indices in order, the class is last
+        Arrays.sort(this.countedAttributes, 0, this.numCounted);
+        int[] indices = new int[this.numCounted + 1];
+        double[] values = new double[this.numCounted + 1];
+        boolean binary = this.binaryOption.isSet();
+        for (int i = 0; i < this.numCounted; i++) {
+            int attribute = this.countedAttributes[i];
+            indices[i] = attribute;
+            values[i] = binary ? 1.0 : this.counts[attribute];
+            this.counts[attribute] = 0.0;
+        }
+        indices[this.numCounted] = this.numTokenAttributes;
+        values[this.numCounted] = classValue;
+        this.numCounted = 0;
+
+        Instance inst = new SparseInstance(1.0, values, indices, this.numTokenAttributes + 1);
+        inst.setDataset(this.streamHeader);
+        readNextLine();
+        return new InstanceExample(inst);
+    }
+
+    /**
+     * Counts the tokens of the line from the given position on.
+     */
+    protected void countTokens(String line, int position) {
+        boolean keepCase = this.keepCaseOption.isSet();
+        int length = line.length();
+        while (position < length) {
+            while ((position < length) && !Character.isLetterOrDigit(line.charAt(position))) {
+                position++;
+            }
+            if (position == length) {
+                break;
+            }
+            int hash = 0;
+            this.token.setLength(0);
+            while ((position < length) && Character.isLetterOrDigit(line.charAt(position))) {
+                char c = line.charAt(position++);
+                if (!keepCase) {
+                    c = Character.toLowerCase(c);
+                }
+                hash = 31 * hash + c;
+                if (this.vocabulary != null) {
+                    this.token.append(c);
+                }
+            }
+            int attribute = (this.vocabulary != null) ? vocabularyAttribute(this.token.toString())
+                    : (mix(hash) & Integer.MAX_VALUE) % this.numTokenAttributes;
+            if (attribute < 0) {
+                continue;
+            }
+            if (this.counts[attribute] == 0.0) {
+                if (this.numCounted == this.countedAttributes.length) {
+                    this.countedAttributes = Arrays.copyOf(this.countedAttributes, 2 * this.numCounted);
+                }
+                this.countedAttributes[this.numCounted++] = attribute;
+            }
+            this.counts[attribute]++;
+        }
+    }
+
+    /**
+     * Gets the attribute of a token, giving it the attribute of the least
+     * recently seen token when the vocabulary is full.
+     *
+     * @return the attribute, or -1 if all attributes are taken by tokens of
+     * the current document
+     */
+    protected int vocabularyAttribute(String word) {
+        Integer attribute = this.vocabulary.get(word);
+        if (attribute == null) {
+            if (this.vocabulary.size() < this.numTokenAttributes) {
+                attribute = this.vocabulary.size();
+            } else {
+                Iterator<Integer> eldest = this.vocabulary.values().iterator();
+                attribute = eldest.next();
+                // the tokens of this document were seen last, so if the least
+                // recently seen one is counted, all of them are
+                if (this.counts[attribute] != 0.0) {
+                    return -1;
+                }
+                eldest.remove();
+            }
+            this.vocabulary.put(word, attribute);
+            this.vocabularyWords[attribute] = word;
+        }
+        return attribute;
+    }
+
+    /**
+     * Gets the token that currently has the given attribute, when using a
+     * vocabulary.
+     *
+     * @param attribute the index of the attribute
+     * @return the token, or null if the attribute has no token (yet)
+     */
+    public String getVocabularyWord(int attribute) {
+        return (this.vocabularyWords == null) ? null : this.vocabularyWords[attribute];
+    }
+
+    // Spreads the bits of the hash code (the finaliser of MurmurHash3)
+    protected static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    protected void readNextLine() {
+        try {
+            do {
+                this.nextLine = this.fileReader.readLine();
+            } while ((this.nextLine != null) && this.nextLine.trim().isEmpty());
+            if (this.nextLine == null) {
+                this.fileReader.close();
+            } else {
+                this.numInstancesRead++;
+            }
+        } catch (IOException ioe) {
+            throw new RuntimeException("TextFileStream failed to read from "
+                    + this.textFileOption.getFile(), ioe);
+        }
+    }
+
+    @Override
+    public boolean isRestartable() {
+        return true;
+    }
+
+    @Override
+    public void restart() {
+        try {
+            if (this.fileReader != null) {
+                this.fileReader.close();
+            }
+            this.fileProgressMonitor = new InputStreamProgressMonitor(
+                    new FileInputStream(this.textFileOption.getFile()));
+            this.fileReader = new BufferedReader(new InputStreamReader(
+                    this.fileProgressMonitor, StandardCharsets.UTF_8), 1 << 16);
+        } catch (IOException ioe) {
+            throw new RuntimeException("TextFileStream restart failed.", ioe);
+        }
+        this.counts = new double[this.numTokenAttributes];
+        this.numCounted = 0;
+        if (this.vocabularySizeOption.getValue() > 0) {
+            this.vocabulary = new LinkedHashMap<String, Integer>(16, 0.75f, true);
+            this.vocabularyWords = new String[this.numTokenAttributes];
+        } else {
+            this.vocabulary = null;
+            this.vocabularyWords = null;
+        }
+        this.numInstancesRead = 0;
+        readNextLine();
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+    }
+}
@@ -89,4 +89,19 @@ public abstract class AbstractStreamFilter extends AbstractOptionHandler
     public Instance filterInstance(Instance inst) {
         return inst;
     }
+
+    /**
+     * Writes the values into the instance, setting only the attributes whose
+     * value changed so that sparse instances stay sparse.
+     *
+     * @param inst the instance to update
+     * @param values the new values of all attributes of the instance
+     */
+    protected static void setChangedValues(Instance inst, double[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (Double.doubleToLongBits(values[i]) != Double.doubleToLongBits(inst.value(i))) {
+                inst.setValue(i, values[i]);
+            }
+        }
+    }
 }
@@ -0,0 +1,132 @@
+/*
+ *    FusedStreamFilter.java
+ *    Copyright (C) 2024 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *    
+ */
+package moa.streams.filters;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstanceImpl;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import moa.AbstractMOAObject;
+import moa.core.Example;
+import moa.core.InstanceExample;
+import moa.streams.ExampleStream;
+
+/**
+ * Runs a chain of fusible filters as a single transform. The values of each
+ * instance are read into a reused buffer once, passed through every filter,
+ * and turned into one output instance, instead of every filter building an
+ * instance of its own. The results are the same as those of the chained
+ * filters.
+ *
+ * The filters must already be chained, each one having the previous one as
+ * its input stream, so that headers, restarts and the remaining instances
+ * are still answered by the chain.
+ *
+ * @version $Revision: 1 $
+ */
+public class FusedStreamFilter extends AbstractMOAObject implements ExampleStream {
+
+    private static final long serialVersionUID = 1L;
+
+    protected ExampleStream inputStream;
+
+    protected FusibleStreamFilter[] filters;
+
+    protected Instances outputHeader;
+
+    // Whether any filter maps the values to a new header
+    protected boolean changesHeader;
+
+    protected double[] buffer;
+
+    /**
+     * Fuses the filters, where filters[0] reads from inputStream and every
+     * other filter reads from the previous one.
+     */
+    public FusedStreamFilter(ExampleStream inputStream, FusibleStreamFilter[] filters) {
+        this.inputStream = inputStream;
+        this.filters = filters.clone();
+    }
+
+    protected void prepare(Instance instance) {
+        Instances inputHeader = instance.dataset();
+        Instances header = inputHeader;
+        for (FusibleStreamFilter filter : this.filters) {
+            header = filter.prepareForValues(header);
+        }
+        this.outputHeader = header;
+        this.changesHeader = header != inputHeader;
+        this.buffer = new double[instance.numAttributes()];
+    }
+
+    @Override
+    public InstancesHeader getHeader() {
+        return this.filters[this.filters.length - 1].getHeader();
+    }
+
+    @Override
+    public long estimatedRemainingInstances() {
+        return this.filters[this.filters.length - 1].estimatedRemainingInstances();
+    }
+
+    @Override
+    public boolean hasMoreInstances() {
+        return this.filters[this.filters.length - 1].hasMoreInstances();
+    }
+
+    @Override
+    public Example nextInstance() {
+        Instance instance = (Instance) this.inputStream.nextInstance().getData();
+        if (this.outputHeader == null) {
+            prepare(instance);
+        }
+        double[] values = this.buffer;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = instance.value(i);
+        }
+        double weight = instance.weight();
+        for (FusibleStreamFilter filter : this.filters) {
+            values = filter.filterValues(values, weight);
+        }
+        Instance result;
+        if (this.changesHeader) {
+            result = new InstanceImpl(weight, values.clone());
+            result.setDataset(this.outputHeader);
+        } else {
+            result = instance.copy();
+            AbstractStreamFilter.setChangedValues(result, values);
+        }
+        return new InstanceExample(result);
+    }
+
+    @Override
+    public boolean isRestartable() {
+        return this.filters[this.filters.length - 1].isRestartable();
+    }
+
+    @Override
+    public void restart() {
+        this.filters[this.filters.length - 1].restart();
+        this.outputHeader = null;
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+    }
+}
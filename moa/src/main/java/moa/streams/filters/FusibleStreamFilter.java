@@ -0,0 +1,55 @@
+/*
+ *    FusibleStreamFilter.java
+ *    Copyright (C) 2024 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *    
+ */
+package moa.streams.filters;
+
+import com.yahoo.labs.samoa.instances.Instances;
+
+/**
+ * Interface of stream filters that can transform the attribute values of an
+ * instance as an array, so that a chain of them can be run as one transform
+ * (see {@link FusedStreamFilter}) without building an instance per filter.
+ *
+ * A filter either works element-wise, changing the values in place and
+ * keeping the header of its input, or maps the values into an output buffer
+ * of its own with a new header (e.g. selecting attributes or projecting
+ * them).
+ *
+ * @version $Revision: 1 $
+ */
+public interface FusibleStreamFilter extends StreamFilter {
+
+    /**
+     * Prepares the filter for values laid out as in the given header.
+     *
+     * @param inputHeader the header of the values the filter receives
+     * @return the header of the values the filter outputs, which is
+     * inputHeader itself for element-wise filters
+     */
+    public Instances prepareForValues(Instances inputHeader);
+
+    /**
+     * Filters the values of one instance, class value included.
+     *
+     * @param values the values of the instance, which may be changed
+     * @param weight the weight of the instance
+     * @return the filtered values: either values itself, or a buffer of the
+     * filter that is only valid until the next call
+     */
+    public double[] filterValues(double[] values, double weight);
+}
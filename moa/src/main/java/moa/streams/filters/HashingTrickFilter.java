@@ -31,52 +31,91 @@ public class HashingTrickFilter extends AbstractStreamFilter {
 
     protected FastVector attributes;
 
+    // Signed bucket of each input attribute: bucket + 1, negated for a
+    // negative hash. Computed once, so instances don't hash their indices.
+    protected int[] signedBuckets;
+
     @Override
     public String getPurposeString() { return "Reduces the number of input features using a hash function.";  }
 
     @Override
     protected void restartImpl() {
         this.streamHeader = null;
+        this.signedBuckets = null;
     }
 
     @Override
     public InstancesHeader getHeader() {
+        if (this.streamHeader == null && this.inputStream != null) {
+            createHeader(this.inputStream.getHeader());
+        }
         return this.streamHeader;
     }
 
+    protected void createHeader(InstancesHeader inputHeader) {
+        //Create a new header
+        this.attributes = new FastVector();
+        for (int i = 0; i < this.dim.getValue(); i++) {
+            this.attributes.addElement(new Attribute("numeric" + (i + 1)));
+        }
+        this.attributes.addElement(inputHeader.classAttribute());
+        this.streamHeader = new InstancesHeader(new Instances(
+                getCLICreationString(InstanceStream.class), this.attributes, 0));
+        this.streamHeader.setClassIndex(this.streamHeader.numAttributes() - 1);
+    }
+
     @Override
     public InstanceExample nextInstance() {
 
         Instance sparseInstance = (Instance) this.inputStream.nextInstance().getData();
 
         if (streamHeader == null) {
-            //Create a new header
-            this.attributes = new FastVector();
-            for (int i = 0; i < this.dim.getValue(); i++) {
-                this.attributes.addElement(new Attribute("numeric" + (i + 1)));
-            }
-            this.attributes.addElement(sparseInstance.classAttribute());
-            this.streamHeader = new InstancesHeader(new Instances(
-                    getCLICreationString(InstanceStream.class), this.attributes, 0));
-            this.streamHeader.setClassIndex(this.streamHeader.numAttributes() - 1);
+            createHeader(this.inputStream.getHeader());
+        }
+        if (this.signedBuckets == null || this.signedBuckets.length < sparseInstance.numAttributes() - 1) {
+            this.signedBuckets = signedBuckets(sparseInstance.numAttributes() - 1,
+                    this.dim.getValue(), Hashing.murmur3_128());
         }
 
-
-        double [] hashVal = hashVector(sparseInstance,this.dim.getValue(), Hashing.murmur3_128());
-
-        return new InstanceExample(transformedInstance(sparseInstance, hashVal));
+        int n = this.dim.getValue();
+        double[] attributeValues = new double[n + 1];
+        int classIndex = sparseInstance.numAttributes() - 1;
+        for (int i = 0; i < sparseInstance.numValues(); i++) {
+            int index = sparseInstance.index(i);
+            if (index < classIndex && Math.abs(sparseInstance.valueSparse(i)) > Double.MIN_NORMAL) {
+                int signedBucket = this.signedBuckets[index];
+                if (signedBucket > 0) {
+                    attributeValues[signedBucket - 1] += 1d;
+                } else {
+                    attributeValues[-signedBucket - 1] -= 1d;
+                }
+            }
+        }
+        attributeValues[n] = sparseInstance.classValue();
+        DenseInstance newInstance = new DenseInstance(1.0, attributeValues);
+        newInstance.setDataset(this.streamHeader);
+        return new InstanceExample(newInstance);
     }
 
-
+    /**
+     * Computes the signed bucket of the given number of attributes.
+     */
+    protected static int[] signedBuckets(int numAttributes, int n, HashFunction hashFunction) {
+        int[] signedBuckets = new int[numAttributes];
+        for (int i = 0; i < numAttributes; i++) {
+            int hash = hashFunction.hashInt(i).asInt();
+            int bucket = Math.abs(hash % n);
+            signedBuckets[i] = hash < 0 ? -(bucket + 1) : bucket + 1;
+        }
+        return signedBuckets;
+    }
 
     public DenseInstance transformedInstance(Instance sparseInst, double [] hashVal) {
 
         Instances header = this.streamHeader;
         double[] attributeValues = new double[header.numAttributes()];
 
-        for(int i = 0 ; i < header.numAttributes()-1 ; i++) {
-            attributeValues[i] = hashVal[i];
-        }
+        System.arraycopy(hashVal, 0, attributeValues, 0, header.numAttributes() - 1);
 
         attributeValues[attributeValues.length-1] = sparseInst.classValue();
         DenseInstance newInstance = new DenseInstance(1.0, attributeValues);
@@ -90,23 +129,25 @@ public class HashingTrickFilter extends AbstractStreamFilter {
     }
 
 
+    /**
+     * Hashes the non-zero attributes of the instance into n buckets. Only the
+     * stored values of sparse instances are visited.
+     */
     public  double[] hashVector(Instance instance, int n, HashFunction hashFunction) {
 
         double [] denseValues = new double [n];
-        for (int i = 0 ; i < n ; i++) {
-            denseValues[i] = 0d;
-        }
-        for (int i = 0; i < instance.numAttributes()-1 ; i++){
-                double diff = Math.abs(instance.value(i));
-                if( diff  > Double.MIN_NORMAL) {
-                    int  hash = hashFunction.hashInt(i).asInt();
-                    int bucket = Math.abs(hash) % n;
-                    denseValues[bucket] += (hash < 0 ? -1d : 1d);
-                }
+        int classIndex = instance.numAttributes() - 1;
+        for (int i = 0; i < instance.numValues(); i++) {
+            int index = instance.index(i);
+            if (index < classIndex && Math.abs(instance.valueSparse(i)) > Double.MIN_NORMAL) {
+                int  hash = hashFunction.hashInt(index).asInt();
+                int bucket = Math.abs(hash % n);
+                denseValues[bucket] += (hash < 0 ? -1d : 1d);
+            }
         }
-        
+
         return denseValues;
     }
 
 
-}
\ No newline at end of file
+}
@@ -18,6 +18,7 @@ package moa.streams.filters;
 import com.github.javacliparser.FileOption;
 import com.github.javacliparser.FlagOption;
 import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
 import com.yahoo.labs.samoa.instances.InstancesHeader;
 import meka.core.F;
 import moa.capabilities.CapabilitiesHandler;
@@ -41,7 +42,7 @@ import java.io.Writer;
  * @author Yibin Sun (ys388@students.waikato.ac.nz)
  * @version 03.2021
  */
-public class NormalisationFilter extends AbstractStreamFilter {
+public class NormalisationFilter extends AbstractStreamFilter implements FusibleStreamFilter {
 
     @Override
     public String getPurposeString() {
@@ -54,12 +55,16 @@ public class NormalisationFilter extends AbstractStreamFilter {
     double[] maximums;
     double[] minimums;
 
+    // Whether each input attribute is nominal
+    protected boolean[] nominal;
+
 
     @Override
     protected void restartImpl() {
         //reset all variables
         this.maximums = null;
         this.minimums = null;
+        this.nominal = null;
     }
 
     @Override
@@ -69,6 +74,25 @@ public class NormalisationFilter extends AbstractStreamFilter {
 
 
     public Instance filterInstance(Instance inst) {
+        if (this.nominal == null) {
+            prepareForValues(inst.dataset());
+        }
+        Instance normalisedInstance = inst.copy();
+        setChangedValues(normalisedInstance, filterValues(inst.toDoubleArray(), inst.weight()));
+        return normalisedInstance;
+    }
+
+    @Override
+    public Instances prepareForValues(Instances inputHeader) {
+        this.nominal = new boolean[inputHeader.numAttributes() - 1];
+        for (int i = 0; i < this.nominal.length; i++) {
+            this.nominal[i] = inputHeader.attribute(i).isNominal();
+        }
+        return inputHeader;
+    }
+
+    @Override
+    public double[] filterValues(double[] values, double weight) {
 
         /** For normalisation
          *  Scale every numeric feature's values to the range between 0 and 1.
@@ -79,33 +103,30 @@ public class NormalisationFilter extends AbstractStreamFilter {
 
         // Initiate the variables when first arrive
         if (this.maximums == null && this.minimums == null) {
-            this.maximums = new double[inst.numAttributes() - 1];
-            this.minimums = new double[inst.numAttributes() - 1];
-            for (int i = 0; i < inst.numAttributes() - 1; i++) {
-                maximums[i] = inst.value(i);
-                minimums[i] = inst.value(i);
+            this.maximums = new double[values.length - 1];
+            this.minimums = new double[values.length - 1];
+            for (int i = 0; i < values.length - 1; i++) {
+                maximums[i] = values[i];
+                minimums[i] = values[i];
             }
         }
 
-        Instance normalisedInstance = inst.copy();
-
-        for (int i = 0; i < inst.numAttributes() - 1; i++) {
+        for (int i = 0; i < values.length - 1; i++) {
             // Ignore the nominal attributes
-            if (!inst.attribute(i).isNominal()) {
+            if (!this.nominal[i]) {
 
                 // Update the extreme values
-                if (this.minimums[i] > inst.value(i)) this.minimums[i] = inst.value(i);
-                if (this.maximums[i] < inst.value(i)) this.maximums[i] = inst.value(i);
+                if (this.minimums[i] > values[i]) this.minimums[i] = values[i];
+                if (this.maximums[i] < values[i]) this.maximums[i] = values[i];
 
                 // Assign new values if it's not infinity
                 if (this.maximums[i] - this.minimums[i] != 0)
-                    normalisedInstance.setValue(i,
-                            (inst.value(i) - this.minimums[i]) / (this.maximums[i] - this.minimums[i]));
-                else normalisedInstance.setValue(i, 0);
+                    values[i] = (values[i] - this.minimums[i]) / (this.maximums[i] - this.minimums[i]);
+                else values[i] = 0;
 
             }
         }
-        return normalisedInstance;
+        return values;
     }
 
     @Override
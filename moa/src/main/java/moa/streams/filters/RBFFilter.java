@@ -15,7 +15,7 @@ import com.yahoo.labs.samoa.instances.Instances;
 import com.yahoo.labs.samoa.instances.InstancesHeader;
 import com.yahoo.labs.samoa.instances.Range;
 
-public class RBFFilter extends AbstractStreamFilter {
+public class RBFFilter extends AbstractStreamFilter implements FusibleStreamFilter {
 
 	/**
 	 * NOTE: DATA SHOULD BE STANDARDIZED FIRST
@@ -27,6 +27,9 @@ public class RBFFilter extends AbstractStreamFilter {
 	protected Random random;
 	protected double c[];
 	protected double r[];
+	// The output values and the class index of the input
+	protected double z[];
+	protected int classIndex;
 
     @Override
     public String getPurposeString() {
@@ -43,39 +46,51 @@ public class RBFFilter extends AbstractStreamFilter {
 
 		Instance x = (Instance) ((Instance) this.inputStream.nextInstance().getData());
 
-		if(dataset==null){
-			System.out.println("INIT. ");
-			initialize(x);
-		}		
+		prepareForValues(x.dataset());
 
-		double z_[] = new double[dataset.numAttributes()];
+		double z_[] = filterValues(x.toDoubleArray(), x.weight()).clone();
 		Instance z = new InstanceImpl(x.weight(),z_);
+		z.setDataset(dataset);
+
+		return new InstanceExample(z);
+	}
 
-		int d = x.numAttributes();
+	@Override
+	public Instances prepareForValues(Instances inputHeader) {
+		if(dataset==null){
+			initialize(inputHeader);
+		}
+		this.classIndex = inputHeader.classIndex();
+		return dataset;
+	}
+
+	@Override
+	public double[] filterValues(double[] x, double weight) {
+
+		double z_[] = this.z;
+
+		int d = x.length;
 		int h = numLatentOption.getValue();
-		int j_c = x.classIndex();
 
 		for(int k = 0; k < h; k++) {
 			double sum_k = 0.;
 			for(int j = 0; j < d; j++) {
-				sum_k += (x.value(j) - c[k]);
+				sum_k += (x[j] - c[k]);
 			}
 			double v = sum_k / Math.pow(r[k],2);
-			z.setValue(k,Math.exp(-sum_k));
+			z_[k] = Math.exp(-sum_k);
 		}
-		z.setValue(h,x.classValue());
-		z.setDataset(dataset);
+		z_[h] = x[this.classIndex];
 
-		return new InstanceExample(z);
+		return z_;
 	}
 
 	@Override
     protected void restartImpl() {
-		System.out.println("RESET ");
         this.random = new Random(this.randomSeedOption.getValue());
     }
 
-	private void initialize(Instance instance) {
+	private void initialize(Instances instance) {
 
 		int h = numLatentOption.getValue();
 
@@ -96,21 +111,18 @@ public class RBFFilter extends AbstractStreamFilter {
 			v.add(new Attribute("z"+String.valueOf(j)));
 			indexValues.add(j);
 		}
-		v.add(instance.dataset().classAttribute()); 
+		v.add(instance.classAttribute()); 
 		indexValues.add(h);
 
 
 		ds.setAttributes(v,indexValues);
-		Range r= new Range("start-end");
-		//r.setUpper(h);
+		// the class is the only output
+		Range r= new Range("-1");
+		r.setUpper(h+1);
 		ds.setRangeOutputIndices(r);
 		dataset=(new InstancesHeader(ds));
 		dataset.setClassIndex(h);
-		System.out.println(""+dataset);
-		System.out.println("classIndex :  "+dataset.classIndex());
-		System.out.println("numClasses :  "+dataset.numClasses());
-		System.out.println("numInstances: "+dataset.numInstances());
-		System.out.println("numAttribute: "+dataset.numAttributes());
+		z = new double[h+1];
 	}
 
 	@Override
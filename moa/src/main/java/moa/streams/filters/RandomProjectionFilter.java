@@ -1,8 +1,7 @@
-
-
 package moa.streams.filters;
 
 import com.github.javacliparser.IntOption;
+import com.github.javacliparser.MultiChoiceOption;
 import com.yahoo.labs.samoa.instances.*;
 import moa.core.FastVector;
 import moa.core.InstanceExample;
@@ -10,11 +9,14 @@ import moa.streams.InstanceStream;
 
 import java.util.Arrays;
 import java.util.Random;
-import java.util.stream.IntStream;
 
 /**
  *    Filter to perform random projection to reduce the number of attributes. It applies
- *    a Gaussian matrix on features to project them into a lower-dimensional space.
+ *    a Gaussian matrix on features to project them into a lower-dimensional space, or
+ *    a sparse matrix of Achlioptas (a third of the entries non-zero) or of Li et al.
+ *    (1/sqrt(number of features) of the entries non-zero) whose entries are +/-sqrt(s).
+ *    Only the non-zero values of sparse instances are projected, so the cost per
+ *    instance does not depend on the number of input features.
  *
  *   @author Maroua Bahri
  */
@@ -24,51 +26,145 @@ public class RandomProjectionFilter extends AbstractStreamFilter {
 
     public IntOption dim = new IntOption("OutputFeatureDimension", 'd',
             "the target feature dimension.", 10);
+
+    public MultiChoiceOption projectionOption = new MultiChoiceOption("projection", 'p',
+            "The distribution of the projection matrix.", new String[]{
+                "Gaussian", "Achlioptas", "VerySparse"}, new String[]{
+                "Standard normal entries",
+                "Entries sqrt(3) * {-1, 0, +1} with probabilities 1/6, 2/3, 1/6",
+                "Entries sqrt(s) * {-1, 0, +1} with probabilities 1/2s, 1-1/s, 1/2s, s = sqrt(number of features)"}, 0);
+
+    public IntOption randomSeedOption = new IntOption("randomSeed", 'r',
+            "Seed for the random projection matrix.", 1);
+
+    protected static final int GAUSSIAN = 0;
+
+    protected static final int ACHLIOPTAS = 1;
+
+    protected static final int VERY_SPARSE = 2;
+
     protected InstancesHeader streamHeader;
-    protected double[][] GaussMatrix ;
 
+    // Number of input features the projection was created for
+    protected int numFeatures;
+
+    // Gaussian projection, column by column: the weights of feature j are
+    // gaussWeights[j * dim] to gaussWeights[j * dim + dim - 1]
+    protected double[] gaussWeights;
+
+    // Sparse projection, column by column: feature j adds to the outputs
+    // sparseOutputs[sparseStart[j]] to sparseOutputs[sparseStart[j + 1] - 1],
+    // with ~output for a negative entry
+    protected int[] sparseStart;
+
+    protected int[] sparseOutputs;
+
+    protected double sparseScale;
 
     public String getPurposeString() { return "Reduces the number of input features using random projection.";  }
 
     @Override
     protected void restartImpl() {
         this.streamHeader = null;
+        this.gaussWeights = null;
+        this.sparseStart = null;
+        this.sparseOutputs = null;
     }
 
     @Override
     public InstancesHeader getHeader() {
-        Instance sparseInstance = (Instance) this.inputStream.nextInstance().getData();
-        Random r = new Random(System.currentTimeMillis());
-        this.GaussMatrix = new double[this.dim.getValue()][sparseInstance.numAttributes()-1] ;
-        for(int i = 0 ; i < this.dim.getValue() ; i++){
-            for(int j = 0; j < sparseInstance.numAttributes()-1 ; j++){
-                this.GaussMatrix[i][j]= r.nextGaussian();
-            }
+        if (this.streamHeader == null && this.inputStream != null) {
+            createHeader(this.inputStream.getHeader());
         }
+        return this.streamHeader;
+    }
 
-        if (streamHeader == null) {
-            //Create a new header
-            FastVector attributes = new FastVector();
-            for (int i = 0; i < this.dim.getValue(); i++) {
-                attributes.addElement(new Attribute("numeric" + (i + 1)));
-            }
-
-            attributes.addElement(sparseInstance.classAttribute());
-            this.streamHeader = new InstancesHeader(new Instances(
-                    getCLICreationString(InstanceStream.class), attributes, 0));
-            this.streamHeader.setClassIndex(this.streamHeader.numAttributes() - 1);
+    protected void createHeader(InstancesHeader inputHeader) {
+        createProjection(inputHeader.numAttributes() - 1);
 
+        //Create a new header
+        FastVector attributes = new FastVector();
+        for (int i = 0; i < this.dim.getValue(); i++) {
+            attributes.addElement(new Attribute("numeric" + (i + 1)));
         }
-        return this.streamHeader;
 
+        attributes.addElement(inputHeader.classAttribute());
+        this.streamHeader = new InstancesHeader(new Instances(
+                getCLICreationString(InstanceStream.class), attributes, 0));
+        this.streamHeader.setClassIndex(this.streamHeader.numAttributes() - 1);
+    }
+
+    protected void createProjection(int numFeatures) {
+        int n = this.dim.getValue();
+        Random r = new Random(this.randomSeedOption.getValue());
+        this.numFeatures = numFeatures;
+        if (this.projectionOption.getChosenIndex() == GAUSSIAN) {
+            this.gaussWeights = new double[numFeatures * n];
+            for (int i = 0; i < this.gaussWeights.length; i++) {
+                this.gaussWeights[i] = r.nextGaussian();
+            }
+            return;
+        }
+        double s = this.projectionOption.getChosenIndex() == ACHLIOPTAS
+                ? 3.0 : Math.max(1.0, Math.sqrt(numFeatures));
+        double halfDensity = 0.5 / s;
+        this.sparseScale = Math.sqrt(s);
+        this.sparseStart = new int[numFeatures + 1];
+        int[] outputs = new int[Math.max(16, (int) ((double) numFeatures * n * 2 * halfDensity * 1.1))];
+        int numEntries = 0;
+        for (int j = 0; j < numFeatures; j++) {
+            this.sparseStart[j] = numEntries;
+            for (int k = 0; k < n; k++) {
+                double u = r.nextDouble();
+                if (u < 2 * halfDensity) {
+                    if (numEntries == outputs.length) {
+                        outputs = Arrays.copyOf(outputs, outputs.length * 2);
+                    }
+                    outputs[numEntries++] = u < halfDensity ? ~k : k;
+                }
+            }
+        }
+        this.sparseStart[numFeatures] = numEntries;
+        this.sparseOutputs = Arrays.copyOf(outputs, numEntries);
     }
 
     @Override
     public InstanceExample nextInstance() {
         Instance sparseInstance = (Instance) this.inputStream.nextInstance().getData();
+        if (this.streamHeader == null) {
+            createHeader(this.inputStream.getHeader());
+        }
 
-        return new InstanceExample(transformedInstance(sparseInstance,
-                randomProjection(sparseInstance,this.GaussMatrix)));
+        int n = this.dim.getValue();
+        double[] attributeValues = new double[n + 1];
+        int numFeatures = Math.min(this.numFeatures, sparseInstance.numAttributes() - 1);
+        for (int i = 0; i < sparseInstance.numValues(); i++) {
+            int j = sparseInstance.index(i);
+            double value = sparseInstance.valueSparse(i);
+            if (j >= numFeatures || value == 0.0) {
+                continue;
+            }
+            if (this.gaussWeights != null) {
+                int offset = j * n;
+                for (int k = 0; k < n; k++) {
+                    attributeValues[k] += this.gaussWeights[offset + k] * value;
+                }
+            } else {
+                double scaled = this.sparseScale * value;
+                for (int e = this.sparseStart[j]; e < this.sparseStart[j + 1]; e++) {
+                    int k = this.sparseOutputs[e];
+                    if (k >= 0) {
+                        attributeValues[k] += scaled;
+                    } else {
+                        attributeValues[~k] -= scaled;
+                    }
+                }
+            }
+        }
+        attributeValues[n] = sparseInstance.classValue();
+        DenseInstance newInstance = new DenseInstance(1.0, attributeValues);
+        newInstance.setDataset(this.streamHeader);
+        return new InstanceExample(newInstance);
     }
 
 
@@ -91,27 +187,39 @@ public class RandomProjectionFilter extends AbstractStreamFilter {
         // TODO Auto-generated method stub
     }
 
+    /**
+     * Multiplies the matrix, row by row, with the features of the instance,
+     * visiting only the stored values of sparse instances.
+     */
     public  double[] randomProjection(Instance instance, double[][] gm) {
 
-        double [] denseValues;
-
-        double[] ins = new double [instance.numAttributes()-1];
-        for(int i = 0 ; i < instance.numAttributes()-1 ; i++) {
-            ins[i] = instance.value(i);
+        double [] denseValues = new double[gm.length];
+        for (int i = 0; i < instance.numValues(); i++) {
+            int j = instance.index(i);
+            double value = instance.valueSparse(i);
+            if (j >= instance.numAttributes() - 1 || value == 0.0) {
+                continue;
+            }
+            for (int k = 0; k < gm.length; k++) {
+                denseValues[k] += gm[k][j] * value;
+            }
         }
-        denseValues = multiply(gm, ins);
 
         return denseValues;
     }
 
     public static double[] multiply(double[][] matrix, double[] vector) {
-        return Arrays.stream(matrix)
-                .mapToDouble(row ->
-                        IntStream.range(0, row.length)
-                                .mapToDouble(col -> row[col] * vector[col])
-                                .sum()
-                ).toArray();
+        double[] result = new double[matrix.length];
+        for (int i = 0; i < matrix.length; i++) {
+            double[] row = matrix[i];
+            double sum = 0.0;
+            for (int j = 0; j < row.length; j++) {
+                sum += row[j] * vector[j];
+            }
+            result[i] = sum;
+        }
+        return result;
     }
 
 
-}
\ No newline at end of file
+}
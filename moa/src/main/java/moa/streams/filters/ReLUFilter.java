@@ -15,7 +15,7 @@ import com.yahoo.labs.samoa.instances.Instances;
 import com.yahoo.labs.samoa.instances.InstancesHeader;
 import com.yahoo.labs.samoa.instances.Range;
 
-public class ReLUFilter extends AbstractStreamFilter {
+public class ReLUFilter extends AbstractStreamFilter implements FusibleStreamFilter {
 
 	/**
 	 * ReLUFilter - A random projection of the filter space. 
@@ -28,6 +28,9 @@ public class ReLUFilter extends AbstractStreamFilter {
 	private int H = 200;
 	protected Random random;
 	protected double W[][];
+	// The output values and the class index of the input
+	protected double z[];
+	protected int classIndex;
 
 	@Override
 	public String getPurposeString() {
@@ -49,28 +52,43 @@ public class ReLUFilter extends AbstractStreamFilter {
 	public Instance filterInstance(Instance x) {
 
 
+		prepareForValues(x.dataset());
+
+		double z_[] = filterValues(x.toDoubleArray(), x.weight()).clone();
+
+		Instance z = new InstanceImpl(x.weight(),z_);
+		z.setDataset(dataset);
+
+		return z;
+	}
+
+	@Override
+	public Instances prepareForValues(Instances inputHeader) {
 		if(dataset==null){
-			initialize(x);
-		}		
+			initialize(inputHeader);
+		}
+		this.classIndex = inputHeader.classIndex();
+		return dataset;
+	}
+
+	@Override
+	public double[] filterValues(double[] x, double weight) {
 
-		double z_[] = new double[H+1];
+		double z_[] = this.z;
 
-		int d = x.numAttributes() - 1; // suppose one class attribute (at the end)
+		int d = x.length - 1; // suppose one class attribute (at the end)
 
 		for(int k = 0; k < H; k++) {
 			// for each hidden unit ...
 			double a_k = 0.; 								// k-th activation (dot product)
 			for(int j = 0; j < d; j++) {
-				a_k += (x.value(j) * W[k][j]);
+				a_k += (x[j] * W[k][j]);
 			}
 			z_[k] = (a_k > 0. ? a_k : 0.);				  // <------- can change threshold here
 		}
-		z_[H] = x.classValue();
+		z_[H] = x[this.classIndex];
 
-		Instance z = new InstanceImpl(x.weight(),z_);
-		z.setDataset(dataset);
-
-		return z;
+		return z_;
 	}
 
 	@Override
@@ -78,7 +96,7 @@ public class ReLUFilter extends AbstractStreamFilter {
 		this.random = new Random(this.randomSeedOption.getValue());
 	}
 
-	private void initialize(Instance instance) {
+	private void initialize(Instances instance) {
 		this.random = new Random(this.randomSeedOption.getValue());
 
 		int d = instance.numAttributes() - 1; // suppose one class attribute
@@ -107,15 +125,18 @@ public class ReLUFilter extends AbstractStreamFilter {
 			v.add(new Attribute("z"+String.valueOf(j)));
 			indexValues.add(j);
 		}
-		v.add(instance.dataset().classAttribute()); 
+		v.add(instance.classAttribute()); 
 		indexValues.add(H);
 
 
 		ds.setAttributes(v,indexValues);
-		Range r= new Range("start-end");
+		// the class is the only output
+		Range r= new Range("-1");
+		r.setUpper(H+1);
 		ds.setRangeOutputIndices(r);
 		dataset=(new InstancesHeader(ds));
 		dataset.setClassIndex(H);
+		z = new double[H+1];
 
 	}
 
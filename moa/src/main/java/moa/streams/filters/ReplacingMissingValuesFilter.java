@@ -22,6 +22,7 @@ package moa.streams.filters;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.MultiChoiceOption;
 import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
 import com.yahoo.labs.samoa.instances.InstancesHeader;
 import java.util.Collections;
 import java.util.Comparator;
@@ -55,7 +56,7 @@ import moa.core.InstanceExample;
  * @author Manuel Martin Salvador {@literal <draxus@gmail.com>}
  * 
  */
-public class ReplacingMissingValuesFilter extends AbstractStreamFilter {
+public class ReplacingMissingValuesFilter extends AbstractStreamFilter implements FusibleStreamFilter {
 
 
 	private static final long serialVersionUID = 1470772215201414815L;
@@ -92,6 +93,11 @@ public class ReplacingMissingValuesFilter extends AbstractStreamFilter {
 	
 	protected HashMap<Double, Integer> frequencies[] = null;
 	
+	// The type of each input attribute
+	protected boolean numeric[] = null;
+	
+	protected boolean nominal[] = null;
+	
 	protected int numericalSelectedStrategy = 0;
 	protected int nominalSelectedStrategy = 0;
 	
@@ -108,10 +114,29 @@ public class ReplacingMissingValuesFilter extends AbstractStreamFilter {
     @Override
     public InstanceExample nextInstance() {
         Instance inst = (Instance) ((Instance) this.inputStream.nextInstance().getData()).copy();
- 		
+		if (nominal == null) {
+			prepareForValues(inst.dataset());
+		}
+		setChangedValues(inst, filterValues(inst.toDoubleArray(), inst.weight()));
+        return new InstanceExample(inst);
+    }
+
+	@Override
+	public Instances prepareForValues(Instances inputHeader) {
+		numeric = new boolean[inputHeader.numAttributes()];
+		nominal = new boolean[inputHeader.numAttributes()];
+		for (int i = 0; i < numeric.length; i++) {
+			numeric[i] = inputHeader.attribute(i).isNumeric();
+			nominal[i] = inputHeader.attribute(i).isNominal();
+		}
+		return inputHeader;
+	}
+
+	@Override
+	public double[] filterValues(double[] values, double weight) {
 		// Initialization
 		if (numAttributes < 0){
-			numAttributes = inst.numAttributes();
+			numAttributes = values.length;
 			columnsStatistics = new double[numAttributes];
 			numberOfSamples = new long[numAttributes];
 			lastNominalValues = new double[numAttributes];
@@ -119,8 +144,8 @@ public class ReplacingMissingValuesFilter extends AbstractStreamFilter {
                             lastNominalValues[i]=-1;
                         }
 			frequencies = new HashMap[numAttributes];
-			for(int i=0; i< inst.numAttributes(); i++){
-				if(inst.attribute(i).isNominal())
+			for(int i=0; i< numAttributes; i++){
+				if(nominal[i])
 					frequencies[i] = new HashMap<Double, Integer>();
 			}
 			
@@ -133,9 +158,9 @@ public class ReplacingMissingValuesFilter extends AbstractStreamFilter {
 		for (int i = 0; i < numAttributes; i++) {
 			
 			// ---- Numerical values ----
-			if (inst.attribute(i).isNumeric()) {
+			if (numeric[i]) {
 				// Handle missing value
-				if (inst.isMissing(i)) {
+				if (Double.isNaN(values[i])) {
 					switch(numericalSelectedStrategy){
 					case 0: // NOTHING
 						break;
@@ -143,10 +168,10 @@ public class ReplacingMissingValuesFilter extends AbstractStreamFilter {
 					case 2: // MEAN
 					case 3: // MAX
 					case 4: // MIN
-						inst.setValue(i, columnsStatistics[i]);
+						values[i] = columnsStatistics[i];
 						break;
 					case 5: // CONSTANT
-						inst.setValue(i, numericalConstantValueOption.getValue());
+						values[i] = numericalConstantValueOption.getValue();
 						break;
 					default: continue;
 					}
@@ -155,39 +180,39 @@ public class ReplacingMissingValuesFilter extends AbstractStreamFilter {
 				else{
 					switch(numericalSelectedStrategy){
 					case 1: // LAST KNOWN VALUE
-						columnsStatistics[i] = inst.value(i);
+						columnsStatistics[i] = values[i];
 						break;
 					case 2: // MEAN
 						numberOfSamples[i]++;
-						columnsStatistics[i] = columnsStatistics[i] + (inst.value(i) - columnsStatistics[i])/numberOfSamples[i];
+						columnsStatistics[i] = columnsStatistics[i] + (values[i] - columnsStatistics[i])/numberOfSamples[i];
 						break;
 					case 3: // MAX
-						columnsStatistics[i] = columnsStatistics[i] < inst.value(i) ? inst.value(i) : columnsStatistics[i];
+						columnsStatistics[i] = columnsStatistics[i] < values[i] ? values[i] : columnsStatistics[i];
 						break;
 					case 4: // MIN
-						columnsStatistics[i] = columnsStatistics[i] > inst.value(i) ? inst.value(i) : columnsStatistics[i];
+						columnsStatistics[i] = columnsStatistics[i] > values[i] ? values[i] : columnsStatistics[i];
 						break;
 					default: continue;
 					}
 				}
 			}
 			// ---- Nominal values ----
-			else if(inst.attribute(i).isNominal()){
+			else if(nominal[i]){
 				// Handle missing value
-				if (inst.isMissing(i)) {
+				if (Double.isNaN(values[i])) {
 					switch(nominalSelectedStrategy){
 					case 0: // NOTHING
 						break;
 					case 1: // LAST KNOWN VALUE
 						if(lastNominalValues[i] != -1){ //null){
-							inst.setValue(i, lastNominalValues[i]);
+							values[i] = lastNominalValues[i];
 						}
 						break;
 					case 2: // MODE
 						if(!frequencies[i].isEmpty()){
 							// Sort the map to get the most frequent value
 							Map<Double, Integer> sortedMap = MapUtil.sortByValue( frequencies[i] );
-							inst.setValue(i, sortedMap.entrySet().iterator().next().getKey());
+							values[i] = sortedMap.entrySet().iterator().next().getKey();
 						}
 						break;
 					default: continue;
@@ -197,12 +222,12 @@ public class ReplacingMissingValuesFilter extends AbstractStreamFilter {
 				else{
 					switch(nominalSelectedStrategy){
 					case 1: // LAST KNOWN VALUE
-						lastNominalValues[i] = inst.value(i);
+						lastNominalValues[i] = values[i];
 						break;
 					case 2: // MODE
-						Integer previousCounter = frequencies[i].get(inst.value(i));
+						Integer previousCounter = frequencies[i].get(values[i]);
 						if(previousCounter == null) previousCounter = 0;
-						frequencies[i].put(inst.value(i), ++previousCounter);
+						frequencies[i].put(values[i], ++previousCounter);
 						break;
 					default: continue;
 					}
@@ -210,7 +235,7 @@ public class ReplacingMissingValuesFilter extends AbstractStreamFilter {
 			}
 		}
 		
-        return new InstanceExample(inst);
+        return values;
     }
 
 	@Override
@@ -226,6 +251,8 @@ public class ReplacingMissingValuesFilter extends AbstractStreamFilter {
 		numberOfSamples = null;
 		lastNominalValues = null;
 		frequencies = null;
+		numeric = null;
+		nominal = null;
 	}
 	
 	// Solution from http://stackoverflow.com/a/2581754/2022620
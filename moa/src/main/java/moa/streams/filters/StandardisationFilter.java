@@ -19,6 +19,7 @@ package moa.streams.filters;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.MultiChoiceOption;
 import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
 import com.yahoo.labs.samoa.instances.InstancesHeader;
 
 
@@ -52,7 +53,7 @@ import com.yahoo.labs.samoa.instances.InstancesHeader;
  *
  * @author Ethan Wang
  */
-public class StandardisationFilter extends AbstractStreamFilter {
+public class StandardisationFilter extends AbstractStreamFilter implements FusibleStreamFilter {
 
     @Override
     public String getPurposeString() {
@@ -80,6 +81,9 @@ public class StandardisationFilter extends AbstractStreamFilter {
 
     protected int AlgorithmIndex = 0;
 
+    // Whether each input attribute is nominal
+    protected boolean[] nominal;
+
     @Override
     protected void restartImpl() {
         //reset all variables
@@ -91,6 +95,7 @@ public class StandardisationFilter extends AbstractStreamFilter {
         M2 = null;
         mean = null;
         meanOld = null;
+        this.nominal = null;
     }
 
     @Override
@@ -99,70 +104,88 @@ public class StandardisationFilter extends AbstractStreamFilter {
     }
 
     public Instance filterInstance(Instance inst) {
+        if (this.nominal == null) {
+            prepareForValues(inst.dataset());
+        }
+        Instance standardisedInstance = inst.copy();
+        setChangedValues(standardisedInstance, filterValues(inst.toDoubleArray(), inst.weight()));
+        return standardisedInstance;
+    }
+
+    @Override
+    public Instances prepareForValues(Instances inputHeader) {
+        this.nominal = new boolean[inputHeader.numAttributes() - 1];
+        for (int i = 0; i < this.nominal.length; i++) {
+            this.nominal[i] = inputHeader.attribute(i).isNominal();
+        }
+        return inputHeader;
+    }
+
+    @Override
+    public double[] filterValues(double[] values, double weight) {
         // Initiate the variables when first arrive
         // The variable names below are meaningless sometimes to reduce the amount of them.
-        if (sum == null) sum = new double[inst.numAttributes() - 1];
-        if (sumOfSquare == null) sumOfSquare = new double[inst.numAttributes() - 1];
-        if (delta == null) delta = new double[inst.numAttributes() - 1];
-        if (delta2 == null) delta2 = new double[inst.numAttributes() - 1];
-        if (M2 == null) M2 = new double[inst.numAttributes() - 1];
-        if (mean == null) mean = new double[inst.numAttributes() - 1];
-        if (meanOld == null) meanOld = new double[inst.numAttributes() - 1];
+        if (sum == null) sum = new double[values.length - 1];
+        if (sumOfSquare == null) sumOfSquare = new double[values.length - 1];
+        if (delta == null) delta = new double[values.length - 1];
+        if (delta2 == null) delta2 = new double[values.length - 1];
+        if (M2 == null) M2 = new double[values.length - 1];
+        if (mean == null) mean = new double[values.length - 1];
+        if (meanOld == null) meanOld = new double[values.length - 1];
         AlgorithmIndex = this.AlgorithmOption.getChosenIndex();
-        Instance standardisedInstance = inst.copy();
         count++;
 
-        for (int i = 0; i < inst.numAttributes() - 1; i++) {
+        for (int i = 0; i < values.length - 1; i++) {
             // Ignore the nominal attributes
-            if (!inst.attribute(i).isNominal()) {
+            if (!this.nominal[i]) {
                 switch (AlgorithmIndex) {
                     case 0://Naive
                         // Update the statistics
-                        sum[i] += inst.value(i);
-                        sumOfSquare[i] += inst.value(i) * inst.value(i);
+                        sum[i] += values[i];
+                        sumOfSquare[i] += values[i] * values[i];
                         //When sum or sumofSquare overflow that is infinity
 //                        System.out.println(sumOfSquare[i]);
                         // Assign the new values if it's not infinity
                         if (sumOfSquare[i] / count != 0)
                             //Standardisation
-                            standardisedInstance.setValue(i, (inst.value(i) - sum[i] / count) / Math.sqrt((sumOfSquare[i] - (sum[i] * sum[i]) / count) / (count-1)));
+                            values[i] = (values[i] - sum[i] / count) / Math.sqrt((sumOfSquare[i] - (sum[i] * sum[i]) / count) / (count-1));
                             //Standard deviation
-//                            standardisedInstance.setValue(i, Math.sqrt((sumOfSquare[i] - (sum[i] * sum[i]) / count) / (count - 1)));
+//                            values[i] = Math.sqrt((sumOfSquare[i] - (sum[i] * sum[i]) / count) / (count - 1));
                         else {
-                            standardisedInstance.setValue(i, 0);
+                            values[i] = 0;
                         }
                         break;
                     case 1: //Welford
-                        delta[i] = inst.value(i) - mean[i];
+                        delta[i] = values[i] - mean[i];
                         mean[i] += delta[i] / count;
-                        delta2[i] = inst.value(i) - mean[i];
+                        delta2[i] = values[i] - mean[i];
                         M2[i] += delta[i] * delta2[i];
 
                         if (M2[i] / count != 0)
                             //Standardisation
-                            standardisedInstance.setValue(i, (inst.value(i) - mean[i]) / (Math.sqrt(M2[i] / (count-1))));
+                            values[i] = (values[i] - mean[i]) / (Math.sqrt(M2[i] / (count-1)));
                             //Standard deviation
-//                            standardisedInstance.setValue(i, Math.sqrt(M2[i] / (count-1)));
+//                            values[i] = Math.sqrt(M2[i] / (count-1));
                         else
-                            standardisedInstance.setValue(i, 0);
+                            values[i] = 0;
                         break;
                     case 2: //Two-pass
-                        delta[i] += inst.value(i);
+                        delta[i] += values[i];
                         mean[i] = delta[i] / count;
-                        delta2[i] += (inst.value(i) - mean[i]) * (inst.value(i) - mean[i]);
+                        delta2[i] += (values[i] - mean[i]) * (values[i] - mean[i]);
 
                         if (delta2[i] / count != 0)
                             //Standardisation
-                            standardisedInstance.setValue(i, (inst.value(i) - mean[i]) / Math.sqrt(delta2[i] / (count-1)));
+                            values[i] = (values[i] - mean[i]) / Math.sqrt(delta2[i] / (count-1));
                             //Standard deviation
-//                            standardisedInstance.setValue(i, Math.sqrt(delta2[i] / (count-1)));
+//                            values[i] = Math.sqrt(delta2[i] / (count-1));
                         else
-                            standardisedInstance.setValue(i, 0);
+                            values[i] = 0;
                         break;
                 }
             }
         }
-        return standardisedInstance;
+        return values;
     }
 
 
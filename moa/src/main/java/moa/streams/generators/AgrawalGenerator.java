@@ -38,6 +38,7 @@ import moa.options.AbstractOptionHandler;
 import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
+import moa.streams.BatchInstanceStream;
 import moa.streams.InstanceStream;
 import moa.tasks.TaskMonitor;
 
@@ -62,7 +63,7 @@ import moa.tasks.TaskMonitor;
  * @version $Revision: 7 $
  */
 public class AgrawalGenerator extends AbstractOptionHandler implements
-        InstanceStream, CapabilitiesHandler {
+        BatchInstanceStream, CapabilitiesHandler {
 
     @Override
     public String getPurposeString() {
@@ -336,25 +337,45 @@ public class AgrawalGenerator extends AbstractOptionHandler implements
 
     @Override
     public InstanceExample nextInstance() {
+        InstancesHeader header = getHeader();
+        double[] attVals = new double[header.numAttributes()];
+        generateValues(this.instanceRandom, attVals, 0);
+        Instance inst = new DenseInstance(1.0, attVals);
+        inst.setDataset(header);
+        return new InstanceExample(inst);
+    }
+
+    @Override
+    public Random getInstanceRandom() {
+        return this.instanceRandom;
+    }
+
+    @Override
+    public boolean hasIndependentInstances() {
+        return !this.balanceClassesOption.isSet();
+    }
+
+    @Override
+    public void generateValues(Random random, double[] values, int offset) {
         double salary = 0, commission = 0, hvalue = 0, loan = 0;
         int age = 0, elevel = 0, car = 0, zipcode = 0, hyears = 0, group = 0;
         boolean desiredClassFound = false;
         while (!desiredClassFound) {
             // generate attributes
-            salary = 20000.0 + 130000.0 * this.instanceRandom.nextDouble();
+            salary = 20000.0 + 130000.0 * random.nextDouble();
             commission = (salary >= 75000.0) ? 0
-                    : (10000.0 + 65000.0 * this.instanceRandom.nextDouble());
+                    : (10000.0 + 65000.0 * random.nextDouble());
             // true to c implementation:
             // if (instanceRandom.nextDouble() < 0.5 && salary < 75000.0)
             // commission = 10000.0 + 65000.0 * instanceRandom.nextDouble();
-            age = 20 + this.instanceRandom.nextInt(61);
-            elevel = this.instanceRandom.nextInt(5);
-            car = this.instanceRandom.nextInt(20);
-            zipcode = this.instanceRandom.nextInt(9);
+            age = 20 + random.nextInt(61);
+            elevel = random.nextInt(5);
+            car = random.nextInt(20);
+            zipcode = random.nextInt(9);
             hvalue = (9.0 - zipcode) * 100000.0
-                    * (0.5 + this.instanceRandom.nextDouble());
-            hyears = 1 + this.instanceRandom.nextInt(30);
-            loan = this.instanceRandom.nextDouble() * 500000.0;
+                    * (0.5 + random.nextDouble());
+            hyears = 1 + random.nextInt(30);
+            loan = random.nextDouble() * 500000.0;
             // determine class
             group = classificationFunctions[this.functionOption.getValue() - 1].determineClass(salary, commission, age, elevel, car,
                     zipcode, hvalue, hyears, loan);
@@ -371,39 +392,35 @@ public class AgrawalGenerator extends AbstractOptionHandler implements
         }
         // perturb values
         if (this.peturbFractionOption.getValue() > 0.0) {
-            salary = perturbValue(salary, 20000, 150000);
+            salary = perturbValue(random, salary, 20000, 150000);
             if (commission > 0) {
-                commission = perturbValue(commission, 10000, 75000);
+                commission = perturbValue(random, commission, 10000, 75000);
             }
-            age = (int) Math.round(perturbValue(age, 20, 80));
-            hvalue = perturbValue(hvalue, (9.0 - zipcode) * 100000.0, 0, 135000);
-            hyears = (int) Math.round(perturbValue(hyears, 1, 30));
-            loan = perturbValue(loan, 0, 500000);
+            age = (int) Math.round(perturbValue(random, age, 20, 80));
+            hvalue = perturbValue(random, hvalue, (9.0 - zipcode) * 100000.0, 0, 135000);
+            hyears = (int) Math.round(perturbValue(random, hyears, 1, 30));
+            loan = perturbValue(random, loan, 0, 500000);
         }
         // construct instance
-        InstancesHeader header = getHeader();
-        Instance inst = new DenseInstance(header.numAttributes());
-        inst.setValue(0, salary);
-        inst.setValue(1, commission);
-        inst.setValue(2, age);
-        inst.setValue(3, elevel);
-        inst.setValue(4, car);
-        inst.setValue(5, zipcode);
-        inst.setValue(6, hvalue);
-        inst.setValue(7, hyears);
-        inst.setValue(8, loan);
-        inst.setDataset(header);
-        inst.setClassValue(group);
-        return new InstanceExample(inst);
+        values[offset] = salary;
+        values[offset + 1] = commission;
+        values[offset + 2] = age;
+        values[offset + 3] = elevel;
+        values[offset + 4] = car;
+        values[offset + 5] = zipcode;
+        values[offset + 6] = hvalue;
+        values[offset + 7] = hyears;
+        values[offset + 8] = loan;
+        values[offset + 9] = group;
     }
 
-    protected double perturbValue(double val, double min, double max) {
-        return perturbValue(val, max - min, min, max);
+    protected double perturbValue(Random random, double val, double min, double max) {
+        return perturbValue(random, val, max - min, min, max);
     }
 
-    protected double perturbValue(double val, double range, double min,
+    protected double perturbValue(Random random, double val, double range, double min,
             double max) {
-        val += range * (2.0 * (this.instanceRandom.nextDouble() - 0.5))
+        val += range * (2.0 * (random.nextDouble() - 0.5))
                 * this.peturbFractionOption.getValue();
         if (val < min) {
             val = min;
@@ -29,6 +29,7 @@ import moa.core.FastVector;
 import moa.core.InstanceExample;
 import moa.core.ObjectRepository;
 import moa.options.AbstractOptionHandler;
+import moa.streams.BatchInstanceStream;
 import moa.streams.InstanceStream;
 import moa.tasks.TaskMonitor;
 import com.yahoo.labs.samoa.instances.Attribute;
@@ -44,7 +45,7 @@ import com.yahoo.labs.samoa.instances.InstancesHeader;
  * @version $Revision: 7 $
  */
 public class HyperplaneGenerator extends AbstractOptionHandler implements
-        InstanceStream, CapabilitiesHandler {
+        BatchInstanceStream, CapabilitiesHandler {
 
     @Override
     public String getPurposeString() {
@@ -131,14 +132,32 @@ public class HyperplaneGenerator extends AbstractOptionHandler implements
 
     @Override
     public InstanceExample nextInstance() {
+        InstancesHeader header = getHeader();
+        double[] attVals = new double[header.numAttributes()];
+        generateValues(this.instanceRandom, attVals, 0);
+        Instance inst = new DenseInstance(1.0, attVals);
+        inst.setDataset(header);
+        return new InstanceExample(inst);
+    }
 
+    @Override
+    public Random getInstanceRandom() {
+        return this.instanceRandom;
+    }
+
+    @Override
+    public boolean hasIndependentInstances() {
+        return this.numDriftAttsOption.getValue() == 0 || this.magChangeOption.getValue() == 0.0;
+    }
+
+    @Override
+    public void generateValues(Random random, double[] values, int offset) {
         int numAtts = this.numAttsOption.getValue();
-        double[] attVals = new double[numAtts + 1];
         double sum = 0.0;
         double sumWeights = 0.0;
         for (int i = 0; i < numAtts; i++) {
-            attVals[i] = this.instanceRandom.nextDouble();
-            sum += this.weights[i] * attVals[i];
+            values[offset + i] = random.nextDouble();
+            sum += this.weights[i] * values[offset + i];
             sumWeights += this.weights[i];
         }
         int classLabel;
@@ -148,22 +167,18 @@ public class HyperplaneGenerator extends AbstractOptionHandler implements
             classLabel = 0;
         }
         //Add Noise
-        if ((1 + (this.instanceRandom.nextInt(100))) <= this.noisePercentageOption.getValue()) {
+        if ((1 + (random.nextInt(100))) <= this.noisePercentageOption.getValue()) {
             classLabel = (classLabel == 0 ? 1 : 0);
         }
-
-        Instance inst = new DenseInstance(1.0, attVals);
-        inst.setDataset(getHeader());
-        inst.setClassValue(classLabel);
-        addDrift();
-        return new InstanceExample(inst);
+        values[offset + numAtts] = classLabel;
+        addDrift(random);
     }
 
-    private void addDrift() {
+    private void addDrift(Random random) {
         for (int i = 0; i < this.numDriftAttsOption.getValue(); i++) {
             this.weights[i] += (double) ((double) sigma[i]) * ((double) this.magChangeOption.getValue());
             if (//this.weights[i] >= 1.0 || this.weights[i] <= 0.0 ||
-                    (1 + (this.instanceRandom.nextInt(100))) <= this.sigmaPercentageOption.getValue()) {
+                    (1 + (random.nextInt(100))) <= this.sigmaPercentageOption.getValue()) {
                 this.sigma[i] *= -1;
             }
         }
@@ -20,8 +20,8 @@
 package moa.streams.generators;
 
 import com.yahoo.labs.samoa.instances.*;
+import java.util.Random;
 import moa.core.FastVector;
-import moa.core.InstanceExample;
 import moa.streams.InstanceStream;
 
 /**
@@ -51,15 +51,13 @@ public class HyperplaneGeneratorForRegression extends HyperplaneGenerator {
 
 
     @Override
-    public InstanceExample nextInstance() {
-
+    public void generateValues(Random random, double[] values, int offset) {
         int numAtts = this.numAttsOption.getValue();
-        double[] attVals = new double[numAtts + 1];
         double sum = 0.0;
         double sumWeights = 0.0;
         for (int i = 0; i < numAtts; i++) {
-            attVals[i] = this.instanceRandom.nextDouble();
-            sum += this.weights[i] * attVals[i];
+            values[offset + i] = random.nextDouble();
+            sum += this.weights[i] * values[offset + i];
             sumWeights += this.weights[i];
         }
 //        double classLabel;
@@ -71,24 +69,21 @@ public class HyperplaneGeneratorForRegression extends HyperplaneGenerator {
 
         classLabel=classLabel * 10 ;
         //Add Noise
-        if ((1 + (this.instanceRandom.nextInt(100))) <= this.noisePercentageOption.getValue()) {
+        if ((1 + (random.nextInt(100))) <= this.noisePercentageOption.getValue()) {
             classLabel = classLabel +classLabel/sumWeights;
 
 
             }
 
-        Instance inst = new DenseInstance(1.0, attVals);
-        inst.setDataset(getHeader());
-        inst.setClassValue(classLabel);
-        addDrift();
-        return new InstanceExample(inst);
+        values[offset + numAtts] = classLabel;
+        addDrift(random);
     }
 
-    private void addDrift() {
+    private void addDrift(Random random) {
         for (int i = 0; i < this.numDriftAttsOption.getValue(); i++) {
             this.weights[i] += (double) ((double) sigma[i]) * ((double) this.magChangeOption.getValue());
             if (//this.weights[i] >= 1.0 || this.weights[i] <= 0.0 ||
-                    (1 + (this.instanceRandom.nextInt(100))) <= this.sigmaPercentageOption.getValue()) {
+                    (1 + (random.nextInt(100))) <= this.sigmaPercentageOption.getValue()) {
                 this.sigma[i] *= -1;
             }
         }
@@ -36,6 +36,7 @@ import moa.core.ObjectRepository;
 import moa.options.AbstractOptionHandler;
 import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
+import moa.streams.BatchInstanceStream;
 import moa.streams.InstanceStream;
 import moa.tasks.TaskMonitor;
 
@@ -46,7 +47,7 @@ import moa.tasks.TaskMonitor;
  * @version $Revision: 7 $
  */
 public class LEDGenerator extends AbstractOptionHandler implements
-        InstanceStream, CapabilitiesHandler {
+        BatchInstanceStream, CapabilitiesHandler {
 
     @Override
     public String getPurposeString() {
@@ -128,23 +129,41 @@ public class LEDGenerator extends AbstractOptionHandler implements
     @Override
     public InstanceExample nextInstance() {
         InstancesHeader header = getHeader();
-        Instance inst = new DenseInstance(header.numAttributes());
+        double[] attVals = new double[header.numAttributes()];
+        generateValues(this.instanceRandom, attVals, 0);
+        Instance inst = new DenseInstance(1.0, attVals);
         inst.setDataset(header);
-        int selected = this.instanceRandom.nextInt(10);
+        return new InstanceExample(inst);
+    }
+
+    @Override
+    public Random getInstanceRandom() {
+        return this.instanceRandom;
+    }
+
+    @Override
+    public boolean hasIndependentInstances() {
+        return true;
+    }
+
+    @Override
+    public void generateValues(Random random, double[] values, int offset) {
+        int selected = random.nextInt(10);
         for (int i = 0; i < 7; i++) {
-            if ((1 + (this.instanceRandom.nextInt(100))) <= this.noisePercentageOption.getValue()) {
-                inst.setValue(i, originalInstances[selected][i] == 0 ? 1 : 0);
+            if ((1 + (random.nextInt(100))) <= this.noisePercentageOption.getValue()) {
+                values[offset + i] = originalInstances[selected][i] == 0 ? 1 : 0;
             } else {
-                inst.setValue(i, originalInstances[selected][i]);
+                values[offset + i] = originalInstances[selected][i];
             }
         }
+        int numAtts = 7;
         if (!this.suppressIrrelevantAttributesOption.isSet()) {
             for (int i = 0; i < NUM_IRRELEVANT_ATTRIBUTES; i++) {
-                inst.setValue(i + 7, this.instanceRandom.nextInt(2));
+                values[offset + i + 7] = random.nextInt(2);
             }
+            numAtts += NUM_IRRELEVANT_ATTRIBUTES;
         }
-        inst.setClassValue(selected);
-        return new InstanceExample(inst);
+        values[offset + numAtts] = selected;
     }
 
     @Override
@@ -19,12 +19,10 @@
  */
 package moa.streams.generators;
 
+import java.util.Random;
+
 import moa.capabilities.Capability;
 import moa.capabilities.ImmutableCapabilities;
-import moa.core.InstanceExample;
-import com.yahoo.labs.samoa.instances.DenseInstance;
-import com.yahoo.labs.samoa.instances.Instance;
-import com.yahoo.labs.samoa.instances.InstancesHeader;
 import moa.core.ObjectRepository;
 import com.github.javacliparser.IntOption;
 import moa.tasks.TaskMonitor;
@@ -71,25 +69,23 @@ public class LEDGeneratorDrift extends LEDGenerator {
     }
 
     @Override
-    public InstanceExample nextInstance() {
-        InstancesHeader header = getHeader();
-        Instance inst = new DenseInstance(header.numAttributes());
-        inst.setDataset(header);
-        int selected = this.instanceRandom.nextInt(10);
+    public void generateValues(Random random, double[] values, int offset) {
+        int selected = random.nextInt(10);
         for (int i = 0; i < 7; i++) {
-            if ((1 + (this.instanceRandom.nextInt(100))) <= this.noisePercentageOption.getValue()) {
-                inst.setValue(this.numberAttribute[i], originalInstances[selected][i] == 0 ? 1 : 0);
+            if ((1 + (random.nextInt(100))) <= this.noisePercentageOption.getValue()) {
+                values[offset + this.numberAttribute[i]] = originalInstances[selected][i] == 0 ? 1 : 0;
             } else {
-                inst.setValue(this.numberAttribute[i], originalInstances[selected][i]);
+                values[offset + this.numberAttribute[i]] = originalInstances[selected][i];
             }
         }
+        int numAtts = 7;
         if (!this.suppressIrrelevantAttributesOption.isSet()) {
             for (int i = 0; i < NUM_IRRELEVANT_ATTRIBUTES; i++) {
-                inst.setValue(this.numberAttribute[i + 7], this.instanceRandom.nextInt(2));
+                values[offset + this.numberAttribute[i + 7]] = random.nextInt(2);
             }
+            numAtts += NUM_IRRELEVANT_ATTRIBUTES;
         }
-        inst.setClassValue(selected);
-        return new InstanceExample(inst);
+        values[offset + numAtts] = selected;
     }
 
     @Override
@@ -37,6 +37,7 @@ import moa.core.MiscUtils;
 import moa.core.ObjectRepository;
 import moa.options.AbstractOptionHandler;
 import com.github.javacliparser.IntOption;
+import moa.streams.BatchInstanceStream;
 import moa.streams.InstanceStream;
 import moa.tasks.TaskMonitor;
 
@@ -47,7 +48,7 @@ import moa.tasks.TaskMonitor;
  * @version $Revision: 7 $
  */
 public class RandomRBFGenerator extends AbstractOptionHandler implements
-        InstanceStream, CapabilitiesHandler {
+        BatchInstanceStream, CapabilitiesHandler {
 
     @Override
     public String getPurposeString() {
@@ -127,28 +128,44 @@ public class RandomRBFGenerator extends AbstractOptionHandler implements
 
     @Override
     public InstanceExample nextInstance() {
+        InstancesHeader header = getHeader();
+        double[] attVals = new double[header.numAttributes()];
+        generateValues(this.instanceRandom, attVals, 0);
+        Instance inst = new DenseInstance(1.0, attVals);
+        inst.setDataset(header);
+        return new InstanceExample(inst);
+    }
+
+    @Override
+    public Random getInstanceRandom() {
+        return this.instanceRandom;
+    }
+
+    @Override
+    public boolean hasIndependentInstances() {
+        return true;
+    }
+
+    @Override
+    public void generateValues(Random random, double[] values, int offset) {
         Centroid centroid = this.centroids[MiscUtils.chooseRandomIndexBasedOnWeights(this.centroidWeights,
-                this.instanceRandom)];
+                random)];
         int numAtts = this.numAttsOption.getValue();
-        double[] attVals = new double[numAtts + 1];
         for (int i = 0; i < numAtts; i++) {
-            attVals[i] = (this.instanceRandom.nextDouble() * 2.0) - 1.0;
+            values[offset + i] = (random.nextDouble() * 2.0) - 1.0;
         }
         double magnitude = 0.0;
         for (int i = 0; i < numAtts; i++) {
-            magnitude += attVals[i] * attVals[i];
+            magnitude += values[offset + i] * values[offset + i];
         }
         magnitude = Math.sqrt(magnitude);
-        double desiredMag = this.instanceRandom.nextGaussian()
+        double desiredMag = random.nextGaussian()
                 * centroid.stdDev;
         double scale = desiredMag / magnitude;
         for (int i = 0; i < numAtts; i++) {
-            attVals[i] = centroid.centre[i] + attVals[i] * scale;
+            values[offset + i] = centroid.centre[i] + values[offset + i] * scale;
         }
-        Instance inst = new DenseInstance(1.0, attVals);
-        inst.setDataset(getHeader());
-        inst.setClassValue(centroid.classLabel);
-        return new InstanceExample(inst);
+        values[offset + numAtts] = centroid.classLabel;
     }
 
     protected void generateHeader() {
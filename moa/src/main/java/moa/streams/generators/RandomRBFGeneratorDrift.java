@@ -23,7 +23,6 @@ import java.util.Random;
 
 import moa.capabilities.Capability;
 import moa.capabilities.ImmutableCapabilities;
-import moa.core.InstanceExample;
 
 import com.github.javacliparser.IntOption;
 import com.github.javacliparser.FloatOption;
@@ -52,7 +51,12 @@ public class RandomRBFGeneratorDrift extends RandomRBFGenerator {
     protected double[][] speedCentroids;
 
     @Override
-    public InstanceExample nextInstance() {
+    public boolean hasIndependentInstances() {
+        return this.numDriftCentroidsOption.getValue() == 0 || this.speedChangeOption.getValue() == 0.0;
+    }
+
+    @Override
+    public void generateValues(Random random, double[] values, int offset) {
         //Update Centroids with drift
         int len = this.numDriftCentroidsOption.getValue();
         if (len > this.centroids.length) {
@@ -71,7 +75,7 @@ public class RandomRBFGeneratorDrift extends RandomRBFGenerator {
                 }
             }
         }
-        return super.nextInstance();
+        super.generateValues(random, values, offset);
     }
 
     @Override
@@ -38,6 +38,7 @@ import moa.core.ObjectRepository;
 import moa.options.AbstractOptionHandler;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
+import moa.streams.BatchInstanceStream;
 import moa.streams.InstanceStream;
 import moa.tasks.TaskMonitor;
 
@@ -48,7 +49,7 @@ import moa.tasks.TaskMonitor;
  * @version $Revision: 7 $
  */
 public class RandomTreeGenerator extends AbstractOptionHandler implements
-        InstanceStream, CapabilitiesHandler {
+        BatchInstanceStream, CapabilitiesHandler {
 
     @Override
     public String getPurposeString() {
@@ -149,31 +150,50 @@ public class RandomTreeGenerator extends AbstractOptionHandler implements
 
     @Override
     public InstanceExample nextInstance() {
-        double[] attVals = new double[this.numNominalsOption.getValue()
-                + this.numNumericsOption.getValue()];
         InstancesHeader header = getHeader();
-        Instance inst = new DenseInstance(header.numAttributes());
-        for (int i = 0; i < attVals.length; i++) {
-            attVals[i] = i < this.numNominalsOption.getValue() ? this.instanceRandom.nextInt(this.numValsPerNominalOption.getValue())
-                    : this.instanceRandom.nextDouble();
-            inst.setValue(i, attVals[i]);
-        }
+        double[] attVals = new double[header.numAttributes()];
+        generateValues(this.instanceRandom, attVals, 0);
+        Instance inst = new DenseInstance(1.0, attVals);
         inst.setDataset(header);
-        inst.setClassValue(classifyInstance(this.treeRoot, attVals));
         return new InstanceExample(inst);
     }
 
+    @Override
+    public Random getInstanceRandom() {
+        return this.instanceRandom;
+    }
+
+    @Override
+    public boolean hasIndependentInstances() {
+        return true;
+    }
+
+    @Override
+    public void generateValues(Random random, double[] values, int offset) {
+        int numAtts = this.numNominalsOption.getValue()
+                + this.numNumericsOption.getValue();
+        for (int i = 0; i < numAtts; i++) {
+            values[offset + i] = i < this.numNominalsOption.getValue() ? random.nextInt(this.numValsPerNominalOption.getValue())
+                    : random.nextDouble();
+        }
+        values[offset + numAtts] = classifyInstance(this.treeRoot, values, offset);
+    }
+
     protected int classifyInstance(Node node, double[] attVals) {
+        return classifyInstance(node, attVals, 0);
+    }
+
+    protected int classifyInstance(Node node, double[] attVals, int offset) {
         if (node.children == null) {
             return node.classLabel;
         }
         if (node.splitAttIndex < this.numNominalsOption.getValue()) {
             return classifyInstance(
-                    node.children[(int) attVals[node.splitAttIndex]], attVals);
+                    node.children[(int) attVals[offset + node.splitAttIndex]], attVals, offset);
         }
         return classifyInstance(
-                node.children[attVals[node.splitAttIndex] < node.splitAttValue ? 0
-                : 1], attVals);
+                node.children[attVals[offset + node.splitAttIndex] < node.splitAttValue ? 0
+                : 1], attVals, offset);
     }
 
     protected void generateHeader() {
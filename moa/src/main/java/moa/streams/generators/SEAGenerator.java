@@ -36,6 +36,7 @@ import moa.core.ObjectRepository;
 import moa.options.AbstractOptionHandler;
 import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
+import moa.streams.BatchInstanceStream;
 import moa.streams.InstanceStream;
 import moa.tasks.TaskMonitor;
 
@@ -54,7 +55,7 @@ import moa.tasks.TaskMonitor;
  * @version $Revision: 7 $
  */
 public class SEAGenerator extends AbstractOptionHandler implements
-        InstanceStream, CapabilitiesHandler {
+        BatchInstanceStream, CapabilitiesHandler {
 
     @Override
     public String getPurposeString() {
@@ -166,14 +167,34 @@ public class SEAGenerator extends AbstractOptionHandler implements
 
     @Override
     public InstanceExample nextInstance() {
+        InstancesHeader header = getHeader();
+        double[] attVals = new double[header.numAttributes()];
+        generateValues(this.instanceRandom, attVals, 0);
+        Instance inst = new DenseInstance(1.0, attVals);
+        inst.setDataset(header);
+        return new InstanceExample(inst);
+    }
+
+    @Override
+    public Random getInstanceRandom() {
+        return this.instanceRandom;
+    }
+
+    @Override
+    public boolean hasIndependentInstances() {
+        return !this.balanceClassesOption.isSet();
+    }
+
+    @Override
+    public void generateValues(Random random, double[] values, int offset) {
         double attrib1 = 0, attrib2 = 0, attrib3 = 0;
         int group = 0;
         boolean desiredClassFound = false;
         while (!desiredClassFound) {
             // generate attributes
-            attrib1 = 10 * this.instanceRandom.nextDouble();
-            attrib2 = 10 * this.instanceRandom.nextDouble();
-            attrib3 = 10 * this.instanceRandom.nextDouble();
+            attrib1 = 10 * random.nextDouble();
+            attrib2 = 10 * random.nextDouble();
+            attrib3 = 10 * random.nextDouble();
 
             // determine class
             group = classificationFunctions[this.functionOption.getValue() - 1].determineClass(attrib1, attrib2, attrib3);
@@ -189,19 +210,15 @@ public class SEAGenerator extends AbstractOptionHandler implements
             }
         }
         //Add Noise
-        if ((1 + (this.instanceRandom.nextInt(100))) <= this.noisePercentageOption.getValue()) {
+        if ((1 + (random.nextInt(100))) <= this.noisePercentageOption.getValue()) {
             group = (group == 0 ? 1 : 0);
         }
 
         // construct instance
-        InstancesHeader header = getHeader();
-        Instance inst = new DenseInstance(header.numAttributes());
-        inst.setValue(0, attrib1);
-        inst.setValue(1, attrib2);
-        inst.setValue(2, attrib3);
-        inst.setDataset(header);
-        inst.setClassValue(group);
-        return new InstanceExample(inst);
+        values[offset] = attrib1;
+        values[offset + 1] = attrib2;
+        values[offset + 2] = attrib3;
+        values[offset + 3] = group;
     }
 
     @Override
@@ -36,6 +36,7 @@ import moa.core.ObjectRepository;
 import moa.options.AbstractOptionHandler;
 import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
+import moa.streams.BatchInstanceStream;
 import moa.streams.InstanceStream;
 import moa.tasks.TaskMonitor;
 
@@ -46,7 +47,7 @@ import moa.tasks.TaskMonitor;
  * @version $Revision: 7 $
  */
 public class WaveformGenerator extends AbstractOptionHandler implements
-        InstanceStream, CapabilitiesHandler {
+        BatchInstanceStream, CapabilitiesHandler {
 
     @Override
     public String getPurposeString() {
@@ -121,9 +122,26 @@ public class WaveformGenerator extends AbstractOptionHandler implements
     @Override
     public InstanceExample nextInstance() {
         InstancesHeader header = getHeader();
-        Instance inst = new DenseInstance(header.numAttributes());
+        double[] attVals = new double[header.numAttributes()];
+        generateValues(this.instanceRandom, attVals, 0);
+        Instance inst = new DenseInstance(1.0, attVals);
         inst.setDataset(header);
-        int waveform = this.instanceRandom.nextInt(NUM_CLASSES);
+        return new InstanceExample(inst);
+    }
+
+    @Override
+    public Random getInstanceRandom() {
+        return this.instanceRandom;
+    }
+
+    @Override
+    public boolean hasIndependentInstances() {
+        return true;
+    }
+
+    @Override
+    public void generateValues(Random random, double[] values, int offset) {
+        int waveform = random.nextInt(NUM_CLASSES);
         int choiceA = 0, choiceB = 0;
         switch (waveform) {
             case 0:
@@ -140,20 +158,21 @@ public class WaveformGenerator extends AbstractOptionHandler implements
                 break;
 
         }
-        double multiplierA = this.instanceRandom.nextDouble();
+        double multiplierA = random.nextDouble();
         double multiplierB = 1.0 - multiplierA;
         for (int i = 0; i < NUM_BASE_ATTRIBUTES; i++) {
-            inst.setValue(i, (multiplierA * hFunctions[choiceA][i])
+            values[offset + i] = (multiplierA * hFunctions[choiceA][i])
                     + (multiplierB * hFunctions[choiceB][i])
-                    + this.instanceRandom.nextGaussian());
+                    + random.nextGaussian();
         }
+        int numAtts = NUM_BASE_ATTRIBUTES;
         if (this.addNoiseOption.isSet()) {
             for (int i = NUM_BASE_ATTRIBUTES; i < TOTAL_ATTRIBUTES_INCLUDING_NOISE; i++) {
-                inst.setValue(i, this.instanceRandom.nextGaussian());
+                values[offset + i] = random.nextGaussian();
             }
+            numAtts = TOTAL_ATTRIBUTES_INCLUDING_NOISE;
         }
-        inst.setClassValue(waveform);
-        return new InstanceExample(inst);
+        values[offset + numAtts] = waveform;
     }
 
     @Override
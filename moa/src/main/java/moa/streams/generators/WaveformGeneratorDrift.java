@@ -20,12 +20,10 @@
  */
 package moa.streams.generators;
 
+import java.util.Random;
+
 import moa.capabilities.Capability;
 import moa.capabilities.ImmutableCapabilities;
-import moa.core.InstanceExample;
-import com.yahoo.labs.samoa.instances.DenseInstance;
-import com.yahoo.labs.samoa.instances.Instance;
-import com.yahoo.labs.samoa.instances.InstancesHeader;
 import moa.core.ObjectRepository;
 import com.github.javacliparser.IntOption;
 import moa.tasks.TaskMonitor;
@@ -72,11 +70,8 @@ public class WaveformGeneratorDrift extends WaveformGenerator {
     }
 
     @Override
-    public InstanceExample nextInstance() {
-        InstancesHeader header = getHeader();
-        Instance inst = new DenseInstance(header.numAttributes());
-        inst.setDataset(header);
-        int waveform = this.instanceRandom.nextInt(NUM_CLASSES);
+    public void generateValues(Random random, double[] values, int offset) {
+        int waveform = random.nextInt(NUM_CLASSES);
         int choiceA = 0, choiceB = 0;
         switch (waveform) {
             case 0:
@@ -93,20 +88,21 @@ public class WaveformGeneratorDrift extends WaveformGenerator {
                 break;
 
         }
-        double multiplierA = this.instanceRandom.nextDouble();
+        double multiplierA = random.nextDouble();
         double multiplierB = 1.0 - multiplierA;
         for (int i = 0; i < NUM_BASE_ATTRIBUTES; i++) {
-            inst.setValue(this.numberAttribute[i], (multiplierA * hFunctions[choiceA][i])
+            values[offset + this.numberAttribute[i]] = (multiplierA * hFunctions[choiceA][i])
                     + (multiplierB * hFunctions[choiceB][i])
-                    + this.instanceRandom.nextGaussian());
+                    + random.nextGaussian();
         }
+        int numAtts = NUM_BASE_ATTRIBUTES;
         if (this.addNoiseOption.isSet()) {
             for (int i = NUM_BASE_ATTRIBUTES; i < TOTAL_ATTRIBUTES_INCLUDING_NOISE; i++) {
-                inst.setValue(this.numberAttribute[i], this.instanceRandom.nextGaussian());
+                values[offset + this.numberAttribute[i]] = random.nextGaussian();
             }
+            numAtts = TOTAL_ATTRIBUTES_INCLUDING_NOISE;
         }
-        inst.setClassValue(waveform);
-        return new InstanceExample(inst);
+        values[offset + numAtts] = waveform;
     }
 
     @Override
@@ -54,7 +54,13 @@ public abstract class AbstractTask extends AbstractOptionHandler implements
             return null;
         }
         monitor.setCurrentActivity("Doing task " + getTaskName() + "...", -1.0);
-        Object result = doTaskImpl(monitor, repository);
+        Object result = null;
+        try {
+            result = doTaskImpl(monitor, repository);
+        } finally {
+            // release the streams and other objects prepared for this task
+            this.config.closePreparedObjects(result);
+        }
         monitor.setCurrentActivity("Task " + getTaskName() + " complete.", 1.0);
         //this.classOptionNamesToPreparedObjects = null; // clean up refs
         return result;
@@ -19,17 +19,21 @@
  */
 package moa.tasks;
 
+import java.io.File;
 import java.util.Random;
 
 import com.yahoo.labs.samoa.instances.Instances;
 import moa.core.ObjectRepository;
 import moa.options.ClassOption;
+import com.github.javacliparser.FileOption;
 import com.github.javacliparser.IntOption;
 import moa.streams.CachedInstancesStream;
+import moa.streams.DiskCachedInstancesStream;
 import moa.streams.InstanceStream;
 
 /**
- * Task for storing and shuffling examples in memory.
+ * Task for storing and shuffling examples in memory, or on disk when a cache
+ * directory is given (see {@link DiskCachedInstancesStream}).
  *
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 7 $
@@ -55,9 +59,20 @@ public class CacheShuffledStream extends AbstractTask {
             "shuffleRandomSeed", 'r',
             "Seed for random shuffling of instances.", 1);
 
+    public FileOption cacheDirectoryOption = new FileOption("cacheDirectory", 'd',
+            "Directory to cache the instances on disk in, leave empty to cache them in memory.",
+            null, null, true);
+
+    public IntOption bucketSizeOption = new IntOption("bucketSize", 'b',
+            "Number of instances per bucket when shuffling on disk, each bucket is shuffled in memory.",
+            1000000, 1, Integer.MAX_VALUE);
+
     @Override
     protected Object doTaskImpl(TaskMonitor monitor, ObjectRepository repository) {
         InstanceStream stream = (InstanceStream) getPreparedClassOption(this.streamOption);
+        if (this.cacheDirectoryOption.getFile() != null) {
+            return cacheOnDisk(stream, this.cacheDirectoryOption.getFile(), monitor);
+        }
         Instances cache = new Instances(stream.getHeader(), 0);
         monitor.setCurrentActivity("Caching instances...", -1.0);
         while ((cache.numInstances() < this.maximumCacheSizeOption.getValue())
@@ -85,6 +100,36 @@ public class CacheShuffledStream extends AbstractTask {
         return new CachedInstancesStream(cache);
     }
 
+    protected Object cacheOnDisk(InstanceStream stream, File directory, TaskMonitor monitor) {
+        int maxCacheSize = this.maximumCacheSizeOption.getValue();
+        int numBuckets = (int) ((maxCacheSize + (long) this.bucketSizeOption.getValue() - 1)
+                / this.bucketSizeOption.getValue());
+        DiskCachedInstancesStream.Writer cache = new DiskCachedInstancesStream.Writer(
+                stream.getHeader(), directory, numBuckets,
+                new Random(this.shuffleRandomSeedOption.getValue()));
+        monitor.setCurrentActivity("Caching instances...", -1.0);
+        while ((cache.numInstances() < maxCacheSize) && stream.hasMoreInstances()) {
+            cache.add(stream.nextInstance().getData());
+            if (cache.numInstances()
+                    % MainTask.INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
+                if (monitor.taskShouldAbort()) {
+                    cache.discard();
+                    return null;
+                }
+                long estimatedRemainingInstances = stream.estimatedRemainingInstances();
+                long maxRemaining = maxCacheSize - cache.numInstances();
+                if ((estimatedRemainingInstances < 0)
+                        || (maxRemaining < estimatedRemainingInstances)) {
+                    estimatedRemainingInstances = maxRemaining;
+                }
+                monitor.setCurrentActivityFractionComplete((double) cache.numInstances()
+                        / (double) (cache.numInstances() + estimatedRemainingInstances));
+            }
+        }
+        monitor.setCurrentActivity("Shuffling instances...", -1.0);
+        return cache.shuffle();
+    }
+
     public Class<?> getTaskResultType() {
         return CachedInstancesStream.class;
     }
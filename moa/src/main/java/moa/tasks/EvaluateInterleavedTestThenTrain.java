@@ -30,6 +30,7 @@ import moa.classifiers.MultiClassClassifier;
 import moa.core.Example;
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
+import moa.core.PhaseTimer;
 import moa.core.TimingUtils;
 import moa.evaluation.LearningEvaluation;
 import moa.evaluation.LearningPerformanceEvaluator;
@@ -37,6 +38,7 @@ import moa.evaluation.preview.LearningCurve;
 import moa.learners.Learner;
 import moa.options.ClassOption;
 import com.github.javacliparser.FileOption;
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
 import moa.streams.ExampleStream;
 import moa.streams.InstanceStream;
@@ -94,6 +96,22 @@ public class EvaluateInterleavedTestThenTrain extends ClassificationMainTask {
     public FileOption dumpFileOption = new FileOption("dumpFile", 'd',
             "File to append intermediate csv reslts to.", null, "csv", true);
 
+    public FlagOption instrumentPhasesOption = new FlagOption("instrumentPhases", 'p',
+            "Record the wall-clock latency of each phase of the evaluation loop.");
+
+    public FileOption phaseMetricsFileOption = new FileOption("phaseMetricsFile", 'm',
+            "File to append phase latency metrics to, if instrumenting.", null, "csv", true);
+
+    protected static final int PHASE_READ = 0;
+
+    protected static final int PHASE_PREDICT = 1;
+
+    protected static final int PHASE_EVALUATE = 2;
+
+    protected static final int PHASE_TRAIN = 3;
+
+    protected static final int PHASE_MEASURE = 4;
+
     @Override
     public Class<?> getTaskResultType() {
         return LearningCurve.class;
@@ -139,6 +157,10 @@ public class EvaluateInterleavedTestThenTrain extends ClassificationMainTask {
                         "Unable to open immediate result file: " + dumpFile, ex);
             }
         }
+        PhaseTimer phaseTimer = new PhaseTimer(this.instrumentPhasesOption.isSet(),
+                "read", "predict", "evaluate", "train", "measure size");
+        PrintStream phaseMetricsStream = phaseTimer.openMetricsFile(
+                this.phaseMetricsFileOption.getFile());
         boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
         long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
@@ -147,26 +169,33 @@ public class EvaluateInterleavedTestThenTrain extends ClassificationMainTask {
         while (stream.hasMoreInstances()
                 && ((maxInstances < 0) || (instancesProcessed < maxInstances))
                 && ((maxSeconds < 0) || (secondsElapsed < maxSeconds))) {
+            phaseTimer.start();
             Example trainInst = stream.nextInstance();
+            phaseTimer.lap(PHASE_READ);
             Example testInst = trainInst; //.copy();
             //int trueClass = (int) trainInst.classValue();
             //testInst.setClassMissing();
             double[] prediction = learner.getVotesForInstance(testInst);
+            phaseTimer.lap(PHASE_PREDICT);
             //evaluator.addClassificationAttempt(trueClass, prediction, testInst
             //		.weight());
             evaluator.addResult(testInst, prediction);
+            phaseTimer.lap(PHASE_EVALUATE);
             learner.trainOnInstance(trainInst);
+            phaseTimer.lap(PHASE_TRAIN);
             instancesProcessed++;
             if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
                   ||  stream.hasMoreInstances() == false) {
                 long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
                 double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
                 double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
+                phaseTimer.start();
                 double RAMHoursIncrement = learner.measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
+                phaseTimer.lap(PHASE_MEASURE);
                 RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
                 RAMHours += RAMHoursIncrement;
                 lastEvaluateStartTime = evaluateTime;
-                learningCurve.insertEntry(new LearningEvaluation(
+                learningCurve.insertEntry(new LearningEvaluation(phaseTimer.addMeasurements(
                         new Measurement[]{
                             new Measurement(
                             "learning evaluation instances",
@@ -179,7 +208,7 @@ public class EvaluateInterleavedTestThenTrain extends ClassificationMainTask {
                             new Measurement(
                             "model cost (RAM-Hours)",
                             RAMHours)
-                        },
+                        }),
                         evaluator, learner));
                 if (immediateResultStream != null) {
                     if (firstDump) {
@@ -191,6 +220,10 @@ public class EvaluateInterleavedTestThenTrain extends ClassificationMainTask {
                     immediateResultStream.println(learningCurve.entryToString(learningCurve.numEntries() - 1));
                     immediateResultStream.flush();
                 }
+                if (phaseMetricsStream != null) {
+                    phaseTimer.writeMetrics(phaseMetricsStream, instancesProcessed);
+                }
+                phaseTimer.reset();
             }
             if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
                 if (monitor.taskShouldAbort()) {
@@ -217,6 +250,9 @@ public class EvaluateInterleavedTestThenTrain extends ClassificationMainTask {
         if (immediateResultStream != null) {
             immediateResultStream.close();
         }
+        if (phaseMetricsStream != null) {
+            phaseMetricsStream.close();
+        }
         return learningCurve;
     }
 
@@ -24,6 +24,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import com.github.javacliparser.FileOption;
 import com.github.javacliparser.FlagOption;
@@ -35,6 +36,7 @@ import moa.classifiers.MultiClassClassifier;
 import moa.core.Example;
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
+import moa.core.PhaseTimer;
 import moa.core.StringUtils;
 import moa.core.TimingUtils;
 import moa.evaluation.LearningEvaluation;
@@ -96,6 +98,20 @@ public class EvaluatePeriodicHeldOutTest extends ClassificationMainTask {
     public FlagOption cacheTestOption = new FlagOption("cacheTest", 'c',
             "Cache test instances in memory.");
 
+    public FlagOption instrumentPhasesOption = new FlagOption("instrumentPhases", 'p',
+            "Record the wall-clock latency of each phase of training and testing.");
+
+    public FileOption phaseMetricsFileOption = new FileOption("phaseMetricsFile", 'm',
+            "File to append phase latency metrics to, if instrumenting.", null, "csv", true);
+
+    protected static final int PHASE_READ = 0;
+
+    protected static final int PHASE_TRAIN = 1;
+
+    protected static final int PHASE_PREDICT = 2;
+
+    protected static final int PHASE_EVALUATE = 3;
+
     @Override
     protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
         Learner learner = (Learner) getPreparedClassOption(this.learnerOption);
@@ -120,6 +136,10 @@ public class EvaluatePeriodicHeldOutTest extends ClassificationMainTask {
                         "Unable to open immediate result file: " + dumpFile, ex);
             }
         }
+        PhaseTimer phaseTimer = new PhaseTimer(this.instrumentPhasesOption.isSet(),
+                "read", "train", "predict", "evaluate");
+        PrintStream phaseMetricsStream = phaseTimer.openMetricsFile(
+                this.phaseMetricsFileOption.getFile());
         boolean firstDump = true;
         ExampleStream testStream = null;
         int testSize = this.testSizeOption.getValue();
@@ -158,7 +178,11 @@ public class EvaluatePeriodicHeldOutTest extends ClassificationMainTask {
                     + this.sampleFrequencyOption.getValue();
             long trainStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
             while (instancesProcessed < instancesTarget && stream.hasMoreInstances() == true) {
-                learner.trainOnInstance(stream.nextInstance());
+                phaseTimer.start();
+                Example trainInst = stream.nextInstance();
+                phaseTimer.lap(PHASE_READ);
+                learner.trainOnInstance(trainInst);
+                phaseTimer.lap(PHASE_TRAIN);
                 instancesProcessed++;
                 if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
                     if (monitor.taskShouldAbort()) {
@@ -190,12 +214,16 @@ public class EvaluatePeriodicHeldOutTest extends ClassificationMainTask {
 				if (stream.hasMoreInstances() == false) {
 					break;
 				}
+                phaseTimer.start();
                 Example testInst = (Example) testStream.nextInstance(); //.copy();
+                phaseTimer.lap(PHASE_READ);
                 double trueClass = ((Instance) testInst.getData()).classValue();
                 //testInst.setClassMissing();
                 double[] prediction = learner.getVotesForInstance(testInst);
+                phaseTimer.lap(PHASE_PREDICT);
                 //testInst.setClassValue(trueClass);
                 evaluator.addResult(testInst, prediction);
+                phaseTimer.lap(PHASE_EVALUATE);
                 testInstancesProcessed++;
                 if (testInstancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
                     if (monitor.taskShouldAbort()) {
@@ -222,6 +250,11 @@ public class EvaluatePeriodicHeldOutTest extends ClassificationMainTask {
             measurements.add(new Measurement("test time", testTime));
             measurements.add(new Measurement("test speed", this.testSizeOption.getValue()
                     / testTime));
+            if (phaseTimer.isEnabled()) {
+                measurements.add(new Measurement("evaluation time (wall seconds)",
+                        phaseTimer.getWallTimeSeconds()));
+                measurements.addAll(Arrays.asList(phaseTimer.getMeasurements()));
+            }
             Measurement[] performanceMeasurements = evaluator.getPerformanceMeasurements();
             for (Measurement measurement : performanceMeasurements) {
                 measurements.add(measurement);
@@ -239,6 +272,10 @@ public class EvaluatePeriodicHeldOutTest extends ClassificationMainTask {
                 immediateResultStream.println(learningCurve.entryToString(learningCurve.numEntries() - 1));
                 immediateResultStream.flush();
             }
+            if (phaseMetricsStream != null) {
+                phaseTimer.writeMetrics(phaseMetricsStream, instancesProcessed);
+            }
+            phaseTimer.reset();
             if (monitor.resultPreviewRequested()) {
                 monitor.setLatestResultPreview(learningCurve.copy());
             }
@@ -285,6 +322,9 @@ public class EvaluatePeriodicHeldOutTest extends ClassificationMainTask {
         if (immediateResultStream != null) {
             immediateResultStream.close();
         }
+        if (phaseMetricsStream != null) {
+            phaseMetricsStream.close();
+        }
         return learningCurve;
     }
 
@@ -22,6 +22,7 @@ package moa.tasks;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
 
 import moa.capabilities.CapabilitiesHandler;
@@ -30,7 +31,10 @@ import moa.capabilities.ImmutableCapabilities;
 import moa.classifiers.MultiClassClassifier;
 import moa.core.Example;
 import moa.core.Measurement;
+import moa.core.MetricsRegistry;
 import moa.core.ObjectRepository;
+import moa.core.PhaseTimer;
+import moa.core.PrometheusExporter;
 import moa.core.TimingUtils;
 import moa.evaluation.WindowClassificationPerformanceEvaluator;
 import moa.evaluation.preview.LearningCurve;
@@ -42,6 +46,7 @@ import moa.learners.Learner;
 import moa.options.ClassOption;
 
 import com.github.javacliparser.FileOption;
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
 import moa.streams.ExampleStream;
@@ -108,6 +113,34 @@ public class EvaluatePrequential extends ClassificationMainTask implements Capab
             'a', "Fading factor or exponential smoothing factor", .01);
     //End New for prequential methods
 
+    public FlagOption instrumentPhasesOption = new FlagOption("instrumentPhases", 'p',
+            "Record the wall-clock latency of each phase of the evaluation loop.");
+
+    public FileOption phaseMetricsFileOption = new FileOption("phaseMetricsFile", 'm',
+            "File to append phase latency metrics to, if instrumenting.", null, "csv", true);
+
+    public FileOption metricsExportFileOption = new FileOption("metricsExportFile", 'x',
+            "File to rewrite every second with the learner metrics in Prometheus text format.", null, "prom", true);
+
+    public IntOption metricsExportPortOption = new IntOption("metricsExportPort", 'y',
+            "Port to serve the learner metrics on in Prometheus text format (-1 = do not serve).",
+            -1, -1, 65535);
+
+    protected static final long METRICS_EXPORT_PERIOD_MILLIS = 1000;
+
+    protected static final int PHASE_READ = 0;
+
+    protected static final int PHASE_PREDICT = 1;
+
+    protected static final int PHASE_EVALUATE = 2;
+
+    protected static final int PHASE_TRAIN = 3;
+
+    protected static final int PHASE_MEASURE = 4;
+
+    /** Only timed when predictions are written to a file. */
+    protected static final int PHASE_WRITE_PREDICTION = 5;
+
     @Override
     public Class<?> getTaskResultType() {
         return LearningCurve.class;
@@ -185,92 +218,146 @@ public class EvaluatePrequential extends ClassificationMainTask implements Capab
                         "Unable to open prediction result file: " + outputPredictionFile, ex);
             }
         }
-        boolean firstDump = true;
-        boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
-        long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
-        long lastEvaluateStartTime = evaluateStartTime;
-        double RAMHours = 0.0;
-        while (stream.hasMoreInstances()
-                && ((maxInstances < 0) || (instancesProcessed < maxInstances))
-                && ((maxSeconds < 0) || (secondsElapsed < maxSeconds))) {
-            Example trainInst = stream.nextInstance();
-            Example testInst = (Example) trainInst; //.copy();
-            //testInst.setClassMissing();
-            double[] prediction = learner.getVotesForInstance(testInst);
-            // Output prediction
-            if (outputPredictionFile != null) {
-                int trueClass = (int) ((Instance) trainInst.getData()).classValue();
-                outputPredictionResultStream.println(Utils.maxIndex(prediction) + "," + (
-                 ((Instance) testInst.getData()).classIsMissing() == true ? " ? " : trueClass));
-            }
-
-            //evaluator.addClassificationAttempt(trueClass, prediction, testInst.weight());
-            evaluator.addResult(testInst, prediction);
-            learner.trainOnInstance(trainInst);
-            instancesProcessed++;
-            if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
-                    || stream.hasMoreInstances() == false) {
-                long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
-                double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
-                double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
-                double RAMHoursIncrement = learner.measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
-                RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
-                RAMHours += RAMHoursIncrement;
-                lastEvaluateStartTime = evaluateTime;
-                learningCurve.insertEntry(new LearningEvaluation(
-                        new Measurement[]{
-                            new Measurement(
-                            "learning evaluation instances",
-                            instancesProcessed),
-                            new Measurement(
-                            "evaluation time ("
-                            + (preciseCPUTiming ? "cpu "
-                            : "") + "seconds)",
-                            time),
-                            new Measurement(
-                            "model cost (RAM-Hours)",
-                            RAMHours)
-                        },
-                        evaluator, learner));
-
-                if (immediateResultStream != null) {
-                    if (firstDump) {
-                        immediateResultStream.println(learningCurve.headerToString());
-                        firstDump = false;
+        //File for phase latency metrics
+        PhaseTimer phaseTimer = (outputPredictionFile == null)
+                ? new PhaseTimer(this.instrumentPhasesOption.isSet(),
+                        "read", "predict", "evaluate", "train", "measure size")
+                : new PhaseTimer(this.instrumentPhasesOption.isSet(),
+                        "read", "predict", "evaluate", "train", "measure size", "write prediction");
+        PrintStream phaseMetricsStream = phaseTimer.openMetricsFile(
+                this.phaseMetricsFileOption.getFile());
+        //Export of the learner metrics
+        PrometheusExporter metricsExporter = null;
+        try {
+            if (this.metricsExportFileOption.getFile() != null || this.metricsExportPortOption.getValue() >= 0) {
+                metricsExporter = new PrometheusExporter(MetricsRegistry.getDefault());
+                if (this.metricsExportFileOption.getFile() != null) {
+                    metricsExporter.exportToFile(this.metricsExportFileOption.getFile(), METRICS_EXPORT_PERIOD_MILLIS);
+                }
+                if (this.metricsExportPortOption.getValue() >= 0) {
+                    try {
+                        metricsExporter.serve(this.metricsExportPortOption.getValue());
+                    } catch (IOException ex) {
+                        throw new RuntimeException(
+                                "Unable to serve metrics on port " + this.metricsExportPortOption.getValue(), ex);
                     }
-                    immediateResultStream.println(learningCurve.entryToString(learningCurve.numEntries() - 1));
-                    immediateResultStream.flush();
                 }
             }
-            if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
-                if (monitor.taskShouldAbort()) {
-                    return null;
+            boolean firstDump = true;
+            boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
+            long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+            long lastEvaluateStartTime = evaluateStartTime;
+            double RAMHours = 0.0;
+            while (stream.hasMoreInstances()
+                    && ((maxInstances < 0) || (instancesProcessed < maxInstances))
+                    && ((maxSeconds < 0) || (secondsElapsed < maxSeconds))) {
+                phaseTimer.start();
+                Example trainInst = stream.nextInstance();
+                phaseTimer.lap(PHASE_READ);
+                Example testInst = (Example) trainInst; //.copy();
+                //testInst.setClassMissing();
+                double[] prediction = learner.getVotesForInstance(testInst);
+                phaseTimer.lap(PHASE_PREDICT);
+                // Output prediction
+                if (outputPredictionFile != null) {
+                    int trueClass = (int) ((Instance) trainInst.getData()).classValue();
+                    outputPredictionResultStream.println(Utils.maxIndex(prediction) + "," + (
+                     ((Instance) testInst.getData()).classIsMissing() == true ? " ? " : trueClass));
+                    phaseTimer.lap(PHASE_WRITE_PREDICTION);
                 }
-                long estimatedRemainingInstances = stream.estimatedRemainingInstances();
-                if (maxInstances > 0) {
-                    long maxRemaining = maxInstances - instancesProcessed;
-                    if ((estimatedRemainingInstances < 0)
-                            || (maxRemaining < estimatedRemainingInstances)) {
-                        estimatedRemainingInstances = maxRemaining;
+
+                //evaluator.addClassificationAttempt(trueClass, prediction, testInst.weight());
+                evaluator.addResult(testInst, prediction);
+                phaseTimer.lap(PHASE_EVALUATE);
+                learner.trainOnInstance(trainInst);
+                phaseTimer.lap(PHASE_TRAIN);
+                instancesProcessed++;
+                if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
+                        || stream.hasMoreInstances() == false) {
+                    long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+                    double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
+                    double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
+                    phaseTimer.start();
+                    double RAMHoursIncrement = learner.measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
+                    phaseTimer.lap(PHASE_MEASURE);
+                    RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
+                    RAMHours += RAMHoursIncrement;
+                    lastEvaluateStartTime = evaluateTime;
+                    learningCurve.insertEntry(new LearningEvaluation(phaseTimer.addMeasurements(
+                            new Measurement[]{
+                                new Measurement(
+                                "learning evaluation instances",
+                                instancesProcessed),
+                                new Measurement(
+                                "evaluation time ("
+                                + (preciseCPUTiming ? "cpu "
+                                : "") + "seconds)",
+                                time),
+                                new Measurement(
+                                "model cost (RAM-Hours)",
+                                RAMHours)
+                            }),
+                            evaluator, learner));
+
+                    if (immediateResultStream != null) {
+                        if (firstDump) {
+                            immediateResultStream.println(learningCurve.headerToString());
+                            firstDump = false;
+                        }
+                        immediateResultStream.println(learningCurve.entryToString(learningCurve.numEntries() - 1));
+                        immediateResultStream.flush();
                     }
+                    if (phaseMetricsStream != null) {
+                        phaseTimer.writeMetrics(phaseMetricsStream, instancesProcessed);
+                    }
+                    phaseTimer.reset();
                 }
-                monitor.setCurrentActivityFractionComplete(estimatedRemainingInstances < 0 ? -1.0
-                        : (double) instancesProcessed
-                        / (double) (instancesProcessed + estimatedRemainingInstances));
-                if (monitor.resultPreviewRequested()) {
-                    monitor.setLatestResultPreview(learningCurve.copy());
+                if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
+                    if (monitor.taskShouldAbort()) {
+                        return null;
+                    }
+                    long estimatedRemainingInstances = stream.estimatedRemainingInstances();
+                    if (maxInstances > 0) {
+                        long maxRemaining = maxInstances - instancesProcessed;
+                        if ((estimatedRemainingInstances < 0)
+                                || (maxRemaining < estimatedRemainingInstances)) {
+                            estimatedRemainingInstances = maxRemaining;
+                        }
+                    }
+                    monitor.setCurrentActivityFractionComplete(estimatedRemainingInstances < 0 ? -1.0
+                            : (double) instancesProcessed
+                            / (double) (instancesProcessed + estimatedRemainingInstances));
+                    if (monitor.resultPreviewRequested()) {
+                        monitor.setLatestResultPreview(learningCurve.copy());
+                    }
+                    secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
+                            - evaluateStartTime);
                 }
-                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
-                        - evaluateStartTime);
             }
+            if (immediateResultStream != null) {
+                immediateResultStream.close();
+            }
+            if (outputPredictionResultStream != null) {
+                outputPredictionResultStream.close();
+            }
+            return learningCurve;
+        } finally {
+            // also when the learner or the stream fails, so the port is free again
+            if (phaseMetricsStream != null) {
+                phaseMetricsStream.close();
+            }
+            closeMetricsExporter(metricsExporter);
         }
-        if (immediateResultStream != null) {
-            immediateResultStream.close();
-        }
-        if (outputPredictionResultStream != null) {
-            outputPredictionResultStream.close();
+    }
+
+    protected void closeMetricsExporter(PrometheusExporter metricsExporter) {
+        if (metricsExporter != null) {
+            try {
+                metricsExporter.close();
+            } catch (IOException ex) {
+                throw new RuntimeException("Unable to write final metrics", ex);
+            }
         }
-        return learningCurve;
     }
 
     @Override
@@ -23,6 +23,8 @@ package moa.tasks;
 import com.github.javacliparser.FileOption;
 import com.github.javacliparser.IntOption;
 import com.github.javacliparser.MultiChoiceOption;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.SharedInstance;
 import moa.classifiers.Classifier;
 import moa.classifiers.MultiClassClassifier;
 import moa.core.*;
@@ -118,6 +120,7 @@ public class EvaluatePrequentialCV extends ClassificationMainTask {
     protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
 
         Random random = new Random(this.randomSeedOption.getValue());
+        PoissonSampler poisson = new PoissonSampler(1.0);
         ExampleStream stream = (ExampleStream) getPreparedClassOption(this.streamOption);
 
         Learner[] learners = new Learner[this.numFoldsOption.getValue()];
@@ -180,15 +183,23 @@ public class EvaluatePrequentialCV extends ClassificationMainTask {
                         k = instancesProcessed % learners.length == i ? 0: 1; //Test all except one
                         break;
                     case 1: //Bootstrap;
-                        k = MiscUtils.poisson(1, random);
+                        k = poisson.nextInt(random);
                         break;
                     case 2: //Split-Validation;
                         k = instancesProcessed % learners.length == i ? 1: 0; //Test only one
                         break;
                 }
                 if (k > 0) {
-                    Example weightedInst = (Example) trainInst.copy();
-                    weightedInst.setWeight(trainInst.weight() * k);
+                    Example weightedInst;
+                    if (trainInst instanceof InstanceExample) {
+                        // the folds share the values of the instance
+                        Instance inst = ((InstanceExample) trainInst).getData();
+                        weightedInst = new InstanceExample(
+                                SharedInstance.withWeight(inst, inst.weight() * k));
+                    } else {
+                        weightedInst = (Example) trainInst.copy();
+                        weightedInst.setWeight(trainInst.weight() * k);
+                    }
                     learners[i].trainOnInstance(weightedInst);
                 }
             }
@@ -25,7 +25,9 @@ import moa.core.TimingUtils;
 import moa.evaluation.LearningEvaluation;
 import moa.options.ClassOption;
 import com.github.javacliparser.IntOption;
+import moa.streams.BatchInstanceStream;
 import moa.streams.ExampleStream;
+import moa.streams.InstanceBatch;
 import moa.streams.InstanceStream;
 
 /**
@@ -50,15 +52,31 @@ public class MeasureStreamSpeed extends AuxiliarMainTask {
     public IntOption generateSizeOption = new IntOption("generateSize", 'g',
             "Number of examples.", 10000000, 0, Integer.MAX_VALUE);
 
+    public IntOption batchSizeOption = new IntOption("batchSize", 'b',
+            "Number of examples to generate at a time into a batch, if the stream supports it (0 = one at a time).",
+            0, 0, Integer.MAX_VALUE);
+
     @Override
     protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
         TimingUtils.enablePreciseTiming();
         int numInstances = 0;
         ExampleStream stream = (ExampleStream) getPreparedClassOption(this.streamOption);
         long genStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
-        while (numInstances < this.generateSizeOption.getValue()) {
-            stream.nextInstance();
-            numInstances++;
+        if (this.batchSizeOption.getValue() > 0 && stream instanceof BatchInstanceStream) {
+            BatchInstanceStream batchStream = (BatchInstanceStream) stream;
+            InstanceBatch batch = new InstanceBatch(stream.getHeader(), this.batchSizeOption.getValue());
+            while (numInstances < this.generateSizeOption.getValue()) {
+                int remaining = this.generateSizeOption.getValue() - numInstances;
+                if (remaining < batch.capacity()) {
+                    batch = new InstanceBatch(stream.getHeader(), remaining);
+                }
+                numInstances += batchStream.fill(batch);
+            }
+        } else {
+            while (numInstances < this.generateSizeOption.getValue()) {
+                stream.nextInstance();
+                numInstances++;
+            }
         }
         double genTime = TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
                 - genStartTime);
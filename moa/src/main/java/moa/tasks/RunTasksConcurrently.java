@@ -0,0 +1,471 @@
+/*
+ *    RunTasksConcurrently.java
+ *    Copyright (C) 2024 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.github.javacliparser.FileOption;
+import com.github.javacliparser.FloatOption;
+import com.github.javacliparser.IntOption;
+import com.github.javacliparser.MultiChoiceOption;
+import com.github.javacliparser.StringOption;
+import moa.MOAObject;
+import moa.core.Measurement;
+import moa.core.ObjectRepository;
+import moa.evaluation.LearningEvaluation;
+import moa.evaluation.preview.LearningCurve;
+import moa.options.AbstractOptionHandler;
+import moa.options.ClassOption;
+
+/**
+ * Task for running several experiments modifying values of parameters, like
+ * {@link RunTasks} and {@link RunStreamTasks}, but running the experiments
+ * concurrently.
+ *
+ * The experiments are started while there are free threads and their
+ * estimated memory fits in the memory limit. The estimate is a multiple of
+ * the largest model serialized size reported by the finished experiments;
+ * until one has finished, each experiment is assumed to need an equal share
+ * of the limit. Every experiment writes its learning curve to its own file
+ * in the result directory, and experiments whose result file already exists
+ * are not run again, so a sweep that failed or was stopped can be resumed.
+ * Next to each result, a manifest records the task and parameter value of
+ * the experiment, and resuming fails if they differ from the current ones.
+ * The dump, prediction and phase metrics files of the task are moved to
+ * files of each experiment in the result directory. Exporting the learner
+ * metrics isn't supported, as they are shared by the experiments.
+ *
+ * @version $Revision: 1 $
+ */
+public class RunTasksConcurrently extends AuxiliarMainTask {
+
+    @Override
+    public String getPurposeString() {
+        return "Runs several experiments modifying values of parameters concurrently.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public ClassOption taskOption = new ClassOption("task", 't',
+            "Task to do.", Task.class, "EvaluatePrequential -l trees.HoeffdingTree -i 1000000");
+
+    public MultiChoiceOption variedObjectOption = new MultiChoiceOption("variedObject", 'v',
+            "Object whose parameter to vary.", new String[]{"learner", "stream"},
+            new String[]{"Vary a parameter of the learner",
+                "Vary a parameter of the stream"}, 0);
+
+    public StringOption parameterOption = new StringOption("parameter", 'p',
+            "Parameter to vary.", "g");
+
+    public FloatOption firstValueOption = new FloatOption("firstValue",
+            'f', "First value", 100.0);
+
+    public FloatOption lastValueOption = new FloatOption("lastValue",
+            'l', "Last value", 1000.0);
+
+    public FloatOption incrementValueOption = new FloatOption("incrementValue",
+            'i', "Increment value", 100.0);
+
+    public IntOption numThreadsOption = new IntOption("numThreads", 'n',
+            "Maximum number of experiments to run at once (-1 = number of cores).",
+            -1, -1, Integer.MAX_VALUE);
+
+    public IntOption memoryLimitOption = new IntOption("memoryLimit", 'm',
+            "Memory in megabytes the running experiments may use (-1 = 80% of the maximum heap).",
+            -1, -1, Integer.MAX_VALUE);
+
+    public StringOption resultDirectoryOption = new StringOption("resultDirectory", 'r',
+            "Directory to write the result of each experiment to.", "sweep");
+
+    // How many times its model's size an experiment is assumed to need
+    protected static final double MEMORY_ESTIMATE_OVERHEAD = 3.0;
+
+    protected static final String MODEL_SIZE_MEASUREMENT = "model serialized size (bytes)";
+
+    @Override
+    public Class<?> getTaskResultType() {
+        return LearningCurve.class;
+    }
+
+    /**
+     * One experiment of the sweep. Failures are caught and reported in the
+     * failure file of the experiment, so they don't stop the other ones.
+     */
+    protected class Run implements Callable<Run> {
+
+        protected int index;
+
+        protected double value;
+
+        protected String manifest;
+
+        protected Task task;
+
+        protected ObjectRepository repository;
+
+        protected StandardTaskMonitor monitor = new StandardTaskMonitor();
+
+        protected long memoryEstimate;
+
+        protected LearningCurve result;
+
+        public Run(int index, double value, String manifest, Task task, ObjectRepository repository) {
+            this.index = index;
+            this.value = value;
+            this.manifest = manifest;
+            this.task = task;
+            this.repository = repository;
+        }
+
+        @Override
+        public Run call() {
+            try {
+                Object result = this.task.doTask(this.monitor, this.repository);
+                if (result instanceof LearningCurve) {
+                    this.result = (LearningCurve) result;
+                    writeResult(this.index, this.manifest, this.result);
+                } else if (result != null) {
+                    throw new RuntimeException("Task did not return a learning curve: "
+                            + result.getClass().getName());
+                }
+            } catch (Throwable t) {
+                writeFailure(this.index, t);
+            }
+            return this;
+        }
+    }
+
+    @Override
+    protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
+        File resultDirectory = new File(this.resultDirectoryOption.getValue());
+        if (!resultDirectory.isDirectory() && !resultDirectory.mkdirs()) {
+            throw new RuntimeException("Unable to create result directory: " + resultDirectory);
+        }
+        int numThreads = this.numThreadsOption.getValue();
+        if (numThreads < 1) {
+            numThreads = Runtime.getRuntime().availableProcessors();
+        }
+        long memoryLimit = this.memoryLimitOption.getValue() < 0
+                ? (long) (Runtime.getRuntime().maxMemory() * 0.8)
+                : this.memoryLimitOption.getValue() * 1024L * 1024L;
+
+        LearningCurve summary = new LearningCurve("parameter value");
+        long maxModelSize = 0;
+
+        // Collect the experiments that have no result yet
+        Task taskBase = (Task) getPreparedClassOption(this.taskOption);
+        checkNoMetricsExport(taskBase);
+        Deque<Run> pendingRuns = new ArrayDeque<Run>();
+        int numRuns = 0;
+        for (double valueParameter = this.firstValueOption.getValue();
+                valueParameter <= this.lastValueOption.getValue();
+                valueParameter += this.incrementValueOption.getValue()) {
+            Task task = (Task) ((MOAObject) taskBase).copy();
+            setParameter(task, valueParameter);
+            String manifest = manifest(task, valueParameter);
+            LearningCurve previousResult = readResult(numRuns, manifest);
+            if (previousResult != null) {
+                maxModelSize = Math.max(maxModelSize, maxModelSize(previousResult));
+                addToSummary(summary, valueParameter, previousResult);
+            } else {
+                setRunFiles(task, numRuns);
+                pendingRuns.add(new Run(numRuns, valueParameter, manifest, task, repository));
+            }
+            numRuns++;
+        }
+
+        monitor.setCurrentActivity("Running experiments...", -1.0);
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        CompletionService<Run> completionService = new ExecutorCompletionService<Run>(executor);
+        Set<Run> activeRuns = new HashSet<Run>();
+        long reservedMemory = 0;
+        int numFailed = 0;
+        try {
+            while (!pendingRuns.isEmpty() || !activeRuns.isEmpty()) {
+                // Start experiments while there are threads and memory for them
+                while (!pendingRuns.isEmpty() && activeRuns.size() < numThreads) {
+                    long memoryEstimate = maxModelSize > 0
+                            ? (long) (maxModelSize * MEMORY_ESTIMATE_OVERHEAD)
+                            : memoryLimit / numThreads;
+                    if (!activeRuns.isEmpty() && reservedMemory + memoryEstimate > memoryLimit) {
+                        break;
+                    }
+                    Run run = pendingRuns.poll();
+                    run.memoryEstimate = memoryEstimate;
+                    reservedMemory += memoryEstimate;
+                    activeRuns.add(run);
+                    completionService.submit(run);
+                }
+
+                Future<Run> finished = completionService.poll(1, TimeUnit.SECONDS);
+                if (monitor.taskShouldAbort()) {
+                    for (Run run : activeRuns) {
+                        run.monitor.requestCancel();
+                    }
+                    return null;
+                }
+                if (finished == null) {
+                    continue;
+                }
+                Run run = finished.get();
+                activeRuns.remove(run);
+                reservedMemory -= run.memoryEstimate;
+                if (run.result != null) {
+                    maxModelSize = Math.max(maxModelSize, maxModelSize(run.result));
+                    addToSummary(summary, run.value, run.result);
+                } else {
+                    numFailed++;
+                }
+                monitor.setCurrentActivityFractionComplete(
+                        (double) (summary.numEntries() + numFailed) / numRuns);
+                if (monitor.resultPreviewRequested()) {
+                    monitor.setLatestResultPreview(summary.copy());
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while running experiments", ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException("Failed to run experiment", ex.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        if (numFailed > 0) {
+            System.err.println(numFailed + " of " + numRuns + " experiments failed, see "
+                    + resultDirectory + " for their reports");
+        }
+        return summary;
+    }
+
+    protected void setParameter(Task task, double value) {
+        ClassOption option = null;
+        if (this.variedObjectOption.getChosenIndex() == 0) {
+            if (task instanceof EvaluatePrequential) {
+                option = ((EvaluatePrequential) task).learnerOption;
+            } else if (task instanceof EvaluateInterleavedTestThenTrain) {
+                option = ((EvaluateInterleavedTestThenTrain) task).learnerOption;
+            }
+        } else {
+            if (task instanceof EvaluatePrequential) {
+                option = ((EvaluatePrequential) task).streamOption;
+            } else if (task instanceof EvaluateInterleavedTestThenTrain) {
+                option = ((EvaluateInterleavedTestThenTrain) task).streamOption;
+            } else if (task instanceof EvaluateConceptDrift) {
+                option = ((EvaluateConceptDrift) task).streamOption;
+            }
+        }
+        if (option == null) {
+            throw new RuntimeException("Cannot vary the " + this.variedObjectOption.getChosenLabel()
+                    + " of task " + task.getClass().getName());
+        }
+        // Integral values are passed as integers, so integer options accept them
+        String valueString = value == Math.rint(value)
+                ? Long.toString((long) value) : Double.toString(value);
+        option.setValueViaCLIString(option.getValueAsCLIString() + " -"
+                + this.parameterOption.getValue() + " " + valueString);
+    }
+
+    /**
+     * Points the dump, prediction and phase metrics files of the task to
+     * files of its own, as concurrent experiments can't append to the same
+     * file.
+     */
+    protected void setRunFiles(Task task, int index) {
+        if (task instanceof EvaluatePrequential) {
+            EvaluatePrequential evaluation = (EvaluatePrequential) task;
+            setRunFile(evaluation.dumpFileOption, index, ".dump.csv");
+            setRunFile(evaluation.outputPredictionFileOption, index, ".predictions.csv");
+            setRunFile(evaluation.phaseMetricsFileOption, index, ".phases.csv");
+        } else if (task instanceof EvaluateInterleavedTestThenTrain) {
+            EvaluateInterleavedTestThenTrain evaluation = (EvaluateInterleavedTestThenTrain) task;
+            setRunFile(evaluation.dumpFileOption, index, ".dump.csv");
+            setRunFile(evaluation.phaseMetricsFileOption, index, ".phases.csv");
+        } else if (task instanceof EvaluateConceptDrift) {
+            setRunFile(((EvaluateConceptDrift) task).dumpFileOption, index, ".dump.csv");
+        }
+    }
+
+    protected void setRunFile(FileOption option, int index, String suffix) {
+        if (option.getFile() != null) {
+            File file = runFile(index, suffix);
+            file.delete();
+            option.setValue(file.getPath());
+        }
+    }
+
+    /**
+     * Fails if the task exports the learner metrics. All experiments publish
+     * into the same registry and would serve it on the same port, so every
+     * experiment but the first would fail.
+     */
+    protected static void checkNoMetricsExport(Task task) {
+        if (task instanceof EvaluatePrequential) {
+            EvaluatePrequential evaluation = (EvaluatePrequential) task;
+            if (evaluation.metricsExportFileOption.getFile() != null
+                    || evaluation.metricsExportPortOption.getValue() >= 0) {
+                throw new RuntimeException("Experiments run concurrently can't export the learner metrics, "
+                        + "remove the metricsExportFile and metricsExportPort options of the task.");
+            }
+        }
+    }
+
+    /**
+     * Describes an experiment by its task, with the varied parameter set but
+     * before its files are moved, and the parameter value.
+     */
+    protected static String manifest(Task task, double value) {
+        return "task=" + ((AbstractOptionHandler) task).getCLICreationString(Task.class) + "\n"
+                + "value=" + value + "\n";
+    }
+
+    protected File runFile(int index, String suffix) {
+        return new File(this.resultDirectoryOption.getValue(), "run-" + index + suffix);
+    }
+
+    /**
+     * Writes the manifest and then the learning curve of an experiment,
+     * replacing each file atomically so that only complete results are ever
+     * read back.
+     */
+    protected void writeResult(int index, String manifest, LearningCurve result) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append(result.headerToString()).append('\n');
+        for (int i = 0; i < result.numEntries(); i++) {
+            sb.append(result.entryToString(i)).append('\n');
+        }
+        writeAtomically(runFile(index, ".task"), manifest);
+        writeAtomically(runFile(index, ".csv"), sb.toString());
+        runFile(index, ".failed").delete();
+    }
+
+    protected static void writeAtomically(File file, String contents) throws IOException {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        Files.write(tmpFile.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        Files.move(tmpFile.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    protected void writeFailure(int index, Throwable failure) {
+        try {
+            Files.write(runFile(index, ".failed").toPath(),
+                    new FailedTaskReport(failure).toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            System.err.println("Unable to write failure report of experiment " + index + ": " + ex);
+        }
+    }
+
+    /**
+     * Reads the learning curve written by a previous sweep, or returns null
+     * if the experiment has no result yet. Fails if the result was written
+     * by an experiment with another manifest.
+     */
+    protected LearningCurve readResult(int index, String manifest) {
+        File resultFile = runFile(index, ".csv");
+        if (!resultFile.exists()) {
+            return null;
+        }
+        File manifestFile = runFile(index, ".task");
+        String previousManifest;
+        try {
+            previousManifest = manifestFile.exists()
+                    ? new String(Files.readAllBytes(manifestFile.toPath()), StandardCharsets.UTF_8)
+                    : null;
+        } catch (IOException ex) {
+            throw new RuntimeException("Unable to read manifest file: " + manifestFile, ex);
+        }
+        if (!manifest.equals(previousManifest)) {
+            throw new RuntimeException("Result file " + resultFile
+                    + " is not of the experiment to run, use another result directory.\n"
+                    + "Experiment to run:\n" + manifest
+                    + "Experiment of the result:\n"
+                    + (previousManifest == null ? "unknown, " + manifestFile + " is missing\n" : previousManifest));
+        }
+        try {
+            List<String> lines = Files.readAllLines(resultFile.toPath(), StandardCharsets.UTF_8);
+            String[] names = lines.get(0).split(",");
+            LearningCurve result = new LearningCurve(names[0]);
+            for (String line : lines.subList(1, lines.size())) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] values = line.split(",");
+                Measurement[] measurements = new Measurement[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    measurements[i] = new Measurement(names[i],
+                            values[i].equals("?") ? Double.NaN : Double.parseDouble(values[i]));
+                }
+                result.insertEntry(new LearningEvaluation(measurements));
+            }
+            return result;
+        } catch (IOException | RuntimeException ex) {
+            throw new RuntimeException("Unable to read result file: " + resultFile, ex);
+        }
+    }
+
+    protected static long maxModelSize(LearningCurve curve) {
+        long maxSize = 0;
+        for (int m = 0; m < curve.getMeasurementNameCount(); m++) {
+            if (curve.getMeasurementName(m).equals(MODEL_SIZE_MEASUREMENT)) {
+                for (int i = 0; i < curve.numEntries(); i++) {
+                    double size = curve.getMeasurement(i, m);
+                    if (!Double.isNaN(size)) {
+                        maxSize = Math.max(maxSize, (long) size);
+                    }
+                }
+            }
+        }
+        return maxSize;
+    }
+
+    /**
+     * Adds the last entry of the learning curve of an experiment to the
+     * summary of the sweep.
+     */
+    protected static void addToSummary(LearningCurve summary, double value, LearningCurve curve) {
+        List<Measurement> measurements = new ArrayList<Measurement>();
+        measurements.add(new Measurement("parameter value", value));
+        int last = curve.numEntries() - 1;
+        if (last >= 0) {
+            for (int m = 0; m < curve.getEntryMeasurementCount(last); m++) {
+                measurements.add(new Measurement(curve.getMeasurementName(m),
+                        curve.getMeasurement(last, m)));
+            }
+        }
+        summary.insertEntry(new LearningEvaluation(
+                measurements.toArray(new Measurement[measurements.size()])));
+    }
+}
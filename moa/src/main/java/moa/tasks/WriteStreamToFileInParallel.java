@@ -0,0 +1,223 @@
+/*
+ *    WriteStreamToFileInParallel.java
+ *    Copyright (C) 2024 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *    
+ */
+package moa.tasks;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import moa.core.ObjectRepository;
+import moa.core.SplitRandom;
+import moa.options.ClassOption;
+import moa.streams.BatchInstanceStream;
+import moa.streams.InstanceBatch;
+import com.github.javacliparser.FileOption;
+import com.github.javacliparser.FlagOption;
+import com.github.javacliparser.IntOption;
+import com.github.javacliparser.MultiChoiceOption;
+
+/**
+ * Task to generate a synthetic stream on several threads and write it to a
+ * file.
+ *
+ * The stream is split into blocks of instances, and each block is generated
+ * from a random generator of its own, derived from the seed and the index of
+ * the block. The blocks are written in order, so the file only depends on the
+ * seed and the block size, not on the number of threads. It differs from the
+ * stream that nextInstance() gives, which draws all instances from one random
+ * generator.
+ *
+ * Streams whose instances depend on the ones before them (see
+ * {@link BatchInstanceStream#hasIndependentInstances()}) are generated on one
+ * thread, block after block.
+ *
+ * @version $Revision: 1 $
+ */
+public class WriteStreamToFileInParallel extends AuxiliarMainTask {
+
+    @Override
+    public String getPurposeString() {
+        return "Generates a stream on several threads and outputs it to an ARFF or binary file.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public ClassOption streamOption = new ClassOption("stream", 's',
+            "Stream to write.", BatchInstanceStream.class,
+            "generators.RandomTreeGenerator");
+
+    public FileOption outputFileOption = new FileOption("outputFile", 'f',
+            "Destination file.", null, "arff", true);
+
+    public MultiChoiceOption formatOption = new MultiChoiceOption("format", 'o',
+            "Format of the destination file.", new String[]{"ARFF", "Binary"},
+            new String[]{"ARFF file",
+                "Attribute values as little-endian doubles, one instance after another, with the ARFF header in <file>.header.arff"},
+            0);
+
+    public IntOption maxInstancesOption = new IntOption("maxInstances", 'm',
+            "Number of instances to write to file.", 10000000, 0,
+            Integer.MAX_VALUE);
+
+    public IntOption blockSizeOption = new IntOption("blockSize", 'b',
+            "Number of instances generated from the same random generator.", 4096, 1,
+            Integer.MAX_VALUE);
+
+    public IntOption randomSeedOption = new IntOption("randomSeed", 'r',
+            "Seed for random generation of instances.", 1);
+
+    public IntOption numThreadsOption = new IntOption("numThreads", 't',
+            "Number of threads generating instances (-1 = number of cores).",
+            -1, -1, Integer.MAX_VALUE);
+
+    public FlagOption suppressHeaderOption = new FlagOption("suppressHeader",
+            'h', "Suppress header from output.");
+
+    // How many blocks per thread may be generated ahead of the writer
+    protected static final int BLOCKS_AHEAD_PER_THREAD = 2;
+
+    @Override
+    protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
+        final BatchInstanceStream stream = (BatchInstanceStream) getPreparedClassOption(this.streamOption);
+        File destFile = this.outputFileOption.getFile();
+        if (destFile == null) {
+            throw new IllegalArgumentException("No destination file to write to.");
+        }
+        final boolean binary = this.formatOption.getChosenIndex() == 1;
+        int numThreads = this.numThreadsOption.getValue();
+        if (numThreads < 1) {
+            numThreads = Runtime.getRuntime().availableProcessors();
+        }
+        if (!stream.hasIndependentInstances()) {
+            numThreads = 1;
+        }
+        // Every thread generates from a copy of the stream, except for streams
+        // with dependent instances, which must be generated by the stream itself
+        final ThreadLocal<BatchInstanceStream> streams = numThreads == 1
+                ? ThreadLocal.withInitial(() -> stream)
+                : ThreadLocal.withInitial(() -> (BatchInstanceStream) stream.copy());
+
+        long maxInstances = this.maxInstancesOption.getValue();
+        int blockSize = this.blockSizeOption.getValue();
+        long numBlocks = (maxInstances + blockSize - 1) / blockSize;
+        long seed = this.randomSeedOption.getValue();
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<Future<byte[]>>();
+        try {
+            if (binary && !this.suppressHeaderOption.isSet()) {
+                writeHeader(new File(destFile.getPath() + ".header.arff"), stream);
+            }
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(destFile), 1 << 16);
+            try {
+                monitor.setCurrentActivity("Writing stream to file...", -1.0);
+                if (!binary && !this.suppressHeaderOption.isSet()) {
+                    out.write((stream.getHeader().toString() + "\n").getBytes());
+                }
+                long nextBlock = 0;
+                long numWritten = 0;
+                while (numWritten < maxInstances) {
+                    // Keep the threads busy with the blocks after the one to write
+                    while (nextBlock < numBlocks
+                            && pendingBlocks.size() < numThreads * BLOCKS_AHEAD_PER_THREAD) {
+                        final long block = nextBlock++;
+                        final int size = (int) Math.min(blockSize, maxInstances - block * blockSize);
+                        final Random random = SplitRandom.forBlock(seed, block);
+                        pendingBlocks.add(executor.submit(new Callable<byte[]>() {
+                            @Override
+                            public byte[] call() {
+                                return generateBlock(streams.get(), random, size, binary);
+                            }
+                        }));
+                    }
+                    out.write(pendingBlocks.poll().get());
+                    numWritten = Math.min(maxInstances, numWritten + blockSize);
+                    if (monitor.taskShouldAbort()) {
+                        return null;
+                    }
+                    monitor.setCurrentActivityFractionComplete((double) numWritten / maxInstances);
+                }
+            } finally {
+                out.close();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while writing to file " + destFile, ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException("Failed generating stream for file " + destFile, ex.getCause());
+        } catch (Exception ex) {
+            throw new RuntimeException("Failed writing to file " + destFile, ex);
+        } finally {
+            executor.shutdownNow();
+        }
+        return "Stream written to " + this.formatOption.getChosenLabel() + " file " + destFile;
+    }
+
+    /**
+     * Generates one block of instances and encodes it for the file.
+     */
+    protected static byte[] generateBlock(BatchInstanceStream stream, Random random,
+            int size, boolean binary) {
+        InstanceBatch batch = new InstanceBatch(stream.getHeader(), size);
+        double[] values = batch.getValues();
+        int numAttributes = batch.numAttributes();
+        for (int i = 0; i < size; i++) {
+            stream.generateValues(random, values, i * numAttributes);
+            batch.getWeights()[i] = 1.0;
+        }
+        batch.setSize(size);
+
+        if (binary) {
+            ByteBuffer buffer = ByteBuffer.allocate(values.length * Double.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            buffer.asDoubleBuffer().put(values);
+            return buffer.array();
+        }
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            text.append(batch.instance(i).toString()).append('\n');
+        }
+        return text.toString().getBytes();
+    }
+
+    protected void writeHeader(File file, BatchInstanceStream stream) throws Exception {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write((stream.getHeader().toString() + "\n").getBytes());
+        } finally {
+            out.close();
+        }
+    }
+
+    @Override
+    public Class<?> getTaskResultType() {
+        return String.class;
+    }
+}
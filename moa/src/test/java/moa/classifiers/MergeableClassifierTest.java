@@ -0,0 +1,199 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * MergeableClassifierTest.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+package moa.classifiers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import moa.classifiers.bayes.NaiveBayes;
+import moa.classifiers.functions.AdaGrad;
+import moa.classifiers.functions.Perceptron;
+import moa.classifiers.functions.SGD;
+import moa.classifiers.meta.OzaBag;
+import moa.streams.InstanceStream;
+import moa.streams.generators.HyperplaneGeneratorForRegression;
+import moa.streams.generators.RandomTreeGenerator;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Tests the implementations of {@link MergeableClassifier}: models of
+ * sufficient statistics merge as if trained on all instances, linear models
+ * average their weights by the training weight of each model.
+ */
+public class MergeableClassifierTest {
+
+    private static final double EPS = 1e-9;
+
+    protected static List<Instance> take(InstanceStream stream, int n) {
+        List<Instance> result = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            result.add(stream.nextInstance().getData());
+        }
+        return result;
+    }
+
+    protected static RandomTreeGenerator newTreeGenerator() {
+        RandomTreeGenerator stream = new RandomTreeGenerator();
+        stream.prepareForUse();
+        return stream;
+    }
+
+    protected static HyperplaneGeneratorForRegression newRegressionGenerator() {
+        HyperplaneGeneratorForRegression stream = new HyperplaneGeneratorForRegression();
+        stream.prepareForUse();
+        return stream;
+    }
+
+    protected static <T extends AbstractClassifier> T train(T learner, InstanceStream stream,
+            List<Instance> instances) {
+        learner.setModelContext(stream.getHeader());
+        learner.prepareForUse();
+        for (Instance instance : instances) {
+            learner.trainOnInstance(instance);
+        }
+        return learner;
+    }
+
+    @Test
+    public void testNaiveBayesMergeEqualsTrainingOnAll() {
+        RandomTreeGenerator stream = newTreeGenerator();
+        List<Instance> first = take(stream, 300);
+        List<Instance> second = take(stream, 500);
+        List<Instance> all = new ArrayList<>(first);
+        all.addAll(second);
+
+        NaiveBayes merged = train(new NaiveBayes(), stream, first);
+        merged.merge(train(new NaiveBayes(), stream, second));
+        NaiveBayes expected = train(new NaiveBayes(), stream, all);
+
+        // merging into an untrained model copies the other one
+        NaiveBayes fromEmpty = train(new NaiveBayes(), stream, new ArrayList<Instance>());
+        fromEmpty.merge(expected);
+
+        assertEquals(expected.trainingWeightSeenByModel(), merged.trainingWeightSeenByModel(), 0.0);
+        for (Instance instance : take(stream, 100)) {
+            assertArrayEquals(expected.getVotesForInstance(instance), merged.getVotesForInstance(instance), EPS);
+            assertArrayEquals(expected.getVotesForInstance(instance), fromEmpty.getVotesForInstance(instance), 0.0);
+        }
+    }
+
+    @Test
+    public void testPerceptronWeightedAveraging() {
+        RandomTreeGenerator stream = newTreeGenerator();
+        Perceptron a = train(new Perceptron(), stream, take(stream, 100));
+        Perceptron b = train(new Perceptron(), stream, take(stream, 300));
+
+        Perceptron merged = (Perceptron) a.copy();
+        merged.merge(b);
+
+        assertEquals(400, merged.trainingWeightSeenByModel(), 0.0);
+        double[][] wa = a.getWeights();
+        double[][] wb = b.getWeights();
+        double[][] w = merged.getWeights();
+        for (int i = 0; i < w.length; i++) {
+            for (int j = 0; j < w[i].length; j++) {
+                assertEquals((100 * wa[i][j] + 300 * wb[i][j]) / 400, w[i][j], EPS);
+            }
+        }
+
+        // merging into an untrained model copies the other one
+        Perceptron fromEmpty = train(new Perceptron(), stream, new ArrayList<Instance>());
+        fromEmpty.merge(b);
+        for (int i = 0; i < wb.length; i++) {
+            assertArrayEquals(wb[i], fromEmpty.getWeights()[i], 0.0);
+        }
+    }
+
+    /**
+     * The regression output of SGD is linear in the weights and the bias,
+     * so the output of the merged model is the weighted average of the
+     * outputs.
+     */
+    protected void testLinearWeightedAveraging(SGD a, SGD b) {
+        HyperplaneGeneratorForRegression stream = newRegressionGenerator();
+        a.lossFunctionOption.setChosenIndex(2);
+        b.lossFunctionOption.setChosenIndex(2);
+        train(a, stream, take(stream, 200));
+        train(b, stream, take(stream, 600));
+
+        SGD merged = (SGD) a.copy();
+        merged.merge(b);
+
+        assertEquals(800, merged.trainingWeightSeenByModel(), 0.0);
+        for (Instance instance : take(stream, 100)) {
+            double expected = (200 * a.getVotesForInstance(instance)[0]
+                    + 600 * b.getVotesForInstance(instance)[0]) / 800;
+            assertEquals(expected, merged.getVotesForInstance(instance)[0], EPS);
+        }
+    }
+
+    @Test
+    public void testSGDWeightedAveraging() {
+        testLinearWeightedAveraging(new SGD(), new SGD());
+    }
+
+    @Test
+    public void testAdaGradWeightedAveraging() {
+        testLinearWeightedAveraging(new AdaGrad(), new AdaGrad());
+    }
+
+    @Test
+    public void testOzaBagMergesMembers() {
+        RandomTreeGenerator stream = newTreeGenerator();
+        OzaBag a = new OzaBag();
+        a.baseLearnerOption.setValueViaCLIString("bayes.NaiveBayes");
+        OzaBag b = (OzaBag) a.copy();
+        b.randomSeedOption.setValue(2);
+        train(a, stream, take(stream, 300));
+        train(b, stream, take(stream, 300));
+
+        OzaBag merged = (OzaBag) a.copy();
+        merged.merge(b);
+
+        assertEquals(600, merged.trainingWeightSeenByModel(), 0.0);
+        Classifier[] membersA = a.getSubClassifiers();
+        Classifier[] membersB = b.getSubClassifiers();
+        Classifier[] members = merged.getSubClassifiers();
+        List<Instance> test = take(stream, 50);
+        for (int i = 0; i < members.length; i++) {
+            NaiveBayes expected = (NaiveBayes) membersA[i].copy();
+            expected.merge(membersB[i]);
+            for (Instance instance : test) {
+                assertArrayEquals(expected.getVotesForInstance(instance), members[i].getVotesForInstance(instance), 0.0);
+            }
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testOzaBagOfUnmergeableMembers() {
+        RandomTreeGenerator stream = newTreeGenerator();
+        OzaBag a = new OzaBag();
+        a.baseLearnerOption.setValueViaCLIString("trees.HoeffdingTree");
+        train(a, stream, take(stream, 10));
+
+        a.merge(a.copy());
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * MyBaseOutlierDetectorTest.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+package moa.clusterers.outliers;
+
+import static org.junit.Assert.assertEquals;
+
+import moa.clusterers.outliers.MCOD.MCOD;
+import moa.core.Measurement;
+import moa.streams.clustering.RandomRBFGeneratorEvents;
+
+import org.junit.Test;
+
+/**
+ * Tests that the slides of an outlier detector depend only on the stream,
+ * not on how often it is measured, and that flushing processes the last
+ * incomplete slide.
+ */
+public class MyBaseOutlierDetectorTest {
+
+    private static final int SLIDE_SIZE = 10;
+
+    protected static double measurement(MyBaseOutlierDetector detector, String name) {
+        return Measurement.getMeasurementNamed(name, detector.getModelMeasurements()).getValue();
+    }
+
+    @Test
+    public void testMeasuringDoesNotFlush() {
+        RandomRBFGeneratorEvents stream = new RandomRBFGeneratorEvents();
+        stream.prepareForUse();
+        MCOD detector = new MCOD();
+        detector.slideSizeOption.setValue(SLIDE_SIZE);
+        detector.windowSizeOption.setValue(100);
+        detector.setModelContext(stream.getHeader());
+        detector.prepareForUse();
+
+        for (int n = 1; n <= 2 * SLIDE_SIZE + 5; n++) {
+            detector.trainOnInstance(stream.nextInstance().getData());
+            // measured after every object
+            assertEquals(n / SLIDE_SIZE, measurement(detector, "slides processed"), 0.0);
+            assertEquals(n % SLIDE_SIZE, measurement(detector, "buffered objects"), 0.0);
+        }
+
+        detector.flushSlide();
+        assertEquals(3, measurement(detector, "slides processed"), 0.0);
+        assertEquals(0, measurement(detector, "buffered objects"), 0.0);
+        // nothing left to flush
+        detector.flushSlide();
+        assertEquals(3, measurement(detector, "slides processed"), 0.0);
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * MetricsRegistryTest.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+package moa.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests the registration of metrics in {@link MetricsRegistry}, their
+ * updates from several threads and the Prometheus text they are written as.
+ */
+public class MetricsRegistryTest {
+
+    protected static String prometheus(MetricsRegistry registry) {
+        StringWriter text = new StringWriter();
+        registry.writePrometheus(new PrintWriter(text));
+        return text.toString().replace(System.lineSeparator(), "\n");
+    }
+
+    @Test
+    public void testRegisterReturnsExistingMetric() {
+        MetricsRegistry registry = new MetricsRegistry();
+        MetricsRegistry.Counter counter = registry.counter("moa_test_total", "Test counter.");
+        assertSame(counter, registry.counter("moa_test_total", "Test counter."));
+        assertSame(counter, registry.getMetric("moa_test_total"));
+        MetricsRegistry.Gauge gauge = registry.gauge("moa_test_gauge", "Test gauge.", this, "learner", "1");
+        assertSame(gauge, registry.gauge("moa_test_gauge", "Test gauge.", this, "learner", "1"));
+        assertNotSame(gauge, registry.gauge("moa_test_gauge", "Test gauge.", this, "learner", "2"));
+        assertSame(gauge, registry.getMetric("moa_test_gauge", "learner", "1"));
+        assertNull(registry.getMetric("moa_test_gauge"));
+        assertEquals(3, registry.getMetrics().size());
+    }
+
+    protected static void assertMismatch(Runnable register) {
+        try {
+            register.run();
+            fail("Registered a metric under the name of one of another type");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testTypeMismatch() {
+        final MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("moa_test_total", "Test counter.");
+        registry.gauge("moa_test_gauge", "Test gauge.", this, "learner", "1");
+        assertMismatch(new Runnable() {
+
+            @Override
+            public void run() {
+                registry.gauge("moa_test_total", "Test gauge.");
+            }
+        });
+        assertMismatch(new Runnable() {
+
+            @Override
+            public void run() {
+                registry.timer("moa_test_total", "Test timer.");
+            }
+        });
+        // also with other labels than the registered metric
+        assertMismatch(new Runnable() {
+
+            @Override
+            public void run() {
+                registry.counter("moa_test_gauge", "Test counter.");
+            }
+        });
+        assertEquals(2, registry.getMetrics().size());
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        final MetricsRegistry.Gauge gauge = registry.gauge("moa_test_gauge", "Test gauge.");
+        final MetricsRegistry.Counter counter = registry.counter("moa_test_total", "Test counter.");
+        final MetricsRegistry.Timer timer = registry.timer("moa_test_seconds", "Test timer.");
+        final int numUpdates = 100000;
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread() {
+
+                @Override
+                public void run() {
+                    for (int n = 0; n < numUpdates; n++) {
+                        // exact in double arithmetic, so no update may be lost
+                        gauge.add(0.5);
+                        counter.increment();
+                        timer.record(1000);
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(4 * numUpdates * 0.5, gauge.getValue(), 0.0);
+        assertEquals(4 * numUpdates, counter.getCount());
+        assertEquals(4 * numUpdates, timer.getCount());
+        assertEquals(4 * numUpdates * 1e-6, timer.getTotalSeconds(), 1e-9);
+        gauge.set(-2.5);
+        gauge.add(1);
+        assertEquals(-1.5, gauge.getValue(), 0.0);
+    }
+
+    @Test
+    public void testPrometheusFormat() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("moa_b_total", "Counted.").add(3);
+        registry.timer("moa_a_seconds", "Timed.").record(1500000000L);
+        registry.gauge("moa_c", "Gauged.", this, "forest", "2").set(4);
+        registry.gauge("moa_c", "Gauged.", this, "forest", "1").set(1.5);
+        registry.gauge("moa_d", "Escaped.", this, "name", "a\"b\\c\nd").set(0);
+        assertEquals("# HELP moa_a_seconds Timed.\n"
+                + "# TYPE moa_a_seconds summary\n"
+                + "moa_a_seconds_count 1\n"
+                + "moa_a_seconds_sum 1.5\n"
+                + "# HELP moa_b_total Counted.\n"
+                + "# TYPE moa_b_total counter\n"
+                + "moa_b_total 3\n"
+                + "# HELP moa_c Gauged.\n"
+                + "# TYPE moa_c gauge\n"
+                + "moa_c{forest=\"1\"} 1.5\n"
+                + "moa_c{forest=\"2\"} 4.0\n"
+                + "# HELP moa_d Escaped.\n"
+                + "# TYPE moa_d gauge\n"
+                + "moa_d{name=\"a\\\"b\\\\c\\nd\"} 0.0\n", prometheus(registry));
+    }
+
+    @Test
+    public void testLabelledTimer() {
+        MetricsRegistry registry = new MetricsRegistry();
+        MetricsRegistry.Timer timer = new MetricsRegistry.Timer("moa_t_seconds", "Timed.", "phase", "train");
+        assertSame(timer, registry.register(timer, MetricsRegistry.Timer.class));
+        timer.record(250000000L);
+        assertEquals("# HELP moa_t_seconds Timed.\n"
+                + "# TYPE moa_t_seconds summary\n"
+                + "moa_t_seconds_count{phase=\"train\"} 1\n"
+                + "moa_t_seconds_sum{phase=\"train\"} 0.25\n", prometheus(registry));
+    }
+
+    @Test
+    public void testOddLabels() {
+        try {
+            new MetricsRegistry().gauge("moa_test_gauge", "Test gauge.", this, "learner");
+            fail("Accepted a label without a value");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testGaugeRemovedWithOwner() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.gauge("moa_test_gauge", "Test gauge.", this, "learner", "1").set(1);
+        registry.gauge("moa_test_gauge", "Test gauge.", new Object(), "learner", "2").set(2);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (registry.getMetrics().size() > 1 && System.currentTimeMillis() < deadline) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals("# HELP moa_test_gauge Test gauge.\n"
+                + "# TYPE moa_test_gauge gauge\n"
+                + "moa_test_gauge{learner=\"1\"} 1.0\n", prometheus(registry));
+    }
+}
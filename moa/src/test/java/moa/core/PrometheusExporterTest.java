@@ -0,0 +1,122 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * PrometheusExporterTest.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+package moa.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the file and HTTP exports of {@link PrometheusExporter}.
+ */
+public class PrometheusExporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    protected static String read(File file) throws Exception {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testWriteToFile() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        MetricsRegistry.Counter counter = registry.counter("moa_test_total", "Test counter.");
+        counter.add(7);
+        PrometheusExporter exporter = new PrometheusExporter(registry);
+        File file = new File(folder.getRoot(), "metrics.prom");
+        exporter.writeToFile(file);
+        assertEquals(new String(exporter.scrape(), StandardCharsets.UTF_8), read(file));
+        assertTrue(read(file).contains("moa_test_total 7"));
+        // replaced, without the temporary file left behind
+        counter.increment();
+        exporter.writeToFile(file);
+        assertTrue(read(file).contains("moa_test_total 8"));
+        assertEquals(1, folder.getRoot().listFiles().length);
+    }
+
+    @Test
+    public void testCloseWritesFinalSnapshot() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        MetricsRegistry.Counter counter = registry.counter("moa_test_total", "Test counter.");
+        PrometheusExporter exporter = new PrometheusExporter(registry);
+        File file = new File(folder.getRoot(), "metrics.prom");
+        // a period longer than the test, so only the first and last writes happen
+        exporter.exportToFile(file, 3600000);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!file.exists() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(read(file).contains("moa_test_total 0"));
+        counter.add(5);
+        exporter.close();
+        assertTrue(read(file).contains("moa_test_total 5"));
+
+        // no more writes once closed
+        counter.add(5);
+        Thread.sleep(100);
+        assertTrue(read(file).contains("moa_test_total 5"));
+        exporter.close();
+    }
+
+    @Test
+    public void testServe() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.gauge("moa_test_gauge", "Test gauge.", this, "learner", "1").set(2.5);
+        PrometheusExporter exporter = new PrometheusExporter(registry);
+        exporter.serve(0);
+        int port = exporter.getPort();
+        HttpURLConnection connection = (HttpURLConnection) new URL(
+                "http://localhost:" + port + "/metrics").openConnection();
+        assertEquals(200, connection.getResponseCode());
+        assertTrue(connection.getContentType().startsWith("text/plain; version=0.0.4"));
+        InputStream in = connection.getInputStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            body.write(buffer, 0, read);
+        }
+        in.close();
+        assertArrayEquals(exporter.scrape(), body.toByteArray());
+        assertTrue(body.toString("UTF-8").contains("moa_test_gauge{learner=\"1\"} 2.5"));
+
+        exporter.close();
+        assertEquals(-1, exporter.getPort());
+        // the port is released
+        ServerSocket socket = new ServerSocket(port);
+        assertFalse(socket.isClosed());
+        socket.close();
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ClassificationCountsTest.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+package moa.evaluation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import moa.evaluation.BasicClassificationPerformanceEvaluator.Counts;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link Counts} of the classification evaluators: small cases
+ * computed by hand, and random streams against {@link
+ * BasicClassificationPerformanceEvaluator.EstimatorCounts}, which keeps one
+ * estimator per statistic and class as the evaluators used to.
+ */
+public class ClassificationCountsTest {
+
+    private static final double EPS = 1e-12;
+
+    private static final int NUM_CLASSES = 4;
+
+    protected static void assertCounts(Counts expected, Counts actual, double delta) {
+        assertEquals(expected.accuracy(), actual.accuracy(), delta);
+        for (int i = 0; i < NUM_CLASSES; i++) {
+            assertEquals("predicted " + i, expected.predicted(i), actual.predicted(i), delta);
+            assertEquals("actual " + i, expected.actual(i), actual.actual(i), delta);
+            assertEquals("precision " + i, expected.precision(i), actual.precision(i), delta);
+            assertEquals("recall " + i, expected.recall(i), actual.recall(i), delta);
+        }
+    }
+
+    /**
+     * Adds the same random predictions to both counts and compares them
+     * after each one. Some predictions are of a class beyond the number of
+     * classes, as when a classifier returns too many votes.
+     */
+    protected static void assertSameCounts(Counts expected, Counts actual, int numInstances) {
+        Random random = new Random(1);
+        for (int n = 0; n < numInstances; n++) {
+            int trueClass = random.nextInt(NUM_CLASSES);
+            int predictedClass = random.nextInt(3) == 0 ? trueClass : random.nextInt(NUM_CLASSES + 1);
+            double weight = random.nextInt(4) == 0 ? 1.0 : random.nextDouble() * 3;
+            expected.add(trueClass, predictedClass, weight);
+            actual.add(trueClass, predictedClass, weight);
+            assertCounts(expected, actual, EPS);
+        }
+    }
+
+    @Test
+    public void testBasicCountsByHand() {
+        BasicClassificationPerformanceEvaluator evaluator = new BasicClassificationPerformanceEvaluator();
+        Counts counts = evaluator.new BasicCounts(NUM_CLASSES);
+        counts.add(0, 0, 1.0);
+        counts.add(0, 1, 2.0);
+        counts.add(1, 1, 1.0);
+        counts.add(2, 1, 0.5);
+
+        assertEquals(2.0 / 4, counts.accuracy(), EPS);
+        assertEquals(1.0 / 4, counts.predicted(0), EPS);
+        assertEquals(3.5 / 4, counts.predicted(1), EPS);
+        assertEquals(0.0, counts.predicted(2), EPS);
+        assertEquals(3.0 / 4, counts.actual(0), EPS);
+        assertEquals(1.0 / 4, counts.actual(1), EPS);
+        assertEquals(0.5 / 4, counts.actual(2), EPS);
+        // per class: weight correct over the number of instances
+        assertEquals(1.0, counts.precision(0), EPS);
+        assertEquals(1.0 / 3, counts.precision(1), EPS);
+        assertEquals(1.0 / 2, counts.recall(0), EPS);
+        assertEquals(1.0, counts.recall(1), EPS);
+        assertEquals(0.0, counts.recall(2), EPS);
+        assertEquals(Double.NaN, counts.precision(3), 0.0);
+    }
+
+    @Test
+    public void testBasicCounts() {
+        BasicClassificationPerformanceEvaluator evaluator = new BasicClassificationPerformanceEvaluator();
+        assertSameCounts(evaluator.new EstimatorCounts(NUM_CLASSES),
+                evaluator.new BasicCounts(NUM_CLASSES), 2000);
+    }
+
+    @Test
+    public void testEstimatorCountsByHand() {
+        BasicClassificationPerformanceEvaluator evaluator = new BasicClassificationPerformanceEvaluator();
+        Counts counts = evaluator.new EstimatorCounts(NUM_CLASSES);
+        counts.add(0, 0, 1.0);
+        counts.add(0, 1, 2.0);
+        counts.add(1, 1, 1.0);
+        counts.add(2, 1, 0.5);
+
+        Counts expected = evaluator.new BasicCounts(NUM_CLASSES);
+        expected.add(0, 0, 1.0);
+        expected.add(0, 1, 2.0);
+        expected.add(1, 1, 1.0);
+        expected.add(2, 1, 0.5);
+        assertCounts(expected, counts, EPS);
+    }
+
+    @Test
+    public void testWindowCountsByHand() {
+        WindowClassificationPerformanceEvaluator evaluator = new WindowClassificationPerformanceEvaluator();
+        Counts counts = evaluator.new WindowCounts(NUM_CLASSES, 2);
+        counts.add(0, 0, 1.0);
+        counts.add(0, 1, 2.0);
+        counts.add(1, 1, 1.0);
+
+        // the first instance has left the window
+        assertEquals(1.0 / 2, counts.accuracy(), EPS);
+        assertEquals(0.0, counts.predicted(0), EPS);
+        assertEquals(3.0 / 2, counts.predicted(1), EPS);
+        assertEquals(2.0 / 2, counts.actual(0), EPS);
+        assertEquals(0.0, counts.recall(0), EPS);
+        assertEquals(1.0 / 2, counts.precision(1), EPS);
+        assertEquals(Double.NaN, counts.precision(0), 0.0);
+    }
+
+    @Test
+    public void testWindowCounts() {
+        WindowClassificationPerformanceEvaluator evaluator = new WindowClassificationPerformanceEvaluator();
+        evaluator.widthOption.setValue(50);
+        assertSameCounts(evaluator.new EstimatorCounts(NUM_CLASSES),
+                evaluator.new WindowCounts(NUM_CLASSES, 50), 2000);
+    }
+
+    @Test
+    public void testFadingFactorCountsByHand() {
+        FadingFactorClassificationPerformanceEvaluator evaluator = new FadingFactorClassificationPerformanceEvaluator();
+        Counts counts = evaluator.new FadingFactorCounts(NUM_CLASSES, 0.5);
+        counts.add(0, 0, 1.0);
+        counts.add(0, 1, 2.0);
+
+        // weights 0.5 and 1 for the first and second instance
+        assertEquals(0.5 / 1.5, counts.accuracy(), EPS);
+        assertEquals(0.5 / 1.5, counts.predicted(0), EPS);
+        assertEquals(2.0 / 1.5, counts.predicted(1), EPS);
+        assertEquals(2.5 / 1.5, counts.actual(0), EPS);
+        assertEquals(0.5 / 1.5, counts.recall(0), EPS);
+        assertEquals(1.0, counts.precision(0), EPS);
+        assertEquals(0.0, counts.precision(1), EPS);
+        assertEquals(0.0, counts.recall(2), EPS);
+    }
+
+    @Test
+    public void testFadingFactorCounts() {
+        FadingFactorClassificationPerformanceEvaluator evaluator = new FadingFactorClassificationPerformanceEvaluator();
+        evaluator.alphaOption.setValue(0.99);
+        assertSameCounts(evaluator.new EstimatorCounts(NUM_CLASSES),
+                evaluator.new FadingFactorCounts(NUM_CLASSES, 0.99), 2000);
+    }
+}
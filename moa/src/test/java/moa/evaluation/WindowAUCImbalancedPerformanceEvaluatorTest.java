@@ -0,0 +1,200 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * WindowAUCImbalancedPerformanceEvaluatorTest.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+package moa.evaluation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares the score treap and the window AUC of
+ * {@link WindowAUCImbalancedPerformanceEvaluator} with brute force over the
+ * examples in the window, with tied scores and with examples leaving the
+ * window.
+ */
+public class WindowAUCImbalancedPerformanceEvaluatorTest {
+
+    private static final double EPS = 1e-9;
+
+    /**
+     * Draws scores from a few values, so that many of them are tied, or
+     * from the unit interval.
+     */
+    protected static double nextScore(Random random, boolean ties) {
+        return ties ? random.nextInt(5) / 4.0 : random.nextDouble();
+    }
+
+    protected static void assertTreeMatches(WindowAUCImbalancedPerformanceEvaluator.ScoreTree tree,
+            List<double[]> examples, double query) {
+        int[] count = new int[2];
+        double[] sum = new double[2];
+        int[] countAbove = new int[2];
+        int[] countEqual = new int[2];
+        double[] sumAbove = new double[2];
+        for (double[] example : examples) {
+            int c = (int) example[1];
+            count[c]++;
+            sum[c] += example[0];
+            if (example[0] > query) {
+                countAbove[c]++;
+                sumAbove[c] += example[0];
+            } else if (example[0] == query) {
+                countEqual[c]++;
+            }
+        }
+
+        tree.locate(query);
+        for (int c = 0; c < 2; c++) {
+            assertEquals(count[c], tree.count(c));
+            assertEquals(sum[c], tree.sum(c), EPS);
+            assertEquals(countAbove[c], tree.countAbove[c]);
+            assertEquals(countEqual[c], tree.countEqual[c]);
+            assertEquals(sumAbove[c], tree.sumAbove[c], EPS);
+        }
+    }
+
+    protected void testScoreTree(boolean ties) {
+        Random random = new Random(1);
+        // starts too small, so the tree has to grow
+        WindowAUCImbalancedPerformanceEvaluator.ScoreTree tree = new WindowAUCImbalancedPerformanceEvaluator.ScoreTree(1);
+        List<double[]> examples = new ArrayList<>();
+
+        for (int i = 0; i < 3000; i++) {
+            if (!examples.isEmpty() && random.nextInt(3) == 0) {
+                double[] example = examples.remove(random.nextInt(examples.size()));
+                tree.remove(example[0], (int) example[1]);
+            } else {
+                double[] example = {nextScore(random, ties), random.nextInt(2)};
+                examples.add(example);
+                tree.add(example[0], (int) example[1]);
+            }
+
+            double query = examples.isEmpty() || random.nextBoolean()
+                    ? nextScore(random, ties)
+                    : examples.get(random.nextInt(examples.size()))[0];
+            assertTreeMatches(tree, examples, query);
+        }
+    }
+
+    @Test
+    public void testScoreTreeWithTies() {
+        testScoreTree(true);
+    }
+
+    @Test
+    public void testScoreTreeWithDistinctScores() {
+        testScoreTree(false);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testScoreTreeRemoveMissing() {
+        WindowAUCImbalancedPerformanceEvaluator.ScoreTree tree = new WindowAUCImbalancedPerformanceEvaluator.ScoreTree(4);
+        tree.add(0.5, 1);
+        tree.remove(0.25, 1);
+    }
+
+    /**
+     * AUC of the examples: the fraction of (positive, negative) pairs with
+     * the positive ranked above the negative, ties counting half.
+     */
+    protected static double bruteForceAUC(List<double[]> window) {
+        double numPos = 0, numNeg = 0, pairs = 0;
+        for (double[] p : window) {
+            if (p[1] == 1) {
+                numPos++;
+            } else {
+                numNeg++;
+            }
+            for (double[] n : window) {
+                if (p[1] == 1 && n[1] == 0) {
+                    pairs += (p[0] > n[0]) ? 1 : (p[0] == n[0]) ? 0.5 : 0;
+                }
+            }
+        }
+        return (numPos == 0 || numNeg == 0) ? 1 : pairs / (numPos * numNeg);
+    }
+
+    /**
+     * Scored AUC of the examples: over the (positive, negative) pairs, the
+     * positive's score if it is ranked above (half of it if tied) minus the
+     * negative's score if it isn't ranked above.
+     */
+    protected static double bruteForceScoredAUC(List<double[]> window) {
+        double numPos = 0, numNeg = 0, plus = 0, minus = 0;
+        for (double[] p : window) {
+            if (p[1] == 1) {
+                numPos++;
+            } else {
+                numNeg++;
+            }
+            for (double[] n : window) {
+                if (p[1] == 1 && n[1] == 0) {
+                    plus += p[0] * ((p[0] > n[0]) ? 1 : (p[0] == n[0]) ? 0.5 : 0);
+                    minus += (n[0] <= p[0]) ? n[0] : 0;
+                }
+            }
+        }
+        return (numPos == 0 || numNeg == 0) ? 1 : (plus - minus) / (numPos * numNeg);
+    }
+
+    protected void testWindowAUC(boolean ties) {
+        int width = 20;
+        Random random = new Random(2);
+        WindowAUCImbalancedPerformanceEvaluator evaluator = new WindowAUCImbalancedPerformanceEvaluator();
+        evaluator.widthOption.setValue(width);
+        evaluator.reset(2);
+        WindowAUCImbalancedPerformanceEvaluator.Estimator estimator = evaluator.getAucEstimator();
+
+        List<double[]> window = new ArrayList<>();
+        double holdoutAUC = 0;
+        for (int i = 0; i < 500; i++) {
+            // the holdout is the window before every width-th example
+            if (i % width == 0) {
+                holdoutAUC = window.isEmpty() ? 0 : bruteForceAUC(window);
+            }
+
+            // imbalanced, with stretches of a single class
+            double[] example = {nextScore(random, ties), random.nextDouble() < (i % 100 < 30 ? 0.0 : 0.3) ? 1 : 0};
+            estimator.add(example[0], example[1] == 1, random.nextBoolean());
+            window.add(example);
+            if (window.size() > width) {
+                window.remove(0);
+            }
+
+            assertEquals(bruteForceAUC(window), estimator.getAUC(), EPS);
+            assertEquals(bruteForceScoredAUC(window), estimator.getScoredAUC(), EPS);
+            assertEquals(holdoutAUC, estimator.getHoldoutAUC(), EPS);
+        }
+    }
+
+    @Test
+    public void testWindowAUCWithTies() {
+        testWindowAUC(true);
+    }
+
+    @Test
+    public void testWindowAUCWithDistinctScores() {
+        testWindowAUC(false);
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * LearningCurveTest.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+package moa.evaluation.preview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import moa.core.Measurement;
+import moa.core.SerializeUtils;
+import moa.evaluation.LearningEvaluation;
+
+import org.junit.Test;
+
+/**
+ * Tests that copies of a {@link LearningCurve} share no state which a write
+ * to one of them could change: appends, out-of-order inserts, new
+ * measurements and setData() on either side leave the other as it was.
+ */
+public class LearningCurveTest {
+
+    private static final String ORDER = "instances";
+
+    /** More than one chunk, ending in a partly filled one. */
+    private static final int NUM_ENTRIES = 2 * LearningCurve.CHUNK_SIZE + 100;
+
+    protected static LearningEvaluation evaluation(double order, String... names) {
+        Measurement[] measurements = new Measurement[names.length + 1];
+        measurements[0] = new Measurement(ORDER, order);
+        for (int i = 0; i < names.length; i++) {
+            measurements[i + 1] = new Measurement(names[i], order * (i + 2));
+        }
+        return new LearningEvaluation(measurements);
+    }
+
+    protected static LearningCurve curve(int numEntries) {
+        LearningCurve curve = new LearningCurve(ORDER);
+        for (int i = 0; i < numEntries; i++) {
+            curve.insertEntry(evaluation(10 * i, "accuracy"));
+        }
+        return curve;
+    }
+
+    protected static String describe(LearningCurve curve) {
+        StringBuilder sb = new StringBuilder();
+        curve.getDescription(sb, 0);
+        return sb.toString();
+    }
+
+    /**
+     * Applies writes reaching the last, partly filled chunk, the chunks
+     * before it through an out-of-order insert, and a new chunk.
+     */
+    protected static void write(LearningCurve curve) {
+        curve.insertEntry(evaluation(10 * NUM_ENTRIES, "accuracy"));
+        curve.insertEntry(evaluation(15, "accuracy", "kappa"));
+        for (int i = 0; i < LearningCurve.CHUNK_SIZE; i++) {
+            curve.insertEntry(evaluation(10 * (NUM_ENTRIES + 1 + i), "accuracy"));
+        }
+    }
+
+    @Test
+    public void testWritesToCurveAfterCopy() {
+        LearningCurve curve = curve(NUM_ENTRIES);
+        String before = describe(curve);
+
+        LearningCurve copy = (LearningCurve) curve.copy();
+        write(curve);
+
+        assertEquals(before, describe(copy));
+        assertEquals(NUM_ENTRIES, copy.numEntries());
+        assertEquals(2, copy.getMeasurementNameCount());
+
+        // the curve is as if it had never been copied
+        LearningCurve expected = curve(NUM_ENTRIES);
+        write(expected);
+        assertEquals(describe(expected), describe(curve));
+    }
+
+    @Test
+    public void testWritesToCopy() {
+        LearningCurve curve = curve(NUM_ENTRIES);
+        String before = describe(curve);
+
+        LearningCurve copy = (LearningCurve) curve.copy();
+        write(copy);
+
+        assertEquals(before, describe(curve));
+        LearningCurve expected = curve(NUM_ENTRIES);
+        write(expected);
+        assertEquals(describe(expected), describe(copy));
+    }
+
+    @Test
+    public void testRepeatedCopies() {
+        // as the previews of a running task
+        LearningCurve curve = new LearningCurve(ORDER);
+        List<LearningCurve> copies = new ArrayList<>();
+        List<String> descriptions = new ArrayList<>();
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            curve.insertEntry(evaluation(10 * i, "accuracy"));
+            if (i % 300 == 0) {
+                LearningCurve copy = (LearningCurve) curve.copy();
+                copies.add(copy);
+                descriptions.add(describe(copy));
+                // a copy of a copy is independent of both
+                copies.add((LearningCurve) copy.copy());
+                descriptions.add(describe(copy));
+            }
+        }
+        write(copies.get(0));
+        descriptions.set(0, describe(copies.get(0)));
+        write(curve);
+
+        for (int i = 1; i < copies.size(); i++) {
+            assertEquals(descriptions.get(i), describe(copies.get(i)));
+        }
+    }
+
+    @Test
+    public void testSetDataAfterCopy() {
+        LearningCurve curve = curve(NUM_ENTRIES);
+        String before = describe(curve);
+
+        LearningCurve copy = (LearningCurve) curve.copy();
+        copy.setData(Arrays.asList(ORDER, "accuracy"),
+                Arrays.asList(new double[]{1, 2}, new double[]{3}));
+
+        assertEquals(before, describe(curve));
+        assertEquals(2, copy.numEntries());
+        assertEquals("instances,accuracy\n1.0,2.0\n3.0,?", describe(copy).replace("\r", ""));
+    }
+
+    protected static byte[] serialize(LearningCurve curve) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(curve);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void testShortCurveIsSmall() throws Exception {
+        // ten entries of thirty measurements, as in a typical evaluation
+        String[] names = new String[29];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "measurement " + i;
+        }
+        LearningCurve curve = new LearningCurve(ORDER);
+        for (int i = 0; i < 10; i++) {
+            curve.insertEntry(evaluation(100000 * (i + 1), names));
+        }
+        // the values take 2400 bytes, the names about 600
+        int size = serialize(curve).length;
+        assertTrue("serialized in " + size + " bytes", size < 4500);
+        for (LearningCurve.Chunk chunk : curve.chunks) {
+            assertTrue(chunk.widths.length < 2 * chunk.size);
+        }
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        LearningCurve curve = curve(NUM_ENTRIES);
+        write(curve);
+        LearningCurve copy = (LearningCurve) SerializeUtils.copyObject(curve);
+        assertEquals(describe(curve), describe(copy));
+        // and the copy still takes writes
+        write(copy);
+        write(curve);
+        assertEquals(describe(curve), describe(copy));
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * DiskCachedInstancesStreamTest.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+package moa.streams;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import moa.streams.generators.RandomTreeGenerator;
+import moa.tasks.EvaluatePrequential;
+import moa.tasks.NullMonitor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+
+/**
+ * Tests the shuffling of {@link DiskCachedInstancesStream} against shuffling
+ * in memory, and that the files of the cache are deleted.
+ */
+public class DiskCachedInstancesStreamTest {
+
+    private static final int NUM_INSTANCES = 3001;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * RandomTree instances with weights of their own.
+     */
+    protected static Instances data() {
+        RandomTreeGenerator generator = new RandomTreeGenerator();
+        generator.prepareForUse();
+        Instances data = new Instances(generator.getHeader(), NUM_INSTANCES);
+        for (int n = 0; n < NUM_INSTANCES; n++) {
+            Instance instance = generator.nextInstance().getData();
+            instance.setWeight(1 + n % 7);
+            data.add(instance);
+        }
+        return data;
+    }
+
+    protected DiskCachedInstancesStream cache(Instances data, int numBuckets, long seed) {
+        DiskCachedInstancesStream.Writer writer = new DiskCachedInstancesStream.Writer(
+                data, folder.getRoot(), numBuckets, new Random(seed));
+        for (int n = 0; n < data.numInstances(); n++) {
+            writer.add(data.instance(n));
+        }
+        return writer.shuffle();
+    }
+
+    /**
+     * Describes the exact weight and values of an instance.
+     */
+    protected static String key(Instance instance) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(Double.doubleToLongBits(instance.weight()));
+        for (int i = 0; i < instance.numAttributes(); i++) {
+            sb.append(',').append(Double.doubleToLongBits(instance.value(i)));
+        }
+        return sb.toString();
+    }
+
+    protected static List<String> read(ExampleStream stream) {
+        List<String> keys = new ArrayList<String>();
+        while (stream.hasMoreInstances()) {
+            keys.add(key((Instance) stream.nextInstance().getData()));
+        }
+        return keys;
+    }
+
+    @Test
+    public void testSingleBucketShufflesAsInMemory() {
+        Instances data = data();
+        DiskCachedInstancesStream stream = cache(data, 1, 5);
+        Instances shuffled = new Instances(data);
+        shuffled.randomize(new Random(5));
+
+        assertEquals(NUM_INSTANCES, stream.numInstances());
+        assertEquals(read(new CachedInstancesStream(shuffled)), read(stream));
+        stream.close();
+    }
+
+    @Test
+    public void testBucketsHoldEveryInstanceOnce() {
+        Instances data = data();
+        DiskCachedInstancesStream stream = cache(data, 7, 5);
+        List<String> keys = read(stream);
+        assertEquals(NUM_INSTANCES, keys.size());
+        // shuffled ...
+        List<String> original = read(new CachedInstancesStream(data));
+        assertFalse(original.equals(keys));
+        // ... but the same instances
+        List<String> sorted = new ArrayList<String>(keys);
+        Collections.sort(sorted);
+        Collections.sort(original);
+        assertEquals(original, sorted);
+
+        // in the same order after a restart
+        stream.restart();
+        assertEquals(keys, read(stream));
+        stream.close();
+    }
+
+    @Test
+    public void testCloseDeletesFiles() {
+        DiskCachedInstancesStream stream = cache(data(), 3, 5);
+        assertEquals(3, folder.getRoot().listFiles().length);
+        stream.close();
+        assertEquals(0, folder.getRoot().listFiles().length);
+        stream.restart();
+        try {
+            stream.nextInstance();
+            fail("Read a closed cache");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testTaskClosesCache() {
+        File directory = new File(folder.getRoot(), "cache");
+        EvaluatePrequential task = new EvaluatePrequential();
+        task.streamOption.setValueViaCLIString("CacheShuffledStream -s generators.RandomTreeGenerator"
+                + " -m 2000 -b 500 -d " + directory.getPath());
+        task.instanceLimitOption.setValue(1000);
+        task.prepareForUse();
+        task.doTask(new NullMonitor(), null);
+        assertEquals(0, directory.listFiles().length);
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * DriftScheduleStreamTest.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+package moa.streams;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import moa.options.ClassOption;
+import moa.options.OptionHandler;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Tests {@link DriftScheduleStream} against the equivalent nested
+ * {@link ConceptDriftStream}s. Each concept is a SEA generator with its own
+ * instance seed, so the concept of an instance is known by comparing it with
+ * the next instance of each concept.
+ */
+public class DriftScheduleStreamTest {
+
+    private static final String[] CONCEPTS = {
+        "generators.SEAGenerator -f 1 -i 1",
+        "generators.SEAGenerator -f 2 -i 2",
+        "generators.SEAGenerator -f 3 -i 3"};
+
+    private static final int NUM_INSTANCES = 8000;
+
+    private static final int WINDOW = 250;
+
+    protected static ExampleStream stream(String cli) throws Exception {
+        ExampleStream stream = (ExampleStream) ClassOption.cliStringToObject(cli, InstanceStream.class, null);
+        ((OptionHandler) stream).prepareForUse();
+        return stream;
+    }
+
+    protected static DriftScheduleStream schedule(String positions, String widths) {
+        DriftScheduleStream stream = new DriftScheduleStream();
+        stream.streamsOption.setValueViaCLIString(String.join(",", CONCEPTS));
+        stream.positionsOption.setValue(positions);
+        stream.widthsOption.setValue(widths);
+        stream.prepareForUse();
+        return stream;
+    }
+
+    /**
+     * Finds which concept each instance of the stream comes from.
+     */
+    protected static int[] concepts(ExampleStream stream) throws Exception {
+        ExampleStream[] concepts = new ExampleStream[CONCEPTS.length];
+        Instance[] next = new Instance[CONCEPTS.length];
+        for (int k = 0; k < concepts.length; k++) {
+            concepts[k] = stream(CONCEPTS[k]);
+            next[k] = (Instance) concepts[k].nextInstance().getData();
+        }
+        int[] result = new int[NUM_INSTANCES];
+        for (int n = 0; n < NUM_INSTANCES; n++) {
+            Instance instance = (Instance) stream.nextInstance().getData();
+            result[n] = -1;
+            for (int k = 0; k < concepts.length && result[n] < 0; k++) {
+                if (sameValues(instance, next[k])) {
+                    result[n] = k;
+                    next[k] = (Instance) concepts[k].nextInstance().getData();
+                }
+            }
+            assertTrue("instance " + n + " isn't of any concept", result[n] >= 0);
+        }
+        return result;
+    }
+
+    protected static boolean sameValues(Instance x, Instance y) {
+        for (int i = 0; i < x.numAttributes(); i++) {
+            if (Double.doubleToLongBits(x.value(i)) != Double.doubleToLongBits(y.value(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    public void testMatchesNestedStreams() throws Exception {
+        // the nested stream counts only its own instances, from the first drift on
+        ExampleStream nested = stream("ConceptDriftStream -s (" + CONCEPTS[0]
+                + ") -d (ConceptDriftStream -s (" + CONCEPTS[1] + ") -d (" + CONCEPTS[2]
+                + ") -p 3000 -w 200) -p 2000 -w 100");
+        DriftScheduleStream flat = schedule("2000;5000", "100;200");
+        int[] expected = concepts(nested);
+        int[] actual = concepts(flat);
+
+        for (int start = 0; start < NUM_INSTANCES; start += WINDOW) {
+            int[] expectedCounts = new int[CONCEPTS.length];
+            int[] actualCounts = new int[CONCEPTS.length];
+            boolean certain = true;
+            for (int n = start; n < start + WINDOW; n++) {
+                expectedCounts[expected[n]]++;
+                actualCounts[actual[n]]++;
+                double[] probabilities = flat.getConceptProbabilities(n + 1);
+                if (probabilities[actual[n]] < 1.0 - 1e-9) {
+                    certain = false;
+                }
+            }
+            if (certain) {
+                // away from the drifts both streams give the same concept
+                assertArrayEquals("window from " + start, expectedCounts, actualCounts);
+            } else {
+                for (int k = 0; k < CONCEPTS.length; k++) {
+                    assertEquals("concept " + k + " in window from " + start,
+                            expectedCounts[k], actualCounts[k], 0.1 * WINDOW);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFollowsConceptProbabilities() throws Exception {
+        // overlapping drifts of very different widths
+        DriftScheduleStream stream = schedule("3000;3500", "1000;100");
+        int[] concepts = concepts(stream);
+        for (int start = 0; start < NUM_INSTANCES; start += WINDOW) {
+            double[] expected = new double[CONCEPTS.length];
+            int[] counts = new int[CONCEPTS.length];
+            for (int n = start; n < start + WINDOW; n++) {
+                double[] probabilities = stream.getConceptProbabilities(n + 1);
+                for (int k = 0; k < CONCEPTS.length; k++) {
+                    expected[k] += probabilities[k];
+                }
+                counts[concepts[n]]++;
+            }
+            for (int k = 0; k < CONCEPTS.length; k++) {
+                // four standard errors, and a stray instance where a concept is rare
+                double tolerance = 4 * Math.sqrt(expected[k] * (1 - expected[k] / WINDOW)) + 1;
+                assertEquals("concept " + k + " in window from " + start,
+                        expected[k], counts[k], tolerance);
+            }
+        }
+    }
+
+    @Test
+    public void testRestart() throws Exception {
+        DriftScheduleStream stream = schedule("2000;2100", "500");
+        int[] first = concepts(stream);
+        stream.restart();
+        assertArrayEquals(first, concepts(stream));
+        assertArrayEquals(first, concepts(schedule("2000;2100", "500")));
+    }
+
+    protected static void assertInvalid(String positions, String widths) {
+        try {
+            schedule(positions, widths);
+            fail("Accepted positions " + positions + " and widths " + widths);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testInvalidSchedules() {
+        assertInvalid("2000;1000", "100");
+        assertInvalid("1000;2000", "100;100;100");
+        assertInvalid("1000;2000", "0");
+        assertInvalid("1000;2000", "100;-100");
+        assertInvalid("1000;2000", "0.5");
+    }
+}
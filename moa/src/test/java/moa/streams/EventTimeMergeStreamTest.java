@@ -0,0 +1,193 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * EventTimeMergeStreamTest.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+package moa.streams;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Tests the order in which {@link EventTimeMergeStream} merges streams, and
+ * how it matches their attributes to the ones of the first stream.
+ */
+public class EventTimeMergeStreamTest {
+
+    private static final String DATA = "moa/streams/data/";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    protected static EventTimeMergeStream merge(String... files) {
+        List<String> streams = new ArrayList<String>();
+        for (String file : files) {
+            streams.add("ArffFileStream -f " + file);
+        }
+        EventTimeMergeStream stream = new EventTimeMergeStream();
+        stream.streamsOption.setValueViaCLIString(String.join(",", streams));
+        // small batches, so the readers hand over many of them
+        stream.batchSizeOption.setValue(7);
+        stream.numBatchesOption.setValue(2);
+        stream.prepareForUse();
+        return stream;
+    }
+
+    protected String arff(String attributes, String... data) throws Exception {
+        File file = folder.newFile();
+        List<String> lines = new ArrayList<String>();
+        lines.add("@relation test");
+        for (String attribute : attributes.split(";")) {
+            lines.add("@attribute " + attribute);
+        }
+        lines.add("@data");
+        lines.addAll(Arrays.asList(data));
+        Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+        return file.getPath();
+    }
+
+    /**
+     * Writes the values of an instance as in an ARFF file.
+     */
+    protected static String format(Instance instance) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < instance.numAttributes(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            if (instance.isMissing(i)) {
+                sb.append('?');
+            } else if (instance.attribute(i).isNominal()) {
+                sb.append(instance.attribute(i).value((int) instance.value(i)));
+            } else {
+                sb.append(instance.value(i));
+            }
+        }
+        return sb.toString();
+    }
+
+    protected static List<String> read(ExampleStream stream) {
+        List<String> lines = new ArrayList<String>();
+        while (stream.hasMoreInstances()) {
+            lines.add(format((Instance) stream.nextInstance().getData()));
+        }
+        return lines;
+    }
+
+    protected static String resource(String name) {
+        return ClassLoader.getSystemResource(DATA + name).getPath();
+    }
+
+    @Test
+    public void testReferenceFiles() throws Exception {
+        // the attributes of b are in another order, c lacks y and has another color
+        EventTimeMergeStream stream = merge(resource("merge_a.arff"), resource("merge_b.arff"),
+                resource("merge_c.arff"));
+        List<String> expected = Files.readAllLines(Paths.get(resource("merge_expected.txt")),
+                StandardCharsets.UTF_8);
+        assertEquals(expected, read(stream));
+        stream.restart();
+        assertEquals(expected, read(stream));
+    }
+
+    @Test
+    public void testTiesInStreamOrder() throws Exception {
+        String first = arff("timestamp numeric;id {a,b,c,d,e,f,g}", "1,a", "2,b", "2,c", "4,d");
+        String second = arff("timestamp numeric;id {a,b,c,d,e,f,g}", "2,e", "2,f", "4,g");
+        assertEquals(Arrays.asList("1.0,a", "2.0,b", "2.0,c", "2.0,e", "2.0,f", "4.0,d", "4.0,g"),
+                read(merge(first, second)));
+        assertEquals(Arrays.asList("1.0,a", "2.0,e", "2.0,f", "2.0,b", "2.0,c", "4.0,g", "4.0,d"),
+                read(merge(second, first)));
+    }
+
+    @Test
+    public void testMissingTime() throws Exception {
+        // returned as soon as they are read
+        String first = arff("timestamp numeric;id {a,b,c,d,e,f}", "1,a", "?,b", "5,c");
+        String second = arff("timestamp numeric;id {a,b,c,d,e,f}", "?,d", "2,e", "3,f");
+        assertEquals(Arrays.asList("?,d", "1.0,a", "?,b", "2.0,e", "3.0,f", "5.0,c"),
+                read(merge(first, second)));
+    }
+
+    @Test
+    public void testAlignsAttributes() throws Exception {
+        String first = arff("timestamp numeric;color {red,green};x numeric;class {a,b}",
+                "1,red,0.5,a", "3,green,0.25,b");
+        // other order, an extra attribute and color, no x, and the labels the other way round
+        String second = arff("z numeric;class {b,a};color {blue,green,red};timestamp numeric",
+                "9,a,blue,2", "9,a,red,4", "9,b,?,5");
+        EventTimeMergeStream stream = merge(first, second);
+        assertEquals(4, stream.getHeader().numAttributes());
+        assertEquals(Arrays.asList("1.0,red,0.5,a", "2.0,?,?,a", "3.0,green,0.25,b", "4.0,red,?,a",
+                "5.0,?,?,b"), read(stream));
+    }
+
+    protected static void assertInvalid(String... files) {
+        try {
+            merge(files);
+            fail("Merged streams that can't be aligned");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Stream 2")
+                    || e.getMessage().contains("of stream 2"));
+        }
+    }
+
+    @Test
+    public void testStreamsThatCannotBeAligned() throws Exception {
+        String first = arff("timestamp numeric;class {a,b}", "1,a");
+        assertInvalid(first, arff("time numeric;class {a,b}", "1,a"));
+        assertInvalid(first, arff("timestamp numeric;class numeric", "1,0"));
+    }
+
+    @Test
+    public void testCloseStopsReaders() throws Exception {
+        EventTimeMergeStream stream = merge(resource("merge_a.arff"), resource("merge_b.arff"),
+                resource("merge_c.arff"));
+        List<String> expected = Files.readAllLines(Paths.get(resource("merge_expected.txt")),
+                StandardCharsets.UTF_8);
+        for (int n = 0; n < 10; n++) {
+            assertEquals(expected.get(n), format((Instance) stream.nextInstance().getData()));
+        }
+        List<Thread> producers = new ArrayList<Thread>();
+        for (PrefetchingStream reader : stream.streams) {
+            producers.add(reader.producer);
+        }
+        stream.close();
+        for (Thread producer : producers) {
+            assertFalse(producer.isAlive());
+        }
+        stream.restart();
+        assertEquals(expected, read(stream));
+        stream.close();
+    }
+}
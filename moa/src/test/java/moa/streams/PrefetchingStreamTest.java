@@ -0,0 +1,200 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * PrefetchingStreamTest.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+package moa.streams;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import moa.core.InstanceExample;
+import moa.streams.generators.RandomTreeGenerator;
+import moa.tasks.EvaluatePrequential;
+import moa.tasks.NullMonitor;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+
+/**
+ * Tests that {@link PrefetchingStream} gives the instances of the stream it
+ * reads ahead, in order, across restarts, passes on its failures and stops
+ * reading ahead once closed.
+ */
+public class PrefetchingStreamTest {
+
+    private static final int NUM_INSTANCES = 1000;
+
+    private static final int BATCH_SIZE = 16;
+
+    private static final int NUM_BATCHES = 4;
+
+    /**
+     * Stream which fails after a number of instances.
+     */
+    protected static class FailingStream extends CachedInstancesStream {
+
+        private static final long serialVersionUID = 1L;
+
+        protected int failAt;
+
+        public FailingStream(Instances toStream, int failAt) {
+            super(toStream);
+            this.failAt = failAt;
+        }
+
+        @Override
+        public InstanceExample nextInstance() {
+            if (this.streamPos == this.failAt) {
+                throw new IllegalStateException("failed at " + this.failAt);
+            }
+            return super.nextInstance();
+        }
+    }
+
+    protected static Instances data() {
+        RandomTreeGenerator generator = new RandomTreeGenerator();
+        generator.prepareForUse();
+        Instances data = new Instances(generator.getHeader(), NUM_INSTANCES);
+        for (int n = 0; n < NUM_INSTANCES; n++) {
+            data.add(generator.nextInstance().getData());
+        }
+        return data;
+    }
+
+    protected static PrefetchingStream prefetch(ExampleStream stream) {
+        PrefetchingStream prefetching = new PrefetchingStream();
+        prefetching.streamOption.setCurrentObject(stream);
+        prefetching.batchSizeOption.setValue(BATCH_SIZE);
+        prefetching.numBatchesOption.setValue(NUM_BATCHES);
+        prefetching.prepareForUse();
+        return prefetching;
+    }
+
+    /**
+     * Reads instances from the stream and checks they are the next ones of
+     * the data.
+     */
+    protected static void assertReads(Instances data, int from, int to, PrefetchingStream stream) {
+        for (int n = from; n < to; n++) {
+            assertTrue(stream.hasMoreInstances());
+            Instance instance = (Instance) stream.nextInstance().getData();
+            assertEquals("instance " + n, data.instance(n).toString(), instance.toString());
+        }
+    }
+
+    @Test
+    public void testReadsInOrder() {
+        Instances data = data();
+        PrefetchingStream stream = prefetch(new CachedInstancesStream(data));
+        assertReads(data, 0, NUM_INSTANCES, stream);
+        assertFalse(stream.hasMoreInstances());
+        assertNull(stream.nextInstance());
+        assertFalse(stream.hasMoreInstances());
+    }
+
+    @Test
+    public void testRestart() {
+        Instances data = data();
+        PrefetchingStream stream = prefetch(new CachedInstancesStream(data));
+        // in the middle of a batch, with batches read ahead
+        assertReads(data, 0, 5 * BATCH_SIZE + 3, stream);
+        stream.restart();
+        assertReads(data, 0, NUM_INSTANCES, stream);
+        assertFalse(stream.hasMoreInstances());
+        // and after the end
+        stream.restart();
+        assertReads(data, 0, NUM_INSTANCES, stream);
+        assertFalse(stream.hasMoreInstances());
+    }
+
+    @Test
+    public void testEstimatedRemainingInstances() throws Exception {
+        Instances data = data();
+        PrefetchingStream stream = prefetch(new CachedInstancesStream(data));
+        assertEquals(NUM_INSTANCES, stream.estimatedRemainingInstances());
+        int read = 3 * BATCH_SIZE + 5;
+        assertReads(data, 0, read, stream);
+        // once the producer waits for room, the estimate is exact
+        long deadline = System.currentTimeMillis() + 10000;
+        while ((stream.getBufferOccupancy() < 1.0
+                || stream.estimatedRemainingInstances() != NUM_INSTANCES - read)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1.0, stream.getBufferOccupancy(), 0.0);
+        assertEquals(NUM_INSTANCES - read, stream.estimatedRemainingInstances());
+
+        assertReads(data, read, NUM_INSTANCES, stream);
+        assertFalse(stream.hasMoreInstances());
+        assertEquals(0, stream.estimatedRemainingInstances());
+        stream.restart();
+        assertEquals(NUM_INSTANCES, stream.estimatedRemainingInstances());
+    }
+
+    @Test
+    public void testFailurePassedOn() {
+        Instances data = data();
+        int failAt = 3 * BATCH_SIZE + 7;
+        PrefetchingStream stream = prefetch(new FailingStream(data, failAt));
+        // the batches before the failure are still read
+        assertReads(data, 0, 3 * BATCH_SIZE, stream);
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try {
+                stream.nextInstance();
+                fail("Failure of the stream not passed on");
+            } catch (RuntimeException e) {
+                assertSame(IllegalStateException.class, e.getCause().getClass());
+                assertEquals("failed at " + failAt, e.getCause().getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testCloseStopsProducer() {
+        Instances data = data();
+        PrefetchingStream stream = prefetch(new CachedInstancesStream(data));
+        assertReads(data, 0, BATCH_SIZE + 3, stream);
+        Thread producer = stream.producer;
+        assertTrue(producer.isAlive());
+        stream.close();
+        assertFalse(producer.isAlive());
+        assertEquals(0, stream.getNumBufferedInstances());
+        // closing again does nothing, and a restarted stream is read again
+        stream.close();
+        stream.restart();
+        assertReads(data, 0, NUM_INSTANCES, stream);
+        assertFalse(stream.hasMoreInstances());
+    }
+
+    @Test
+    public void testTaskClosesStream() {
+        EvaluatePrequential task = new EvaluatePrequential();
+        task.streamOption.setValueViaCLIString("PrefetchingStream -s generators.RandomTreeGenerator -b 16 -n 4");
+        task.instanceLimitOption.setValue(1000);
+        task.prepareForUse();
+        task.doTask(new NullMonitor(), null);
+        PrefetchingStream stream = (PrefetchingStream) task.streamOption.getPreMaterializedObject();
+        assertNull(stream.producer);
+    }
+}
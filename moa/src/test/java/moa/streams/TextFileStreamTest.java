@@ -0,0 +1,191 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TextFileStreamTest.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+package moa.streams;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Tests the tokenisation of {@link TextFileStream}, and the attributes the
+ * tokens get by hashing and from the vocabulary.
+ */
+public class TextFileStreamTest {
+
+    private static final double EPS = 0.0;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    protected TextFileStream stream(String options, String... lines) throws Exception {
+        File file = folder.newFile();
+        Files.write(file.toPath(), String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        TextFileStream stream = new TextFileStream();
+        stream.getOptions().setViaCLIString("-f " + file.getPath() + " -c pos,neg " + options);
+        stream.prepareForUse();
+        return stream;
+    }
+
+    /**
+     * Gets the non-zero token counts of an instance by attribute.
+     */
+    protected static Map<Integer, Double> counts(Instance instance) {
+        Map<Integer, Double> counts = new HashMap<Integer, Double>();
+        for (int i = 0; i < instance.numAttributes(); i++) {
+            if (i != instance.classIndex() && instance.value(i) != 0.0) {
+                counts.put(i, instance.value(i));
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the non-zero token counts of an instance by token.
+     */
+    protected static Map<String, Double> wordCounts(TextFileStream stream, Instance instance) {
+        Map<String, Double> counts = new HashMap<String, Double>();
+        for (Map.Entry<Integer, Double> count : counts(instance).entrySet()) {
+            counts.put(stream.getVocabularyWord(count.getKey()), count.getValue());
+        }
+        return counts;
+    }
+
+    protected static Map<String, Double> map(Object... tokensAndCounts) {
+        Map<String, Double> map = new HashMap<String, Double>();
+        for (int i = 0; i < tokensAndCounts.length; i += 2) {
+            map.put((String) tokensAndCounts[i], ((Number) tokensAndCounts[i + 1]).doubleValue());
+        }
+        return map;
+    }
+
+    protected static Instance next(TextFileStream stream) {
+        assertTrue(stream.hasMoreInstances());
+        return stream.nextInstance().getData();
+    }
+
+    @Test
+    public void testTokenisation() throws Exception {
+        TextFileStream stream = stream("-v 100",
+                "  pos Hello, hello WORLD!  it's 42x",
+                "",
+                "neg\t(hello)-again");
+        Instance first = next(stream);
+        assertEquals(0, first.classValue(), EPS);
+        assertEquals(map("hello", 2, "world", 1, "it", 1, "s", 1, "42x", 1), wordCounts(stream, first));
+        Instance second = next(stream);
+        assertEquals(1, second.classValue(), EPS);
+        assertEquals(map("hello", 1, "again", 1), wordCounts(stream, second));
+        assertFalse(stream.hasMoreInstances());
+
+        stream = stream("-v 100 -k -b", "pos Hello hello hello");
+        assertEquals(map("Hello", 1, "hello", 1), wordCounts(stream, next(stream)));
+    }
+
+    @Test
+    public void testUnknownLabel() throws Exception {
+        TextFileStream stream = stream("", "pos a", "other b");
+        next(stream);
+        try {
+            stream.nextInstance();
+            fail("Read a document of an unknown class");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("'other'"));
+        }
+    }
+
+    @Test
+    public void testHashing() throws Exception {
+        int numAttributes = 1000;
+        TextFileStream stream = stream("-a " + numAttributes, "pos the cat The dog", "neg the end");
+        assertEquals(numAttributes + 1, stream.getHeader().numAttributes());
+        Map<Integer, Double> expected = new HashMap<Integer, Double>();
+        for (String token : new String[]{"the", "cat", "the", "dog"}) {
+            // hashed as String.hashCode() is computed
+            int attribute = (TextFileStream.mix(token.hashCode()) & Integer.MAX_VALUE) % numAttributes;
+            expected.merge(attribute, 1.0, Double::sum);
+        }
+        assertEquals(expected, counts(next(stream)));
+        Map<Integer, Double> second = counts(next(stream));
+        assertEquals(1.0, second.get((TextFileStream.mix("the".hashCode()) & Integer.MAX_VALUE) % numAttributes), EPS);
+    }
+
+    @Test
+    public void testVocabularyEvictsLeastRecentlySeen() throws Exception {
+        TextFileStream stream = stream("-v 2", "pos a b", "pos c", "pos b a", "pos a d");
+        assertEquals(3, stream.getHeader().numAttributes());
+        next(stream);
+        assertEquals("a", stream.getVocabularyWord(0));
+        assertEquals("b", stream.getVocabularyWord(1));
+
+        // a was seen least recently
+        Instance instance = next(stream);
+        assertEquals(map("c", 1), wordCounts(stream, instance));
+        assertEquals(1.0, instance.value(0), EPS);
+        assertEquals("c", stream.getVocabularyWord(0));
+
+        // b was seen before c, but in this document
+        assertEquals(map("b", 1, "a", 1), wordCounts(stream, next(stream)));
+        assertEquals("a", stream.getVocabularyWord(0));
+
+        assertEquals(map("a", 1, "d", 1), wordCounts(stream, next(stream)));
+        assertEquals("d", stream.getVocabularyWord(1));
+    }
+
+    @Test
+    public void testVocabularyFullOfOneDocument() throws Exception {
+        // c and d can only take the attribute of a token of the same document
+        TextFileStream stream = stream("-v 2", "pos a b c a d b", "neg c");
+        assertEquals(map("a", 2, "b", 2), wordCounts(stream, next(stream)));
+        assertEquals("a", stream.getVocabularyWord(0));
+        assertEquals("b", stream.getVocabularyWord(1));
+        assertEquals(map("c", 1), wordCounts(stream, next(stream)));
+    }
+
+    @Test
+    public void testRestart() throws Exception {
+        TextFileStream stream = stream("-v 3", "pos a b c d", "neg d e a", "pos f a b");
+        List<String> first = new ArrayList<String>();
+        while (stream.hasMoreInstances()) {
+            first.add(stream.nextInstance().getData().toString());
+        }
+        stream.restart();
+        List<String> second = new ArrayList<String>();
+        while (stream.hasMoreInstances()) {
+            second.add(stream.nextInstance().getData().toString());
+        }
+        assertEquals(3, first.size());
+        assertEquals(first, second);
+    }
+}
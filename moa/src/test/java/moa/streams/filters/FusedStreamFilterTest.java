@@ -0,0 +1,192 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * FusedStreamFilterTest.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+package moa.streams.filters;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import moa.options.ClassOption;
+import moa.options.OptionHandler;
+import moa.streams.CachedInstancesStream;
+import moa.streams.ExampleStream;
+import moa.streams.MultiFilteredStream;
+import moa.streams.generators.RandomTreeGenerator;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+
+/**
+ * Checks that {@link MultiFilteredStream}, which fuses runs of
+ * {@link FusibleStreamFilter}s, gives bit-identical output to the same
+ * filters chained one after the other, before and after a restart. The
+ * chains of element-wise filters are also checked against digests of the
+ * output of the filters before they were made fusible.
+ */
+public class FusedStreamFilterTest {
+
+    private static final int NUM_INSTANCES = 2000;
+
+    // Digests of the output of the filters before they were fusible
+    private static final long ORIGINAL_NORMALISE_REPLACE_ADD_NOISE = -4564366716644982205L;
+
+    private static final long ORIGINAL_REPLACE_STANDARDISE_NORMALISE = 1247530517635137989L;
+
+    private static final long ORIGINAL_ADD_NOISE_STANDARDISE_REPLACE = 3058646134755873849L;
+
+    /**
+     * RandomTree instances with 5% of the input values missing.
+     */
+    protected static Instances data() {
+        RandomTreeGenerator generator = new RandomTreeGenerator();
+        generator.prepareForUse();
+        Instances data = new Instances(generator.getHeader(), NUM_INSTANCES);
+        Random random = new Random(3);
+        for (int n = 0; n < NUM_INSTANCES; n++) {
+            Instance instance = generator.nextInstance().getData();
+            for (int i = 0; i < instance.numAttributes(); i++) {
+                if (i != instance.classIndex() && random.nextDouble() < 0.05) {
+                    instance.setValue(i, Double.NaN);
+                }
+            }
+            data.add(instance);
+        }
+        return data;
+    }
+
+    /**
+     * Reads a stream to its end twice, restarting it in between.
+     */
+    protected static List<Instance> readTwice(ExampleStream stream) {
+        List<Instance> result = new ArrayList<Instance>();
+        for (int pass = 0; pass < 2; pass++) {
+            while (stream.hasMoreInstances()) {
+                result.add((Instance) stream.nextInstance().getData());
+            }
+            stream.restart();
+        }
+        return result;
+    }
+
+    protected static List<Instance> unfused(Instances data, String... filters) throws Exception {
+        ExampleStream stream = new CachedInstancesStream(data);
+        for (String cli : filters) {
+            StreamFilter filter = (StreamFilter) ClassOption.cliStringToObject(cli, StreamFilter.class, null);
+            ((OptionHandler) filter).prepareForUse();
+            filter.setInputStream(stream);
+            stream = filter;
+        }
+        return readTwice(stream);
+    }
+
+    protected static List<Instance> fused(Instances data, String... filters) {
+        MultiFilteredStream stream = new MultiFilteredStream();
+        stream.streamOption.setCurrentObject(new CachedInstancesStream(data));
+        stream.filtersOption.setValueViaCLIString(String.join(",", filters));
+        stream.prepareForUse();
+        return readTwice(stream);
+    }
+
+    protected static void assertSameInstances(List<Instance> expected, List<Instance> actual) {
+        assertEquals(2 * NUM_INSTANCES, expected.size());
+        assertEquals(expected.size(), actual.size());
+        for (int n = 0; n < expected.size(); n++) {
+            Instance x = expected.get(n);
+            Instance y = actual.get(n);
+            assertEquals(x.numAttributes(), y.numAttributes());
+            assertEquals(x.classIndex(), y.classIndex());
+            assertEquals(x.weight(), y.weight(), 0.0);
+            for (int i = 0; i < x.numAttributes(); i++) {
+                assertEquals("instance " + n + ", attribute " + i,
+                        Double.doubleToLongBits(x.value(i)), Double.doubleToLongBits(y.value(i)));
+            }
+        }
+    }
+
+    /**
+     * Hashes the exact values and weights of the instances.
+     */
+    protected static long digest(List<Instance> instances) {
+        long digest = 1;
+        for (Instance instance : instances) {
+            digest = 31 * digest + Double.doubleToLongBits(instance.weight());
+            for (int i = 0; i < instance.numAttributes(); i++) {
+                digest = 31 * digest + Double.doubleToLongBits(instance.value(i));
+            }
+        }
+        return digest;
+    }
+
+    @Test
+    public void testNormaliseReplaceAddNoise() throws Exception {
+        String[] filters = {"NormalisationFilter", "ReplacingMissingValuesFilter -s 1 -t 1",
+            "AddNoiseFilter -a 0.2"};
+        Instances data = data();
+        List<Instance> unfused = unfused(data, filters);
+        assertSameInstances(unfused, fused(data, filters));
+        assertEquals(ORIGINAL_NORMALISE_REPLACE_ADD_NOISE, digest(unfused));
+    }
+
+    @Test
+    public void testReplaceStandardiseNormalise() throws Exception {
+        String[] filters = {"ReplacingMissingValuesFilter -s 3 -t 1", "StandardisationFilter -a 2",
+            "NormalisationFilter"};
+        Instances data = data();
+        List<Instance> unfused = unfused(data, filters);
+        assertSameInstances(unfused, fused(data, filters));
+        assertEquals(ORIGINAL_REPLACE_STANDARDISE_NORMALISE, digest(unfused));
+    }
+
+    @Test
+    public void testAddNoiseKeepsMissingValues() throws Exception {
+        String[] filters = {"AddNoiseFilter", "StandardisationFilter -a 1",
+            "ReplacingMissingValuesFilter -s 2 -t 2"};
+        Instances data = data();
+        List<Instance> unfused = unfused(data, filters);
+        assertSameInstances(unfused, fused(data, filters));
+        assertEquals(ORIGINAL_ADD_NOISE_STANDARDISE_REPLACE, digest(unfused));
+    }
+
+    @Test
+    public void testRBF() throws Exception {
+        String[] filters = {"ReplacingMissingValuesFilter -s 1 -t 1", "StandardisationFilter",
+            "RBFFilter -h 3"};
+        Instances data = data();
+        List<Instance> unfused = unfused(data, filters);
+        assertSameInstances(unfused, fused(data, filters));
+        assertEquals(4, unfused.get(0).numAttributes());
+        assertEquals(3, unfused.get(0).classIndex());
+    }
+
+    @Test
+    public void testReLU() throws Exception {
+        String[] filters = {"ReplacingMissingValuesFilter -s 1 -t 1", "NormalisationFilter",
+            "ReLUFilter -h 50"};
+        Instances data = data();
+        List<Instance> unfused = unfused(data, filters);
+        assertSameInstances(unfused, fused(data, filters));
+        assertEquals(6, unfused.get(0).numAttributes());
+        assertEquals(5, unfused.get(0).classIndex());
+    }
+}
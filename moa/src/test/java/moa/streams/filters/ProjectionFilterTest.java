@@ -0,0 +1,261 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ProjectionFilterTest.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+package moa.streams.filters;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import moa.streams.CachedInstancesStream;
+import moa.streams.ExampleStream;
+
+import org.junit.Test;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import com.yahoo.labs.samoa.instances.SparseInstance;
+
+/**
+ * Checks the output of {@link HashingTrickFilter} against the hashing of
+ * all attributes done before the filter visited only stored values, and the
+ * output of {@link RandomProjectionFilter} against the product with its
+ * projection matrix written out in full, on dense and sparse instances.
+ */
+public class ProjectionFilterTest {
+
+    private static final int NUM_FEATURES = 300;
+
+    private static final int NUM_INSTANCES = 200;
+
+    private static final int DIM = 20;
+
+    /** Fraction of the features that are non-zero. */
+    private static final double DENSITY = 0.05;
+
+    protected static InstancesHeader header() {
+        List<Attribute> attributes = new ArrayList<Attribute>();
+        for (int i = 0; i < NUM_FEATURES; i++) {
+            attributes.add(new Attribute("x" + i));
+        }
+        attributes.add(new Attribute("class", Arrays.asList("a", "b")));
+        InstancesHeader header = new InstancesHeader(new Instances("test", attributes, 0));
+        header.setClassIndex(NUM_FEATURES);
+        return header;
+    }
+
+    /**
+     * Mostly zero instances, stored sparsely or densely.
+     */
+    protected static Instances data(boolean sparse) {
+        InstancesHeader header = header();
+        Instances data = new Instances(header, NUM_INSTANCES);
+        Random random = new Random(7);
+        for (int n = 0; n < NUM_INSTANCES; n++) {
+            double[] values = new double[NUM_FEATURES + 1];
+            List<Integer> indices = new ArrayList<Integer>();
+            for (int i = 0; i < NUM_FEATURES; i++) {
+                if (random.nextDouble() < DENSITY) {
+                    values[i] = random.nextGaussian();
+                    indices.add(i);
+                }
+            }
+            values[NUM_FEATURES] = n % 2;
+            indices.add(NUM_FEATURES);
+            Instance instance;
+            if (sparse) {
+                double[] stored = new double[indices.size()];
+                int[] storedIndices = new int[indices.size()];
+                for (int k = 0; k < stored.length; k++) {
+                    storedIndices[k] = indices.get(k);
+                    stored[k] = values[storedIndices[k]];
+                }
+                instance = new SparseInstance(1.0, stored, storedIndices, NUM_FEATURES + 1);
+            } else {
+                instance = new DenseInstance(1.0, values);
+            }
+            instance.setDataset(header);
+            data.add(instance);
+        }
+        return data;
+    }
+
+    protected static List<Instance> read(ExampleStream stream) {
+        List<Instance> result = new ArrayList<Instance>();
+        while (stream.hasMoreInstances()) {
+            result.add((Instance) stream.nextInstance().getData());
+        }
+        return result;
+    }
+
+    /**
+     * The hashing of the filter before it visited only stored values.
+     */
+    protected static double[] originalHashVector(Instance instance, int n, HashFunction hashFunction) {
+        double[] denseValues = new double[n];
+        for (int i = 0; i < instance.numAttributes() - 1; i++) {
+            double diff = Math.abs(instance.value(i));
+            if (diff > Double.MIN_NORMAL) {
+                int hash = hashFunction.hashInt(i).asInt();
+                int bucket = Math.abs(hash) % n;
+                denseValues[bucket] += (hash < 0 ? -1d : 1d);
+            }
+        }
+        return denseValues;
+    }
+
+    protected static void assertOutput(double[] expected, Instance instance, Instance output, double delta) {
+        assertEquals(DIM + 1, output.numAttributes());
+        for (int k = 0; k < DIM; k++) {
+            assertEquals("output " + k, expected[k], output.value(k), delta);
+        }
+        assertEquals(instance.classValue(), output.classValue(), 0.0);
+    }
+
+    @Test
+    public void testHashingAsOriginal() {
+        for (boolean sparse : new boolean[]{false, true}) {
+            Instances data = data(sparse);
+            HashingTrickFilter filter = new HashingTrickFilter();
+            filter.dim.setValue(DIM);
+            filter.prepareForUse();
+            filter.setInputStream(new CachedInstancesStream(data));
+            List<Instance> output = read(filter);
+            assertEquals(NUM_INSTANCES, output.size());
+            for (int n = 0; n < NUM_INSTANCES; n++) {
+                double[] expected = originalHashVector(data.instance(n), DIM, Hashing.murmur3_128());
+                assertOutput(expected, data.instance(n), output.get(n), 0.0);
+                assertArrayEquals(expected, filter.hashVector(data.instance(n), DIM, Hashing.murmur3_128()), 0.0);
+            }
+        }
+    }
+
+    /**
+     * Writes out the projection matrix of the filter, row by output.
+     */
+    protected static double[][] matrix(RandomProjectionFilter filter) {
+        double[][] matrix = new double[DIM][NUM_FEATURES];
+        for (int j = 0; j < NUM_FEATURES; j++) {
+            if (filter.gaussWeights != null) {
+                for (int k = 0; k < DIM; k++) {
+                    matrix[k][j] = filter.gaussWeights[j * DIM + k];
+                }
+            } else {
+                for (int e = filter.sparseStart[j]; e < filter.sparseStart[j + 1]; e++) {
+                    int k = filter.sparseOutputs[e];
+                    if (k >= 0) {
+                        matrix[k][j] = filter.sparseScale;
+                    } else {
+                        matrix[~k][j] = -filter.sparseScale;
+                    }
+                }
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Checks the entries of the matrix take the values of the projection,
+     * with about the expected fraction of them non-zero.
+     */
+    protected static void assertEntries(double[][] matrix, int projection) {
+        int numEntries = DIM * NUM_FEATURES;
+        int nonZero = 0;
+        double sumOfSquares = 0;
+        double s = projection == RandomProjectionFilter.ACHLIOPTAS ? 3 : Math.sqrt(NUM_FEATURES);
+        for (double[] row : matrix) {
+            for (double entry : row) {
+                if (entry != 0) {
+                    nonZero++;
+                    if (projection != RandomProjectionFilter.GAUSSIAN) {
+                        assertEquals(Math.sqrt(s), Math.abs(entry), 0.0);
+                    }
+                }
+                sumOfSquares += entry * entry;
+            }
+        }
+        // unit variance
+        assertEquals(1.0, sumOfSquares / numEntries, 0.1);
+        if (projection == RandomProjectionFilter.GAUSSIAN) {
+            assertEquals(numEntries, nonZero);
+        } else {
+            double expected = numEntries / s;
+            assertEquals(expected, nonZero, 4 * Math.sqrt(expected));
+        }
+    }
+
+    @Test
+    public void testProjectionIsMatrixProduct() {
+        for (int projection : new int[]{RandomProjectionFilter.GAUSSIAN,
+                RandomProjectionFilter.ACHLIOPTAS, RandomProjectionFilter.VERY_SPARSE}) {
+            List<Instance> denseOutput = null;
+            for (boolean sparse : new boolean[]{false, true}) {
+                Instances data = data(sparse);
+                RandomProjectionFilter filter = new RandomProjectionFilter();
+                filter.dim.setValue(DIM);
+                filter.projectionOption.setChosenIndex(projection);
+                filter.prepareForUse();
+                filter.setInputStream(new CachedInstancesStream(data));
+                List<Instance> output = read(filter);
+                double[][] matrix = matrix(filter);
+                assertEntries(matrix, projection);
+                for (int n = 0; n < NUM_INSTANCES; n++) {
+                    Instance instance = data.instance(n);
+                    double[] features = new double[NUM_FEATURES];
+                    for (int j = 0; j < NUM_FEATURES; j++) {
+                        features[j] = instance.value(j);
+                    }
+                    assertOutput(RandomProjectionFilter.multiply(matrix, features), instance, output.get(n), 1e-9);
+                }
+                // the same whether the instances are stored sparsely or not
+                if (denseOutput == null) {
+                    denseOutput = output;
+                } else {
+                    for (int n = 0; n < NUM_INSTANCES; n++) {
+                        assertEquals(denseOutput.get(n).toString(), output.get(n).toString());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testHeaderDoesNotReadInstance() {
+        Instances data = data(true);
+        StreamFilter[] filters = {new HashingTrickFilter(), new RandomProjectionFilter()};
+        for (StreamFilter filter : filters) {
+            ((AbstractStreamFilter) filter).prepareForUse();
+            filter.setInputStream(new CachedInstancesStream(data));
+            InstancesHeader header = filter.getHeader();
+            assertEquals(11, header.numAttributes());
+            assertTrue(header.classAttribute().isNominal());
+            assertEquals(NUM_INSTANCES, read(filter).size());
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * BatchInstanceStreamTest.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+package moa.streams.generators;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import moa.options.ClassOption;
+import moa.options.OptionHandler;
+import moa.streams.BatchInstanceStream;
+import moa.streams.InstanceBatch;
+import moa.streams.InstanceStream;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Checks that the batches of each {@link BatchInstanceStream} generator hold
+ * the same instances as calls to nextInstance(), bit for bit, before and
+ * after a restart.
+ */
+@RunWith(Parameterized.class)
+public class BatchInstanceStreamTest {
+
+    private static final int NUM_INSTANCES = 3000;
+
+    /** Batch sizes to cycle through, so batches don't line up with anything. */
+    private static final int[] BATCH_SIZES = {1, 777, 64, 1000, 3};
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> generators() {
+        return Arrays.asList(new Object[][]{
+            {"generators.SEAGenerator -f 2 -b -p 10"},
+            {"generators.AgrawalGenerator -f 3 -p 0.1"},
+            {"generators.AgrawalGenerator -f 7 -b"},
+            {"generators.HyperplaneGenerator -c 3 -k 5 -t 0.01 -s 10 -n 5"},
+            {"generators.HyperplaneGeneratorForRegression -k 5 -t 0.01"},
+            {"generators.LEDGenerator -n 20 -s"},
+            {"generators.LEDGeneratorDrift -d 3"},
+            {"generators.WaveformGenerator -n"},
+            {"generators.WaveformGeneratorDrift -d 5"},
+            {"generators.RandomTreeGenerator -c 3 -o 4 -u 4"},
+            {"generators.RandomRBFGenerator -c 4 -a 6"},
+            {"generators.RandomRBFGeneratorDrift -s 0.01 -k 5"},
+        });
+    }
+
+    protected String cli;
+
+    public BatchInstanceStreamTest(String cli) {
+        this.cli = cli;
+    }
+
+    protected BatchInstanceStream newStream() throws Exception {
+        BatchInstanceStream stream = (BatchInstanceStream) ClassOption.cliStringToObject(
+                this.cli, InstanceStream.class, null);
+        ((OptionHandler) stream).prepareForUse();
+        return stream;
+    }
+
+    /**
+     * Reads the stream one instance at a time, twice with a restart in
+     * between.
+     */
+    protected List<Instance> oneAtATime() throws Exception {
+        BatchInstanceStream stream = newStream();
+        List<Instance> result = new ArrayList<Instance>();
+        for (int pass = 0; pass < 2; pass++) {
+            for (int n = 0; n < NUM_INSTANCES; n++) {
+                result.add(stream.nextInstance().getData());
+            }
+            stream.restart();
+        }
+        return result;
+    }
+
+    protected static void assertSameInstance(String message, Instance expected, Instance actual) {
+        assertEquals(message, expected.numAttributes(), actual.numAttributes());
+        assertEquals(message, expected.classIndex(), actual.classIndex());
+        assertEquals(message, expected.weight(), actual.weight(), 0.0);
+        for (int i = 0; i < expected.numAttributes(); i++) {
+            assertEquals(message + ", attribute " + i,
+                    Double.doubleToLongBits(expected.value(i)), Double.doubleToLongBits(actual.value(i)));
+        }
+    }
+
+    @Test
+    public void testNextInstances() throws Exception {
+        List<Instance> expected = oneAtATime();
+        BatchInstanceStream stream = newStream();
+        int index = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            int n = 0;
+            for (int b = 0; n < NUM_INSTANCES; b++) {
+                InstanceBatch batch = stream.nextInstances(
+                        Math.min(BATCH_SIZES[b % BATCH_SIZES.length], NUM_INSTANCES - n));
+                for (int row = 0; row < batch.size(); row++, n++) {
+                    assertSameInstance("instance " + index, expected.get(index++), batch.instance(row));
+                }
+            }
+            stream.restart();
+        }
+        assertEquals(expected.size(), index);
+    }
+
+    @Test
+    public void testFillInterleaved() throws Exception {
+        List<Instance> expected = oneAtATime();
+        BatchInstanceStream stream = newStream();
+        InstanceBatch batch = new InstanceBatch(stream.getHeader(), 100);
+        int index = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            // alternate a reused batch with single instances
+            for (int n = 0; n < NUM_INSTANCES; ) {
+                if (NUM_INSTANCES - n >= batch.capacity()) {
+                    stream.fill(batch);
+                    for (int row = 0; row < batch.size(); row++, n++) {
+                        assertSameInstance("instance " + index, expected.get(index++), batch.instance(row));
+                    }
+                }
+                for (int k = 0; k < 7 && n < NUM_INSTANCES; k++, n++) {
+                    assertSameInstance("instance " + index, expected.get(index++),
+                            stream.nextInstance().getData());
+                }
+            }
+            stream.restart();
+        }
+        assertEquals(expected.size(), index);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * EvaluatePrequentialTest.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+package moa.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+
+import moa.core.InstanceExample;
+import moa.streams.generators.RandomTreeGenerator;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that {@link EvaluatePrequential} releases the metrics exporter and
+ * the phase metrics file when the evaluation fails.
+ */
+public class EvaluatePrequentialTest {
+
+    private static final int FAIL_AT = 500;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Stream which fails after a number of instances.
+     */
+    protected static class FailingGenerator extends RandomTreeGenerator {
+
+        private static final long serialVersionUID = 1L;
+
+        protected int numInstances;
+
+        @Override
+        public void restart() {
+            super.restart();
+            this.numInstances = 0;
+        }
+
+        @Override
+        public InstanceExample nextInstance() {
+            if (++this.numInstances > FAIL_AT) {
+                throw new IllegalStateException("failed at " + FAIL_AT);
+            }
+            return super.nextInstance();
+        }
+    }
+
+    protected static int freePort() throws Exception {
+        ServerSocket socket = new ServerSocket(0);
+        int port = socket.getLocalPort();
+        socket.close();
+        return port;
+    }
+
+    protected void evaluateFailing(int port, File metricsFile, File phaseMetricsFile) {
+        EvaluatePrequential task = new EvaluatePrequential();
+        task.streamOption.setCurrentObject(new FailingGenerator());
+        task.instanceLimitOption.setValue(10000);
+        task.sampleFrequencyOption.setValue(100);
+        task.metricsExportPortOption.setValue(port);
+        task.metricsExportFileOption.setValue(metricsFile.getPath());
+        task.instrumentPhasesOption.set();
+        task.phaseMetricsFileOption.setValue(phaseMetricsFile.getPath());
+        task.prepareForUse();
+        try {
+            task.doTask(new NullMonitor(), null);
+            fail("Failure of the stream not passed on");
+        } catch (IllegalStateException e) {
+            assertEquals("failed at " + FAIL_AT, e.getMessage());
+        }
+    }
+
+    @Test
+    public void testFailureReleasesExporter() throws Exception {
+        int port = freePort();
+        File metricsFile = new File(folder.getRoot(), "metrics.prom");
+        File phaseMetricsFile = new File(folder.getRoot(), "phases.csv");
+        evaluateFailing(port, metricsFile, phaseMetricsFile);
+        // the port is free again, so the next run can serve on it
+        ServerSocket socket = new ServerSocket(port);
+        socket.close();
+        evaluateFailing(port, metricsFile, phaseMetricsFile);
+
+        // the final snapshot was written, and the file isn't rewritten any more
+        assertTrue(metricsFile.exists());
+        long modified = metricsFile.lastModified();
+        byte[] metrics = Files.readAllBytes(metricsFile.toPath());
+        Thread.sleep(1500);
+        assertEquals(modified, metricsFile.lastModified());
+        assertEquals(new String(metrics, "UTF-8"),
+                new String(Files.readAllBytes(metricsFile.toPath()), "UTF-8"));
+        // both runs wrote their phase metrics up to the failure
+        assertTrue(Files.readAllLines(phaseMetricsFile.toPath()).size() > 2 * (FAIL_AT / 100 - 1));
+    }
+}
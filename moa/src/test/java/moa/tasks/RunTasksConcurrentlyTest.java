@@ -0,0 +1,155 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * RunTasksConcurrentlyTest.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+package moa.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import moa.evaluation.preview.LearningCurve;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Runs small sweeps with {@link RunTasksConcurrently} and resumes them from
+ * the result directory.
+ */
+public class RunTasksConcurrentlyTest {
+
+    private static final String TASK = "EvaluatePrequential -l trees.HoeffdingTree -i 500 -f 100";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    protected RunTasksConcurrently sweep(String task) {
+        RunTasksConcurrently sweep = new RunTasksConcurrently();
+        sweep.taskOption.setValueViaCLIString(task);
+        sweep.parameterOption.setValue("g");
+        sweep.firstValueOption.setValue(100);
+        sweep.lastValueOption.setValue(300);
+        sweep.incrementValueOption.setValue(100);
+        sweep.numThreadsOption.setValue(2);
+        sweep.resultDirectoryOption.setValue(folder.getRoot().getPath());
+        sweep.prepareForUse();
+        return sweep;
+    }
+
+    /**
+     * Lists the parameter value and accuracy of each experiment, leaving
+     * out the timings.
+     */
+    protected static String describe(Object result) {
+        LearningCurve summary = (LearningCurve) result;
+        int accuracy = 0;
+        while (!summary.getMeasurementName(accuracy).equals("classifications correct (percent)")) {
+            accuracy++;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < summary.numEntries(); i++) {
+            sb.append(summary.getMeasurement(i, 0)).append(',')
+                    .append(summary.getMeasurement(i, accuracy)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    protected File runFile(int index, String suffix) {
+        return new File(folder.getRoot(), "run-" + index + suffix);
+    }
+
+    @Test
+    public void testResume() {
+        String summary = describe(sweep(TASK).doTask(new NullMonitor(), null));
+        assertEquals(3, summary.split("\n").length);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(runFile(i, ".csv").exists());
+            assertTrue(runFile(i, ".task").exists());
+        }
+
+        // only the experiment without a result runs again
+        long lastModified = runFile(0, ".csv").lastModified();
+        assertTrue(runFile(1, ".csv").delete());
+        assertEquals(summary, describe(sweep(TASK).doTask(new NullMonitor(), null)));
+        assertTrue(runFile(1, ".csv").exists());
+        assertEquals(lastModified, runFile(0, ".csv").lastModified());
+    }
+
+    protected static void assertResumeFails(RunTasksConcurrently sweep) {
+        try {
+            sweep.doTask(new NullMonitor(), null);
+            fail("Resumed from the results of another experiment");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("is not of the experiment to run"));
+        }
+    }
+
+    @Test
+    public void testResumeOtherTask() {
+        sweep(TASK).doTask(new NullMonitor(), null);
+        assertResumeFails(sweep("EvaluatePrequential -l trees.HoeffdingTree -i 600 -f 100"));
+    }
+
+    @Test
+    public void testResumeOtherValues() {
+        sweep(TASK).doTask(new NullMonitor(), null);
+        RunTasksConcurrently sweep = sweep(TASK);
+        sweep.firstValueOption.setValue(150);
+        assertResumeFails(sweep);
+    }
+
+    @Test
+    public void testResumeWithoutManifest() {
+        sweep(TASK).doTask(new NullMonitor(), null);
+        assertTrue(runFile(2, ".task").delete());
+        assertResumeFails(sweep(TASK));
+    }
+
+    @Test
+    public void testFilesOfEachExperiment() throws Exception {
+        File shared = folder.newFolder("shared");
+        String task = TASK + " -d " + new File(shared, "dump.csv") + " -o " + new File(shared, "predictions.csv")
+                + " -p -m " + new File(shared, "phases.csv");
+        sweep(task).doTask(new NullMonitor(), null);
+        assertEquals(0, shared.listFiles().length);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(500, Files.readAllLines(runFile(i, ".predictions.csv").toPath()).size());
+            // a header and the five sampled entries
+            assertEquals(6, Files.readAllLines(runFile(i, ".dump.csv").toPath()).size());
+            assertTrue(runFile(i, ".phases.csv").length() > 0);
+        }
+    }
+
+    @Test
+    public void testMetricsExportRejected() {
+        for (String option : new String[]{" -x metrics.prom", " -y 9400"}) {
+            try {
+                sweep(TASK + option).doTask(new NullMonitor(), null);
+                fail("Ran experiments exporting the learner metrics");
+            } catch (RuntimeException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("can't export the learner metrics"));
+            }
+        }
+        assertEquals(0, folder.getRoot().listFiles().length);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * WriteStreamToFileInParallelTest.java
+ * Copyright (C) 2024 University of Waikato, Hamilton, NZ
+ */
+package moa.tasks;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import moa.options.ClassOption;
+import moa.options.OptionHandler;
+import moa.streams.BatchInstanceStream;
+import moa.streams.InstanceStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that {@link WriteStreamToFileInParallel} writes the same bytes
+ * whatever the number of threads, for streams with independent instances,
+ * which are generated on all threads, and for streams with dependent ones,
+ * which are generated on one.
+ */
+public class WriteStreamToFileInParallelTest {
+
+    /** Not a multiple of the block size, so the last block is partly full. */
+    private static final int NUM_INSTANCES = 5003;
+
+    private static final int BLOCK_SIZE = 500;
+
+    private static final int NUM_THREADS = 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    protected byte[] write(String stream, int numThreads, boolean binary) throws Exception {
+        File file = folder.newFile();
+        WriteStreamToFileInParallel task = new WriteStreamToFileInParallel();
+        task.streamOption.setValueViaCLIString(stream);
+        task.outputFileOption.setValue(file.getPath());
+        task.formatOption.setChosenIndex(binary ? 1 : 0);
+        task.maxInstancesOption.setValue(NUM_INSTANCES);
+        task.blockSizeOption.setValue(BLOCK_SIZE);
+        task.numThreadsOption.setValue(numThreads);
+        task.prepareForUse();
+        task.doTask(new NullMonitor(), null);
+        return Files.readAllBytes(file.toPath());
+    }
+
+    protected static BatchInstanceStream stream(String cli) throws Exception {
+        BatchInstanceStream stream = (BatchInstanceStream) ClassOption.cliStringToObject(
+                cli, InstanceStream.class, null);
+        ((OptionHandler) stream).prepareForUse();
+        return stream;
+    }
+
+    protected void assertSameForAnyThreads(String stream) throws Exception {
+        for (boolean binary : new boolean[]{false, true}) {
+            byte[] expected = write(stream, 1, binary);
+            assertTrue(expected.length > 0);
+            assertArrayEquals(stream, expected, write(stream, NUM_THREADS, binary));
+            // and again, as the threads finish the blocks in another order
+            assertArrayEquals(stream, expected, write(stream, NUM_THREADS, binary));
+            if (binary) {
+                int numAttributes = stream(stream).getHeader().numAttributes();
+                assertEquals((long) NUM_INSTANCES * numAttributes * Double.BYTES, expected.length);
+            }
+        }
+    }
+
+    @Test
+    public void testIndependentInstances() throws Exception {
+        String stream = "generators.RandomTreeGenerator";
+        assertTrue(stream(stream).hasIndependentInstances());
+        assertSameForAnyThreads(stream);
+    }
+
+    @Test
+    public void testBalancedSEA() throws Exception {
+        String stream = "generators.SEAGenerator -b";
+        assertFalse(stream(stream).hasIndependentInstances());
+        assertSameForAnyThreads(stream);
+    }
+
+    @Test
+    public void testDriftingHyperplane() throws Exception {
+        String stream = "generators.HyperplaneGenerator -k 5 -t 0.01 -s 10";
+        assertFalse(stream(stream).hasIndependentInstances());
+        assertSameForAnyThreads(stream);
+    }
+}